@@ -36,5 +36,6 @@ public class ExternalDependencyTestSuite extends TestSuite {
 	public ExternalDependencyTestSuite() {
 		addTest(new TestSuite(ReferenceCountTests.class));
 		addTest(new TestSuite(ExternalDependencyProblemMarkerTests.class));
+		addTest(new TestSuite(UseScanIndexTests.class));
 	}
 }
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.apiusescan.tests;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.pde.api.tools.internal.ApiDescription;
+import org.eclipse.pde.api.tools.internal.IApiCoreConstants;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.search.IReferenceCollection;
+import org.eclipse.pde.api.tools.internal.search.IReferenceDescriptor;
+import org.eclipse.pde.api.tools.internal.search.UseScanIndex;
+import org.eclipse.pde.api.tools.internal.search.UseScanParser;
+import org.eclipse.pde.api.tools.internal.search.UseScanReferenceVisitor;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
+
+/**
+ * Tests that the references read from the persistent index of a use scan are
+ * the ones read from the XML reports of the scan, that a corrupted index is
+ * not used, and that index files are replaced and deleted with the reports.
+ */
+public class UseScanIndexTests extends TestCase {
+
+	private static final String APP_ID = "org.eclipse.equinox.app"; //$NON-NLS-1$
+	private static final String COMMON_ID = "org.eclipse.equinox.common"; //$NON-NLS-1$
+
+	private String fLocation;
+
+	/**
+	 * References grouped by referenced root type
+	 */
+	static class References implements IReferenceCollection {
+		Map<String, Set<IReferenceDescriptor>> fReferences = new HashMap<>();
+
+		@Override
+		public void add(String type, IReferenceDescriptor referenceDescriptor) {
+			fReferences.computeIfAbsent(type, key -> new HashSet<>()).add(referenceDescriptor);
+		}
+
+		@Override
+		public boolean hasReferencesTo(String type) {
+			return fReferences.containsKey(type);
+		}
+
+		@Override
+		public IReferenceDescriptor[] getAllExternalDependencies() {
+			return new IReferenceDescriptor[0];
+		}
+
+		@Override
+		public IReferenceDescriptor[] getExternalDependenciesTo(String[] types) {
+			return new IReferenceDescriptor[0];
+		}
+
+		@Override
+		public void clear() {
+			fReferences.clear();
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		UseScanIndex.clear();
+		fLocation = ExternalDependencyTestUtils.setupReport("PDEApiUseScanReport", true); //$NON-NLS-1$
+		if (fLocation == null) {
+			fail("Could not setup the report : PDEApiUseScanReport.zip"); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		UseScanIndex.clear();
+	}
+
+	private static IApiComponent createComponent(String id) throws Exception {
+		return TestSuiteHelper.createTestingApiComponent(id, id, new ApiDescription(null));
+	}
+
+	private static Map<String, Set<IReferenceDescriptor>> readXml(String location, IApiComponent component, String[] types) throws Exception {
+		References references = new References();
+		new UseScanParser().parse(location, new NullProgressMonitor(), new UseScanReferenceVisitor(component, types, references));
+		return references.fReferences;
+	}
+
+	private static Map<String, Set<IReferenceDescriptor>> readIndex(String location, IApiComponent component, String[] types) throws Exception {
+		References references = new References();
+		assertTrue("The scan was not indexed", UseScanIndex.addReferences(location, component, types, references, new NullProgressMonitor())); //$NON-NLS-1$
+		return references.fReferences;
+	}
+
+	private static File getIndexDirectory() {
+		return ApiPlugin.getDefault().getStateLocation().append(".usescan_index").toFile(); //$NON-NLS-1$
+	}
+
+	private static Set<String> listIndexFiles() {
+		String[] names = getIndexDirectory().list();
+		return names == null ? new HashSet<>() : new HashSet<>(Arrays.asList(names));
+	}
+
+	public void testIndexMatchesXmlReports() throws Exception {
+		for (String id : new String[] { APP_ID, COMMON_ID }) {
+			IApiComponent component = createComponent(id);
+			Map<String, Set<IReferenceDescriptor>> expected = readXml(fLocation, component, null);
+			assertFalse("No references to " + id, expected.isEmpty()); //$NON-NLS-1$
+			assertEquals("Wrong references to " + id, expected, readIndex(fLocation, component, null)); //$NON-NLS-1$
+		}
+	}
+
+	public void testIndexMatchesXmlReportsOfTypes() throws Exception {
+		IApiComponent component = createComponent(COMMON_ID);
+		String[] types = new String[] {
+				"org.eclipse.core.runtime.CoreException", //$NON-NLS-1$
+				"org.eclipse.core.runtime.IAdaptable", //$NON-NLS-1$
+				"org.eclipse.core.runtime.Missing" //$NON-NLS-1$
+		};
+		Map<String, Set<IReferenceDescriptor>> expected = readXml(fLocation, component, types);
+		assertEquals(2, expected.size());
+		assertEquals(expected, readIndex(fLocation, component, types));
+	}
+
+	public void testIndexReadFromFile() throws Exception {
+		IApiComponent component = createComponent(APP_ID);
+		Map<String, Set<IReferenceDescriptor>> expected = readXml(fLocation, component, null);
+		assertEquals(expected, readIndex(fLocation, component, null));
+		assertFalse("No index file written", listIndexFiles().isEmpty()); //$NON-NLS-1$
+
+		// the persisted index is mapped again
+		UseScanIndex.clear();
+		assertEquals(expected, readIndex(fLocation, component, null));
+	}
+
+	public void testIndexReplacedWhenReportsChange() throws Exception {
+		IApiComponent component = createComponent(APP_ID);
+		Map<String, Set<IReferenceDescriptor>> before = readIndex(fLocation, component, null);
+
+		// the mapped index file is rebuilt
+		File report = new File(fLocation, "org.eclipse.equinox.app (1.3.0.v20100512)/org.eclipse.pde.build (3.6.0.v20100603)/API/method_references.xml"); //$NON-NLS-1$
+		assertTrue("Missing report " + report, report.delete()); //$NON-NLS-1$
+		Map<String, Set<IReferenceDescriptor>> expected = readXml(fLocation, component, null);
+		assertFalse("The report did not change the references", before.equals(expected)); //$NON-NLS-1$
+		assertEquals(expected, readIndex(fLocation, component, null));
+
+		UseScanIndex.clear();
+		assertEquals(expected, readIndex(fLocation, component, null));
+	}
+
+	public void testCorruptedIndexNotUsed() throws Exception {
+		IApiComponent component = createComponent(APP_ID);
+		Set<String> before = listIndexFiles();
+		Map<String, Set<IReferenceDescriptor>> expected = readIndex(fLocation, component, null);
+		Set<String> written = listIndexFiles();
+		written.removeAll(before);
+		File file = new File(getIndexDirectory(), written.isEmpty() ? "" : written.iterator().next()); //$NON-NLS-1$
+		assertTrue("No index file written", file.isFile()); //$NON-NLS-1$
+
+		// the first reference to the last referenced type names a missing
+		// string, the references to the other types are read first
+		UseScanIndex.clear();
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int offset = -1;
+		for (int entry = 40 + (buffer.getInt(32) - 1) * 8; entry >= 40 && offset < 0; entry -= 8) {
+			if (buffer.getInt(buffer.getInt(entry + 4)) > 0) {
+				offset = buffer.getInt(entry + 4);
+			}
+		}
+		assertTrue("No references in the index", offset > 0); //$NON-NLS-1$
+		buffer.putInt(offset + 4, Integer.MAX_VALUE);
+		Files.write(file.toPath(), bytes);
+		References references = new References();
+		assertFalse("A corrupted index was used", UseScanIndex.addReferences(fLocation, component, null, references, new NullProgressMonitor())); //$NON-NLS-1$
+		assertTrue("References read from a corrupted index", references.fReferences.isEmpty()); //$NON-NLS-1$
+		assertFalse("The corrupted index was not deleted", file.exists()); //$NON-NLS-1$
+
+		assertEquals("The index was not rebuilt", expected, readIndex(fLocation, component, null)); //$NON-NLS-1$
+	}
+
+	public void testOrphanedIndexDeleted() throws Exception {
+		// a second scan, removed after it is indexed
+		File copy = new File(new File(fLocation).getParentFile(), "copy"); //$NON-NLS-1$
+		Util.delete(copy);
+		Util.unzip(TestSuiteHelper.getPluginDirectoryPath() + "/test-apiusescan/reports/PDEApiUseScanReport.zip", copy.getPath()); //$NON-NLS-1$
+		String copyLocation = new File(copy, "PDEApiUseScanReport" + File.separator + IApiCoreConstants.XML).getAbsolutePath(); //$NON-NLS-1$
+		try {
+			Set<String> before = listIndexFiles();
+			IApiComponent component = createComponent(APP_ID);
+			assertEquals(readXml(fLocation, component, null), readIndex(copyLocation, component, null));
+			Set<String> written = listIndexFiles();
+			written.removeAll(before);
+			assertEquals("Index of the copy not written", 1, written.size()); //$NON-NLS-1$
+			String name = written.iterator().next();
+
+			// temporary file of an interrupted write
+			File temp = new File(getIndexDirectory(), "0_0.index.tmp"); //$NON-NLS-1$
+			assertTrue(temp.createNewFile());
+
+			// the index of the loaded scan is kept until it is cleared
+			Util.delete(copy);
+			UseScanIndex.deleteOrphans();
+			assertTrue("Index of a loaded scan deleted", listIndexFiles().contains(name)); //$NON-NLS-1$
+			assertFalse("Temporary file not deleted", temp.exists()); //$NON-NLS-1$
+
+			UseScanIndex.clear();
+			assertFalse("Index of a removed scan not deleted", listIndexFiles().contains(name)); //$NON-NLS-1$
+
+			// the index of the existing scan is kept
+			readIndex(fLocation, component, null);
+			Set<String> kept = listIndexFiles();
+			UseScanIndex.clear();
+			assertEquals(kept, listIndexFiles());
+		} finally {
+			Util.delete(copy);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.builder.tests.performance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.pde.api.tools.internal.builder.Reference;
+import org.eclipse.pde.api.tools.internal.builder.ReferenceGroups;
+import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
+import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Compares grouping references with string signature keys, as the reference
+ * resolver used to do, with grouping them using {@link ReferenceGroups}
+ *
+ * @since 1.1.200
+ */
+public class ReferenceGroupingPerfTests extends PerformanceTestCase {
+
+	/**
+	 * Number of references in the set, roughly what is extracted from a large
+	 * bundle
+	 */
+	private static final int REFERENCE_COUNT = 500000;
+
+	/**
+	 * Number of distinct referenced members
+	 */
+	private static final int MEMBER_COUNT = 20000;
+
+	private static List<IReference> fReferences = null;
+
+	/**
+	 * Builds a reference set with the shape of a real bundle: a few referenced
+	 * members are used very often and most of them only a few times.
+	 *
+	 * @return the references
+	 */
+	private static synchronized List<IReference> getReferences() {
+		if (fReferences == null) {
+			Random random = new Random(42);
+			IApiType[] origins = new IApiType[100];
+			for (int i = 0; i < origins.length; i++) {
+				origins[i] = TestSuiteHelper.createTestingApiType("baseline", "component" + (i % 4), "a.b.c.Origin" + i, "La/b/c/Origin" + i + ";", null, 0, null); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+			}
+			fReferences = new ArrayList<>(REFERENCE_COUNT);
+			for (int i = 0; i < REFERENCE_COUNT; i++) {
+				// skewed towards the first members
+				double r = random.nextDouble();
+				int member = (int) (r * r * r * MEMBER_COUNT);
+				IApiType origin = origins[random.nextInt(origins.length)];
+				// names are not shared between references, as when they are
+				// read from different class files
+				String typeName = new String("org.eclipse.core.runtime.Type" + (member / 20)); //$NON-NLS-1$
+				switch (member % 3) {
+					case 0:
+						fReferences.add(Reference.typeReference(origin, typeName, IReference.REF_PARAMETER));
+						break;
+					case 1:
+						fReferences.add(Reference.fieldReference(origin, typeName, new String("field" + member), IReference.REF_GETFIELD)); //$NON-NLS-1$
+						break;
+					default:
+						fReferences.add(Reference.methodReference(origin, typeName, new String("method" + member), new String("(Ljava/lang/String;I)V"), IReference.REF_VIRTUALMETHOD, 0)); //$NON-NLS-1$ //$NON-NLS-2$
+						break;
+				}
+			}
+		}
+		return fReferences;
+	}
+
+	/**
+	 * The string signature key the reference resolver used to build for each
+	 * reference
+	 */
+	private static String createSignatureKey(IReference reference) {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append(reference.getMember().getApiComponent().getSymbolicName());
+		buffer.append("#"); //$NON-NLS-1$
+		buffer.append(reference.getReferencedTypeName());
+		switch (reference.getReferenceType()) {
+			case IReference.T_FIELD_REFERENCE:
+				buffer.append("#"); //$NON-NLS-1$
+				buffer.append(reference.getReferencedMemberName());
+				break;
+			case IReference.T_METHOD_REFERENCE:
+				buffer.append("#"); //$NON-NLS-1$
+				buffer.append(reference.getReferencedMemberName());
+				buffer.append("#"); //$NON-NLS-1$
+				buffer.append(reference.getReferencedSignature());
+				break;
+			default:
+				break;
+		}
+		return buffer.toString();
+	}
+
+	private static int groupWithStringKeys(List<IReference> references) {
+		Map<String, List<IReference>> sigtoref = new HashMap<>(references.size());
+		for (IReference ref : references) {
+			String key = createSignatureKey(ref);
+			List<IReference> refs = sigtoref.get(key);
+			if (refs == null) {
+				refs = new ArrayList<>(20);
+				sigtoref.put(key, refs);
+			}
+			refs.add(ref);
+		}
+		return sigtoref.size();
+	}
+
+	private static int groupWithReferenceGroups(List<IReference> references) {
+		ReferenceGroups groups = new ReferenceGroups(references.size());
+		for (IReference ref : references) {
+			groups.add(ref);
+		}
+		return groups.size();
+	}
+
+	/**
+	 * Tests that both strategies find the same groups
+	 */
+	public void testSameGroups() {
+		List<IReference> references = getReferences();
+		assertEquals("Wrong number of groups", groupWithStringKeys(references), groupWithReferenceGroups(references)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Measures grouping references with string signature keys
+	 */
+	public void testStringKeyGrouping() {
+		tagAsSummary("Group references with string keys", Dimension.ELAPSED_PROCESS); //$NON-NLS-1$
+		List<IReference> references = getReferences();
+		// WARM-UP
+		for (int i = 0; i < 5; i++) {
+			groupWithStringKeys(references);
+		}
+		// TEST
+		for (int i = 0; i < 20; i++) {
+			startMeasuring();
+			groupWithStringKeys(references);
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	/**
+	 * Measures grouping references with {@link ReferenceGroups}
+	 */
+	public void testReferenceGroups() {
+		tagAsSummary("Group references with reference groups", Dimension.ELAPSED_PROCESS); //$NON-NLS-1$
+		List<IReference> references = getReferences();
+		// WARM-UP
+		for (int i = 0; i < 5; i++) {
+			groupWithReferenceGroups(references);
+		}
+		// TEST
+		for (int i = 0; i < 20; i++) {
+			startMeasuring();
+			groupWithReferenceGroups(references);
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
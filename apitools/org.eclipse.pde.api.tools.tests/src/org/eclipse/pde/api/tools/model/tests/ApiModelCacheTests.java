@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -32,6 +32,7 @@ public class ApiModelCacheTests extends TestCase {
 	@Override
 	protected void tearDown() throws Exception {
 		ApiModelCache.getCache().flushCaches();
+		ApiModelCache.getCache().setMaxMemory(ApiModelCache.DEFAULT_MAX_MEMORY);
 		super.tearDown();
 	}
 
@@ -161,4 +162,46 @@ public class ApiModelCacheTests extends TestCase {
 		assertTrue("The type 'a.b.c.testee1' should have been removed from the cache", ApiModelCache.getCache().removeElementInfo(element)); //$NON-NLS-1$
 		assertTrue("The cache should be empty", ApiModelCache.getCache().isEmpty()); //$NON-NLS-1$
 	}
+
+	/**
+	 * Tests that lookups are counted as hits and misses
+	 *
+	 * @throws Exception
+	 */
+	public void testHitMissCounters() throws Exception {
+		ApiModelCache cache = ApiModelCache.getCache();
+		cacheType("a.b.c.counted"); //$NON-NLS-1$
+		long hits = cache.getHitCount();
+		long misses = cache.getMissCount();
+		assertNotNull("The type should be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.counted", IApiElement.TYPE)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull("The type should not be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.missing", IApiElement.TYPE)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong hit count", hits + 1, cache.getHitCount()); //$NON-NLS-1$
+		assertEquals("Wrong miss count", misses + 1, cache.getMissCount()); //$NON-NLS-1$
+		assertEquals("Wrong number of cached types", 1, cache.getSize()); //$NON-NLS-1$
+		assertTrue("The estimated size should be computed", cache.getEstimatedSize() > 0); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that the cache stays within its memory bound by evicting the least
+	 * recently used types
+	 *
+	 * @throws Exception
+	 */
+	public void testMemoryBound() throws Exception {
+		ApiModelCache cache = ApiModelCache.getCache();
+		cache.setMaxMemory(1);
+		long evictions = cache.getEvictionCount();
+		cacheType("a.b.c.recent"); //$NON-NLS-1$
+		for (int i = 0; i < 20000; i++) {
+			cacheType("a.b.c.type" + i); //$NON-NLS-1$
+			if (i % 100 == 0) {
+				// keep the first type in use
+				assertNotNull("The recently used type should not have been evicted", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.recent", IApiElement.TYPE)); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		assertTrue("Types should have been evicted", cache.getEvictionCount() > evictions); //$NON-NLS-1$
+		assertTrue("The cache should be within its bound", cache.getEstimatedSize() <= cache.getMaxMemory()); //$NON-NLS-1$
+		assertNull("The oldest type should have been evicted", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.type0", IApiElement.TYPE)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNotNull("The recently used type should not have been evicted", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.recent", IApiElement.TYPE)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008 IBM Corporation and others.
+ * Copyright (c) 2008, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.pde.api.tools.builder.tests.performance.PerformanceTest;
+import org.eclipse.pde.api.tools.builder.tests.performance.ReferenceGroupingPerfTests;
 
 
 /**
@@ -35,5 +36,6 @@ public class ApiToolsPerformanceTestSuite extends TestSuite {
 	 */
 	public ApiToolsPerformanceTestSuite() {
 		addTest(PerformanceTest.suite());
+		addTest(new TestSuite(ReferenceGroupingPerfTests.class));
 	}
 }
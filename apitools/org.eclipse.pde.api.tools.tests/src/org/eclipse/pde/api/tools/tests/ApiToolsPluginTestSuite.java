@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2015 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,6 +17,7 @@ import org.eclipse.pde.api.tools.model.tests.ApiFilterStoreTests;
 import org.eclipse.pde.api.tools.model.tests.FilterStoreTests;
 import org.eclipse.pde.api.tools.problems.tests.ApiProblemTests;
 import org.eclipse.pde.api.tools.util.tests.ApiBaselineManagerTests;
+import org.eclipse.pde.api.tools.util.tests.ApiBaselineSnapshotTests;
 import org.eclipse.pde.api.tools.util.tests.ApiDescriptionProcessorTests;
 import org.eclipse.pde.api.tools.util.tests.PreferencesTests;
 import org.eclipse.pde.api.tools.util.tests.ProjectCreationTests;
@@ -50,6 +51,7 @@ public class ApiToolsPluginTestSuite extends TestSuite {
 		addTest(new TestSuite(ApiDescriptionProcessorTests.class));
 		addTest(new TestSuite(PreferencesTests.class));
 		addTest(new TestSuite(ApiBaselineManagerTests.class));
+		addTest(new TestSuite(ApiBaselineSnapshotTests.class));
 		addTest(new TestSuite(ApiFilterStoreTests.class));
 		addTest(new TestSuite(FilterStoreTests.class));
 		addTest(new TestSuite(ApiProblemTests.class));
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2012 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -32,6 +32,8 @@ import org.eclipse.pde.api.tools.search.tests.SearchEngineTests;
 import org.eclipse.pde.api.tools.search.tests.SkippedComponentTests;
 import org.eclipse.pde.api.tools.search.tests.UseSearchTests;
 import org.eclipse.pde.api.tools.tests.util.ProjectUtils;
+import org.eclipse.pde.api.tools.util.tests.ArchiveHandlePoolTests;
+import org.eclipse.pde.api.tools.util.tests.ExtractionCacheTests;
 import org.eclipse.pde.api.tools.util.tests.HeadlessApiBaselineManagerTests;
 import org.eclipse.pde.api.tools.util.tests.SignaturesTests;
 import org.eclipse.pde.api.tools.util.tests.TarEntryTests;
@@ -90,6 +92,8 @@ public class ApiToolsTestSuite extends TestSuite {
 		addTest(new TestSuite(ApiFilterTests.class));
 		addTest(new TestSuite(TarEntryTests.class));
 		addTest(new TestSuite(TarExceptionTests.class));
+		addTest(new TestSuite(ArchiveHandlePoolTests.class));
+		addTest(new TestSuite(ExtractionCacheTests.class));
 		addTest(new TestSuite(OSGiLessAnalysisTests.class));
 		addTest(new TestSuite(ApiModelCacheTests.class));
 		addTest(new TestSuite(BadClassfileTests.class));
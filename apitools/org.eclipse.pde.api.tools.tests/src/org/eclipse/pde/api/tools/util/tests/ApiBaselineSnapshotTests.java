@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.util.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.pde.api.tools.internal.ApiBaselineManager;
+import org.eclipse.pde.api.tools.internal.ApiBaselineSnapshot;
+import org.eclipse.pde.api.tools.internal.model.ApiBaseline;
+import org.eclipse.pde.api.tools.internal.model.ApiModelFactory;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.IRequiredComponentDescription;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that a baseline restored from its binary snapshot has the components
+ * of the baseline restored from its <code>.profile</code> file, and that the
+ * snapshot is not used once it is corrupted, or once the <code>.profile</code>
+ * file or a manifest changed. Baselines are saved and restored by the
+ * {@link ApiBaselineManager}, so these tests need the framework to be running.
+ */
+public class ApiBaselineSnapshotTests extends TestCase {
+
+	private static final String MANIFEST = "Manifest-Version: 1.0\n" //$NON-NLS-1$
+			+ "Bundle-ManifestVersion: 2\n" //$NON-NLS-1$
+			+ "Bundle-SymbolicName: snapshot.test\n" //$NON-NLS-1$
+			+ "Bundle-Version: {0}\n" //$NON-NLS-1$
+			+ "Export-Package: snapshot.test\n" //$NON-NLS-1$
+			+ "Bundle-RequiredExecutionEnvironment: J2SE-1.5\n"; //$NON-NLS-1$
+
+	/**
+	 * Contents standing for a <code>.profile</code> file in the tests that
+	 * only read and write snapshots
+	 */
+	private static final byte[] PROFILE = "<apiprofile/>".getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+
+	private ApiBaselineManager fManager = ApiBaselineManager.getManager();
+	private List<String> fBaselines = new ArrayList<>();
+	private File fDirectory;
+
+	@Override
+	protected void setUp() throws Exception {
+		fDirectory = Util.createTempFile("snapshot", ".dir"); //$NON-NLS-1$ //$NON-NLS-2$
+		fDirectory.delete();
+		fDirectory.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (String name : fBaselines) {
+			fManager.removeApiBaseline(name);
+		}
+		TestSuiteHelper.delete(fDirectory);
+	}
+
+	/**
+	 * Adds the given baseline to the manager and saves it, which writes its
+	 * <code>.profile</code> file and its snapshot and disposes it. Its
+	 * components are restored the next time they are accessed.
+	 */
+	private void save(IApiBaseline baseline) throws CoreException {
+		fBaselines.add(baseline.getName());
+		fManager.addApiBaseline(baseline);
+		fManager.saving(null);
+		assertFalse("The baseline was not disposed", ((ApiBaseline) baseline).peekInfos()); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return the file the manager saves the given baseline in with the given
+	 *         extension
+	 */
+	private static File getSaveFile(String name, String extension) {
+		return ApiPlugin.getDefault().getStateLocation().append(".api_profiles").append(name + extension).toFile(); //$NON-NLS-1$
+	}
+
+	/**
+	 * Writes a snapshot of the given component locations for
+	 * {@link #PROFILE}
+	 */
+	private File writeSnapshot(String... locations) throws IOException {
+		File file = new File(fDirectory, "test.snapshot"); //$NON-NLS-1$
+		List<String> portable = new ArrayList<>();
+		for (String location : locations) {
+			portable.add(new Path(location).toPortableString());
+		}
+		ApiBaselineSnapshot.write(file, ApiBaselineSnapshot.checksum(PROFILE), null, portable);
+		return file;
+	}
+
+	/**
+	 * Replaces the integer at the given offset of the given file
+	 */
+	private static void corrupt(File file, int offset, int value) throws IOException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		ByteBuffer.wrap(bytes).putInt(offset, value);
+		Files.write(file.toPath(), bytes);
+	}
+
+	/**
+	 * Returns the offset of the header count of the first component of the
+	 * given snapshot: it follows the file header, the string table, the
+	 * baseline location and component count, and the location and stamp of
+	 * the component.
+	 */
+	private static int getHeaderCountOffset(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+			int offset = 16;
+			in.skipBytes(offset);
+			int strings = in.readInt();
+			offset += 4;
+			for (int i = 0; i < strings; i++) {
+				int length = in.readInt();
+				in.skipBytes(length);
+				offset += 4 + length;
+			}
+			return offset + 4 + 4 + 4 + 8 + 8;
+		}
+	}
+
+	/**
+	 * @return what is compared of a component restored from the snapshot and
+	 *         from the <code>.profile</code> file
+	 */
+	private static String describe(IApiComponent component) throws CoreException {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append(component.getSymbolicName()).append('_').append(component.getVersion());
+		buffer.append(" location=").append(new File(component.getLocation()).getAbsolutePath()); //$NON-NLS-1$
+		buffer.append(" ees=").append(Arrays.toString(component.getExecutionEnvironments())); //$NON-NLS-1$
+		buffer.append(" lowestees=").append(Arrays.toString(component.getLowestEEs())); //$NON-NLS-1$
+		buffer.append(" fragment=").append(component.isFragment()); //$NON-NLS-1$
+		buffer.append(" source=").append(component.isSourceComponent()); //$NON-NLS-1$
+		for (IRequiredComponentDescription required : component.getRequiredComponents()) {
+			buffer.append(" requires=").append(required.getId()).append(' ').append(required.getVersionRange()); //$NON-NLS-1$
+			buffer.append(required.isOptional() ? " optional" : "").append(required.isExported() ? " reexport" : ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		}
+		return buffer.toString();
+	}
+
+	private static List<String> describe(IApiBaseline baseline) throws CoreException {
+		List<String> components = new ArrayList<>();
+		for (IApiComponent component : baseline.getApiComponents()) {
+			if (!component.isSystemComponent()) {
+				components.add(describe(component));
+			}
+		}
+		components.sort(null);
+		return components;
+	}
+
+	/**
+	 * Creates a bundle directory with the given version in the temporary
+	 * directory, setting the modification time of its manifest
+	 */
+	private File writeBundle(String version, long lastModified) throws IOException {
+		File bundle = new File(fDirectory, "snapshot.test"); //$NON-NLS-1$
+		File manifest = new File(bundle, "META-INF/MANIFEST.MF"); //$NON-NLS-1$
+		manifest.getParentFile().mkdirs();
+		try (OutputStream out = new FileOutputStream(manifest)) {
+			out.write(MANIFEST.replace("{0}", version).getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+		}
+		manifest.setLastModified(lastModified);
+		return bundle;
+	}
+
+	/**
+	 * Tests that the components restored from a snapshot are the ones restored
+	 * from the <code>.profile</code> file, which is used when the snapshot is
+	 * corrupted
+	 */
+	public void testRestoreMatchesProfile() throws Exception {
+		IApiBaseline baseline = TestSuiteHelper.createTestingBaseline("snapshotRestore", new Path("test-plugins")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNotNull("The testing baseline could not be created", baseline); //$NON-NLS-1$
+		List<String> expected = describe(baseline);
+		assertFalse("No component in the baseline", expected.isEmpty()); //$NON-NLS-1$
+		save(baseline);
+		File profile = getSaveFile(baseline.getName(), ".profile"); //$NON-NLS-1$
+		File snapshot = getSaveFile(baseline.getName(), ".snapshot"); //$NON-NLS-1$
+		long checksum = ApiBaselineSnapshot.checksum(Files.readAllBytes(profile.toPath()));
+		assertTrue("No snapshot was saved", ApiBaselineSnapshot.isCurrent(snapshot, checksum)); //$NON-NLS-1$
+
+		corrupt(snapshot, getHeaderCountOffset(snapshot), -2);
+		assertNull("A corrupted snapshot was read", ApiBaselineSnapshot.read(snapshot, checksum)); //$NON-NLS-1$
+		assertEquals("Components not restored from the profile", expected, describe(fManager.getApiBaseline(baseline.getName()))); //$NON-NLS-1$
+
+		// saving again replaces the corrupted snapshot
+		save(fManager.getApiBaseline(baseline.getName()));
+		assertNotNull("The corrupted snapshot was not replaced", ApiBaselineSnapshot.read(snapshot, checksum)); //$NON-NLS-1$
+		assertEquals("Components not restored from the snapshot", expected, describe(fManager.getApiBaseline(baseline.getName()))); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a snapshot is rejected once the <code>.profile</code> file
+	 * changed
+	 */
+	public void testSnapshotRejectedAfterProfileChange() throws Exception {
+		File file = writeSnapshot(writeBundle("1.0.0", 1000000000L).getAbsolutePath()); //$NON-NLS-1$
+		long checksum = ApiBaselineSnapshot.checksum(PROFILE);
+		assertTrue(ApiBaselineSnapshot.isCurrent(file, checksum));
+		assertNotNull(ApiBaselineSnapshot.read(file, checksum));
+
+		byte[] changed = Arrays.copyOf(PROFILE, PROFILE.length + 1);
+		changed[PROFILE.length] = '\n';
+		long changedChecksum = ApiBaselineSnapshot.checksum(changed);
+		assertFalse("Snapshot of a changed profile used", ApiBaselineSnapshot.isCurrent(file, changedChecksum)); //$NON-NLS-1$
+		assertNull("Snapshot of a changed profile read", ApiBaselineSnapshot.read(file, changedChecksum)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a snapshot with negative or oversized counts is rejected
+	 * rather than failing to restore the baseline
+	 */
+	public void testCorruptedSnapshotRejected() throws Exception {
+		String location = writeBundle("1.0.0", 1000000000L).getAbsolutePath(); //$NON-NLS-1$
+		long checksum = ApiBaselineSnapshot.checksum(PROFILE);
+		// string count, length of the first string and header count of the
+		// first component
+		File file = writeSnapshot(location);
+		int[] offsets = new int[] { 16, 20, getHeaderCountOffset(file) };
+		for (int offset : offsets) {
+			for (int value : new int[] { -2, Integer.MIN_VALUE, Integer.MAX_VALUE }) {
+				file = writeSnapshot(location);
+				assertNotNull(ApiBaselineSnapshot.read(file, checksum));
+				corrupt(file, offset, value);
+				assertNull("Snapshot with " + value + " at " + offset + " read", ApiBaselineSnapshot.read(file, checksum)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+		}
+	}
+
+	/**
+	 * Tests that a component whose manifest changed since the snapshot was
+	 * written is restored from its location
+	 */
+	public void testSnapshotRejectedAfterManifestChange() throws Exception {
+		IApiBaseline baseline = TestSuiteHelper.newApiBaseline("snapshotManifestChange", TestSuiteHelper.getEEDescriptionFile()); //$NON-NLS-1$
+		File bundle = writeBundle("1.0.0", 1000000000L); //$NON-NLS-1$
+		baseline.addApiComponents(new IApiComponent[] {
+				ApiModelFactory.newApiComponent(baseline, bundle.getAbsolutePath()) });
+		save(baseline);
+
+		writeBundle("2.0.0", 2000000000L); //$NON-NLS-1$
+		File snapshot = getSaveFile(baseline.getName(), ".snapshot"); //$NON-NLS-1$
+		long checksum = ApiBaselineSnapshot.checksum(Files.readAllBytes(getSaveFile(baseline.getName(), ".profile").toPath())); //$NON-NLS-1$
+		ApiBaselineSnapshot read = ApiBaselineSnapshot.read(snapshot, checksum);
+		assertNotNull("The snapshot was not read", read); //$NON-NLS-1$
+		assertNull("The manifest in the snapshot was used", read.getComponents().get(0).getManifest()); //$NON-NLS-1$
+
+		IApiComponent component = fManager.getApiBaseline(baseline.getName()).getApiComponent("snapshot.test"); //$NON-NLS-1$
+		assertNotNull("The changed component was not restored", component); //$NON-NLS-1$
+		assertEquals("2.0.0", component.getVersion()); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.util.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.pde.api.tools.internal.util.ArchiveHandlePool;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ArchiveHandlePool} class
+ */
+public class ArchiveHandlePoolTests extends TestCase {
+
+	private ArchiveHandlePool fPool;
+	private File fFolder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fPool = ArchiveHandlePool.getPool();
+		fPool.closeAll();
+		fFolder = File.createTempFile("archivepool", null); //$NON-NLS-1$
+		fFolder.delete();
+		fFolder.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fPool.closeAll();
+		fPool.setMaxOpenArchives(ArchiveHandlePool.DEFAULT_MAX_OPEN_ARCHIVES);
+		File[] files = fFolder.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		fFolder.delete();
+		super.tearDown();
+	}
+
+	private String createArchive(String name) throws IOException {
+		File file = new File(fFolder, name);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+			out.putNextEntry(new ZipEntry("a/A.class")); //$NON-NLS-1$
+			out.write(new byte[] { 1, 2, 3 });
+			out.closeEntry();
+		}
+		return file.getAbsolutePath();
+	}
+
+	/**
+	 * Tests that an archive is only opened once while it stays in the pool
+	 */
+	public void testHandleReused() throws Exception {
+		String location = createArchive("a.jar"); //$NON-NLS-1$
+		ZipFile first = fPool.acquire(location);
+		fPool.release(location);
+		ZipFile second = fPool.acquire(location);
+		fPool.release(location);
+		assertSame("The same handle should have been returned", first, second); //$NON-NLS-1$
+		assertEquals("The archive should have been opened once", 1, fPool.getOpenCount()); //$NON-NLS-1$
+		assertEquals("The second acquire should have been a hit", 1, fPool.getHitCount()); //$NON-NLS-1$
+		assertNotNull("The handle should still be usable", second.getEntry("a/A.class")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Tests that idle archives are evicted in least recently used order
+	 */
+	public void testLRUEviction() throws Exception {
+		fPool.setMaxOpenArchives(2);
+		String a = createArchive("a.jar"); //$NON-NLS-1$
+		String b = createArchive("b.jar"); //$NON-NLS-1$
+		String c = createArchive("c.jar"); //$NON-NLS-1$
+		fPool.acquire(a);
+		fPool.release(a);
+		fPool.acquire(b);
+		fPool.release(b);
+		fPool.acquire(a);
+		fPool.release(a);
+		fPool.acquire(c);
+		fPool.release(c);
+		assertEquals("Only two archives should be open", 2, fPool.getOpenArchiveCount()); //$NON-NLS-1$
+		assertEquals("One archive should have been evicted", 1, fPool.getEvictionCount()); //$NON-NLS-1$
+		fPool.acquire(a);
+		fPool.release(a);
+		assertEquals("The recently used archive should not have been evicted", 2, fPool.getHitCount()); //$NON-NLS-1$
+		assertEquals("Only the three archives should have been opened", 3, fPool.getOpenCount()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that archives in use are never evicted
+	 */
+	public void testInUseNotEvicted() throws Exception {
+		fPool.setMaxOpenArchives(1);
+		String a = createArchive("a.jar"); //$NON-NLS-1$
+		String b = createArchive("b.jar"); //$NON-NLS-1$
+		ZipFile zip = fPool.acquire(a);
+		fPool.acquire(b);
+		assertEquals("Both archives should be open", 2, fPool.getOpenArchiveCount()); //$NON-NLS-1$
+		assertNotNull("The archive in use should still be readable", zip.getEntry("a/A.class")); //$NON-NLS-1$ //$NON-NLS-2$
+		fPool.release(a);
+		assertEquals("The idle archive should have been evicted", 1, fPool.getOpenArchiveCount()); //$NON-NLS-1$
+		fPool.release(b);
+	}
+
+	/**
+	 * Tests that closing an archive in use is deferred until it is released
+	 */
+	public void testDeferredClose() throws Exception {
+		String a = createArchive("a.jar"); //$NON-NLS-1$
+		ZipFile zip = fPool.acquire(a);
+		fPool.close(a);
+		assertNotNull("The archive in use should still be readable", zip.getEntry("a/A.class")); //$NON-NLS-1$ //$NON-NLS-2$
+		fPool.release(a);
+		assertEquals("The archive should have been closed", 0, fPool.getOpenArchiveCount()); //$NON-NLS-1$
+		try {
+			zip.getEntry("a/A.class"); //$NON-NLS-1$
+			fail("The archive should have been closed"); //$NON-NLS-1$
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.util.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.pde.api.tools.internal.util.ExtractionCache;
+import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ExtractionCache} class
+ */
+public class ExtractionCacheTests extends TestCase {
+
+	/**
+	 * Size of the nested archives of the test archives
+	 */
+	private static final int NESTED_SIZE = 400;
+
+	private File fFolder;
+	private File fRoot;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fFolder = File.createTempFile("extractioncache", null); //$NON-NLS-1$
+		fFolder.delete();
+		fFolder.mkdirs();
+		fRoot = new File(fFolder, "cache"); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TestSuiteHelper.delete(fFolder);
+		super.tearDown();
+	}
+
+	/**
+	 * Creates an archive with the nested archives <code>lib/a.jar</code>,
+	 * <code>lib/b.jar</code> and <code>lib/c.jar</code> and the folder
+	 * <code>classes/</code>. The contents of the entries depend on the given
+	 * seed.
+	 */
+	private File createArchive(String name, int seed) throws IOException {
+		File file = new File(fFolder, name);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+			for (String nested : new String[] { "lib/a.jar", "lib/b.jar", "lib/c.jar" }) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				out.putNextEntry(new ZipEntry(nested));
+				byte[] bytes = new byte[NESTED_SIZE];
+				Arrays.fill(bytes, (byte) (nested.hashCode() + seed));
+				out.write(bytes);
+				out.closeEntry();
+			}
+			out.putNextEntry(new ZipEntry("classes/")); //$NON-NLS-1$
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("classes/p/A.class")); //$NON-NLS-1$
+			out.write(new byte[] { 1, 2, (byte) seed });
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("classes/p/B.class")); //$NON-NLS-1$
+			out.write(new byte[] { 4, 5, 6 });
+			out.closeEntry();
+		}
+		return file;
+	}
+
+	private static File extract(ExtractionCache cache, File archive, String name) throws IOException {
+		try (ZipFile zip = new ZipFile(archive)) {
+			return cache.getArchive(archive, zip, zip.getEntry(name));
+		}
+	}
+
+	private static File extractDirectory(ExtractionCache cache, File archive, String prefix) throws IOException {
+		try (ZipFile zip = new ZipFile(archive)) {
+			return cache.getDirectory(archive, zip, prefix);
+		}
+	}
+
+	/**
+	 * Tests that an entry is extracted once and found again by later
+	 * sessions while the enclosing archive is unchanged
+	 */
+	public void testKeyOfUnchangedEntry() throws Exception {
+		File archive = createArchive("a.jar", 0); //$NON-NLS-1$
+		File first = extract(new ExtractionCache(fRoot), archive, "lib/a.jar"); //$NON-NLS-1$
+		assertTrue("The entry was not extracted", first.isFile()); //$NON-NLS-1$
+		assertEquals("a.jar", first.getName()); //$NON-NLS-1$
+		assertEquals(NESTED_SIZE, first.length());
+		first.setLastModified(1000000000L);
+
+		File second = extract(new ExtractionCache(fRoot), archive, "lib/a.jar"); //$NON-NLS-1$
+		assertEquals("The cached entry was not found", first, second); //$NON-NLS-1$
+		assertEquals("The cached entry was extracted again", 1000000000L, second.lastModified()); //$NON-NLS-1$
+
+		File other = extract(new ExtractionCache(fRoot), archive, "lib/b.jar"); //$NON-NLS-1$
+		assertFalse("Entries with other names share a key", first.getParentFile().equals(other.getParentFile())); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that an entry is extracted again once it or its enclosing archive
+	 * changed
+	 */
+	public void testKeyOfChangedEntry() throws Exception {
+		File archive = createArchive("a.jar", 0); //$NON-NLS-1$
+		ExtractionCache cache = new ExtractionCache(fRoot);
+		File first = extract(cache, archive, "lib/a.jar"); //$NON-NLS-1$
+
+		// same size, other contents
+		createArchive("a.jar", 1); //$NON-NLS-1$
+		File changed = extract(cache, archive, "lib/a.jar"); //$NON-NLS-1$
+		assertFalse("A changed entry has the same key", first.getParentFile().equals(changed.getParentFile())); //$NON-NLS-1$
+		assertFalse("The changed entry was not extracted again", Arrays.equals(Files.readAllBytes(first.toPath()), Files.readAllBytes(changed.toPath()))); //$NON-NLS-1$
+
+		// the enclosing archive is touched
+		archive.setLastModified(archive.lastModified() + 10000);
+		File touched = extract(cache, archive, "lib/a.jar"); //$NON-NLS-1$
+		assertFalse("An entry of a touched archive has the same key", changed.getParentFile().equals(touched.getParentFile())); //$NON-NLS-1$
+	}
+
+	/**
+	 * Tests that a folder is keyed by the contents of all its entries
+	 */
+	public void testKeyOfDirectory() throws Exception {
+		File archive = createArchive("a.jar", 0); //$NON-NLS-1$
+		ExtractionCache cache = new ExtractionCache(fRoot);
+		File first = extractDirectory(cache, archive, "classes/"); //$NON-NLS-1$
+		assertTrue(new File(first, "classes/p/A.class").isFile()); //$NON-NLS-1$
+		assertTrue(new File(first, "classes/p/B.class").isFile()); //$NON-NLS-1$
+		assertFalse("Entries outside of the folder extracted", new File(first, "lib").exists()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(first, extractDirectory(cache, archive, "classes/")); //$NON-NLS-1$
+
+		long lastModified = archive.lastModified();
+		createArchive("a.jar", 1); //$NON-NLS-1$
+		archive.setLastModified(lastModified);
+		assertFalse("A folder with a changed entry has the same key", first.equals(extractDirectory(cache, archive, "classes/"))); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Tests that the least recently used entries are evicted when the cache
+	 * grows past its maximum size, except the ones used during the session
+	 */
+	public void testLRUEviction() throws Exception {
+		assertEquals(512L * 1024 * 1024, ExtractionCache.DEFAULT_MAX_SIZE);
+		File archive = createArchive("a.jar", 0); //$NON-NLS-1$
+
+		// entries used during the session are never evicted
+		ExtractionCache session1 = new ExtractionCache(fRoot);
+		session1.setMaxSize(2 * NESTED_SIZE + NESTED_SIZE / 2);
+		File a = extract(session1, archive, "lib/a.jar"); //$NON-NLS-1$
+		File b = extract(session1, archive, "lib/b.jar"); //$NON-NLS-1$
+		File c = extract(session1, archive, "lib/c.jar"); //$NON-NLS-1$
+		assertTrue("An entry used in the session was evicted", a.exists() && b.exists() && c.exists()); //$NON-NLS-1$
+		assertTrue(TestSuiteHelper.delete(c.getParentFile()));
+		a.getParentFile().setLastModified(1000000000L);
+		b.getParentFile().setLastModified(2000000000L);
+
+		// a is the least recently used entry of the next session
+		ExtractionCache session2 = new ExtractionCache(fRoot);
+		session2.setMaxSize(2 * NESTED_SIZE + NESTED_SIZE / 2);
+		extract(session2, archive, "lib/b.jar"); //$NON-NLS-1$
+		c = extract(session2, archive, "lib/c.jar"); //$NON-NLS-1$
+		assertFalse("The least recently used entry was not evicted", a.exists()); //$NON-NLS-1$
+		assertTrue("An entry used in the session was evicted", b.exists()); //$NON-NLS-1$
+		assertTrue("The added entry was evicted", c.exists()); //$NON-NLS-1$
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2017 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,19 +10,21 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -43,6 +45,8 @@ import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.IPreferencesService;
 import org.eclipse.core.runtime.preferences.IScopeContext;
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.pde.api.tools.internal.ApiBaselineSnapshot.ComponentEntry;
+import org.eclipse.pde.api.tools.internal.comparator.ComponentFingerprintCache;
 import org.eclipse.pde.api.tools.internal.model.ApiBaseline;
 import org.eclipse.pde.api.tools.internal.model.ApiModelCache;
 import org.eclipse.pde.api.tools.internal.model.ApiModelFactory;
@@ -92,6 +96,12 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 	 */
 	private static final String BASELINE_FILE_EXTENSION = ".profile"; //$NON-NLS-1$
 
+	/**
+	 * Constant representing the file extension for the binary snapshot of a
+	 * baseline file. Value is: <code>.snapshot</code>
+	 */
+	private static final String SNAPSHOT_FILE_EXTENSION = ".snapshot"; //$NON-NLS-1$
+
 	/**
 	 * The main cache for the manager. The form of the cache is:
 	 *
@@ -108,6 +118,12 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 
 	private HashSet<String> hasinfos = null;
 
+	/**
+	 * Names of the baselines restored without an up to date snapshot, their
+	 * snapshot is written on the next save
+	 */
+	private HashSet<String> outdatedsnapshots = new HashSet<>(8);
+
 	/**
 	 * The current default {@link IApiBaseline}
 	 */
@@ -128,6 +144,16 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 	 */
 	private boolean fNeedsSaving = false;
 
+	/**
+	 * Name of the file the component fingerprints are persisted to
+	 */
+	private static final String FINGERPRINTS_FILE_NAME = "component_fingerprints"; //$NON-NLS-1$
+
+	/**
+	 * Content fingerprints of baseline components, lazily loaded
+	 */
+	private ComponentFingerprintCache fingerprintcache = null;
+
 	/**
 	 * The singleton instance
 	 */
@@ -195,6 +221,11 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 				if (file.exists()) {
 					success &= file.delete();
 				}
+				File snapshot = savelocation.append(name + SNAPSHOT_FILE_EXTENSION).toFile();
+				if (snapshot.exists()) {
+					success &= snapshot.delete();
+				}
+				outdatedsnapshots.remove(name);
 				fNeedsSaving = true;
 
 				// flush the model cache
@@ -207,7 +238,8 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 
 	/**
 	 * Loads the infos for the given baseline from persisted storage (the
-	 * *.profile file)
+	 * *.snapshot file if it is up to date with the *.profile file, the
+	 * *.profile file otherwise)
 	 *
 	 * @param baseline the given baseline
 	 * @throws CoreException if an exception occurs while loading baseline infos
@@ -221,20 +253,23 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 		if (filename != null) {
 			File file = new File(filename);
 			if (file.exists()) {
-				FileInputStream inputStream = null;
 				try {
-					inputStream = new FileInputStream(file);
-					restoreBaseline(baseline, inputStream);
-				} catch (IOException e) {
-					ApiPlugin.log(e);
-				} finally {
-					if (inputStream != null) {
-						try {
-							inputStream.close();
-						} catch (IOException e) {
-							// ignore
+					byte[] profile = Files.readAllBytes(file.toPath());
+					File snapshotFile = new File(file.getParentFile(), baseline.getName() + SNAPSHOT_FILE_EXTENSION);
+					ApiBaselineSnapshot snapshot = ApiBaselineSnapshot.read(snapshotFile, ApiBaselineSnapshot.checksum(profile));
+					boolean current = false;
+					if (snapshot != null) {
+						current = restoreBaseline(baseline, snapshot);
+					} else {
+						restoreBaseline(baseline, new ByteArrayInputStream(profile));
+					}
+					if (!current) {
+						synchronized (this) {
+							outdatedsnapshots.add(baseline.getName());
 						}
 					}
+				} catch (IOException e) {
+					ApiPlugin.log(e);
 				}
 				hasinfos.add(baseline.getName());
 			}
@@ -321,9 +356,10 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 				if (!file.exists()) {
 					file.createNewFile();
 				}
+				byte[] profile = null;
 				try {
 					fout = new FileOutputStream(file);
-					writeBaselineDescription(baseline, fout);
+					profile = writeBaselineDescription(baseline, fout);
 					// need to save the api baseline state in order to be able
 					// to reload it later
 					handlecache.put(baseline.getName(), file.getAbsolutePath());
@@ -333,26 +369,88 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 						fout.close();
 					}
 				}
+				persistSnapshot(baseline, profile, outdatedsnapshots.remove(baseline.getName()));
+			}
+		}
+	}
+
+	/**
+	 * Persists the snapshots of the restored baselines that had no up to date
+	 * snapshot
+	 *
+	 * @throws IOException if a snapshot cannot be written
+	 */
+	private synchronized void persistOutdatedSnapshots() throws CoreException, IOException {
+		if (savelocation == null || outdatedsnapshots.isEmpty() || baselinecache == null) {
+			return;
+		}
+		String[] names = outdatedsnapshots.toArray(new String[outdatedsnapshots.size()]);
+		outdatedsnapshots.clear();
+		for (String name : names) {
+			IApiBaseline baseline = baselinecache.get(name);
+			String filename = handlecache.get(name);
+			if (baseline == null || filename == null || !hasinfos.contains(name)) {
+				continue;
+			}
+			File file = new File(filename);
+			if (file.exists()) {
+				persistSnapshot(baseline, Files.readAllBytes(file.toPath()), true);
 			}
 		}
 	}
 
+	/**
+	 * Writes the binary snapshot of the given baseline unless the existing one
+	 * is up to date with the given <code>.profile</code> contents. Writing a
+	 * snapshot reads the manifest of every component of the baseline.
+	 *
+	 * @param baseline the baseline
+	 * @param profile the contents of the <code>.profile</code> file of the
+	 *            baseline
+	 * @param force whether to write the snapshot even if it is up to date
+	 *            with the <code>.profile</code> file, because components
+	 *            changed
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	private void persistSnapshot(IApiBaseline baseline, byte[] profile, boolean force) throws CoreException, IOException {
+		long checksum = ApiBaselineSnapshot.checksum(profile);
+		File file = savelocation.append(baseline.getName() + SNAPSHOT_FILE_EXTENSION).toFile();
+		if (!force && ApiBaselineSnapshot.isCurrent(file, checksum)) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		List<IApiComponent> components = getPersistedComponents(baseline);
+		List<String> locations = new ArrayList<>(components.size());
+		for (IApiComponent component : components) {
+			locations.add(new Path(component.getLocation()).toPortableString());
+		}
+		String location = baseline.getLocation();
+		ApiBaselineSnapshot.write(file, checksum, location == null ? null : new Path(location).toPortableString(), locations);
+		if (ApiPlugin.DEBUG_BASELINE_MANAGER) {
+			System.out.println("Time to write baseline snapshot for " + baseline.getName() + " : " + (System.currentTimeMillis() - start) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
 	/**
 	 * Writes out the current state of the {@link IApiBaseline} as XML to the
 	 * given output stream
 	 *
 	 * @param stream
+	 * @return the bytes written to the stream
 	 * @throws CoreException
 	 */
-	private void writeBaselineDescription(IApiBaseline baseline, OutputStream stream) throws CoreException {
+	private byte[] writeBaselineDescription(IApiBaseline baseline, OutputStream stream) throws CoreException {
 		String xml = getProfileXML(baseline);
+		byte[] bytes = null;
 		try {
-			stream.write(xml.getBytes(IApiCoreConstants.UTF_8));
+			bytes = xml.getBytes(IApiCoreConstants.UTF_8);
+			stream.write(bytes);
 		} catch (UnsupportedEncodingException e) {
 			abort("Error writing pofile descrition", e); //$NON-NLS-1$
 		} catch (IOException e) {
 			abort("Error writing pofile descrition", e); //$NON-NLS-1$
 		}
+		return bytes;
 	}
 
 	/**
@@ -374,6 +472,26 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 			root.setAttribute(IApiXmlConstants.ATTR_LOCATION, location);
 		}
 		Element celement = null;
+		for (IApiComponent component : getPersistedComponents(baseline)) {
+			celement = document.createElement(IApiXmlConstants.ELEMENT_APICOMPONENT);
+			celement.setAttribute(IApiXmlConstants.ATTR_ID, component.getSymbolicName());
+			celement.setAttribute(IApiXmlConstants.ATTR_VERSION, component.getVersion());
+			celement.setAttribute(IApiXmlConstants.ATTR_LOCATION, new Path(component.getLocation()).toPortableString());
+			root.appendChild(celement);
+		}
+		return Util.serializeDocument(document);
+	}
+
+	/**
+	 * Returns the components of the given baseline that are persisted: all
+	 * versions of the non-system components.
+	 *
+	 * @param baseline the given API baseline
+	 * @return the components to persist
+	 * @throws CoreException if the components cannot be retrieved
+	 */
+	private List<IApiComponent> getPersistedComponents(IApiBaseline baseline) throws CoreException {
+		List<IApiComponent> persisted = new ArrayList<>();
 		IApiComponent[] components = baseline.getApiComponents();
 		for (IApiComponent component : components) {
 			Set<IApiComponent> allComponentSet = new HashSet<>();
@@ -388,17 +506,13 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 			for (Iterator<IApiComponent> iterator = allComponentSet.iterator(); iterator.hasNext();) {
 				IApiComponent iApiComponent = iterator.next();
 				if (!iApiComponent.isSystemComponent()) {
-					celement = document.createElement(IApiXmlConstants.ELEMENT_APICOMPONENT);
-					celement.setAttribute(IApiXmlConstants.ATTR_ID, iApiComponent.getSymbolicName());
-					celement.setAttribute(IApiXmlConstants.ATTR_VERSION, iApiComponent.getVersion());
-					celement.setAttribute(IApiXmlConstants.ATTR_LOCATION, new Path(iApiComponent.getLocation()).toPortableString());
-					root.appendChild(celement);
+					persisted.add(iApiComponent);
 				}
 			}
 			// clear the temporary hashset
 			allComponentSet.clear();
 		}
-		return Util.serializeDocument(document);
+		return persisted;
 	}
 
 	/**
@@ -413,6 +527,48 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 		throw new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, message, e));
 	}
 
+	/**
+	 * Restore a baseline from its binary snapshot. Components are created
+	 * from the manifest headers in the snapshot; the manifest of a component
+	 * that changed since the snapshot was written is read from its location.
+	 *
+	 * @param baseline the given baseline to restore
+	 * @param snapshot the snapshot of the baseline
+	 * @return <code>true</code> if all components were restored from the
+	 *         snapshot, <code>false</code> if some were read from their
+	 *         location
+	 * @throws CoreException if unable to restore the baseline
+	 */
+	private boolean restoreBaseline(IApiBaseline baseline, ApiBaselineSnapshot snapshot) throws CoreException {
+		long start = System.currentTimeMillis();
+		String baselineLocation = snapshot.getLocation();
+		if (baselineLocation != null && !baselineLocation.equals(Util.EMPTY_STRING)) {
+			baseline.setLocation(Path.fromPortableString(baselineLocation).toOSString());
+		}
+		boolean current = true;
+		List<ComponentEntry> entries = snapshot.getComponents();
+		List<IApiComponent> components = new ArrayList<>(entries.size());
+		for (ComponentEntry entry : entries) {
+			String location = Path.fromPortableString(entry.fLocation).toOSString();
+			Map<String, String> manifest = entry.getManifest();
+			IApiComponent component = null;
+			if (manifest != null) {
+				component = ApiModelFactory.newApiComponent(baseline, location, manifest);
+			} else {
+				current = false;
+				component = ApiModelFactory.newApiComponent(baseline, location);
+			}
+			if (component != null) {
+				components.add(component);
+			}
+		}
+		baseline.addApiComponents(components.toArray(new IApiComponent[components.size()]));
+		if (ApiPlugin.DEBUG_BASELINE_MANAGER) {
+			System.out.println("Time to restore a baseline snapshot : " + (System.currentTimeMillis() - start) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return current;
+	}
+
 	/**
 	 * Restore a baseline from the given input stream (persisted baseline).
 	 *
@@ -502,9 +658,53 @@ public final class ApiBaselineManager implements IApiBaselineManager, ISaveParti
 		}
 	}
 
+	/**
+	 * Returns the cache of component content fingerprints used by the
+	 * comparator to skip unchanged components. The cache is restored from the
+	 * save location the first time it is requested.
+	 *
+	 * @return the fingerprint cache, never <code>null</code>
+	 * @since 1.1.200
+	 */
+	public synchronized ComponentFingerprintCache getFingerprintCache() {
+		if (fingerprintcache == null) {
+			long start = System.currentTimeMillis();
+			fingerprintcache = new ComponentFingerprintCache();
+			if (savelocation != null) {
+				fingerprintcache.load(savelocation.append(FINGERPRINTS_FILE_NAME).toFile());
+			}
+			if (ApiPlugin.DEBUG_BASELINE_MANAGER) {
+				System.out.println("Time to restore component fingerprints : " + (System.currentTimeMillis() - start) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		return fingerprintcache;
+	}
+
+	/**
+	 * Persists the component fingerprints if they changed
+	 *
+	 * @throws IOException if the fingerprints cannot be written
+	 */
+	private synchronized void persistFingerprintCache() throws IOException {
+		if (savelocation == null || fingerprintcache == null || !fingerprintcache.isDirty()) {
+			return;
+		}
+		fingerprintcache.save(savelocation.append(FINGERPRINTS_FILE_NAME).toFile());
+	}
+
 	@Override
 	public void saving(ISaveContext context) throws CoreException {
+		try {
+			persistFingerprintCache();
+		} catch (IOException e) {
+			ApiPlugin.log(e);
+		}
 		if (!fNeedsSaving) {
+			try {
+				persistOutdatedSnapshots();
+			} catch (IOException e) {
+				ApiPlugin.log(e);
+			}
 			return;
 		}
 		try {
@@ -0,0 +1,325 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.internal.core.util.ManifestUtils;
+
+/**
+ * Binary snapshot of a persisted API baseline: the baseline location and, for
+ * each component, its location, the stamp of its manifest and its manifest
+ * headers. The bundle description, exported packages and execution
+ * environments of a component are all created from its manifest headers, so
+ * a baseline can be restored from the snapshot without parsing the
+ * <code>.profile</code> XML file nor opening any component archive.
+ * <p>
+ * A snapshot records the checksum of the <code>.profile</code> file it was
+ * written with and is only used as long as that file is unchanged. A
+ * component whose archive or manifest changed since the snapshot was written
+ * is restored from its location.
+ * </p>
+ *
+ * @since 1.1.200
+ */
+public final class ApiBaselineSnapshot {
+
+	/**
+	 * Header of the snapshot file
+	 */
+	private static final int MAGIC = 0x41504253; // APBS
+
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Header count of a component whose manifest could not be read when the
+	 * snapshot was written
+	 */
+	private static final int NO_MANIFEST = -1;
+
+	/**
+	 * Component restored from a snapshot
+	 */
+	public static final class ComponentEntry {
+		final String fLocation;
+		final long fLastModified;
+		final long fLength;
+		final Map<String, String> fManifest;
+
+		ComponentEntry(String location, long lastModified, long length, Map<String, String> manifest) {
+			fLocation = location;
+			fLastModified = lastModified;
+			fLength = length;
+			fManifest = manifest;
+		}
+
+		/**
+		 * @return the manifest headers of the component or <code>null</code>
+		 *         if they are not available or the component changed since
+		 *         the snapshot was written
+		 */
+		public Map<String, String> getManifest() {
+			if (fManifest == null) {
+				return null;
+			}
+			File file = getStampFile(fLocation);
+			if (file.lastModified() != fLastModified || file.length() != fLength) {
+				return null;
+			}
+			return fManifest;
+		}
+	}
+
+	private final String fLocation;
+	private final List<ComponentEntry> fComponents;
+
+	private ApiBaselineSnapshot(String location, List<ComponentEntry> components) {
+		fLocation = location;
+		fComponents = components;
+	}
+
+	/**
+	 * @return the location of the baseline or <code>null</code> if it has
+	 *         none
+	 */
+	public String getLocation() {
+		return fLocation;
+	}
+
+	/**
+	 * @return the components of the baseline in the order they were persisted
+	 */
+	public List<ComponentEntry> getComponents() {
+		return fComponents;
+	}
+
+	/**
+	 * Returns the checksum a snapshot records for the given
+	 * <code>.profile</code> contents
+	 *
+	 * @param profile the contents of a <code>.profile</code> file
+	 * @return the checksum of the contents
+	 */
+	public static long checksum(byte[] profile) {
+		CRC32 crc = new CRC32();
+		crc.update(profile, 0, profile.length);
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns the file whose stamp tells if the manifest of the component at
+	 * the given location changed: the archive itself, or the manifest file of
+	 * a directory.
+	 */
+	static File getStampFile(String location) {
+		File file = new File(location);
+		if (file.isDirectory()) {
+			return new File(file, "META-INF/MANIFEST.MF"); //$NON-NLS-1$
+		}
+		return file;
+	}
+
+	/**
+	 * Returns if the snapshot in the given file was written for the
+	 * <code>.profile</code> contents with the given checksum. Only the header
+	 * of the file is read.
+	 *
+	 * @param file the snapshot file
+	 * @param checksum the checksum of the <code>.profile</code> contents
+	 * @return <code>true</code> if the snapshot is readable and up to date
+	 */
+	public static boolean isCurrent(File file, long checksum) {
+		if (!file.isFile()) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64))) {
+			return in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION && in.readLong() == checksum;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the snapshot in the given file
+	 *
+	 * @param file the snapshot file
+	 * @param checksum the checksum of the current <code>.profile</code>
+	 *            contents
+	 * @return the snapshot or <code>null</code> if the file does not exist, is
+	 *         outdated or cannot be read
+	 */
+	public static ApiBaselineSnapshot read(File file, long checksum) {
+		if (!file.isFile()) {
+			return null;
+		}
+		// counts and lengths of a corrupted file cannot exceed its size
+		long size = file.length();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != checksum) {
+				return null;
+			}
+			String[] strings = new String[readCount(in, size)];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[readCount(in, size)];
+				in.readFully(bytes);
+				strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			int location = in.readInt();
+			int count = readCount(in, size);
+			List<ComponentEntry> components = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				String componentLocation = strings[in.readInt()];
+				long lastModified = in.readLong();
+				long length = in.readLong();
+				int headers = in.readInt();
+				Map<String, String> manifest = null;
+				if (headers != NO_MANIFEST) {
+					if (headers < 0 || headers > size) {
+						return null;
+					}
+					manifest = new HashMap<>(headers * 2);
+					for (int j = 0; j < headers; j++) {
+						manifest.put(strings[in.readInt()], strings[in.readInt()]);
+					}
+				}
+				components.add(new ComponentEntry(componentLocation, lastModified, length, manifest));
+			}
+			return new ApiBaselineSnapshot(location < 0 ? null : strings[location], components);
+		} catch (IOException | ArrayIndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a count or a length, which is never negative nor larger than the
+	 * snapshot file
+	 *
+	 * @param in the stream to read from
+	 * @param limit the size of the snapshot file
+	 * @return the count
+	 * @throws IOException if the read fails or the count is invalid
+	 */
+	private static int readCount(DataInputStream in, long limit) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || count > limit) {
+			throw new IOException("Invalid count " + count); //$NON-NLS-1$
+		}
+		return count;
+	}
+
+	/**
+	 * Writes a snapshot of a baseline, reading the manifest of each of its
+	 * components from their location.
+	 *
+	 * @param file the snapshot file
+	 * @param checksum the checksum of the <code>.profile</code> contents the
+	 *            snapshot is written for
+	 * @param location the baseline location or <code>null</code>
+	 * @param componentLocations the locations of the persisted components
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(File file, long checksum, String location, List<String> componentLocations) throws IOException {
+		Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+		List<int[]> components = new ArrayList<>(componentLocations.size());
+		List<long[]> stamps = new ArrayList<>(componentLocations.size());
+		for (String componentLocation : componentLocations) {
+			File stampFile = getStampFile(componentLocation);
+			// take the stamp first so a manifest changed while it is read is
+			// read again on restore
+			long[] stamp = new long[] {
+					stampFile.lastModified(), stampFile.length() };
+			Map<String, String> manifest = null;
+			try {
+				manifest = ManifestUtils.loadManifest(new File(componentLocation));
+			} catch (CoreException e) {
+				// restored from its location
+			}
+			int[] component;
+			if (manifest == null) {
+				component = new int[] { getStringIndex(componentLocation, stringIndexes) };
+			} else {
+				component = new int[1 + manifest.size() * 2];
+				component[0] = getStringIndex(componentLocation, stringIndexes);
+				int i = 1;
+				for (Entry<String, String> header : manifest.entrySet()) {
+					component[i++] = getStringIndex(header.getKey(), stringIndexes);
+					component[i++] = getStringIndex(header.getValue(), stringIndexes);
+				}
+			}
+			components.add(component);
+			stamps.add(stamp);
+		}
+		int locationIndex = location == null ? -1 : getStringIndex(location, stringIndexes);
+
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		File temp = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(checksum);
+			out.writeInt(stringIndexes.size());
+			for (String string : stringIndexes.keySet()) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			out.writeInt(locationIndex);
+			out.writeInt(components.size());
+			for (int i = 0; i < components.size(); i++) {
+				int[] component = components.get(i);
+				long[] stamp = stamps.get(i);
+				out.writeInt(component[0]);
+				out.writeLong(stamp[0]);
+				out.writeLong(stamp[1]);
+				out.writeInt(stamp[0] == 0L || component.length == 1 ? NO_MANIFEST : (component.length - 1) / 2);
+				if (stamp[0] != 0L) {
+					for (int j = 1; j < component.length; j++) {
+						out.writeInt(component[j]);
+					}
+				}
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static int getStringIndex(String string, Map<String, Integer> stringIndexes) {
+		Integer index = stringIndexes.get(string);
+		if (index == null) {
+			index = Integer.valueOf(stringIndexes.size());
+			stringIndexes.put(string, index);
+		}
+		return index.intValue();
+	}
+}
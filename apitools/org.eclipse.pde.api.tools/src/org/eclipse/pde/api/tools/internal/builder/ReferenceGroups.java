@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
+
+/**
+ * Groups {@link IReference}s that resolve to the same member: references made
+ * from the same component to the same type, field or method.
+ * <p>
+ * References are hashed and compared on their component, type, member name
+ * and signature directly, so no key object or key string is created per
+ * reference. Groups are kept in the order in which they were first seen.
+ * </p>
+ *
+ * @since 1.1.200
+ */
+public final class ReferenceGroups {
+
+	/**
+	 * Marks an empty slot of the hash table
+	 */
+	private static final int EMPTY = -1;
+
+	/**
+	 * Groups of references, in the order they were created
+	 */
+	private final List<List<IReference>> fGroups;
+
+	/**
+	 * Open addressing hash table of indexes into {@link #fGroups}
+	 */
+	private int[] fSlots;
+
+	/**
+	 * Hash of the group stored in the matching slot of {@link #fSlots}
+	 */
+	private int[] fHashes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param expectedReferences the expected number of references, used to
+	 *            size the table
+	 */
+	public ReferenceGroups(int expectedReferences) {
+		int capacity = 16;
+		// groups are typically much fewer than references
+		while (capacity < expectedReferences / 2) {
+			capacity <<= 1;
+		}
+		fGroups = new ArrayList<>(capacity / 2);
+		fSlots = newSlots(capacity);
+		fHashes = new int[capacity];
+	}
+
+	private static int[] newSlots(int capacity) {
+		int[] slots = new int[capacity];
+		for (int i = 0; i < capacity; i++) {
+			slots[i] = EMPTY;
+		}
+		return slots;
+	}
+
+	/**
+	 * Adds the given reference to the group of references resolving to the
+	 * same member, creating the group if needed
+	 *
+	 * @param reference the reference to add
+	 */
+	public void add(IReference reference) {
+		int hash = hash(reference);
+		int mask = fSlots.length - 1;
+		int index = hash & mask;
+		int slot;
+		while ((slot = fSlots[index]) != EMPTY) {
+			if (fHashes[index] == hash) {
+				List<IReference> group = fGroups.get(slot);
+				if (isSameSignature(group.get(0), reference)) {
+					group.add(reference);
+					return;
+				}
+			}
+			index = (index + 1) & mask;
+		}
+		List<IReference> group = new ArrayList<>(4);
+		group.add(reference);
+		fSlots[index] = fGroups.size();
+		fHashes[index] = hash;
+		fGroups.add(group);
+		// keep the load factor under 1/2
+		if (fGroups.size() * 2 > fSlots.length) {
+			rehash(fSlots.length << 1);
+		}
+	}
+
+	private void rehash(int capacity) {
+		int[] slots = newSlots(capacity);
+		int[] hashes = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < fSlots.length; i++) {
+			int slot = fSlots[i];
+			if (slot != EMPTY) {
+				int index = fHashes[i] & mask;
+				while (slots[index] != EMPTY) {
+					index = (index + 1) & mask;
+				}
+				slots[index] = slot;
+				hashes[index] = fHashes[i];
+			}
+		}
+		fSlots = slots;
+		fHashes = hashes;
+	}
+
+	/**
+	 * @return the number of groups
+	 */
+	public int size() {
+		return fGroups.size();
+	}
+
+	/**
+	 * Returns the groups of references. Every group contains at least one
+	 * reference.
+	 *
+	 * @return the groups in the order in which they were created
+	 */
+	public List<List<IReference>> getGroups() {
+		return fGroups;
+	}
+
+	/**
+	 * Computes the hash of the member the given reference resolves to
+	 *
+	 * @param reference the reference
+	 * @return the hash
+	 */
+	static int hash(IReference reference) {
+		int hash = reference.getMember().getApiComponent().getSymbolicName().hashCode();
+		hash = hash * 31 + reference.getReferencedTypeName().hashCode();
+		switch (reference.getReferenceType()) {
+			case IReference.T_FIELD_REFERENCE:
+				hash = hash * 31 + hashCode(reference.getReferencedMemberName());
+				break;
+			case IReference.T_METHOD_REFERENCE:
+				hash = hash * 31 + hashCode(reference.getReferencedMemberName());
+				hash = hash * 31 + hashCode(reference.getReferencedSignature());
+				break;
+			default:
+				break;
+		}
+		// spread the high bits since the table size is a power of two
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int hashCode(String string) {
+		return string == null ? 0 : string.hashCode();
+	}
+
+	/**
+	 * Returns if the two references are made from the same component to the
+	 * same type, field or method
+	 *
+	 * @param reference the first reference
+	 * @param reference2 the second reference
+	 * @return <code>true</code> if the references resolve to the same member
+	 */
+	static boolean isSameSignature(IReference reference, IReference reference2) {
+		int type = reference.getReferenceType();
+		if (type != reference2.getReferenceType()) {
+			return false;
+		}
+		if (!equals(reference.getReferencedTypeName(), reference2.getReferencedTypeName())) {
+			return false;
+		}
+		switch (type) {
+			case IReference.T_FIELD_REFERENCE:
+				if (!equals(reference.getReferencedMemberName(), reference2.getReferencedMemberName())) {
+					return false;
+				}
+				break;
+			case IReference.T_METHOD_REFERENCE:
+				if (!equals(reference.getReferencedMemberName(), reference2.getReferencedMemberName()) || !equals(reference.getReferencedSignature(), reference2.getReferencedSignature())) {
+					return false;
+				}
+				break;
+			default:
+				break;
+		}
+		return equals(reference.getMember().getApiComponent().getSymbolicName(), reference2.getMember().getApiComponent().getSymbolicName());
+	}
+
+	private static boolean equals(String string, String string2) {
+		return string == string2 || (string != null && string.equals(string2));
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2013 IBM Corporation and others.
+ * Copyright (c) 2009, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,9 +14,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiMember;
@@ -29,6 +33,30 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiMember;
  */
 public final class ReferenceResolver {
 
+	/**
+	 * Default number of threads resolving references, see
+	 * {@link ApiPlugin#REFERENCE_RESOLVER_THREADS}
+	 */
+	public static final int DEFAULT_THREADS = 1;
+
+	/**
+	 * Minimum number of references before the default resolution uses the
+	 * worker threads set by {@link ApiPlugin#REFERENCE_RESOLVER_THREADS}
+	 */
+	static final int PARALLEL_THRESHOLD = 512;
+
+	/**
+	 * Number of partitions handed to each worker, to balance the load when
+	 * some references are much more expensive to resolve than others
+	 */
+	private static final int PARTITIONS_PER_WORKER = 4;
+
+	/**
+	 * Worker threads shared by all resolutions, by parallelism, created on
+	 * first use
+	 */
+	private static final Map<Integer, ForkJoinPool> fgPools = new HashMap<>();
+
 	/**
 	 * Constructor Private constructor, no instantiate
 	 */
@@ -36,42 +64,131 @@ public final class ReferenceResolver {
 	}
 
 	/**
-	 * Resolves retained references.
+	 * Resolves retained references. Large sets of references are resolved
+	 * using the number of worker threads set by the
+	 * {@link ApiPlugin#REFERENCE_RESOLVER_THREADS} preference, by default in
+	 * the calling thread.
 	 *
 	 * @param references list of {@link IReference} to resolve
 	 * @param progress monitor
 	 * @throws CoreException if something goes wrong
 	 */
 	public static void resolveReferences(List<IReference> references, IProgressMonitor monitor) throws CoreException {
+		resolveReferences(references, references.size() < PARALLEL_THRESHOLD ? 1 : getThreads(), monitor);
+	}
+
+	/**
+	 * @return the number of threads set by the
+	 *         {@link ApiPlugin#REFERENCE_RESOLVER_THREADS} preference
+	 */
+	private static int getThreads() {
+		if (!ApiPlugin.isRunningInFramework()) {
+			return DEFAULT_THREADS;
+		}
+		int threads = Platform.getPreferencesService().getInt(ApiPlugin.PLUGIN_ID, ApiPlugin.REFERENCE_RESOLVER_THREADS, DEFAULT_THREADS, null);
+		return Math.max(1, Math.min(threads, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Returns the shared pool of worker threads with the given parallelism.
+	 * Pools are kept until {@link #shutdown()}, so a resolution running while
+	 * the preference changes keeps its pool.
+	 */
+	private static ForkJoinPool getPool(int parallelism) {
+		synchronized (fgPools) {
+			ForkJoinPool pool = fgPools.get(Integer.valueOf(parallelism));
+			if (pool == null) {
+				pool = new ForkJoinPool(parallelism);
+				fgPools.put(Integer.valueOf(parallelism), pool);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * Stops the shared worker threads
+	 */
+	public static void shutdown() {
+		synchronized (fgPools) {
+			for (ForkJoinPool pool : fgPools.values()) {
+				pool.shutdownNow();
+			}
+			fgPools.clear();
+		}
+	}
+
+	/**
+	 * Resolves retained references using the given number of worker threads.
+	 * References to the same member from the same component are resolved only
+	 * once; the unique references and the method overrides are each split
+	 * across the workers. Each reference is only touched by one worker; the
+	 * types, components and baselines they resolve to are shared by all
+	 * workers, their lazily computed state is synchronized.
+	 *
+	 * @param references list of {@link IReference} to resolve
+	 * @param parallelism the number of worker threads, <code>1</code> to
+	 *            resolve the references in the calling thread
+	 * @param progress monitor
+	 * @throws CoreException if something goes wrong
+	 * @since 1.1.200
+	 */
+	public static void resolveReferences(List<IReference> references, int parallelism, IProgressMonitor monitor) throws CoreException {
 		// sort references by target type for 'shared' resolution
 		int refcount = references.size();
-		Map<String, List<IReference>> sigtoref = new HashMap<>(refcount);
-
-		List<IReference> refs = null;
-		String key = null;
+		ReferenceGroups groups = new ReferenceGroups(refcount);
 		List<Reference> methodDecls = new ArrayList<>(refcount);
 		long start = System.currentTimeMillis();
 		for (IReference ref : references) {
 			if (ref.getReferenceKind() == IReference.REF_OVERRIDE) {
 				methodDecls.add((Reference) ref);
 			} else {
-				key = createSignatureKey(ref);
-				refs = sigtoref.get(key);
-				if (refs == null) {
-					refs = new ArrayList<>(20);
-					sigtoref.put(key, refs);
-				}
-				refs.add(ref);
+				groups.add(ref);
 			}
 		}
 
 		long end = System.currentTimeMillis();
 		if (ApiPlugin.DEBUG_REFERENCE_RESOLVER) {
-			System.out.println("Reference resolver: split into " + methodDecls.size() + " method overrides and " + sigtoref.size() + " unique references (" + (end - start) + "ms)"); //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$ //$NON-NLS-4$
+			System.out.println("Reference resolver: split into " + methodDecls.size() + " method overrides and " + groups.size() + " unique references (" + (end - start) + "ms)"); //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$ //$NON-NLS-4$
+		}
+		if (parallelism > 1 && groups.size() + methodDecls.size() > 1) {
+			ForkJoinPool pool = getPool(parallelism);
+			List<List<IReference>> sets = groups.getGroups();
+			// resolve references
+			start = System.currentTimeMillis();
+			List<ForkJoinTask<CoreException>> tasks = new ArrayList<>();
+			int size = sets.size();
+			int partitions = Math.min(size, parallelism * PARTITIONS_PER_WORKER);
+			for (int i = 0; i < partitions; i++) {
+				final List<List<IReference>> partition = sets.subList(i * size / partitions, (i + 1) * size / partitions);
+				tasks.add(pool.submit(() -> resolveReferenceSets(partition, monitor)));
+			}
+			join(tasks);
+			end = System.currentTimeMillis();
+			if (ApiPlugin.DEBUG_REFERENCE_RESOLVER) {
+				System.out.println("Reference resolver: resolved unique references in " + (end - start) + "ms using " + parallelism + " threads"); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+			}
+			// resolve method overrides
+			start = System.currentTimeMillis();
+			tasks.clear();
+			size = methodDecls.size();
+			partitions = Math.min(size, parallelism * PARTITIONS_PER_WORKER);
+			for (int i = 0; i < partitions; i++) {
+				final List<Reference> partition = methodDecls.subList(i * size / partitions, (i + 1) * size / partitions);
+				tasks.add(pool.submit(() -> resolveMethodDeclarations(partition, monitor)));
+			}
+			join(tasks);
+			end = System.currentTimeMillis();
+			if (ApiPlugin.DEBUG_REFERENCE_RESOLVER) {
+				System.out.println("Reference resolver: resolved method overrides in " + (end - start) + "ms using " + parallelism + " threads"); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+			}
+			return;
 		}
 		// resolve references
 		start = System.currentTimeMillis();
-		resolveReferenceSets(sigtoref, monitor);
+		CoreException failure = resolveReferenceSets(groups.getGroups(), null);
+		if (failure != null) {
+			throw failure;
+		}
 		end = System.currentTimeMillis();
 		if (ApiPlugin.DEBUG_REFERENCE_RESOLVER) {
 			System.out.println("Reference resolver: resolved unique references in " + (end - start) + "ms"); //$NON-NLS-1$//$NON-NLS-2$
@@ -88,55 +205,73 @@ public final class ReferenceResolver {
 	}
 
 	/**
-	 * Resolves the collect sets of references.
+	 * Waits for all of the given tasks and rethrows the first failure
 	 *
-	 * @param map the mapping of keys to sets of {@link IReference}s
-	 * @throws CoreException if something bad happens
+	 * @param tasks the tasks returning the {@link CoreException} they failed
+	 *            with, or <code>null</code>
+	 * @throws CoreException the first failure of the tasks
 	 */
-	private static void resolveReferenceSets(Map<String, List<IReference>> map, IProgressMonitor monitor) throws CoreException {
-		IReference ref = null;
-		for (List<IReference> refs : map.values()) {
-			ref = refs.get(0);
-			((Reference) ref).resolve();
-			IApiMember resolved = ref.getResolvedReference();
-			if (resolved != null) {
-				for (IReference ref2 : refs) {
-					((Reference) ref2).setResolution(resolved);
-				}
+	private static void join(List<ForkJoinTask<CoreException>> tasks) throws CoreException {
+		CoreException failure = null;
+		for (ForkJoinTask<CoreException> task : tasks) {
+			CoreException e = task.join();
+			if (failure == null) {
+				failure = e;
 			}
 		}
+		if (failure != null) {
+			throw failure;
+		}
 	}
 
 	/**
-	 * Creates a unique string key for a given reference. The key is of the form
-	 * "component X references type/member"
+	 * Resolves the given sets of references, resolving only the first
+	 * reference of each set. Each set is only ever touched by one thread.
 	 *
-	 * <pre>
-	 * [component_id]#[type_name](#[member_name]#[member_signature])
-	 * </pre>
+	 * @param sets the sets of references resolving to the same member
+	 * @param monitor the progress monitor, only checked for cancellation, or
+	 *            <code>null</code>
+	 * @return the exception the resolution failed with or <code>null</code>
+	 */
+	private static CoreException resolveReferenceSets(List<List<IReference>> sets, IProgressMonitor monitor) {
+		try {
+			for (List<IReference> refs : sets) {
+				if (monitor != null && monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				IReference ref = refs.get(0);
+				((Reference) ref).resolve();
+				IApiMember resolved = ref.getResolvedReference();
+				if (resolved != null) {
+					for (IReference ref2 : refs) {
+						((Reference) ref2).setResolution(resolved);
+					}
+				}
+			}
+		} catch (CoreException e) {
+			return e;
+		}
+		return null;
+	}
+
+	/**
+	 * Resolves a partition of the method overrides from a worker thread.
 	 *
-	 * @param reference reference
-	 * @return a string key for the given reference.
+	 * @param references the method override references
+	 * @param monitor the progress monitor, only checked for cancellation
+	 * @return the exception the resolution failed with or <code>null</code>
 	 */
-	private static String createSignatureKey(IReference reference) {
-		StringBuilder buffer = new StringBuilder();
-		buffer.append(reference.getMember().getApiComponent().getSymbolicName());
-		buffer.append("#"); //$NON-NLS-1$
-		buffer.append(reference.getReferencedTypeName());
-		switch (reference.getReferenceType()) {
-			case IReference.T_FIELD_REFERENCE:
-				buffer.append("#"); //$NON-NLS-1$
-				buffer.append(reference.getReferencedMemberName());
-				break;
-			case IReference.T_METHOD_REFERENCE:
-				buffer.append("#"); //$NON-NLS-1$
-				buffer.append(reference.getReferencedMemberName());
-				buffer.append("#"); //$NON-NLS-1$
-				buffer.append(reference.getReferencedSignature());
-				break;
-			default:
-				break;
+	private static CoreException resolveMethodDeclarations(List<Reference> references, IProgressMonitor monitor) {
+		try {
+			for (Reference reference : references) {
+				if (monitor != null && monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				reference.resolve();
+			}
+		} catch (CoreException e) {
+			return e;
 		}
-		return buffer.toString();
+		return null;
 	}
 }
@@ -0,0 +1,425 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.comparator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.api.tools.internal.provisional.ApiDescriptionVisitor;
+import org.eclipse.pde.api.tools.internal.provisional.IApiAnnotations;
+import org.eclipse.pde.api.tools.internal.provisional.IApiDescription;
+import org.eclipse.pde.api.tools.internal.provisional.IRequiredComponentDescription;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IFieldDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMethodDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IReferenceTypeDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisitor;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Content fingerprint of an {@link IApiComponent}. It records a SHA-256 digest
+ * of the class file bytes of every top level type (member types are folded
+ * into their enclosing top level type) together with the names of their super
+ * types, and a SHA-256 digest of the component API description, execution
+ * environments and required components.
+ * <p>
+ * Two components with equal fingerprints contain the same class files and the
+ * same API description, which lets the comparator skip them without decoding
+ * any class file. A cryptographic digest is used so that an accidental
+ * collision cannot hide an API change.
+ * </p>
+ *
+ * @since 1.1.200
+ */
+public final class ComponentFingerprint {
+
+	/**
+	 * Version of the persisted format, written by {@link #write(DataOutputStream)}
+	 */
+	static final int FORMAT_VERSION = 3;
+
+	/**
+	 * Algorithm of the digests, available on every Java platform
+	 */
+	private static final String DIGEST_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+	/**
+	 * Length in bytes of the digests
+	 */
+	private static final int DIGEST_LENGTH = 32;
+
+	private static final String[] NO_NAMES = new String[0];
+
+	/**
+	 * Fingerprint of a top level type and its member types
+	 */
+	static final class TypeFingerprint {
+		byte[] fDigest;
+		String[] fSuperTypes;
+
+		TypeFingerprint(byte[] digest, String[] superTypes) {
+			fDigest = digest;
+			fSuperTypes = superTypes;
+		}
+	}
+
+	/**
+	 * Feeds the API annotations of a component into a digest, the way
+	 * {@link org.eclipse.pde.api.tools.internal.CRCVisitor} computes their CRC
+	 */
+	private static final class DigestVisitor extends ApiDescriptionVisitor {
+		final MessageDigest fDigest = newDigest();
+
+		@Override
+		public boolean visitElement(IElementDescriptor element, IApiAnnotations description) {
+			updateInt(fDigest, element.getElementType());
+			switch (element.getElementType()) {
+				case IElementDescriptor.TYPE:
+					updateString(fDigest, ((IReferenceTypeDescriptor) element).getSignature());
+					break;
+				case IElementDescriptor.METHOD:
+					updateString(fDigest, ((IMethodDescriptor) element).getSignature());
+					updateString(fDigest, ((IMethodDescriptor) element).getName());
+					break;
+				case IElementDescriptor.FIELD:
+					updateString(fDigest, ((IFieldDescriptor) element).getName());
+					break;
+				default:
+					break;
+			}
+			updateInt(fDigest, description.getRestrictions());
+			updateInt(fDigest, description.getVisibility());
+			return true;
+		}
+	}
+
+	/**
+	 * Digest of the API description, execution environments and required
+	 * components
+	 */
+	private byte[] fDescriptionDigest;
+
+	/**
+	 * Digest of everything in this fingerprint, used to tell different
+	 * components apart without comparing every type
+	 */
+	private byte[] fContentDigest;
+
+	/**
+	 * Map of top level type names to their fingerprints
+	 */
+	private Map<String, TypeFingerprint> fTypes;
+
+	private ComponentFingerprint(byte[] descriptionDigest, Map<String, TypeFingerprint> types) {
+		fDescriptionDigest = descriptionDigest;
+		fTypes = types;
+		MessageDigest digest = newDigest();
+		digest.update(descriptionDigest);
+		for (Entry<String, TypeFingerprint> entry : new TreeMap<>(types).entrySet()) {
+			updateString(digest, entry.getKey());
+			digest.update(entry.getValue().fDigest);
+		}
+		fContentDigest = digest.digest();
+	}
+
+	/**
+	 * Computes the fingerprint of the given component by reading the bytes of
+	 * all of its class files.
+	 *
+	 * @param component the component to fingerprint
+	 * @return the fingerprint of the component
+	 * @throws CoreException if the component contents cannot be read
+	 */
+	public static ComponentFingerprint compute(IApiComponent component) throws CoreException {
+		final Map<String, List<IApiTypeRoot>> roots = new HashMap<>();
+		component.accept(new ApiTypeContainerVisitor() {
+			@Override
+			public void visit(String packageName, IApiTypeRoot typeroot) {
+				String topLevel = getTopLevelTypeName(typeroot.getTypeName());
+				List<IApiTypeRoot> list = roots.get(topLevel);
+				if (list == null) {
+					list = new ArrayList<>(1);
+					roots.put(topLevel, list);
+				}
+				list.add(typeroot);
+			}
+		});
+		Map<String, TypeFingerprint> types = new HashMap<>(roots.size());
+		for (Entry<String, List<IApiTypeRoot>> entry : roots.entrySet()) {
+			String name = entry.getKey();
+			List<IApiTypeRoot> list = entry.getValue();
+			// member types are visited in an unspecified order
+			IApiTypeRoot[] sorted = list.toArray(new IApiTypeRoot[list.size()]);
+			Arrays.sort(sorted, (r1, r2) -> r1.getTypeName().compareTo(r2.getTypeName()));
+			MessageDigest digest = newDigest();
+			Set<String> superTypes = new HashSet<>();
+			for (IApiTypeRoot root : sorted) {
+				byte[] contents = root.getContents();
+				updateString(digest, root.getTypeName());
+				updateInt(digest, contents.length);
+				digest.update(contents);
+				for (String superType : getSuperTypes(contents)) {
+					if (!superType.equals(name)) {
+						superTypes.add(superType);
+					}
+				}
+			}
+			String[] names = superTypes.isEmpty() ? NO_NAMES : superTypes.toArray(new String[superTypes.size()]);
+			types.put(name, new TypeFingerprint(digest.digest(), names));
+		}
+		DigestVisitor visitor = new DigestVisitor();
+		IApiDescription description = component.getApiDescription();
+		if (description != null) {
+			description.accept(visitor, null);
+		}
+		MessageDigest digest = visitor.fDigest;
+		String[] ees = component.getExecutionEnvironments();
+		updateInt(digest, ees == null ? -1 : ees.length);
+		if (ees != null) {
+			for (String ee : ees) {
+				updateString(digest, ee);
+			}
+		}
+		IRequiredComponentDescription[] required = component.getRequiredComponents();
+		updateInt(digest, required.length);
+		for (IRequiredComponentDescription description2 : required) {
+			updateString(digest, description2.getId());
+			updateString(digest, String.valueOf(description2.getVersionRange()));
+			digest.update((byte) (description2.isExported() ? 1 : 0));
+		}
+		return new ComponentFingerprint(digest.digest(), types);
+	}
+
+	/**
+	 * Returns the name of the top level type enclosing the given type
+	 *
+	 * @param typeName the fully qualified type name
+	 * @return the top level type name
+	 */
+	static String getTopLevelTypeName(String typeName) {
+		int index = typeName.indexOf('$', typeName.lastIndexOf('.') + 1);
+		if (index > 0) {
+			return typeName.substring(0, index);
+		}
+		return typeName;
+	}
+
+	/**
+	 * Returns the top level names of the super class and super interfaces of
+	 * the given class file, <code>java.lang.Object</code> excluded
+	 *
+	 * @param contents the class file bytes
+	 * @return the super type names
+	 */
+	private static String[] getSuperTypes(byte[] contents) {
+		try {
+			ClassReader reader = new ClassReader(contents);
+			String superName = reader.getSuperName();
+			String[] interfaces = reader.getInterfaces();
+			List<String> names = new ArrayList<>(interfaces.length + 1);
+			if (superName != null && !"java/lang/Object".equals(superName)) { //$NON-NLS-1$
+				names.add(getTopLevelTypeName(superName.replace('/', '.')));
+			}
+			for (String name : interfaces) {
+				names.add(getTopLevelTypeName(name.replace('/', '.')));
+			}
+			return names.toArray(new String[names.size()]);
+		} catch (IllegalArgumentException e) {
+			// bad class file, the content digest still captures it
+			return NO_NAMES;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return NO_NAMES;
+		}
+	}
+
+	/**
+	 * @return a new SHA-256 digest
+	 */
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void updateInt(MessageDigest digest, int value) {
+		for (int i = 0; i < 4; i++) {
+			digest.update((byte) (value >>> (i * 8)));
+		}
+	}
+
+	/**
+	 * Feeds the given string into the digest, prefixed with its length so
+	 * that consecutive strings cannot be confused, <code>null</code> being
+	 * distinct from the empty string
+	 */
+	private static void updateString(MessageDigest digest, String value) {
+		if (value == null) {
+			updateInt(digest, -1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		updateInt(digest, bytes.length);
+		digest.update(bytes);
+	}
+
+	/**
+	 * Returns if the given fingerprint describes the same class files and API
+	 * description as this one.
+	 *
+	 * @param other the other fingerprint
+	 * @return <code>true</code> if the contents are identical
+	 */
+	public boolean isSameContents(ComponentFingerprint other) {
+		// the content digest covers the description and every type digest
+		return other != null && fTypes.size() == other.fTypes.size() && Arrays.equals(fContentDigest, other.fContentDigest);
+	}
+
+	/**
+	 * Returns if the API description, execution environments and required
+	 * components are the same as in the given fingerprint.
+	 *
+	 * @param other the other fingerprint
+	 * @return <code>true</code> if the descriptions are identical
+	 */
+	public boolean isSameDescription(ComponentFingerprint other) {
+		return other != null && Arrays.equals(fDescriptionDigest, other.fDescriptionDigest);
+	}
+
+	/**
+	 * Returns if the given top level type and all of its super types declared
+	 * in this component have the same contents in the other fingerprint.
+	 *
+	 * @param other the other fingerprint
+	 * @param typeName the top level type name
+	 * @return <code>true</code> if the type hierarchy within the component is
+	 *         unchanged
+	 */
+	public boolean isSameType(ComponentFingerprint other, String typeName) {
+		if (other == null) {
+			return false;
+		}
+		List<String> pending = new ArrayList<>();
+		pending.add(typeName);
+		Set<String> visited = new HashSet<>();
+		while (!pending.isEmpty()) {
+			String name = pending.remove(pending.size() - 1);
+			if (!visited.add(name)) {
+				continue;
+			}
+			TypeFingerprint type = fTypes.get(name);
+			TypeFingerprint type2 = other.fTypes.get(name);
+			if (type == null || type2 == null) {
+				if (type != type2 || name.equals(typeName)) {
+					return false;
+				}
+				// declared outside of the component, covered by the
+				// prerequisites check
+				continue;
+			}
+			if (!Arrays.equals(type.fDigest, type2.fDigest)) {
+				return false;
+			}
+			for (String superType : type.fSuperTypes) {
+				pending.add(superType);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of top level types in the component
+	 */
+	public int getTypeCount() {
+		return fTypes.size();
+	}
+
+	/**
+	 * Writes this fingerprint to the given stream
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the write fails
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.write(fDescriptionDigest);
+		out.writeInt(fTypes.size());
+		for (Entry<String, TypeFingerprint> entry : fTypes.entrySet()) {
+			TypeFingerprint type = entry.getValue();
+			out.writeUTF(entry.getKey());
+			out.write(type.fDigest);
+			out.writeShort(type.fSuperTypes.length);
+			for (String superType : type.fSuperTypes) {
+				out.writeUTF(superType);
+			}
+		}
+	}
+
+	/**
+	 * Reads a fingerprint written by {@link #write(DataOutputStream)}
+	 *
+	 * @param in the stream to read from
+	 * @return the fingerprint
+	 * @throws IOException if the read fails
+	 */
+	public static ComponentFingerprint read(DataInputStream in) throws IOException {
+		byte[] descriptionDigest = readDigest(in);
+		int size = in.readInt();
+		if (size < 0) {
+			throw new IOException("Invalid type count " + size); //$NON-NLS-1$
+		}
+		Map<String, TypeFingerprint> types = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			String name = in.readUTF();
+			byte[] digest = readDigest(in);
+			int count = in.readUnsignedShort();
+			String[] superTypes = count == 0 ? NO_NAMES : new String[count];
+			for (int j = 0; j < count; j++) {
+				superTypes[j] = in.readUTF();
+			}
+			types.put(name, new TypeFingerprint(digest, superTypes));
+		}
+		return new ComponentFingerprint(descriptionDigest, types);
+	}
+
+	private static byte[] readDigest(DataInputStream in) throws IOException {
+		byte[] digest = new byte[DIGEST_LENGTH];
+		in.readFully(digest);
+		return digest;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder("ComponentFingerprint["); //$NON-NLS-1$
+		buffer.append(fTypes.size()).append(" types, "); //$NON-NLS-1$
+		for (int i = 0; i < 8; i++) {
+			buffer.append(Character.forDigit((fContentDigest[i] >> 4) & 0xF, 16)).append(Character.forDigit(fContentDigest[i] & 0xF, 16));
+		}
+		return buffer.append(']').toString();
+	}
+}
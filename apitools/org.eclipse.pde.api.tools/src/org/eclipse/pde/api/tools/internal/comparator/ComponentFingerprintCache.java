@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.comparator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+
+/**
+ * Cache of {@link ComponentFingerprint}s keyed by component location. Only
+ * components backed by an archive are cached: an entry is valid as long as the
+ * archive keeps the same size and modification time. At most
+ * {@link #MAX_ENTRIES} fingerprints are kept, the least recently used ones are
+ * dropped first. The cache can be persisted so fingerprints of baseline
+ * components survive restarts.
+ *
+ * @since 1.1.200
+ */
+public final class ComponentFingerprintCache {
+
+	/**
+	 * Cached fingerprint and the archive stamp it was computed for
+	 */
+	static final class CacheEntry {
+		final long fLastModified;
+		final long fLength;
+		final ComponentFingerprint fFingerprint;
+
+		CacheEntry(long lastModified, long length, ComponentFingerprint fingerprint) {
+			fLastModified = lastModified;
+			fLength = length;
+			fFingerprint = fingerprint;
+		}
+	}
+
+	/**
+	 * Map of cache entries in access order, dropping the least recently used
+	 * entry once it holds more than {@link ComponentFingerprintCache#MAX_ENTRIES}
+	 * entries
+	 */
+	static final class EntryMap extends LinkedHashMap<String, CacheEntry> {
+		private static final long serialVersionUID = 1L;
+
+		EntryMap() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, CacheEntry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	}
+
+	/**
+	 * Result of comparing the fingerprints of two components
+	 */
+	public static final class Comparison {
+		final ComponentFingerprint fReference;
+		final ComponentFingerprint fComponent;
+		final boolean fSamePrerequisites;
+
+		Comparison(ComponentFingerprint reference, ComponentFingerprint component, boolean samePrerequisites) {
+			fReference = reference;
+			fComponent = component;
+			fSamePrerequisites = samePrerequisites;
+		}
+
+		/**
+		 * @return <code>true</code> if the two components and all of their
+		 *         prerequisites have identical contents, in which case
+		 *         comparing them cannot produce any delta
+		 */
+		public boolean isIdentical() {
+			return fSamePrerequisites && fReference.isSameContents(fComponent);
+		}
+
+		/**
+		 * Returns if the given top level type can be skipped: it has the same
+		 * contents, the same super types within the component and the same API
+		 * description in both components.
+		 *
+		 * @param typeName the fully qualified name of a top level type
+		 * @return <code>true</code> if comparing the type cannot produce any
+		 *         delta
+		 */
+		public boolean isIdentical(String typeName) {
+			return fSamePrerequisites && fReference.isSameDescription(fComponent) && fReference.isSameType(fComponent, typeName);
+		}
+	}
+
+	/**
+	 * Comparison returned when fingerprints are not available
+	 */
+	private static final Comparison NO_COMPARISON = null;
+
+	/**
+	 * Header of the persisted cache file
+	 */
+	private static final int MAGIC = 0x41504946; // APIF
+
+	/**
+	 * Maximum number of cached fingerprints, enough for the archives of a
+	 * reference baseline and of a target of the size of the SDK
+	 */
+	public static final int MAX_ENTRIES = 2000;
+
+	private final Map<String, CacheEntry> fEntries = Collections.synchronizedMap(new EntryMap());
+
+	private volatile boolean fDirty = false;
+
+	/**
+	 * Returns the fingerprint of the given component, computing it if it is
+	 * not cached or if the cached one is stale.
+	 *
+	 * @param component the component
+	 * @return the fingerprint or <code>null</code> if the component cannot be
+	 *         fingerprinted (system and source components, components that
+	 *         are not backed by an archive)
+	 */
+	public ComponentFingerprint getFingerprint(IApiComponent component) {
+		if (!isFingerprintable(component)) {
+			return null;
+		}
+		String location = component.getLocation();
+		File file = new File(location);
+		long lastModified = file.lastModified();
+		long length = file.length();
+		CacheEntry entry = fEntries.get(location);
+		if (entry != null && entry.fLastModified == lastModified && entry.fLength == length) {
+			return entry.fFingerprint;
+		}
+		long time = System.currentTimeMillis();
+		try {
+			ComponentFingerprint fingerprint = ComponentFingerprint.compute(component);
+			fEntries.put(location, new CacheEntry(lastModified, length, fingerprint));
+			fDirty = true;
+			if (ApiPlugin.DEBUG_API_COMPARATOR) {
+				System.out.println("Time to fingerprint " + component.getSymbolicName() + " : " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			return fingerprint;
+		} catch (CoreException e) {
+			ApiPlugin.log(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns if a fingerprint can be computed for the given component without
+	 * computing it
+	 *
+	 * @param component the component
+	 * @return <code>true</code> if the component is backed by an archive and
+	 *         is neither a system nor a source component
+	 */
+	public static boolean isFingerprintable(IApiComponent component) {
+		try {
+			if (component == null || component.isSystemComponent() || component.isSourceComponent()) {
+				return false;
+			}
+		} catch (CoreException e) {
+			return false;
+		}
+		String location = component.getLocation();
+		return location != null && new File(location).isFile();
+	}
+
+	/**
+	 * Compares the fingerprints of the given components and of their
+	 * prerequisites.
+	 *
+	 * @param reference the reference component
+	 * @param component the component to compare with
+	 * @return the comparison or <code>null</code> if one of the components or
+	 *         one of their prerequisites cannot be fingerprinted
+	 */
+	public Comparison compare(IApiComponent reference, IApiComponent component) {
+		if (!isFingerprintable(reference) || !isFingerprintable(component)) {
+			return NO_COMPARISON;
+		}
+		ComponentFingerprint referenceFingerprint = getFingerprint(reference);
+		if (referenceFingerprint == null) {
+			return NO_COMPARISON;
+		}
+		ComponentFingerprint fingerprint = getFingerprint(component);
+		if (fingerprint == null) {
+			return NO_COMPARISON;
+		}
+		return new Comparison(referenceFingerprint, fingerprint, isSamePrerequisites(reference, component));
+	}
+
+	/**
+	 * Returns if the prerequisites of the two components have the same
+	 * contents. Super types declared in other components are resolved through
+	 * the prerequisites, so they must be unchanged for a type to be skipped.
+	 *
+	 * @param reference the reference component
+	 * @param component the component to compare with
+	 * @return <code>true</code> if all prerequisites are identical
+	 */
+	private boolean isSamePrerequisites(IApiComponent reference, IApiComponent component) {
+		try {
+			IApiBaseline referenceBaseline = reference.getBaseline();
+			IApiBaseline baseline = component.getBaseline();
+			if (referenceBaseline == null || baseline == null) {
+				return false;
+			}
+			Map<String, IApiComponent> referencePrerequisites = getPrerequisites(referenceBaseline, reference);
+			Map<String, IApiComponent> prerequisites = getPrerequisites(baseline, component);
+			if (referencePrerequisites == null || prerequisites == null || referencePrerequisites.size() != prerequisites.size()) {
+				return false;
+			}
+			for (Entry<String, IApiComponent> entry : referencePrerequisites.entrySet()) {
+				IApiComponent prerequisite = prerequisites.get(entry.getKey());
+				if (prerequisite == null) {
+					return false;
+				}
+				ComponentFingerprint fingerprint = getFingerprint(entry.getValue());
+				if (fingerprint == null || !fingerprint.isSameContents(getFingerprint(prerequisite))) {
+					return false;
+				}
+			}
+			return true;
+		} catch (CoreException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the non-system prerequisites of the given component keyed by
+	 * symbolic name, or <code>null</code> if the component cannot be checked
+	 */
+	private Map<String, IApiComponent> getPrerequisites(IApiBaseline baseline, IApiComponent component) throws CoreException {
+		IApiComponent[] components = baseline.getPrerequisiteComponents(new IApiComponent[] { component });
+		Map<String, IApiComponent> result = new HashMap<>(components.length);
+		for (IApiComponent prerequisite : components) {
+			if (prerequisite.isSystemComponent() || prerequisite.equals(component)) {
+				continue;
+			}
+			if (result.put(prerequisite.getSymbolicName(), prerequisite) != null) {
+				// several versions of the same prerequisite
+				return null;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes the cached fingerprint of the component at the given location
+	 *
+	 * @param location the component location
+	 */
+	public void remove(String location) {
+		if (fEntries.remove(location) != null) {
+			fDirty = true;
+		}
+	}
+
+	/**
+	 * Removes all of the cached fingerprints
+	 */
+	public void clear() {
+		if (!fEntries.isEmpty()) {
+			fEntries.clear();
+			fDirty = true;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the cache changed since it was last loaded
+	 *         or saved
+	 */
+	public boolean isDirty() {
+		return fDirty;
+	}
+
+	/**
+	 * Loads fingerprints persisted with {@link #save(File)}. Entries whose
+	 * archive no longer exists are dropped. An unreadable or outdated file is
+	 * ignored.
+	 *
+	 * @param file the file to load from
+	 */
+	public void load(File file) {
+		if (!file.isFile()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != ComponentFingerprint.FORMAT_VERSION) {
+				fDirty = true;
+				return;
+			}
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				String location = in.readUTF();
+				long lastModified = in.readLong();
+				long length = in.readLong();
+				ComponentFingerprint fingerprint = ComponentFingerprint.read(in);
+				if (new File(location).isFile()) {
+					fEntries.put(location, new CacheEntry(lastModified, length, fingerprint));
+				} else {
+					fDirty = true;
+				}
+			}
+		} catch (IOException e) {
+			fEntries.clear();
+			fDirty = true;
+			ApiPlugin.log(e);
+		}
+	}
+
+	/**
+	 * Persists the cached fingerprints to the given file
+	 *
+	 * @param file the file to write to
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		Map<String, CacheEntry> entries;
+		synchronized (fEntries) {
+			// least recently used first, so the order is restored on load
+			entries = new LinkedHashMap<>(fEntries);
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(ComponentFingerprint.FORMAT_VERSION);
+			out.writeInt(entries.size());
+			for (Entry<String, CacheEntry> entry : entries.entrySet()) {
+				CacheEntry value = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(value.fLastModified);
+				out.writeLong(value.fLength);
+				value.fFingerprint.write(out);
+			}
+		}
+		fDirty = false;
+	}
+}
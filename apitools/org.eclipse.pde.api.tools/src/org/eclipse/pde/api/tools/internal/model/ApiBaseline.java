@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2016 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -31,6 +31,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
@@ -122,10 +123,20 @@ public class ApiBaseline extends ApiElement implements IApiBaseline, IVMInstallC
 	 * Map of <code>PackageName -> Map(componentName -> IApiComponent[])</code>
 	 * </p>
 	 * For each package the cache contains a map of API components that provide
-	 * that package, by source component name (including the <code>null</code>
-	 * component name).
+	 * that package, by source component (the <code>null</code> component is
+	 * stored as {@link #NO_SOURCE_COMPONENT}).
+	 * </p>
+	 * <p>
+	 * The maps are concurrent so that cached packages can be resolved without
+	 * locking the baseline; only cache misses are synchronized.
+	 * </p>
 	 */
-	private HashMap<String, HashMap<IApiComponent, IApiComponent[]>> fComponentsProvidingPackageCache = null;
+	private volatile Map<String, Map<Object, IApiComponent[]>> fComponentsProvidingPackageCache = null;
+
+	/**
+	 * Key of the packages resolved for the <code>null</code> source component
+	 */
+	private static final Object NO_SOURCE_COMPONENT = new Object();
 
 	/**
 	 * Maps component id's to components.
@@ -495,21 +506,47 @@ public class ApiBaseline extends ApiElement implements IApiBaseline, IVMInstallC
 	}
 
 	@Override
-	public synchronized IApiComponent[] resolvePackage(IApiComponent sourceComponent, String packageName) throws CoreException {
-		HashMap<IApiComponent, IApiComponent[]> componentsForPackage = null;
+	public IApiComponent[] resolvePackage(IApiComponent sourceComponent, String packageName) throws CoreException {
+		Object key = sourceComponent == null ? NO_SOURCE_COMPONENT : sourceComponent;
+		Map<String, Map<Object, IApiComponent[]>> cache = fComponentsProvidingPackageCache;
+		if (cache != null) {
+			Map<Object, IApiComponent[]> componentsForPackage = cache.get(packageName);
+			if (componentsForPackage != null) {
+				IApiComponent[] cachedComponents = componentsForPackage.get(key);
+				if (cachedComponents != null) {
+					return cachedComponents;
+				}
+			}
+		}
+		return resolvePackage(sourceComponent, key, packageName);
+	}
+
+	/**
+	 * Resolves and caches the components providing the given package, called
+	 * on a cache miss
+	 *
+	 * @param sourceComponent the component the package is resolved for or
+	 *            <code>null</code>
+	 * @param key the cache key of the source component
+	 * @param packageName the name of the package
+	 * @return the components providing the package
+	 * @throws CoreException if the package cannot be resolved
+	 */
+	private synchronized IApiComponent[] resolvePackage(IApiComponent sourceComponent, Object key, String packageName) throws CoreException {
+		Map<Object, IApiComponent[]> componentsForPackage = null;
 		if (fComponentsProvidingPackageCache != null) {
 			componentsForPackage = fComponentsProvidingPackageCache.get(packageName);
 		} else {
-			fComponentsProvidingPackageCache = new HashMap<>(8);
+			fComponentsProvidingPackageCache = new ConcurrentHashMap<>(8);
 		}
 		IApiComponent[] cachedComponents = null;
 		if (componentsForPackage != null) {
-			cachedComponents = componentsForPackage.get(sourceComponent);
+			cachedComponents = componentsForPackage.get(key);
 			if (cachedComponents != null && cachedComponents.length > 0) {
 				return cachedComponents;
 			}
 		} else {
-			componentsForPackage = new HashMap<>(8);
+			componentsForPackage = new ConcurrentHashMap<>(8);
 			fComponentsProvidingPackageCache.put(packageName, componentsForPackage);
 		}
 
@@ -543,7 +580,7 @@ public class ApiBaseline extends ApiElement implements IApiBaseline, IVMInstallC
 		if (cachedComponents.length == 0) {
 			return EMPTY_COMPONENTS;
 		}
-		componentsForPackage.put(sourceComponent, cachedComponents);
+		componentsForPackage.put(key, cachedComponents);
 		return cachedComponents;
 	}
 
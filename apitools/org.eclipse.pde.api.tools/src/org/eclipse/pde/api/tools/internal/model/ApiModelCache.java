@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2017 IBM Corporation and others.
+ * Copyright (c) 2009, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,61 +10,116 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.jdt.internal.core.OverflowingLRUCache;
-import org.eclipse.jdt.internal.core.util.LRUCache;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
 
 /**
- * Manages the caches of {@link IApiElement}s
+ * Manages the caches of {@link IApiElement}s.
+ * <p>
+ * Type structures are cached per baseline and per component in concurrent
+ * maps, so lookups never block and the cache can be shared by concurrent
+ * analyzers. The cache is bounded by the estimated memory of the cached type
+ * structures rather than by their number: once the bound is exceeded the least
+ * recently used types are evicted. The bound is configured with the
+ * {@link ApiPlugin#MODEL_CACHE_SIZE} preference.
+ * </p>
  *
  * @since 1.0.2
  */
 public final class ApiModelCache {
 
 	/**
-	 * Cache used for {@link IApiElement}s
+	 * A cached element with its estimated size and last access time
 	 */
-	class Cache extends OverflowingLRUCache {
+	static final class CacheEntry {
+		final IApiElement fElement;
+		final long fSize;
+		volatile long fLastAccess;
 
+		CacheEntry(IApiElement element, long size, long access) {
+			fElement = element;
+			fSize = size;
+			fLastAccess = access;
+		}
+	}
+
+	/**
+	 * The cached types of one component
+	 */
+	static final class ComponentCache {
 		/**
-		 * Constructor
-		 *
-		 * @param size
-		 * @param overflow
+		 * Map of type names to cached top level types
 		 */
-		public Cache(int size, int overflow) {
-			super(size, overflow);
-		}
+		final Map<String, CacheEntry> fTypes = new ConcurrentHashMap<>();
+		/**
+		 * Map of root type names to their cached member types
+		 */
+		final Map<String, Map<String, CacheEntry>> fMemberTypes = new ConcurrentHashMap<>();
+	}
 
-		@Override
-		protected boolean close(LRUCacheEntry entry) {
-			return true;
-		}
+	/**
+	 * An entry considered for eviction
+	 */
+	static final class EvictionCandidate implements Comparable<EvictionCandidate> {
+		final Map<String, CacheEntry> fMap;
+		final String fKey;
+		final CacheEntry fEntry;
+		final long fAccess;
 
-		@Override
-		protected LRUCache newInstance(int size, int newOverflow) {
-			return new Cache(size, newOverflow);
+		EvictionCandidate(Map<String, CacheEntry> map, String key, CacheEntry entry) {
+			fMap = map;
+			fKey = key;
+			fEntry = entry;
+			fAccess = entry.fLastAccess;
 		}
 
-		/**
-		 * Returns if the cache has any elements in it or not
-		 *
-		 * @return true if the cache has no entries, false otherwise
-		 */
-		public boolean isEmpty() {
-			return !keys().hasMoreElements();
+		@Override
+		public int compareTo(EvictionCandidate other) {
+			return Long.compare(fAccess, other.fAccess);
 		}
 	}
 
-	static final int DEFAULT_CACHE_SIZE = 1500;
-	static final int DEFAULT_OVERFLOW = (int) (DEFAULT_CACHE_SIZE * 0.1f);
+	/**
+	 * Default bound of the cache, in megabytes
+	 */
+	public static final int DEFAULT_MAX_MEMORY = 64;
+
+	/**
+	 * Once the bound is exceeded, types are evicted until the cache is back to
+	 * this fraction of the bound
+	 */
+	static final float EVICTION_TARGET = 0.75f;
+
 	static ApiModelCache fInstance = null;
 
-	Cache fRootCache = null;
-	Cache fMemberTypeCache = null;
+	/**
+	 * Map of baseline names to the caches of their components, by symbolic
+	 * name
+	 */
+	private final Map<String, Map<String, ComponentCache>> fBaselines = new ConcurrentHashMap<>();
+
+	private final AtomicLong fClock = new AtomicLong();
+	private final AtomicLong fSize = new AtomicLong();
+	private final AtomicInteger fCount = new AtomicInteger();
+	private final LongAdder fHits = new LongAdder();
+	private final LongAdder fMisses = new LongAdder();
+	private final LongAdder fEvictions = new LongAdder();
+	private final Object fEvictionLock = new Object();
+	private volatile long fMaxMemory = DEFAULT_MAX_MEMORY * 1024L * 1024L;
 
 	/**
 	 * Constructor - no instantiation
@@ -80,23 +135,75 @@ public final class ApiModelCache {
 	public static synchronized ApiModelCache getCache() {
 		if (fInstance == null) {
 			fInstance = new ApiModelCache();
+			if (ApiPlugin.isRunningInFramework()) {
+				int size = Platform.getPreferencesService().getInt(ApiPlugin.PLUGIN_ID, ApiPlugin.MODEL_CACHE_SIZE, DEFAULT_MAX_MEMORY, null);
+				fInstance.setMaxMemory(size);
+			}
 		}
 		return fInstance;
 	}
 
 	/**
-	 * Returns the key to use in a cache. The key is of the form:
-	 * <code>[baselineid].[componentid].[typename]</code><br>
+	 * Sets the bound of the cache, evicting types if the cache is already
+	 * larger.
 	 *
-	 * @param baseline
-	 * @param component
-	 * @param typename
-	 * @return the member type cache key to use
+	 * @param megabytes the estimated memory the cached types may use, in
+	 *            megabytes. Values lower than one are replaced by one.
+	 */
+	public void setMaxMemory(int megabytes) {
+		fMaxMemory = Math.max(1, megabytes) * 1024L * 1024L;
+		if (fSize.get() > fMaxMemory) {
+			evict();
+		}
+	}
+
+	/**
+	 * @return the bound of the cache in bytes
 	 */
-	private String getCacheKey(String baseline, String component, String typename) {
-		StringBuilder buffer = new StringBuilder();
-		buffer.append(baseline).append('.').append(component).append('.').append(typename);
-		return buffer.toString();
+	public long getMaxMemory() {
+		return fMaxMemory;
+	}
+
+	/**
+	 * @return the estimated memory used by the cached types in bytes
+	 */
+	public long getEstimatedSize() {
+		return fSize.get();
+	}
+
+	/**
+	 * @return the number of cached types
+	 */
+	public int getSize() {
+		return fCount.get();
+	}
+
+	/**
+	 * @return the number of lookups that found a cached type
+	 */
+	public long getHitCount() {
+		return fHits.sum();
+	}
+
+	/**
+	 * @return the number of lookups that did not find a cached type
+	 */
+	public long getMissCount() {
+		return fMisses.sum();
+	}
+
+	/**
+	 * @return the number of types evicted to stay within the bound
+	 */
+	public long getEvictionCount() {
+		return fEvictions.sum();
+	}
+
+	/**
+	 * @return a summary of the cache counters, for tracing
+	 */
+	public String getStatistics() {
+		return "ApiModelCache: " + fCount.get() + " types, " + (fSize.get() / 1024) + "KB of " + (fMaxMemory / 1024) + "KB, " + getHitCount() + " hits, " + getMissCount() + " misses, " + getEvictionCount() + " evictions"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
 	}
 
 	/**
@@ -111,9 +218,6 @@ public final class ApiModelCache {
 	public void cacheElementInfo(IApiElement element) throws CoreException {
 		switch (element.getType()) {
 			case IApiElement.TYPE: {
-				if (fRootCache == null) {
-					fRootCache = new Cache(DEFAULT_CACHE_SIZE / 10, DEFAULT_OVERFLOW / 10);
-				}
 				IApiComponent comp = element.getApiComponent();
 				if (comp != null) {
 					IApiBaseline baseline = comp.getBaseline();
@@ -121,45 +225,26 @@ public final class ApiModelCache {
 					if (id == null) {
 						return;
 					}
-					Cache compcache = (Cache) fRootCache.get(baseline.getName());
-					if (compcache == null) {
-						compcache = new Cache(DEFAULT_CACHE_SIZE / 2, DEFAULT_OVERFLOW / 2);
-						fRootCache.put(baseline.getName(), compcache);
-					}
-					Cache typecache = (Cache) compcache.get(id);
-					if (typecache == null) {
-						typecache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-						compcache.put(comp.getSymbolicName(), typecache);
-					}
+					String baselineid = baseline.getName();
+					Map<String, ComponentCache> components = fBaselines.computeIfAbsent(baselineid, key -> new ConcurrentHashMap<>());
+					ComponentCache cache = components.computeIfAbsent(id, key -> new ComponentCache());
 					ApiType type = (ApiType) element;
-					if (type.isMemberType() || isMemberType(type.getName()) /*
-																			 * cache
-																			 * even
-																			 * a
-																			 * root
-																			 * type
-																			 * with
-																			 * a
-																			 * '$'
-																			 * in
-																			 * its
-																			 * name
-																			 * here
-																			 * as
-																			 * well
-																			 */) {
-						if (this.fMemberTypeCache == null) {
-							this.fMemberTypeCache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-						}
-						String key = getCacheKey(baseline.getName(), id, getRootName(type.getName()));
-						Cache mcache = (Cache) this.fMemberTypeCache.get(key);
-						if (mcache == null) {
-							mcache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-							this.fMemberTypeCache.put(key, mcache);
-						}
-						mcache.put(type.getName(), type);
+					String name = type.getName();
+					Map<String, CacheEntry> map = null;
+					// cache even a root type with a '$' in its name here as
+					// well
+					if (type.isMemberType() || isMemberType(name)) {
+						map = cache.fMemberTypes.computeIfAbsent(getRootName(name), key -> new ConcurrentHashMap<>());
 					} else {
-						typecache.put(element.getName(), element);
+						map = cache.fTypes;
+					}
+					put(map, name, new CacheEntry(type, type.getEstimatedSize(), fClock.incrementAndGet()));
+					if (!isAttached(baselineid, id, cache, name, map)) {
+						// the component or root type was removed concurrently
+						remove(map, name);
+					}
+					if (fSize.get() > fMaxMemory) {
+						evict();
 					}
 				}
 				break;
@@ -169,6 +254,113 @@ public final class ApiModelCache {
 		}
 	}
 
+	/**
+	 * Returns if the given map is still reachable from the cache
+	 */
+	private boolean isAttached(String baselineid, String componentid, ComponentCache cache, String name, Map<String, CacheEntry> map) {
+		Map<String, ComponentCache> components = fBaselines.get(baselineid);
+		if (components == null || components.get(componentid) != cache) {
+			return false;
+		}
+		return map == cache.fTypes || cache.fMemberTypes.get(getRootName(name)) == map;
+	}
+
+	private void put(Map<String, CacheEntry> map, String key, CacheEntry entry) {
+		CacheEntry old = map.put(key, entry);
+		if (old == null) {
+			fCount.incrementAndGet();
+			fSize.addAndGet(entry.fSize);
+		} else {
+			fSize.addAndGet(entry.fSize - old.fSize);
+		}
+	}
+
+	private boolean remove(Map<String, CacheEntry> map, String key) {
+		CacheEntry entry = map.remove(key);
+		if (entry != null) {
+			fCount.decrementAndGet();
+			fSize.addAndGet(-entry.fSize);
+			return true;
+		}
+		return false;
+	}
+
+	private boolean removeAll(Map<String, CacheEntry> map) {
+		boolean removed = false;
+		for (String key : new ArrayList<>(map.keySet())) {
+			removed |= remove(map, key);
+		}
+		return removed;
+	}
+
+	private boolean removeAll(ComponentCache cache) {
+		boolean removed = removeAll(cache.fTypes);
+		for (Map<String, CacheEntry> members : cache.fMemberTypes.values()) {
+			removed |= removeAll(members);
+		}
+		return removed;
+	}
+
+	private boolean removeBaseline(String baselineid) {
+		Map<String, ComponentCache> components = fBaselines.remove(baselineid);
+		if (components == null) {
+			return false;
+		}
+		for (ComponentCache cache : components.values()) {
+			removeAll(cache);
+		}
+		return true;
+	}
+
+	/**
+	 * Evicts the least recently used types until the cache is back under
+	 * {@link #EVICTION_TARGET} of its bound. Only one thread evicts at a time,
+	 * readers and writers are not blocked.
+	 */
+	private void evict() {
+		synchronized (fEvictionLock) {
+			long max = fMaxMemory;
+			if (fSize.get() <= max) {
+				return;
+			}
+			long start = System.currentTimeMillis();
+			long size = fSize.get();
+			List<EvictionCandidate> candidates = new ArrayList<>(fCount.get());
+			for (Map<String, ComponentCache> components : fBaselines.values()) {
+				for (ComponentCache cache : components.values()) {
+					collectCandidates(cache.fTypes, candidates);
+					for (Map<String, CacheEntry> members : cache.fMemberTypes.values()) {
+						collectCandidates(members, candidates);
+					}
+				}
+			}
+			Collections.sort(candidates);
+			long target = (long) (max * EVICTION_TARGET);
+			int evicted = 0;
+			for (EvictionCandidate candidate : candidates) {
+				if (fSize.get() <= target) {
+					break;
+				}
+				// do not evict an entry that was replaced meanwhile
+				if (candidate.fMap.remove(candidate.fKey, candidate.fEntry)) {
+					fCount.decrementAndGet();
+					fSize.addAndGet(-candidate.fEntry.fSize);
+					evicted++;
+				}
+			}
+			fEvictions.add(evicted);
+			if (ApiPlugin.DEBUG_MODEL_CACHE) {
+				System.out.println("Evicted " + evicted + " types (" + ((size - fSize.get()) / 1024) + "KB) in " + (System.currentTimeMillis() - start) + "ms. " + getStatistics()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			}
+		}
+	}
+
+	private void collectCandidates(Map<String, CacheEntry> map, List<EvictionCandidate> candidates) {
+		for (Entry<String, CacheEntry> entry : map.entrySet()) {
+			candidates.add(new EvictionCandidate(map, entry.getKey(), entry.getValue()));
+		}
+	}
+
 	/**
 	 * Returns the root type name assuming that the '$' char is a member type
 	 * boundary
@@ -194,6 +386,17 @@ public final class ApiModelCache {
 		return typename.indexOf('$') > -1;
 	}
 
+	/**
+	 * Returns the cache of the given component or <code>null</code>
+	 */
+	private ComponentCache getComponentCache(String baselineid, String componentid) {
+		Map<String, ComponentCache> components = fBaselines.get(baselineid);
+		if (components == null) {
+			return null;
+		}
+		return components.get(componentid);
+	}
+
 	/**
 	 * Returns the {@link IApiElement} infos for the element referenced by the
 	 * given identifier and of the given type.
@@ -215,25 +418,28 @@ public final class ApiModelCache {
 		}
 		switch (type) {
 			case IApiElement.TYPE: {
-				if (isMemberType(identifier)) {
-					if (this.fMemberTypeCache != null) {
-						Cache mcache = (Cache) this.fMemberTypeCache.get(getCacheKey(baselineid, componentid, getRootName(identifier)));
-						if (mcache != null) {
-							return (IApiElement) mcache.get(identifier);
-						}
-					}
-				} else {
-					if (this.fRootCache != null) {
-						Cache compcache = (Cache) fRootCache.get(baselineid);
-						if (compcache != null) {
-							Cache typecache = (Cache) compcache.get(componentid);
-							if (typecache != null && identifier != null) {
-								return (IApiElement) typecache.get(identifier);
-							}
+				if (identifier == null) {
+					return null;
+				}
+				CacheEntry entry = null;
+				ComponentCache cache = getComponentCache(baselineid, componentid);
+				if (cache != null) {
+					if (isMemberType(identifier)) {
+						Map<String, CacheEntry> members = cache.fMemberTypes.get(getRootName(identifier));
+						if (members != null) {
+							entry = members.get(identifier);
 						}
+					} else {
+						entry = cache.fTypes.get(identifier);
 					}
 				}
-				break;
+				if (entry == null) {
+					fMisses.increment();
+					return null;
+				}
+				fHits.increment();
+				entry.fLastAccess = fClock.incrementAndGet();
+				return entry.fElement;
 			}
 			default:
 				break;
@@ -258,60 +464,38 @@ public final class ApiModelCache {
 		switch (type) {
 			case IApiElement.TYPE: {
 				if (componentid != null && identifier != null) {
-					boolean removed = true;
-					// clean member type cache
-					if (this.fMemberTypeCache != null) {
-						if (isMemberType(identifier)) {
-							Cache mcache = (Cache) this.fMemberTypeCache.get(getCacheKey(baselineid, componentid, getRootName(identifier)));
-							if (mcache != null) {
-								return mcache.remove(identifier) != null;
-							}
-						} else {
-							this.fMemberTypeCache.remove(getCacheKey(baselineid, componentid, getRootName(identifier)));
-						}
-					}
-					if (fRootCache != null) {
-						Cache compcache = (Cache) fRootCache.get(baselineid);
-						if (compcache != null) {
-							Cache typecache = (Cache) compcache.get(componentid);
-							if (typecache != null) {
-								removed &= typecache.remove(identifier) != null;
-								if (typecache.isEmpty()) {
-									removed &= compcache.remove(componentid) != null;
-								}
-								if (compcache.isEmpty()) {
-									removed &= fRootCache.remove(baselineid) != null;
-								}
-								return removed;
-							}
-
-						}
-					} else {
+					ComponentCache cache = getComponentCache(baselineid, componentid);
+					if (cache == null) {
 						return false;
 					}
+					if (isMemberType(identifier)) {
+						Map<String, CacheEntry> members = cache.fMemberTypes.get(getRootName(identifier));
+						return members != null && remove(members, identifier);
+					}
+					// removing a root type also removes its member types
+					Map<String, CacheEntry> members = cache.fMemberTypes.remove(getRootName(identifier));
+					if (members != null) {
+						removeAll(members);
+					}
+					return remove(cache.fTypes, identifier);
 				}
 				break;
 			}
 			case IApiElement.COMPONENT: {
-				flushMemberCache();
-				if (fRootCache != null && componentid != null) {
-					Cache compcache = (Cache) fRootCache.get(baselineid);
-					if (compcache != null) {
-						boolean removed = compcache.remove(componentid) != null;
-						if (compcache.isEmpty()) {
-							removed &= fRootCache.remove(baselineid) != null;
+				if (componentid != null) {
+					Map<String, ComponentCache> components = fBaselines.get(baselineid);
+					if (components != null) {
+						ComponentCache cache = components.remove(componentid);
+						if (cache != null) {
+							removeAll(cache);
+							return true;
 						}
-						return removed;
 					}
 				}
 				break;
 			}
 			case IApiElement.BASELINE: {
-				flushMemberCache();
-				if (fRootCache != null) {
-					return fRootCache.remove(baselineid) != null;
-				}
-				break;
+				return removeBaseline(baselineid);
 			}
 			default:
 				break;
@@ -336,25 +520,19 @@ public final class ApiModelCache {
 		switch (element.getType()) {
 			case IApiElement.COMPONENT:
 			case IApiElement.TYPE: {
-				if (fRootCache != null) {
-					IApiComponent comp = element.getApiComponent();
-					if (comp != null) {
-						try {
-							IApiBaseline baseline = comp.getBaseline();
-							return removeElementInfo(baseline.getName(), comp.getSymbolicName(), element.getName(), element.getType());
-						} catch (CoreException ce) {
-						}
+				IApiComponent comp = element.getApiComponent();
+				if (comp != null) {
+					try {
+						IApiBaseline baseline = comp.getBaseline();
+						return removeElementInfo(baseline.getName(), comp.getSymbolicName(), element.getName(), element.getType());
+					} catch (CoreException ce) {
 					}
 				}
 				break;
 			}
 			case IApiElement.BASELINE: {
-				flushMemberCache();
-				if (fRootCache != null) {
-					IApiBaseline baseline = (IApiBaseline) element;
-					return fRootCache.remove(baseline.getName()) != null;
-				}
-				break;
+				IApiBaseline baseline = (IApiBaseline) element;
+				return removeBaseline(baseline.getName());
 			}
 			default:
 				break;
@@ -366,18 +544,11 @@ public final class ApiModelCache {
 	 * Clears out all cached information.
 	 */
 	public void flushCaches() {
-		if (fRootCache != null) {
-			fRootCache.flush();
+		for (String baselineid : new ArrayList<>(fBaselines.keySet())) {
+			removeBaseline(baselineid);
 		}
-		flushMemberCache();
-	}
-
-	/**
-	 * Flushes the cache of member types
-	 */
-	private void flushMemberCache() {
-		if (this.fMemberTypeCache != null) {
-			this.fMemberTypeCache.flush();
+		if (ApiPlugin.DEBUG_MODEL_CACHE) {
+			System.out.println("Flushed. " + getStatistics()); //$NON-NLS-1$
 		}
 	}
 
@@ -387,13 +558,6 @@ public final class ApiModelCache {
 	 * @return true if the cache has no entries, false otherwise
 	 */
 	public boolean isEmpty() {
-		boolean empty = true;
-		if (fRootCache != null) {
-			empty &= fRootCache.isEmpty();
-		}
-		if (this.fMemberTypeCache != null) {
-			empty &= this.fMemberTypeCache.isEmpty();
-		}
-		return empty;
+		return fCount.get() == 0;
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2015 IBM Corporation and others.
+ * Copyright (c) 2008, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ import java.io.FilenameFilter;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -108,6 +109,29 @@ public class ApiModelFactory {
 		return null;
 	}
 
+	/**
+	 * Creates and returns a new API component for this baseline at the
+	 * specified location from manifest headers that were read before, for
+	 * example from a persisted baseline snapshot, or <code>null</code> if the
+	 * headers do not describe a valid API component. The manifest is not read
+	 * from the location. The component is not added to the baseline.
+	 *
+	 * @param location absolute path in the local file system to the API
+	 *            component
+	 * @param manifest the manifest headers of the API component
+	 * @return API component or <code>null</code> if the manifest headers do
+	 *         not describe a valid API component
+	 * @exception CoreException if unable to create the component
+	 * @since 1.1.200
+	 */
+	public static IApiComponent newApiComponent(IApiBaseline baseline, String location, Map<String, String> manifest) throws CoreException {
+		BundleComponent component = new BundleComponent(baseline, location, getBundleID(), manifest);
+		if (component.isValidBundle()) {
+			return component;
+		}
+		return null;
+	}
+
 	/**
 	 * Creates and returns a new API component for this baseline based on the
 	 * given model or <code>null</code> if the given model cannot be resolved or
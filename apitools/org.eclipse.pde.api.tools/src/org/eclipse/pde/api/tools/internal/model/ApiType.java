@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2015 IBM Corporation and others.
+ * Copyright (c) 2008, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -43,6 +43,11 @@ import com.ibm.icu.text.MessageFormat;
 
 /**
  * Base implementation of {@link IApiType}
+ * <p>
+ * Types are shared by the threads resolving references, so the members
+ * computed lazily once the structure is built are computed while holding the
+ * type's lock. Each lock is held without locking any other type.
+ * </p>
  *
  * @since 1.0.0
  * @noextend This class is not intended to be sub-classed by clients.
@@ -246,7 +251,7 @@ public class ApiType extends ApiMember implements IApiType {
 	}
 
 	@Override
-	public IApiType[] getSuperInterfaces() throws CoreException {
+	public synchronized IApiType[] getSuperInterfaces() throws CoreException {
 		String[] names = getSuperInterfaceNames();
 		if (names == null) {
 			return EMPTY_TYPES;
@@ -265,7 +270,7 @@ public class ApiType extends ApiMember implements IApiType {
 	}
 
 	@Override
-	public IApiType getSuperclass() throws CoreException {
+	public synchronized IApiType getSuperclass() throws CoreException {
 		String name = getSuperclassName();
 		if (name == null) {
 			return null;
@@ -385,7 +390,7 @@ public class ApiType extends ApiMember implements IApiType {
 	}
 
 	@Override
-	public IApiMethod getEnclosingMethod() {
+	public synchronized IApiMethod getEnclosingMethod() {
 		if (fEnclosingMethod == null) {
 			try {
 				IApiType enclosingType = getEnclosingType();
@@ -430,7 +435,7 @@ public class ApiType extends ApiMember implements IApiType {
 	}
 
 	@Override
-	public IMemberDescriptor getHandle() {
+	public synchronized IMemberDescriptor getHandle() {
 		if (fHandle == null) {
 			fHandle = Util.getType(getName());
 		}
@@ -474,7 +479,7 @@ public class ApiType extends ApiMember implements IApiType {
 	}
 
 	@Override
-	public IApiType getMemberType(String simpleName) throws CoreException {
+	public synchronized IApiType getMemberType(String simpleName) throws CoreException {
 		if (fMemberTypes == null) {
 			return null;
 		}
@@ -501,7 +506,7 @@ public class ApiType extends ApiMember implements IApiType {
 	}
 
 	@Override
-	public IApiType[] getMemberTypes() throws CoreException {
+	public synchronized IApiType[] getMemberTypes() throws CoreException {
 		if (fMemberTypes == null) {
 			return EMPTY_TYPES;
 		}
@@ -577,7 +582,7 @@ public class ApiType extends ApiMember implements IApiType {
 	}
 
 	@Override
-	public IApiType getEnclosingType() throws CoreException {
+	public synchronized IApiType getEnclosingType() throws CoreException {
 		if (fEnclosingType != null) {
 			return fEnclosingType;
 		}
@@ -590,6 +595,34 @@ public class ApiType extends ApiMember implements IApiType {
 		return fEnclosingType;
 	}
 
+	/**
+	 * Returns a rough estimate of the number of bytes retained by this type
+	 * structure, used to bound the memory of the {@link ApiModelCache}
+	 *
+	 * @return the estimated size in bytes
+	 */
+	long getEstimatedSize() {
+		long size = 256 + 2L * length(getName()) + 2L * length(getSignature()) + 2L * length(getGenericSignature());
+		if (fMethods != null) {
+			for (ApiMethod method : fMethods.values()) {
+				size += 160 + 2L * (length(method.getName()) + length(method.getSignature()) + length(method.getGenericSignature()));
+			}
+		}
+		if (fFields != null) {
+			for (ApiField field : fFields.values()) {
+				size += 112 + 2L * (length(field.getName()) + length(field.getSignature()) + length(field.getGenericSignature()));
+			}
+		}
+		if (fMemberTypes != null) {
+			size += 48L * fMemberTypes.size();
+		}
+		return size;
+	}
+
+	private static int length(String string) {
+		return string == null ? 0 : string.length();
+	}
+
 	private String processEnclosingTypeName() {
 		if (isLocal() || isAnonymous()) {
 			int idx = fEnclosingTypeName.lastIndexOf('$');
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2016 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,6 +30,7 @@ import org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisi
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.ArchiveHandlePool;
 import org.eclipse.pde.api.tools.internal.util.Util;
 
 /**
@@ -96,9 +97,10 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 				return fContents;
 			}
 			ArchiveApiTypeContainer archive = (ArchiveApiTypeContainer) getParent();
+			ArchiveHandlePool pool = ArchiveHandlePool.getPool();
 			ZipFile zipFile;
 			try {
-				zipFile = new ZipFile(archive.fLocation);
+				zipFile = pool.acquire(archive.fLocation);
 			} catch (IOException e) {
 				abort("Failed to open archive: " + archive.fLocation, e); //$NON-NLS-1$
 				return null;
@@ -128,11 +130,7 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 					}
 				}
 			} finally {
-				try {
-					zipFile.close();
-				} catch (IOException e) {
-					abort("Failed to close class file archive", e); //$NON-NLS-1$
-				}
+				pool.release(archive.fLocation);
 			}
 			abort("Class file not found: " + getTypeName() + " in archive: " + archive.fLocation, null); //$NON-NLS-1$ //$NON-NLS-2$
 			return null;
@@ -215,6 +213,7 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	 */
 	@Override
 	public synchronized void close() throws CoreException {
+		ArchiveHandlePool.getPool().close(fLocation);
 	}
 
 	/**
@@ -264,9 +263,10 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	private synchronized void init() throws CoreException {
 		if (fPackages == null) {
 			fPackages = new HashMap<>();
+			ArchiveHandlePool pool = ArchiveHandlePool.getPool();
 			ZipFile zipFile;
 			try {
-				zipFile = new ZipFile(fLocation);
+				zipFile = pool.acquire(fLocation);
 			} catch (IOException e) {
 				abort("Failed to open archive: " + fLocation, e); //$NON-NLS-1$
 				return;
@@ -291,11 +291,7 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 					}
 				}
 			} finally {
-				try {
-					zipFile.close();
-				} catch (IOException e) {
-					abort("Failed to close class file archive", e); //$NON-NLS-1$
-				}
+				pool.release(fLocation);
 			}
 		}
 	}
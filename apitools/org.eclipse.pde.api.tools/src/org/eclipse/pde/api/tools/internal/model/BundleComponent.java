@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -69,6 +69,7 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.util.ExtractionCache;
 import org.eclipse.pde.api.tools.internal.util.FileManager;
 import org.eclipse.pde.api.tools.internal.util.SourceDefaultHandler;
 import org.eclipse.pde.api.tools.internal.util.Util;
@@ -170,6 +171,27 @@ public class BundleComponent extends Component {
 				&& !new File(location).isFile();
 	}
 
+	/**
+	 * Constructs a new API component from the specified location in the file
+	 * system in the given baseline, using manifest headers that were read
+	 * before instead of reading them from the location.
+	 *
+	 * @param baseline owning API baseline
+	 * @param location directory or jar file
+	 * @param bundleid
+	 * @param manifest the manifest headers of the bundle at the location
+	 * @exception CoreException if unable to create a component from the
+	 *                specified location
+	 * @since 1.1.200
+	 */
+	public BundleComponent(IApiBaseline baseline, String location, long bundleid, Map<String, String> manifest) throws CoreException {
+		this(baseline, location, bundleid);
+		fManifest = manifest;
+		if (isWorkspaceBinary()) {
+			TargetWeaver.weaveManifest(fManifest);
+		}
+	}
+
 	@Override
 	public void dispose() {
 		try {
@@ -681,6 +703,17 @@ public class BundleComponent extends Component {
 						zip = new ZipFile(fLocation);
 						ZipEntry entry = zip.getEntry(path);
 						if (entry != null) {
+							ExtractionCache cache = ExtractionCache.getCache();
+							if (cache != null) {
+								// extracted entries are kept across baselines
+								// and sessions
+								if (entry.isDirectory()) {
+									return new DirectoryApiTypeContainer(this, cache.getDirectory(bundle, zip, entry.getName()).getCanonicalPath());
+								} else if (Util.isArchive(entry.getName())) {
+									return new ArchiveApiTypeContainer(this, cache.getArchive(bundle, zip, entry).getCanonicalPath());
+								}
+								return null;
+							}
 							File tmpfolder = new File(System.getProperty("java.io.tmpdir")); //$NON-NLS-1$
 							if (entry.isDirectory()) {
 								// extract the dir and all children
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2017 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,6 +30,7 @@ import org.eclipse.core.runtime.Plugin;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.preferences.DefaultScope;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
 import org.eclipse.core.runtime.preferences.IPreferencesService;
 import org.eclipse.core.runtime.preferences.IScopeContext;
 import org.eclipse.core.runtime.preferences.InstanceScope;
@@ -42,7 +43,10 @@ import org.eclipse.pde.api.tools.internal.ApiDescriptionManager;
 import org.eclipse.pde.api.tools.internal.JavadocTagManager;
 import org.eclipse.pde.api.tools.internal.SessionManager;
 import org.eclipse.pde.api.tools.internal.WorkspaceDeltaProcessor;
+import org.eclipse.pde.api.tools.internal.builder.ReferenceResolver;
+import org.eclipse.pde.api.tools.internal.model.ApiModelCache;
 import org.eclipse.pde.api.tools.internal.provisional.problems.IApiProblemTypes;
+import org.eclipse.pde.api.tools.internal.util.ArchiveHandlePool;
 import org.eclipse.pde.api.tools.internal.util.FileManager;
 import org.eclipse.pde.api.tools.internal.util.Util;
 import org.eclipse.pde.core.target.NameVersionDescriptor;
@@ -157,6 +161,27 @@ public class ApiPlugin extends Plugin implements ISaveParticipant, DebugOptionsL
 	 * </p>
 	 */
 	public static final String KNOWN_EE_FRAGMENTS = "knownEEFragments"; //$NON-NLS-1$
+	/**
+	 * Preference ID for the maximum memory, in megabytes, that the cache of
+	 * type structures shared by all baselines may use.
+	 * <p>
+	 * Value is: <code>modelCacheSize</code>
+	 * </p>
+	 *
+	 * @since 1.1.200
+	 */
+	public static final String MODEL_CACHE_SIZE = "modelCacheSize"; //$NON-NLS-1$
+	/**
+	 * Preference ID for the number of threads used to resolve large sets of
+	 * references. The default of <code>1</code> resolves references in the
+	 * calling thread.
+	 * <p>
+	 * Value is: <code>referenceResolverThreads</code>
+	 * </p>
+	 *
+	 * @since 1.1.200
+	 */
+	public static final String REFERENCE_RESOLVER_THREADS = "referenceResolverThreads"; //$NON-NLS-1$
 	/**
 	 * Singleton instance of the plugin
 	 */
@@ -174,6 +199,16 @@ public class ApiPlugin extends Plugin implements ISaveParticipant, DebugOptionsL
 	 */
 	private BundleContext fBundleContext = null;
 
+	/**
+	 * Applies changes of the model cache size preference
+	 */
+	private final IPreferenceChangeListener fPreferenceListener = event -> {
+		if (MODEL_CACHE_SIZE.equals(event.getKey())) {
+			int size = Platform.getPreferencesService().getInt(PLUGIN_ID, MODEL_CACHE_SIZE, ApiModelCache.DEFAULT_MAX_MEMORY, null);
+			ApiModelCache.getCache().setMaxMemory(size);
+		}
+	};
+
 	private static boolean DEBUG = false;
 
 	/**
@@ -196,6 +231,9 @@ public class ApiPlugin extends Plugin implements ISaveParticipant, DebugOptionsL
 	private static final String WORKSPACE_DELTA_PROCESSOR = PLUGIN_ID + "/debug/workspacedeltaprocessor"; //$NON-NLS-1$
 	private static final String API_ANALYZER_DEBUG = PLUGIN_ID + "/debug/apianalyzer"; //$NON-NLS-1$
 	private static final String USE_REPORT_CONVERTER_DEBUG = PLUGIN_ID + "/debug/usereportconverter"; //$NON-NLS-1$
+	private static final String ARCHIVE_POOL_DEBUG = PLUGIN_ID + "/debug/archivepool"; //$NON-NLS-1$
+	private static final String MODEL_CACHE_DEBUG = PLUGIN_ID + "/debug/modelcache"; //$NON-NLS-1$
+	private static final String EXTRACTION_CACHE_DEBUG = PLUGIN_ID + "/debug/extractioncache"; //$NON-NLS-1$
 
 	/**
 	 * Constant used for controlling tracing in the report converter
@@ -265,6 +303,19 @@ public class ApiPlugin extends Plugin implements ISaveParticipant, DebugOptionsL
 	 * Constant used for controlling tracing in the API tool builder
 	 */
 	public static boolean DEBUG_BUILDER = false;
+	/**
+	 * Constant used for controlling tracing in the archive handle pool
+	 */
+	public static boolean DEBUG_ARCHIVE_POOL = false;
+	/**
+	 * Constant used for controlling tracing in the API model cache
+	 */
+	public static boolean DEBUG_MODEL_CACHE = false;
+	/**
+	 * Constant used for controlling tracing in the cache of nested archives
+	 * extracted from bundles
+	 */
+	public static boolean DEBUG_EXTRACTION_CACHE = false;
 
 	public static String[] AllCompatibilityKeys = new String[] {
 			IApiProblemTypes.API_COMPONENT_REMOVED_TYPE,
@@ -576,6 +627,7 @@ public class ApiPlugin extends Plugin implements ISaveParticipant, DebugOptionsL
 			JavaCore.addElementChangedListener(deltaProcessor, ElementChangedEvent.POST_CHANGE);
 			ResourcesPlugin.getWorkspace().addResourceChangeListener(deltaProcessor, IResourceChangeEvent.PRE_DELETE | IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_BUILD);
 			checkForEEDescriptionChanges();
+			InstanceScope.INSTANCE.getNode(PLUGIN_ID).addPreferenceChangeListener(fPreferenceListener);
 		}
 	}
 
@@ -683,10 +735,13 @@ public class ApiPlugin extends Plugin implements ISaveParticipant, DebugOptionsL
 	@Override
 	public void stop(BundleContext context) throws Exception {
 		try {
+			InstanceScope.INSTANCE.getNode(PLUGIN_ID).removePreferenceChangeListener(fPreferenceListener);
 			ApiDescriptionManager.shutdown();
 			ApiBaselineManager.getManager().stop();
 			ResourcesPlugin.getWorkspace().removeSaveParticipant(PLUGIN_ID);
 			FileManager.getManager().deleteFiles();
+			ArchiveHandlePool.getPool().closeAll();
+			ReferenceResolver.shutdown();
 			fBundleContext = null;
 			if (deltaProcessor != null) {
 				JavaCore.removeElementChangedListener(deltaProcessor);
@@ -846,5 +901,8 @@ public class ApiPlugin extends Plugin implements ISaveParticipant, DebugOptionsL
 		DEBUG_WORKSPACE_DELTA_PROCESSOR = DEBUG && options.getBooleanOption(WORKSPACE_DELTA_PROCESSOR, false);
 		DEBUG_API_ANALYZER = DEBUG && options.getBooleanOption(API_ANALYZER_DEBUG, false);
 		DEBUG_USE_REPORT_CONVERTER = DEBUG && options.getBooleanOption(USE_REPORT_CONVERTER_DEBUG, false);
+		DEBUG_ARCHIVE_POOL = DEBUG && options.getBooleanOption(ARCHIVE_POOL_DEBUG, false);
+		DEBUG_MODEL_CACHE = DEBUG && options.getBooleanOption(MODEL_CACHE_DEBUG, false);
+		DEBUG_EXTRACTION_CACHE = DEBUG && options.getBooleanOption(EXTRACTION_CACHE_DEBUG, false);
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,15 +10,21 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.provisional.comparator;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.core.Flags;
+import org.eclipse.pde.api.tools.internal.ApiBaselineManager;
 import org.eclipse.pde.api.tools.internal.comparator.ClassFileComparator;
+import org.eclipse.pde.api.tools.internal.comparator.ComponentFingerprintCache;
 import org.eclipse.pde.api.tools.internal.comparator.Delta;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.IApiAnnotations;
@@ -100,6 +106,35 @@ public class ApiComparator {
 	 * @throws IllegalArgumentException if one of the two baselines is null
 	 */
 	public static IDelta compare(final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final IProgressMonitor monitor) {
+		return compare(referenceBaseline, baseline, visibilityModifiers, force, 1, monitor);
+	}
+
+	/**
+	 * Returns a delta that corresponds to the difference between the given
+	 * baseline and the reference. When <code>parallelism</code> is greater
+	 * than one, the API components of the two baselines are compared
+	 * concurrently using that many worker threads. The resulting delta is the
+	 * same as the one computed by the serial comparison: child deltas are
+	 * merged in the order of the reference baseline components.
+	 *
+	 * @param referenceBaseline the given API baseline which is used as the
+	 *            reference
+	 * @param baseline the given API baseline to compare with
+	 * @param visibilityModifiers the given visibility that triggers what
+	 *            visibility should be used for the comparison
+	 * @param force a flag to force the comparison of nested API components with
+	 *            the same versions
+	 * @param parallelism the number of components to compare concurrently, a
+	 *            value lower or equal to one means the components are compared
+	 *            one after the other
+	 * @param monitor
+	 *
+	 * @return a delta, an empty delta if no difference is found or null if the
+	 *         delta detection failed
+	 * @throws IllegalArgumentException if one of the two baselines is null
+	 * @since 1.1.200
+	 */
+	public static IDelta compare(final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final int parallelism, final IProgressMonitor monitor) {
 		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
 		try {
 			if (referenceBaseline == null || baseline == null) {
@@ -110,37 +145,41 @@ public class ApiComparator {
 			Set<String> apiComponentsIds = new HashSet<>();
 			final Delta globalDelta = new Delta();
 			SubMonitor apiLoopMonitor = localmonitor.split(1).setWorkRemaining(apiComponents.length);
-			for (IApiComponent apiComponentMainLoop : apiComponents) {
-				apiLoopMonitor.split(1);
-				IApiComponent apiComponent = apiComponentMainLoop;
-				if (!apiComponent.isSystemComponent()) {
-					String id = apiComponent.getSymbolicName();
-					IApiComponent apiComponentBaseline = baseline.getApiComponent(id);
-					IDelta delta = null;
-					if (apiComponentBaseline == null) {
-						// report removal of an API component
-						delta = new Delta(null, IDelta.API_BASELINE_ELEMENT_TYPE, IDelta.REMOVED, IDelta.API_COMPONENT, null, id, id);
-					} else {
-						apiComponentsIds.add(id);
-						String versionString = apiComponent.getVersion();
-						String versionString2 = apiComponentBaseline.getVersion();
-						IDelta bundleVersionChangesDelta = checkBundleVersionChanges(apiComponentBaseline, id, versionString, versionString2);
-						if (bundleVersionChangesDelta != null) {
-							globalDelta.add(bundleVersionChangesDelta);
-						}
-						if (!versionString.equals(versionString2) || force) {
-							long time = System.currentTimeMillis();
-							try {
-								delta = compare(apiComponent, apiComponentBaseline, referenceBaseline, baseline, visibilityModifiers, localmonitor.split(1));
-							} finally {
-								if (ApiPlugin.DEBUG_API_COMPARATOR) {
-									System.out.println("Time spent for " + id + " " + versionString + " : " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			if (parallelism > 1) {
+				compareComponents(apiComponents, referenceBaseline, baseline, visibilityModifiers, force, parallelism, apiComponentsIds, globalDelta, apiLoopMonitor);
+			} else {
+				for (IApiComponent apiComponentMainLoop : apiComponents) {
+					apiLoopMonitor.split(1);
+					IApiComponent apiComponent = apiComponentMainLoop;
+					if (!apiComponent.isSystemComponent()) {
+						String id = apiComponent.getSymbolicName();
+						IApiComponent apiComponentBaseline = baseline.getApiComponent(id);
+						IDelta delta = null;
+						if (apiComponentBaseline == null) {
+							// report removal of an API component
+							delta = new Delta(null, IDelta.API_BASELINE_ELEMENT_TYPE, IDelta.REMOVED, IDelta.API_COMPONENT, null, id, id);
+						} else {
+							apiComponentsIds.add(id);
+							String versionString = apiComponent.getVersion();
+							String versionString2 = apiComponentBaseline.getVersion();
+							IDelta bundleVersionChangesDelta = checkBundleVersionChanges(apiComponentBaseline, id, versionString, versionString2);
+							if (bundleVersionChangesDelta != null) {
+								globalDelta.add(bundleVersionChangesDelta);
+							}
+							if (!versionString.equals(versionString2) || force) {
+								long time = System.currentTimeMillis();
+								try {
+									delta = compare(apiComponent, apiComponentBaseline, referenceBaseline, baseline, visibilityModifiers, localmonitor.split(1));
+								} finally {
+									if (ApiPlugin.DEBUG_API_COMPARATOR) {
+										System.out.println("Time spent for " + id + " " + versionString + " : " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+									}
 								}
 							}
 						}
-					}
-					if (delta != null && delta != NO_DELTA) {
-						globalDelta.add(delta);
+						if (delta != null && delta != NO_DELTA) {
+							globalDelta.add(delta);
+						}
 					}
 				}
 			}
@@ -162,6 +201,86 @@ public class ApiComparator {
 		}
 	}
 
+	/**
+	 * Compares the given reference components with their counterpart in the
+	 * given baseline using a pool of <code>parallelism</code> worker threads.
+	 * Child deltas are added to <code>globalDelta</code> in the order of the
+	 * reference components, so the result does not depend on the order in
+	 * which the workers complete.
+	 *
+	 * @param apiComponents the components of the reference baseline
+	 * @param referenceBaseline the reference baseline
+	 * @param baseline the baseline to compare with
+	 * @param visibilityModifiers the visibility used for the comparison
+	 * @param force a flag to force the comparison of components with the same
+	 *            versions
+	 * @param parallelism the number of worker threads
+	 * @param apiComponentsIds collects the ids of the components found in both
+	 *            baselines
+	 * @param globalDelta the delta to add the component deltas to
+	 * @param monitor the progress monitor, one unit of work per component
+	 */
+	private static void compareComponents(final IApiComponent[] apiComponents, final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final int parallelism, final Set<String> apiComponentsIds, final Delta globalDelta, final SubMonitor monitor) {
+		// version deltas and removals are computed up front, only the
+		// component comparisons are run concurrently
+		final IDelta[] versionDeltas = new IDelta[apiComponents.length];
+		final IDelta[] deltas = new IDelta[apiComponents.length];
+		final List<ForkJoinTask<IDelta>> tasks = new ArrayList<>(apiComponents.length);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (int i = 0; i < apiComponents.length; i++) {
+				final IApiComponent apiComponent = apiComponents[i];
+				ForkJoinTask<IDelta> task = null;
+				if (!apiComponent.isSystemComponent()) {
+					final String id = apiComponent.getSymbolicName();
+					final IApiComponent apiComponentBaseline = baseline.getApiComponent(id);
+					if (apiComponentBaseline == null) {
+						// report removal of an API component
+						deltas[i] = new Delta(null, IDelta.API_BASELINE_ELEMENT_TYPE, IDelta.REMOVED, IDelta.API_COMPONENT, null, id, id);
+					} else {
+						apiComponentsIds.add(id);
+						final String versionString = apiComponent.getVersion();
+						String versionString2 = apiComponentBaseline.getVersion();
+						versionDeltas[i] = checkBundleVersionChanges(apiComponentBaseline, id, versionString, versionString2);
+						if (!versionString.equals(versionString2) || force) {
+							task = pool.submit(() -> {
+								if (monitor.isCanceled()) {
+									return null;
+								}
+								long time = System.currentTimeMillis();
+								try {
+									return compare(apiComponent, apiComponentBaseline, referenceBaseline, baseline, visibilityModifiers, null);
+								} finally {
+									if (ApiPlugin.DEBUG_API_COMPARATOR) {
+										System.out.println("Time spent for " + id + " " + versionString + " : " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+									}
+								}
+							});
+						}
+					}
+				}
+				tasks.add(task);
+			}
+			for (int i = 0; i < apiComponents.length; i++) {
+				monitor.split(1);
+				ForkJoinTask<IDelta> task = tasks.get(i);
+				if (task != null) {
+					deltas[i] = task.join();
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		for (int i = 0; i < apiComponents.length; i++) {
+			if (versionDeltas[i] != null) {
+				globalDelta.add(versionDeltas[i]);
+			}
+			if (deltas[i] != null && deltas[i] != NO_DELTA) {
+				globalDelta.add(deltas[i]);
+			}
+		}
+	}
+
 	/**
 	 * Returns a delta that corresponds to the difference between the given
 	 * component and the reference baseline.
@@ -262,6 +381,13 @@ public class ApiComparator {
 				throw new IllegalArgumentException("The baselines cannot be null"); //$NON-NLS-1$
 			}
 			String referenceComponentId = referenceComponent.getSymbolicName();
+			ComponentFingerprintCache.Comparison fingerprints = compareFingerprints(referenceComponent, component2);
+			if (fingerprints != null && fingerprints.isIdentical()) {
+				if (ApiPlugin.DEBUG_API_COMPARATOR) {
+					System.out.println("Skipped unchanged component " + referenceComponentId); //$NON-NLS-1$
+				}
+				return NO_DELTA;
+			}
 			final Delta globalDelta = new Delta();
 
 			// check the EE first
@@ -283,13 +409,30 @@ public class ApiComparator {
 						currentEE,
 						Util.getComponentVersionsId(referenceComponent) }));
 			}
-			return internalCompare(referenceComponent, component2, referenceBaseline, baseline, visibilityModifiers, globalDelta, localmonitor.split(1));
+			return internalCompare(referenceComponent, component2, referenceBaseline, baseline, visibilityModifiers, fingerprints, globalDelta, localmonitor.split(1));
 		} catch (CoreException e) {
 			// null means an error case
 			return null;
 		}
 	}
 
+	/**
+	 * Compares the content fingerprints of the given components.
+	 * <code>org.eclipse.swt</code> is never fingerprinted since its types are
+	 * compared across all of its fragments.
+	 *
+	 * @param referenceComponent the reference component
+	 * @param component the component to compare with
+	 * @return the comparison of the fingerprints or <code>null</code> if they
+	 *         are not available
+	 */
+	private static ComponentFingerprintCache.Comparison compareFingerprints(final IApiComponent referenceComponent, final IApiComponent component) {
+		if (Util.ORG_ECLIPSE_SWT.equals(referenceComponent.getSymbolicName())) {
+			return null;
+		}
+		return ApiBaselineManager.getManager().getFingerprintCache().compare(referenceComponent, component);
+	}
+
 	/**
 	 * Returns a delta that corresponds to the difference between the given
 	 * component and the given reference component. The given component cannot
@@ -541,6 +684,38 @@ public class ApiComparator {
 	 *             visited
 	 */
 	public static IDelta compare(final IApiScope scope, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final boolean continueOnResolverError, final IProgressMonitor monitor) throws CoreException {
+		return compare(scope, baseline, visibilityModifiers, force, continueOnResolverError, 1, monitor);
+	}
+
+	/**
+	 * Returns a delta that corresponds to the comparison of the given scope
+	 * with the given baseline. When <code>parallelism</code> is greater than
+	 * one, the API components of the scope are compared concurrently using that
+	 * many worker threads. The resulting delta is the same as the one computed
+	 * by the serial comparison.
+	 *
+	 * @param scope the given scope for the comparison
+	 * @param baseline the given API baseline to compare with
+	 * @param visibilityModifiers the given visibility that triggers what
+	 *            visibility should be used for the comparison
+	 * @param force a flag to force the comparison of nested API components with
+	 *            the same versions
+	 * @param continueOnResolverError if <code>true</code> the comparison will
+	 *            continue even if a component in the scope has a resolver error
+	 * @param parallelism the number of components to compare concurrently, a
+	 *            value lower or equal to one means the components are compared
+	 *            one after the other
+	 * @param monitor the given progress monitor to report progress
+	 *
+	 * @return a delta, an empty delta if no difference is found or null if the
+	 *         delta detection failed. If set to continue on resolver error a
+	 *         delta, possibly empty, will always be returned
+	 * @throws IllegalArgumentException if one of the two baselines is null
+	 *             CoreException if one of the element in the scope cannot be
+	 *             visited
+	 * @since 1.1.200
+	 */
+	public static IDelta compare(final IApiScope scope, final IApiBaseline baseline, final int visibilityModifiers, final boolean force, final boolean continueOnResolverError, final int parallelism, final IProgressMonitor monitor) throws CoreException {
 
 		if (scope == null || baseline == null) {
 			throw new IllegalArgumentException("None of the scope or the baseline must be null"); //$NON-NLS-1$
@@ -548,8 +723,9 @@ public class ApiComparator {
 		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
 		try {
 			final Set<IDelta> deltas = new HashSet<>();
-			final CompareApiScopeVisitor visitor = new CompareApiScopeVisitor(deltas, baseline, force, visibilityModifiers, continueOnResolverError, localmonitor.split(1));
+			final CompareApiScopeVisitor visitor = new CompareApiScopeVisitor(deltas, baseline, force, visibilityModifiers, continueOnResolverError, parallelism, localmonitor.split(1));
 			scope.accept(visitor);
+			visitor.compareDeferredComponents();
 
 			// If set to continue on error, return whatever deltas were
 			// collected
@@ -626,13 +802,15 @@ public class ApiComparator {
 	 * @param referenceBaseline
 	 * @param baseline
 	 * @param visibilityModifiers
+	 * @param fingerprints the comparison of the component fingerprints, or
+	 *            <code>null</code> if they are not available
 	 * @param globalDelta
 	 * @param monitor
 	 *
 	 * @return a delta of changed API elements
 	 * @throws CoreException
 	 */
-	private static IDelta internalCompare(final IApiComponent component, final IApiComponent component2, final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final Delta globalDelta, final IProgressMonitor monitor) throws CoreException {
+	private static IDelta internalCompare(final IApiComponent component, final IApiComponent component2, final IApiBaseline referenceBaseline, final IApiBaseline baseline, final int visibilityModifiers, final ComponentFingerprintCache.Comparison fingerprints, final Delta globalDelta, final IProgressMonitor monitor) throws CoreException {
 		final Set<String> typeRootBaseLineNames = new HashSet<>();
 		final String id = component.getSymbolicName();
 		IApiTypeContainer[] typeRootContainers = null;
@@ -767,6 +945,10 @@ public class ApiComparator {
 												Util.getComponentVersionsId(component2) }));
 									}
 									typeRootBaseLineNames.add(typeName);
+									if (provider == component2 && fingerprints != null && fingerprints.isIdentical(typeName)) {
+										// same class files and same super types
+										return;
+									}
 									ClassFileComparator comparator = new ClassFileComparator(typeDescriptor, typeRoot2, component, provider, referenceBaseline, baseline, visibilityModifiers);
 									IDelta delta = comparator.getDelta(visitMonitor.split(1));
 									if (ApiPlugin.DEBUG_API_COMPARATOR) {
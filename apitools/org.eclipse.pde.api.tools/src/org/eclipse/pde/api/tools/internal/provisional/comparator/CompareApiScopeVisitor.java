@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,7 +10,11 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.provisional.comparator;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.SubMonitor;
@@ -36,20 +40,48 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 	boolean continueOnResolverError = false;
 	boolean containsErrors = false;
 	SubMonitor monitor;
+	int parallelism = 1;
+
+	/**
+	 * Pairs of reference and current components whose comparison is deferred
+	 * to {@link #compareDeferredComponents()} when running in parallel
+	 */
+	List<IApiComponent[]> deferredComponents = new ArrayList<>();
 
 	public CompareApiScopeVisitor(final Set<IDelta> deltas, final IApiBaseline baseline, final boolean force, final int visibilityModifiers, final boolean continueOnResolverError, final SubMonitor monitor) {
+		this(deltas, baseline, force, visibilityModifiers, continueOnResolverError, 1, monitor);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param deltas the set to collect the leaf deltas into
+	 * @param baseline the reference baseline
+	 * @param force a flag to force the comparison of nested API components with
+	 *            the same versions
+	 * @param visibilityModifiers the visibility used for the comparison
+	 * @param continueOnResolverError if <code>true</code> the comparison
+	 *            continues even if a component has a resolver error
+	 * @param parallelism the number of components to compare concurrently. When
+	 *            greater than one, component comparisons are deferred until
+	 *            {@link #compareDeferredComponents()} is called
+	 * @param monitor the progress monitor
+	 * @since 1.1.200
+	 */
+	public CompareApiScopeVisitor(final Set<IDelta> deltas, final IApiBaseline baseline, final boolean force, final int visibilityModifiers, final boolean continueOnResolverError, final int parallelism, final SubMonitor monitor) {
 		this.deltas = deltas;
 		this.referenceBaseline = baseline;
 		this.visibilityModifiers = visibilityModifiers;
 		this.force = force;
 		this.continueOnResolverError = continueOnResolverError;
+		this.parallelism = parallelism;
 		this.monitor = monitor;
 	}
 
 	@Override
 	public boolean visit(IApiBaseline baseline) throws CoreException {
 		this.monitor.setWorkRemaining(100).split(1);
-		IDelta delta = ApiComparator.compare(this.referenceBaseline, baseline, this.visibilityModifiers, this.force, null);
+		IDelta delta = ApiComparator.compare(this.referenceBaseline, baseline, this.visibilityModifiers, this.force, this.parallelism, null);
 		if (delta != null) {
 			delta.accept(new DeltaVisitor() {
 				@Override
@@ -104,6 +136,52 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 		}
 
 		subMonitor.split(50);
+		if (this.parallelism > 1) {
+			this.deferredComponents.add(new IApiComponent[] {
+					referenceComponent, component });
+			return false;
+		}
+		addLeafDeltas(compareComponent(referenceComponent, component));
+		return false;
+	}
+
+	/**
+	 * Compares the components collected while visiting the scope, using
+	 * {@link #parallelism} worker threads. Leaf deltas are collected in the
+	 * order in which the components were visited. Does nothing if the visitor
+	 * is not running in parallel.
+	 */
+	public void compareDeferredComponents() {
+		if (this.deferredComponents.isEmpty()) {
+			return;
+		}
+		final List<IApiComponent[]> components = this.deferredComponents;
+		this.deferredComponents = new ArrayList<>();
+		List<ForkJoinTask<IDelta>> tasks = new ArrayList<>(components.size());
+		ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		try {
+			for (final IApiComponent[] pair : components) {
+				tasks.add(pool.submit(() -> compareComponent(pair[0], pair[1])));
+			}
+			for (ForkJoinTask<IDelta> task : tasks) {
+				this.monitor.setWorkRemaining(100).split(1);
+				addLeafDeltas(task.join());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Compares the given component with its reference, including the bundle
+	 * version changes.
+	 *
+	 * @param referenceComponent the reference component or <code>null</code>
+	 *            if the component was added
+	 * @param component the component to compare
+	 * @return the delta of the comparison
+	 */
+	IDelta compareComponent(IApiComponent referenceComponent, IApiComponent component) {
 		final Delta globalDelta = new Delta();
 		globalDelta.add(ApiComparator.compare(referenceComponent, component, this.visibilityModifiers, null));
 		if (referenceComponent != null) {
@@ -114,7 +192,16 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 				globalDelta.add(bundleVersionChangesDelta);
 			}
 		}
-		globalDelta.accept(new DeltaVisitor() {
+		return globalDelta;
+	}
+
+	/**
+	 * Adds the leaf deltas of the given delta to the collected deltas
+	 *
+	 * @param delta the delta to collect
+	 */
+	void addLeafDeltas(IDelta delta) {
+		delta.accept(new DeltaVisitor() {
 			@Override
 			public void endVisit(IDelta localDelta) {
 				if (localDelta.getChildren().length == 0) {
@@ -122,7 +209,6 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 				}
 			}
 		});
-		return false;
 	}
 
 	@Override
@@ -0,0 +1,697 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.Factory;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IFieldDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMemberDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMethodDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IReferenceTypeDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.util.Util;
+
+/**
+ * Persistent index of the references made to a component in an API use scan
+ * (XML directory). The references are grouped by referenced root type and
+ * written in a binary file of the API tools state location, that is memory
+ * mapped to look up the references to given types without parsing the XML
+ * reports.
+ * <p>
+ * An index covers the reports of one referenced component of one scan, so
+ * it is built the first time the references to the component are asked for
+ * and only rebuilt when the XML reports of that component change.
+ * </p>
+ * <p>
+ * A mapped file cannot be replaced or deleted on some platforms until it is
+ * unmapped, so the mapping of an index is released explicitly before its file
+ * is rebuilt. Index files of scans that do not exist anymore are deleted the
+ * first time an index is used and when the loaded indexes are cleared.
+ * </p>
+ *
+ * @since 1.1.200
+ */
+public class UseScanIndex {
+
+	/**
+	 * Header of the index files
+	 */
+	private static final int MAGIC = 0x50445553; // PDUS
+
+	/**
+	 * Version of the index file format, to increment when the layout changes
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Magic, version, stamp of the reports, type count and string count
+	 */
+	private static final int HEADER_SIZE = 4 + 4 + 3 * 8 + 4 + 4;
+
+	/**
+	 * Type name string and offset of the references to the type
+	 */
+	private static final int TYPE_ENTRY_SIZE = 8;
+
+	/**
+	 * Sixteen ints, see {@link #writeReference(DataOutputStream, IReferenceDescriptor, Map)}
+	 */
+	private static final int REFERENCE_SIZE = 16 * 4;
+
+	private static final int NO_STRING = -1;
+
+	/**
+	 * Name of the directory holding the index files in the state location
+	 */
+	private static final String INDEX_DIRECTORY = ".usescan_index"; //$NON-NLS-1$
+
+	/**
+	 * Loaded indexes, keyed by scan location and component id
+	 */
+	private static final Map<String, UseScanIndex> fgIndexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Whether the index files of removed scans were deleted in this session
+	 */
+	private static volatile boolean fgOrphansDeleted = false;
+
+	/**
+	 * Number, total size and last modification time of the XML reports of the
+	 * component, the index is rebuilt when they change
+	 */
+	static class Stamp {
+		long fCount;
+		long fLength;
+		long fLastModified;
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof Stamp) {
+				Stamp stamp = (Stamp) obj;
+				return fCount == stamp.fCount && fLength == stamp.fLength && fLastModified == stamp.fLastModified;
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (fCount ^ fLength ^ fLastModified);
+		}
+	}
+
+	private final String fLocation;
+	private final String fComponentId;
+	private Stamp fStamp;
+	private ByteBuffer fBuffer;
+	private Map<String, Integer> fTypeOffsets;
+	private int fStringTable;
+	private String[] fStrings;
+
+	private UseScanIndex(String location, String componentId) {
+		fLocation = location;
+		fComponentId = componentId;
+	}
+
+	/**
+	 * Adds the references made to the given component in the given use scan to
+	 * the collection, reading them from the index of the scan. The index is
+	 * built or rebuilt if the reports of the component changed.
+	 *
+	 * @param xmlLocation root of the API use scan (XML directory)
+	 * @param component the referenced component
+	 * @param types the referenced root types to add the references to, or
+	 *            <code>null</code> for all the references
+	 * @param references the collection to add the references to
+	 * @param monitor progress monitor
+	 * @return <code>false</code> if the scan cannot be indexed or its index
+	 *         is corrupted, in which case no references were added
+	 * @throws Exception if the scan cannot be parsed
+	 */
+	public static boolean addReferences(String xmlLocation, IApiComponent component, String[] types, IReferenceCollection references, IProgressMonitor monitor) throws Exception {
+		if (ApiPlugin.getDefault() == null) {
+			return false;
+		}
+		if (!fgOrphansDeleted) {
+			deleteOrphans();
+		}
+		String id = component.getSymbolicName();
+		UseScanIndex index = fgIndexes.computeIfAbsent(xmlLocation + '|' + id, key -> new UseScanIndex(xmlLocation, id));
+		return index.add(component, types, references, monitor);
+	}
+
+	/**
+	 * Unmaps the loaded indexes. The index files are kept, except the ones of
+	 * scans that do not exist anymore.
+	 */
+	public static void clear() {
+		for (UseScanIndex index : fgIndexes.values()) {
+			index.dispose();
+		}
+		fgIndexes.clear();
+		deleteOrphans();
+	}
+
+	/**
+	 * Deletes the index files whose scan location does not exist anymore,
+	 * unreadable index files and temporary files left by an interrupted write.
+	 * Index files of loaded indexes are kept.
+	 */
+	public static synchronized void deleteOrphans() {
+		fgOrphansDeleted = true;
+		ApiPlugin plugin = ApiPlugin.getDefault();
+		if (plugin == null) {
+			return;
+		}
+		File[] files = plugin.getStateLocation().append(INDEX_DIRECTORY).toFile().listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.getName().endsWith(".index")) { //$NON-NLS-1$
+				String location = readLocation(file);
+				if ((location != null && new File(location).isDirectory()) || isLoaded(file)) {
+					continue;
+				}
+			} else if (!file.getName().endsWith(".tmp") || isLoaded(file)) { //$NON-NLS-1$
+				continue;
+			}
+			// retried the next time if the file is in use
+			file.delete();
+		}
+	}
+
+	/**
+	 * @return whether the given index file, or the index file the given
+	 *         temporary file is written to, belongs to a loaded index
+	 */
+	private static boolean isLoaded(File file) {
+		String path = file.getPath();
+		if (path.endsWith(".tmp")) { //$NON-NLS-1$
+			path = path.substring(0, path.length() - 4);
+		}
+		for (UseScanIndex index : fgIndexes.values()) {
+			File indexFile = index.getIndexFile();
+			if (indexFile != null && indexFile.getPath().equals(path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the scan location of an index file without mapping it
+	 *
+	 * @return the scan location or <code>null</code> if the file is not an
+	 *         index of the current format
+	 */
+	private static String readLocation(File file) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = read(channel, 0, HEADER_SIZE);
+			if (header == null || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION || header.getInt(36) < 1) {
+				return null;
+			}
+			// the location is the first string of the table
+			ByteBuffer offset = read(channel, HEADER_SIZE + (long) header.getInt(32) * TYPE_ENTRY_SIZE, 4);
+			if (offset == null) {
+				return null;
+			}
+			ByteBuffer length = read(channel, offset.getInt(0), 4);
+			if (length == null || length.getInt(0) < 0 || length.getInt(0) > channel.size()) {
+				return null;
+			}
+			ByteBuffer location = read(channel, offset.getInt(0) + 4L, length.getInt(0));
+			return location == null ? null : new String(location.array(), StandardCharsets.UTF_8);
+		} catch (IOException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the bytes of the file in the given range, or <code>null</code>
+	 *         if the file ends before the range does
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				return null;
+			}
+		}
+		return buffer;
+	}
+
+	private synchronized void dispose() {
+		unmap();
+	}
+
+	private synchronized boolean add(IApiComponent component, String[] types, IReferenceCollection references, IProgressMonitor monitor) throws Exception {
+		File file = getIndexFile();
+		if (file == null) {
+			return false;
+		}
+		Stamp stamp = computeStamp();
+		if (!stamp.equals(fStamp) || fBuffer == null) {
+			unmap();
+			if (!load(file, stamp)) {
+				Map<String, List<IReferenceDescriptor>> collected = build(component, file, stamp, monitor);
+				if (!load(file, stamp)) {
+					// the index could not be written, the reports were parsed
+					// already
+					addReferences(collected, types, references);
+					return true;
+				}
+			}
+		}
+		// the references are only added once the whole index was read
+		Map<String, List<IReferenceDescriptor>> read = new LinkedHashMap<>();
+		try {
+			if (types == null) {
+				for (Entry<String, Integer> entry : fTypeOffsets.entrySet()) {
+					read.put(entry.getKey(), readReferences(entry.getValue().intValue()));
+				}
+			} else {
+				for (String type : types) {
+					Integer offset = fTypeOffsets.get(type);
+					if (offset != null) {
+						read.put(type, readReferences(offset.intValue()));
+					}
+				}
+			}
+		} catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+			// corrupted index, the reports are parsed instead and the index
+			// is rebuilt the next time
+			ApiPlugin.log(e);
+			unmap();
+			file.delete();
+			return false;
+		}
+		addReferences(read, types, references);
+		return true;
+	}
+
+	/**
+	 * Adds the given references to the given types to the collection
+	 *
+	 * @param referencesMap references keyed by referenced root type
+	 * @param types the types to add the references to, or <code>null</code>
+	 *            for all the references
+	 * @param references the collection to add the references to
+	 */
+	private static void addReferences(Map<String, List<IReferenceDescriptor>> referencesMap, String[] types, IReferenceCollection references) {
+		if (types == null) {
+			for (Entry<String, List<IReferenceDescriptor>> entry : referencesMap.entrySet()) {
+				for (IReferenceDescriptor reference : entry.getValue()) {
+					references.add(entry.getKey(), reference);
+				}
+			}
+			return;
+		}
+		for (String type : types) {
+			List<IReferenceDescriptor> list = referencesMap.get(type);
+			if (list != null) {
+				for (IReferenceDescriptor reference : list) {
+					references.add(type, reference);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the file this index is persisted to or <code>null</code> if
+	 *         API tools is not running
+	 */
+	private File getIndexFile() {
+		ApiPlugin plugin = ApiPlugin.getDefault();
+		if (plugin == null) {
+			return null;
+		}
+		File dir = plugin.getStateLocation().append(INDEX_DIRECTORY).toFile();
+		String key = fLocation + '|' + fComponentId;
+		return new File(dir, Integer.toHexString(key.hashCode()) + '_' + Integer.toHexString(key.length()) + ".index"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Computes the stamp of the XML reports of the referenced component, from
+	 * the directories of the scan whose name starts with the component id
+	 */
+	private Stamp computeStamp() {
+		Stamp stamp = new Stamp();
+		File[] referees = new File(fLocation).listFiles((FileFilter) File::isDirectory);
+		if (referees == null) {
+			return stamp;
+		}
+		FileFilter xmlFilter = pathname -> pathname.isDirectory() || pathname.getName().endsWith(".xml"); //$NON-NLS-1$
+		for (File referee : referees) {
+			String name = referee.getName();
+			int space = name.indexOf(' ');
+			if (!(space > 0 ? name.substring(0, space) : name).equals(fComponentId)) {
+				continue;
+			}
+			File[] xmlfiles = Util.getAllFiles(referee, xmlFilter);
+			if (xmlfiles != null) {
+				for (File xmlfile : xmlfiles) {
+					stamp.fCount++;
+					stamp.fLength += xmlfile.length();
+					stamp.fLastModified = Math.max(stamp.fLastModified, xmlfile.lastModified());
+				}
+			}
+		}
+		return stamp;
+	}
+
+	/**
+	 * Parses the XML reports of the component and writes the index file
+	 *
+	 * @return the references parsed from the reports, keyed by referenced
+	 *         root type
+	 */
+	private Map<String, List<IReferenceDescriptor>> build(IApiComponent component, File file, Stamp stamp, IProgressMonitor monitor) throws Exception {
+		UseScanReferences collected = new UseScanReferences();
+		new UseScanParser().parse(fLocation, monitor, new UseScanReferenceVisitor(component, null, collected));
+		try {
+			write(collected.fReferencesMap, file, stamp);
+		} catch (IOException e) {
+			ApiPlugin.log(e);
+		}
+		return collected.fReferencesMap;
+	}
+
+	private void write(Map<String, List<IReferenceDescriptor>> referencesMap, File file, Stamp stamp) throws IOException {
+		// shared string table, the location and the component id come first
+		Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+		addString(fLocation, stringIndexes);
+		addString(fComponentId, stringIndexes);
+		for (Entry<String, List<IReferenceDescriptor>> entry : referencesMap.entrySet()) {
+			addString(entry.getKey(), stringIndexes);
+			for (IReferenceDescriptor reference : entry.getValue()) {
+				IComponentDescriptor from = reference.getComponent();
+				addString(from.getId(), stringIndexes);
+				addString(from.getVersion(), stringIndexes);
+				addMemberStrings(reference.getMember(), stringIndexes);
+				IComponentDescriptor to = reference.getReferencedComponent();
+				addString(to.getId(), stringIndexes);
+				addString(to.getVersion(), stringIndexes);
+				addMemberStrings(reference.getReferencedMember(), stringIndexes);
+			}
+		}
+		List<byte[]> strings = new ArrayList<>(stringIndexes.size());
+		for (String string : stringIndexes.keySet()) {
+			strings.add(string.getBytes(StandardCharsets.UTF_8));
+		}
+
+		int referencesOffset = HEADER_SIZE + referencesMap.size() * TYPE_ENTRY_SIZE + strings.size() * 4;
+		file.getParentFile().mkdirs();
+		File temp = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(stamp.fCount);
+			out.writeLong(stamp.fLength);
+			out.writeLong(stamp.fLastModified);
+			out.writeInt(referencesMap.size());
+			out.writeInt(strings.size());
+			int offset = referencesOffset;
+			for (Entry<String, List<IReferenceDescriptor>> entry : referencesMap.entrySet()) {
+				out.writeInt(getStringIndex(entry.getKey(), stringIndexes));
+				out.writeInt(offset);
+				offset += 4 + entry.getValue().size() * REFERENCE_SIZE;
+			}
+			for (byte[] string : strings) {
+				out.writeInt(offset);
+				offset += 4 + string.length;
+			}
+			for (List<IReferenceDescriptor> references : referencesMap.values()) {
+				out.writeInt(references.size());
+				for (IReferenceDescriptor reference : references) {
+					writeReference(out, reference, stringIndexes);
+				}
+			}
+			for (byte[] string : strings) {
+				out.writeInt(string.length);
+				out.write(string);
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		try {
+			// the previous index was unmapped before it was found stale
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes a reference as sixteen ints: the referencing component id and
+	 * version, the referencing member, the line number, the referenced
+	 * component id and version, the referenced member, the reference kind,
+	 * flags and visibility. A member is written as its element type, type
+	 * name, name and signature.
+	 */
+	private static void writeReference(DataOutputStream out, IReferenceDescriptor reference, Map<String, Integer> stringIndexes) throws IOException {
+		IComponentDescriptor from = reference.getComponent();
+		out.writeInt(getStringIndex(from.getId(), stringIndexes));
+		out.writeInt(getStringIndex(from.getVersion(), stringIndexes));
+		writeMember(out, reference.getMember(), stringIndexes);
+		out.writeInt(reference.getLineNumber());
+		IComponentDescriptor to = reference.getReferencedComponent();
+		out.writeInt(getStringIndex(to.getId(), stringIndexes));
+		out.writeInt(getStringIndex(to.getVersion(), stringIndexes));
+		writeMember(out, reference.getReferencedMember(), stringIndexes);
+		out.writeInt(reference.getReferenceKind());
+		out.writeInt(reference.getReferenceFlags());
+		out.writeInt(reference.getVisibility());
+	}
+
+	private static void writeMember(DataOutputStream out, IMemberDescriptor member, Map<String, Integer> stringIndexes) throws IOException {
+		String[] names = getMemberNames(member);
+		out.writeInt(member.getElementType());
+		out.writeInt(getStringIndex(names[0], stringIndexes));
+		out.writeInt(getStringIndex(names[1], stringIndexes));
+		out.writeInt(getStringIndex(names[2], stringIndexes));
+	}
+
+	private static void addMemberStrings(IMemberDescriptor member, Map<String, Integer> stringIndexes) {
+		for (String name : getMemberNames(member)) {
+			addString(name, stringIndexes);
+		}
+	}
+
+	/**
+	 * @return the qualified type name, the name and the signature of the
+	 *         member, the last two are <code>null</code> for types
+	 */
+	private static String[] getMemberNames(IMemberDescriptor member) {
+		switch (member.getElementType()) {
+			case IElementDescriptor.METHOD:
+				IMethodDescriptor method = (IMethodDescriptor) member;
+				return new String[] { method.getEnclosingType().getQualifiedName(), method.getName(), method.getSignature() };
+			case IElementDescriptor.FIELD:
+				IFieldDescriptor field = (IFieldDescriptor) member;
+				return new String[] { field.getEnclosingType().getQualifiedName(), field.getName(), null };
+			default:
+				return new String[] { ((IReferenceTypeDescriptor) member).getQualifiedName(), null, null };
+		}
+	}
+
+	private static void addString(String string, Map<String, Integer> indexes) {
+		if (string != null && !indexes.containsKey(string)) {
+			indexes.put(string, Integer.valueOf(indexes.size()));
+		}
+	}
+
+	private static int getStringIndex(String string, Map<String, Integer> indexes) {
+		return string == null ? NO_STRING : indexes.get(string).intValue();
+	}
+
+	/**
+	 * Maps the index file if it is an index of the reports with the given
+	 * stamp. The header is read before the file is mapped, so a stale index
+	 * is not mapped when it is about to be rebuilt.
+	 *
+	 * @return whether the file was mapped
+	 */
+	private boolean load(File file, Stamp stamp) {
+		if (!file.isFile()) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				return false;
+			}
+			ByteBuffer header = read(channel, 0, HEADER_SIZE);
+			if (header == null || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+				return false;
+			}
+			Stamp fileStamp = new Stamp();
+			fileStamp.fCount = header.getLong(8);
+			fileStamp.fLength = header.getLong(16);
+			fileStamp.fLastModified = header.getLong(24);
+			if (!fileStamp.equals(stamp)) {
+				return false;
+			}
+			int typeCount = header.getInt(32);
+			int stringCount = header.getInt(36);
+			if (typeCount < 0 || stringCount < 2 || (long) typeCount * TYPE_ENTRY_SIZE + (long) stringCount * 4 > size) {
+				return false;
+			}
+			fBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			fStringTable = HEADER_SIZE + typeCount * TYPE_ENTRY_SIZE;
+			fStrings = new String[stringCount];
+			if (!fLocation.equals(getString(0)) || !fComponentId.equals(getString(1))) {
+				unmap();
+				return false;
+			}
+			fTypeOffsets = new LinkedHashMap<>(typeCount * 2);
+			for (int i = 0; i < typeCount; i++) {
+				int entry = HEADER_SIZE + i * TYPE_ENTRY_SIZE;
+				fTypeOffsets.put(getString(fBuffer.getInt(entry)), Integer.valueOf(fBuffer.getInt(entry + 4)));
+			}
+			fStamp = stamp;
+			return true;
+		} catch (IOException | IndexOutOfBoundsException | BufferUnderflowException e) {
+			unmap();
+			return false;
+		}
+	}
+
+	/**
+	 * Releases the mapping of the index file, so that the file can be
+	 * replaced or deleted. The buffer must not be accessed afterwards.
+	 */
+	private void unmap() {
+		ByteBuffer buffer = fBuffer;
+		fBuffer = null;
+		fTypeOffsets = null;
+		fStrings = null;
+		fStamp = null;
+		if (buffer != null) {
+			release(buffer);
+		}
+	}
+
+	/**
+	 * Unmaps a mapped buffer without waiting for it to be garbage collected,
+	 * through the cleaner of the buffer on Java 8 and through
+	 * <code>Unsafe.invokeCleaner</code> on later versions. If neither is
+	 * available the mapping is released when the buffer is collected.
+	 */
+	private static void release(ByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //$NON-NLS-1$
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (NoSuchMethodException e) {
+			// Java 8
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return;
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner"); //$NON-NLS-1$
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				Method clean = cleaner.getClass().getMethod("clean"); //$NON-NLS-1$
+				clean.setAccessible(true);
+				clean.invoke(cleaner);
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// released when collected
+		}
+	}
+
+	/**
+	 * Reads the references to a type at the given offset of the index
+	 *
+	 * @throws IndexOutOfBoundsException if the index is corrupted
+	 */
+	private List<IReferenceDescriptor> readReferences(int offset) {
+		int count = fBuffer.getInt(offset);
+		if (count < 0 || count > (fBuffer.limit() - offset) / REFERENCE_SIZE) {
+			throw new IndexOutOfBoundsException("Invalid reference count " + count); //$NON-NLS-1$
+		}
+		List<IReferenceDescriptor> references = new ArrayList<>(count);
+		int position = offset + 4;
+		for (int i = 0; i < count; i++, position += REFERENCE_SIZE) {
+			IComponentDescriptor from = Factory.componentDescriptor(getString(fBuffer.getInt(position)), getString(fBuffer.getInt(position + 4)));
+			IMemberDescriptor origin = readMember(position + 8);
+			int line = fBuffer.getInt(position + 24);
+			IComponentDescriptor to = Factory.componentDescriptor(getString(fBuffer.getInt(position + 28)), getString(fBuffer.getInt(position + 32)));
+			IMemberDescriptor target = readMember(position + 36);
+			references.add(new ReferenceDescriptor(from, origin, line, to, target, fBuffer.getInt(position + 52), fBuffer.getInt(position + 56), fBuffer.getInt(position + 60), null));
+		}
+		return references;
+	}
+
+	private IMemberDescriptor readMember(int offset) {
+		String typeName = getString(fBuffer.getInt(offset + 4));
+		switch (fBuffer.getInt(offset)) {
+			case IElementDescriptor.METHOD:
+				return Factory.methodDescriptor(typeName, getString(fBuffer.getInt(offset + 8)), getString(fBuffer.getInt(offset + 12)));
+			case IElementDescriptor.FIELD:
+				return Factory.fieldDescriptor(typeName, getString(fBuffer.getInt(offset + 8)));
+			default:
+				return Factory.typeDescriptor(typeName);
+		}
+	}
+
+	private String getString(int index) {
+		if (index == NO_STRING) {
+			return null;
+		}
+		String string = fStrings[index];
+		if (string == null) {
+			int offset = fBuffer.getInt(fStringTable + index * 4);
+			int length = fBuffer.getInt(offset);
+			if (length < 0) {
+				throw new IndexOutOfBoundsException("Invalid string length " + length); //$NON-NLS-1$
+			}
+			byte[] bytes = new byte[length];
+			ByteBuffer buffer = fBuffer.duplicate();
+			buffer.position(offset + 4);
+			buffer.get(bytes);
+			string = new String(bytes, StandardCharsets.UTF_8);
+			fStrings[index] = string;
+		}
+		return string;
+	}
+}
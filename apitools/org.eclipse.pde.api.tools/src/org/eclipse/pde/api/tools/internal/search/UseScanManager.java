@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2013 IBM Corporation and others.
+ * Copyright (c) 2010, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -223,7 +223,9 @@ public class UseScanManager {
 							}
 							throw new Exception(message);
 						}
-						parser.parse(locations[i], iterationMonitor, visitor);
+						if (!UseScanIndex.addReferences(locations[i], apiComponent, types, references, iterationMonitor)) {
+							parser.parse(locations[i], iterationMonitor, visitor);
+						}
 					} catch (Exception e) {
 						ApiPlugin.log(e); // log the exception and continue with
 											// next location
@@ -402,7 +404,8 @@ public class UseScanManager {
 	}
 
 	/**
-	 * Purges all reference information
+	 * Purges all reference information. The persisted indexes of the use scans
+	 * are kept, they are rebuilt when the scans change.
 	 */
 	public void clearCache() {
 		Enumeration<?> elementss = fApiComponentCache.elements();
@@ -411,5 +414,6 @@ public class UseScanManager {
 			reference.clear();
 		}
 		fApiComponentCache.flush();
+		UseScanIndex.clear();
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2016 IBM Corporation and others.
+ * Copyright (c) 2009, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,21 +11,34 @@
 package org.eclipse.pde.api.tools.internal.search;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.pde.api.tools.internal.IApiCoreConstants;
@@ -51,6 +64,13 @@ import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Writes reference descriptions to XML files.
+ * <p>
+ * Report files are streamed: the references of each call to
+ * {@link #writeReferences(IReferenceDescriptor[])} are appended to the files
+ * this writer created before, and only their reference count is updated in
+ * place. Report files that already existed when this writer first wrote to
+ * them are merged with their contents.
+ * </p>
  * 
  * @since 1.0.1
  */
@@ -66,6 +86,30 @@ public class XmlReferenceDescriptorWriter {
 	private String fLocation = null;
 	private HashMap<String, HashMap<String, HashMap<Integer, HashMap<Integer, HashMap<String, HashSet<IReferenceDescriptor>>>>>> fReferenceMap = null;
 	private DocumentBuilder parser = null;
+	private XMLOutputFactory fOutputFactory = null;
+
+	/**
+	 * Number of digits of the reference count of the report files, padded with
+	 * zeros so it can be updated in place
+	 */
+	private static final int COUNT_DIGITS = 10;
+	private static final byte[] COUNT_ATTRIBUTE = (IApiXmlConstants.ATTR_REFERENCE_COUNT + "=\"").getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+	private static final byte[] FOOTER = ("</" + IApiXmlConstants.REFERENCES + ">\n").getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * Report file created by this writer, references are appended before its
+	 * footer
+	 */
+	static class ReportFile {
+		long fCountOffset;
+		long fFooterOffset;
+		int fCount;
+	}
+
+	/**
+	 * Report files created by this writer
+	 */
+	private final Map<File, ReportFile> fReportFiles = new HashMap<>();
 
 	/**
 	 * Alternate API component where references were unresolved, or
@@ -90,6 +134,7 @@ public class XmlReferenceDescriptorWriter {
 		} catch (ParserConfigurationException pce) {
 			ApiPlugin.log(pce);
 		}
+		fOutputFactory = XMLOutputFactory.newInstance();
 	}
 
 	/**
@@ -252,7 +297,7 @@ public class XmlReferenceDescriptorWriter {
 	 * @throws FileNotFoundException
 	 * @throws IOException
 	 */
-	private void writeXML(File parent) throws CoreException, FileNotFoundException, IOException {
+	private void writeXML(File parent) throws CoreException, FileNotFoundException, IOException, XMLStreamException {
 		HashMap<Integer, HashMap<String, HashSet<IReferenceDescriptor>>> vismap = null;
 		HashMap<String, HashSet<IReferenceDescriptor>> typemap = null;
 		HashMap<String, HashMap<Integer, HashMap<Integer, HashMap<String, HashSet<IReferenceDescriptor>>>>> rmap = null;
@@ -302,7 +347,202 @@ public class XmlReferenceDescriptorWriter {
 
 	/**
 	 * Writes out a group of references under the newly created element with the
-	 * given name
+	 * given name. The references are appended to the report file if this writer
+	 * created it.
+	 * 
+	 * @param origin the name of the bundle that has the references in it
+	 * @param referee the name of the bundle that is referenced
+	 * @param parent
+	 * @param name
+	 * @param map
+	 * @param visibility
+	 */
+	private void writeGroup(String origin, String referee, File parent, String name, HashMap<String, HashSet<IReferenceDescriptor>> map, int visibility) throws CoreException, FileNotFoundException, IOException, XMLStreamException {
+		if (!parent.exists()) {
+			return;
+		}
+		File out = new File(parent, name + ".xml"); //$NON-NLS-1$
+		ReportFile report = fReportFiles.get(out);
+		if (report != null && out.length() != report.fFooterOffset + FOOTER.length) {
+			// changed or deleted since it was written
+			fReportFiles.remove(out);
+			report = null;
+		}
+		if (report == null && out.exists()) {
+			mergeGroup(origin, referee, parent, name, map, visibility);
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(out.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			if (report == null) {
+				report = new ReportFile();
+				byte[] header = createHeader(origin, referee, name, visibility);
+				report.fCountOffset = indexOf(header, COUNT_ATTRIBUTE) + COUNT_ATTRIBUTE.length;
+				write(channel, header, 0);
+				report.fFooterOffset = header.length;
+				fReportFiles.put(out, report);
+			}
+			ByteArrayOutputStream targets = new ByteArrayOutputStream();
+			report.fCount += writeTargets(targets, map);
+			write(channel, targets.toByteArray(), report.fFooterOffset);
+			report.fFooterOffset += targets.size();
+			write(channel, FOOTER, report.fFooterOffset);
+			channel.truncate(report.fFooterOffset + FOOTER.length);
+			write(channel, formatCount(report.fCount), report.fCountOffset);
+		} catch (IOException | XMLStreamException e) {
+			// the file cannot be appended to anymore
+			fReportFiles.remove(out);
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates the XML declaration and the start tag of the root element of a
+	 * report file, with a zero reference count
+	 */
+	private byte[] createHeader(String origin, String referee, String name, int visibility) throws CoreException, XMLStreamException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		XMLStreamWriter writer = fOutputFactory.createXMLStreamWriter(bytes, IApiCoreConstants.UTF_8);
+		writer.writeStartDocument(IApiCoreConstants.UTF_8, "1.0"); //$NON-NLS-1$
+		writer.writeCharacters("\n"); //$NON-NLS-1$
+		writer.writeStartElement(IApiXmlConstants.REFERENCES);
+		if (alternate != null) {
+			writer.writeAttribute(IApiXmlConstants.ATTR_ALTERNATE, getId(alternate));
+		}
+		writer.writeAttribute(IApiXmlConstants.ATTR_NAME, getFormattedTypeName(name));
+		writer.writeAttribute(IApiXmlConstants.ATTR_ORIGIN, origin);
+		writer.writeAttribute(IApiXmlConstants.ATTR_REFEREE, referee);
+		writer.writeAttribute(IApiXmlConstants.ATTR_REFERENCE_COUNT, new String(formatCount(0), StandardCharsets.UTF_8));
+		writer.writeAttribute(IApiXmlConstants.ATTR_REFERENCE_VISIBILITY, Integer.toString(visibility));
+		// closes the start tag
+		writer.writeCharacters("\n"); //$NON-NLS-1$
+		writer.flush();
+		writer.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the target elements of the given references
+	 * 
+	 * @return the number of references written
+	 */
+	private int writeTargets(OutputStream out, HashMap<String, HashSet<IReferenceDescriptor>> map) throws CoreException, XMLStreamException {
+		int count = 0;
+		XMLStreamWriter writer = fOutputFactory.createXMLStreamWriter(out, IApiCoreConstants.UTF_8);
+		for (Entry<String, HashSet<IReferenceDescriptor>> entry : map.entrySet()) {
+			HashSet<IReferenceDescriptor> refs = entry.getValue();
+			if (refs == null || refs.isEmpty()) {
+				continue;
+			}
+			// group the references by kind
+			Map<Integer, List<IReferenceDescriptor>> kinds = new LinkedHashMap<>();
+			IMemberDescriptor resolved = null;
+			for (IReferenceDescriptor ref : refs) {
+				Integer kind = Integer.valueOf(ref.getReferenceKind());
+				List<IReferenceDescriptor> kindRefs = kinds.get(kind);
+				if (kindRefs == null) {
+					kindRefs = new ArrayList<>();
+					kinds.put(kind, kindRefs);
+				}
+				kindRefs.add(ref);
+				resolved = ref.getReferencedMember();
+				count++;
+			}
+			writer.writeStartElement(IApiXmlConstants.ELEMENT_TARGET);
+			writer.writeAttribute(IApiXmlConstants.ATTR_NAME, entry.getKey());
+			if (resolved != null) {
+				writeMemberDetails(writer, resolved);
+			}
+			writer.writeCharacters("\n"); //$NON-NLS-1$
+			for (Entry<Integer, List<IReferenceDescriptor>> kind : kinds.entrySet()) {
+				List<IReferenceDescriptor> kindRefs = kind.getValue();
+				writer.writeStartElement(IApiXmlConstants.REFERENCE_KIND);
+				writer.writeAttribute(IApiXmlConstants.ATTR_FLAGS, Integer.toString(kindRefs.get(0).getReferenceFlags()));
+				writer.writeAttribute(IApiXmlConstants.ATTR_KIND, kind.getKey().toString());
+				writer.writeAttribute(IApiXmlConstants.ATTR_REFERENCE_KIND_NAME, Reference.getReferenceText(kind.getKey().intValue()));
+				writer.writeCharacters("\n"); //$NON-NLS-1$
+				for (IReferenceDescriptor reference : kindRefs) {
+					if (reference.getReferencedMember() == null) {
+						continue;
+					}
+					IMemberDescriptor member = reference.getMember();
+					writer.writeEmptyElement(IApiXmlConstants.ATTR_REFERENCE);
+					writer.writeAttribute(IApiXmlConstants.ATTR_ORIGIN, getText(member));
+					String[] messages = reference.getProblemMessages();
+					if (messages != null) {
+						writer.writeAttribute(IApiXmlConstants.ELEMENT_PROBLEM_MESSAGE_ARGUMENTS, getText(messages));
+					}
+					writeMemberDetails(writer, member);
+					writer.writeAttribute(IApiXmlConstants.ATTR_LINE_NUMBER, Integer.toString(reference.getLineNumber()));
+					writer.writeCharacters("\n"); //$NON-NLS-1$
+				}
+				writer.writeEndElement();
+				writer.writeCharacters("\n"); //$NON-NLS-1$
+			}
+			writer.writeEndElement();
+			writer.writeCharacters("\n"); //$NON-NLS-1$
+		}
+		writer.flush();
+		writer.close();
+		return count;
+	}
+
+	/**
+	 * Writes the member descriptor details as attributes of the current
+	 * element.
+	 * 
+	 * @param writer XML writer
+	 * @param member member to write details for
+	 */
+	private void writeMemberDetails(XMLStreamWriter writer, IMemberDescriptor member) throws XMLStreamException {
+		switch (member.getElementType()) {
+			case IElementDescriptor.TYPE:
+				writer.writeAttribute(IApiXmlConstants.ATTR_TYPE, ((IReferenceTypeDescriptor) member).getQualifiedName());
+				break;
+			case IElementDescriptor.FIELD:
+				writer.writeAttribute(IApiXmlConstants.ATTR_MEMBER_NAME, member.getName());
+				writer.writeAttribute(IApiXmlConstants.ATTR_TYPE, member.getEnclosingType().getQualifiedName());
+				break;
+			case IElementDescriptor.METHOD:
+				writer.writeAttribute(IApiXmlConstants.ATTR_MEMBER_NAME, member.getName());
+				writer.writeAttribute(IApiXmlConstants.ATTR_SIGNATURE, ((IMethodDescriptor) member).getSignature());
+				writer.writeAttribute(IApiXmlConstants.ATTR_TYPE, member.getEnclosingType().getQualifiedName());
+				break;
+			default:
+				break;
+		}
+	}
+
+	private static byte[] formatCount(int count) {
+		StringBuilder buffer = new StringBuilder(COUNT_DIGITS);
+		String digits = Integer.toString(count);
+		for (int i = digits.length(); i < COUNT_DIGITS; i++) {
+			buffer.append('0');
+		}
+		return buffer.append(digits).toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int indexOf(byte[] bytes, byte[] pattern) {
+		outer: for (int i = 0; i <= bytes.length - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (bytes[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static void write(FileChannel channel, byte[] bytes, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * Merges a group of references with the contents of an existing report
+	 * file, that was not created by this writer
 	 * 
 	 * @param origin the name of the bundle that has the references in it
 	 * @param referee the name of the bundle that is referenced
@@ -311,7 +551,7 @@ public class XmlReferenceDescriptorWriter {
 	 * @param map
 	 * @param visibility
 	 */
-	private void writeGroup(String origin, String referee, File parent, String name, HashMap<String, HashSet<IReferenceDescriptor>> map, int visibility) throws CoreException, FileNotFoundException, IOException {
+	private void mergeGroup(String origin, String referee, File parent, String name, HashMap<String, HashSet<IReferenceDescriptor>> map, int visibility) throws CoreException, FileNotFoundException, IOException {
 		if (parent.exists()) {
 			BufferedWriter writer = null;
 			try {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2013 IBM Corporation and others.
+ * Copyright (c) 2009, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -51,6 +51,11 @@ public class XmlSearchReporter implements IApiSearchReporter {
 
 	private String fLocation = null;
 	private DocumentBuilder parser = null;
+	/**
+	 * Writer shared by all the results, so the references of an element
+	 * reported in several batches are appended to the report files
+	 */
+	private XmlReferenceDescriptorWriter fWriter = null;
 	private boolean debug = false;
 	private int referenceCount = 0;
 	private int illegalCount = 0;
@@ -66,6 +71,7 @@ public class XmlSearchReporter implements IApiSearchReporter {
 	public XmlSearchReporter(String location, boolean debug) {
 		fLocation = location;
 		this.debug = debug;
+		fWriter = new XmlReferenceDescriptorWriter(location);
 		try {
 			parser = DocumentBuilderFactory.newInstance().newDocumentBuilder();
 			parser.setErrorHandler(new DefaultHandler());
@@ -86,7 +92,6 @@ public class XmlSearchReporter implements IApiSearchReporter {
 		// Use a hashset for counting to remove any duplicate references that
 		// the writer would remove
 		HashSet<IReferenceDescriptor> writtenReferences = new HashSet<>();
-		XmlReferenceDescriptorWriter writer = new XmlReferenceDescriptorWriter(fLocation);
 		List<IReferenceDescriptor> descriptors = new ArrayList<>(references.length + 1);
 		for (IReference referenceInterface : references) {
 			Reference reference = (Reference) referenceInterface;
@@ -114,7 +119,7 @@ public class XmlSearchReporter implements IApiSearchReporter {
 			}
 		}
 
-		writer.writeReferences(descriptors.toArray(new IReferenceDescriptor[descriptors.size()]));
+		fWriter.writeReferences(descriptors.toArray(new IReferenceDescriptor[descriptors.size()]));
 	}
 
 	/**
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+
+/**
+ * A bounded pool of open {@link ZipFile} handles shared by all of the archive
+ * type containers. Handles are reference counted: callers must pair every
+ * {@link #acquire(String)} with a {@link #release(String)}. Idle handles are
+ * kept open and evicted in least-recently-used order once more than
+ * {@link #getMaxOpenArchives()} archives are open.
+ *
+ * @since 1.1.200
+ */
+public final class ArchiveHandlePool {
+
+	/**
+	 * Default number of archives kept open at the same time
+	 */
+	public static final int DEFAULT_MAX_OPEN_ARCHIVES = 64;
+
+	/**
+	 * An open archive and the number of clients currently using it
+	 */
+	static final class Handle {
+		final ZipFile fZipFile;
+		int fReferences = 0;
+		boolean fClosePending = false;
+
+		Handle(ZipFile zipFile) {
+			fZipFile = zipFile;
+		}
+	}
+
+	private static ArchiveHandlePool fInstance = null;
+
+	/**
+	 * Open handles keyed by archive location, in access order
+	 */
+	private final LinkedHashMap<String, Handle> fHandles = new LinkedHashMap<>(16, 0.75f, true);
+
+	private int fMaxOpenArchives = DEFAULT_MAX_OPEN_ARCHIVES;
+
+	private long fOpens = 0;
+	private long fHits = 0;
+	private long fEvictions = 0;
+
+	/**
+	 * Constructor private - no instantiation
+	 */
+	private ArchiveHandlePool() {
+	}
+
+	/**
+	 * Returns the singleton instance of the pool
+	 *
+	 * @return the pool instance
+	 */
+	public synchronized static ArchiveHandlePool getPool() {
+		if (fInstance == null) {
+			fInstance = new ArchiveHandlePool();
+		}
+		return fInstance;
+	}
+
+	/**
+	 * Returns an open {@link ZipFile} for the archive at the given location,
+	 * opening it if required. The caller must call {@link #release(String)}
+	 * once it is done reading from the returned file, and must not close it.
+	 *
+	 * @param location the absolute path of the archive in the local file
+	 *            system
+	 * @return the open zip file
+	 * @throws IOException if the archive cannot be opened
+	 */
+	public synchronized ZipFile acquire(String location) throws IOException {
+		Handle handle = fHandles.get(location);
+		if (handle != null) {
+			fHits++;
+		} else {
+			handle = new Handle(new ZipFile(location));
+			fHandles.put(location, handle);
+			fOpens++;
+		}
+		handle.fReferences++;
+		evict();
+		return handle.fZipFile;
+	}
+
+	/**
+	 * Releases one reference to the archive at the given location previously
+	 * obtained from {@link #acquire(String)}.
+	 *
+	 * @param location the absolute path of the archive in the local file
+	 *            system
+	 */
+	public synchronized void release(String location) {
+		Handle handle = fHandles.get(location);
+		if (handle == null || handle.fReferences == 0) {
+			return;
+		}
+		handle.fReferences--;
+		if (handle.fReferences == 0) {
+			if (handle.fClosePending) {
+				fHandles.remove(location);
+				closeHandle(location, handle);
+			} else if (fHandles.size() > fMaxOpenArchives) {
+				evict();
+			}
+		}
+	}
+
+	/**
+	 * Closes the handle for the archive at the given location. If the archive
+	 * is still in use it is closed as soon as the last reference is released.
+	 *
+	 * @param location the absolute path of the archive in the local file
+	 *            system
+	 */
+	public synchronized void close(String location) {
+		Handle handle = fHandles.get(location);
+		if (handle == null) {
+			return;
+		}
+		if (handle.fReferences > 0) {
+			handle.fClosePending = true;
+		} else {
+			fHandles.remove(location);
+			closeHandle(location, handle);
+		}
+	}
+
+	/**
+	 * Closes every handle in the pool regardless of outstanding references
+	 * and resets the statistics.
+	 */
+	public synchronized void closeAll() {
+		if (ApiPlugin.DEBUG_ARCHIVE_POOL) {
+			System.out.println("Archive handle pool shutdown: " + getStatistics()); //$NON-NLS-1$
+		}
+		List<Entry<String, Handle>> handles = new ArrayList<>(fHandles.entrySet());
+		fHandles.clear();
+		for (Entry<String, Handle> entry : handles) {
+			closeHandle(entry.getKey(), entry.getValue());
+		}
+		fOpens = 0;
+		fHits = 0;
+		fEvictions = 0;
+	}
+
+	/**
+	 * Sets the number of idle archives kept open at the same time. Archives
+	 * that are in use are never evicted, so the pool can temporarily exceed
+	 * this bound.
+	 *
+	 * @param max the new bound, must be greater than zero
+	 */
+	public synchronized void setMaxOpenArchives(int max) {
+		if (max < 1) {
+			throw new IllegalArgumentException("The maximum number of open archives must be greater than zero"); //$NON-NLS-1$
+		}
+		fMaxOpenArchives = max;
+		evict();
+	}
+
+	/**
+	 * @return the number of idle archives kept open at the same time
+	 */
+	public synchronized int getMaxOpenArchives() {
+		return fMaxOpenArchives;
+	}
+
+	/**
+	 * @return the number of archives currently open in the pool
+	 */
+	public synchronized int getOpenArchiveCount() {
+		return fHandles.size();
+	}
+
+	/**
+	 * @return the number of times an archive was opened
+	 */
+	public synchronized long getOpenCount() {
+		return fOpens;
+	}
+
+	/**
+	 * @return the number of times an already open archive was reused
+	 */
+	public synchronized long getHitCount() {
+		return fHits;
+	}
+
+	/**
+	 * @return the number of idle archives closed to respect the pool bound
+	 */
+	public synchronized long getEvictionCount() {
+		return fEvictions;
+	}
+
+	/**
+	 * @return a human readable summary of the pool statistics
+	 */
+	public synchronized String getStatistics() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("open=").append(fHandles.size()); //$NON-NLS-1$
+		buffer.append(", opens=").append(fOpens); //$NON-NLS-1$
+		buffer.append(", hits=").append(fHits); //$NON-NLS-1$
+		buffer.append(", evictions=").append(fEvictions); //$NON-NLS-1$
+		return buffer.toString();
+	}
+
+	/**
+	 * Closes idle handles in least-recently-used order until the pool is
+	 * back within its bound.
+	 */
+	private void evict() {
+		Iterator<Entry<String, Handle>> iterator = fHandles.entrySet().iterator();
+		while (fHandles.size() > fMaxOpenArchives && iterator.hasNext()) {
+			Entry<String, Handle> entry = iterator.next();
+			Handle handle = entry.getValue();
+			if (handle.fReferences == 0) {
+				iterator.remove();
+				fEvictions++;
+				if (ApiPlugin.DEBUG_ARCHIVE_POOL) {
+					System.out.println("Evicted archive handle: " + entry.getKey() + " [" + getStatistics() + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+				closeHandle(entry.getKey(), handle);
+			}
+		}
+	}
+
+	private void closeHandle(String location, Handle handle) {
+		try {
+			handle.fZipFile.close();
+		} catch (IOException e) {
+			ApiPlugin.log(ApiPlugin.newErrorStatus("Failed to close archive: " + location, e)); //$NON-NLS-1$
+		}
+	}
+}
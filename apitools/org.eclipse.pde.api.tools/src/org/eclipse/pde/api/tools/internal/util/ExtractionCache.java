@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+
+/**
+ * Persistent cache of the nested archives and folders extracted from jarred
+ * bundles, kept in the API tools state location and shared by all baselines
+ * and sessions.
+ * <p>
+ * An extracted entry is keyed by its name, its CRC and size (the combined CRCs
+ * and sizes of its children for a folder) and the size and modification time
+ * of the enclosing archive, so it is extracted again only when its contents
+ * may have changed. Entries are evicted least recently used first when the
+ * cache grows past its maximum size, {@link #DEFAULT_MAX_SIZE} by default,
+ * except the ones used during the current session which may be open.
+ * </p>
+ *
+ * @since 1.1.200
+ */
+public final class ExtractionCache {
+
+	/**
+	 * Name of the cache directory in the state location
+	 */
+	private static final String CACHE_DIRECTORY = ".extracted"; //$NON-NLS-1$
+
+	/**
+	 * Suffix of the directories entries are extracted to before being moved
+	 * into the cache
+	 */
+	private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+	/**
+	 * Default size in bytes past which entries are evicted
+	 */
+	public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+	private static ExtractionCache fgInstance = null;
+
+	private final File fRoot;
+
+	/**
+	 * Keys of the entries used during this session
+	 */
+	private final Set<String> fUsedKeys = new HashSet<>();
+
+	/**
+	 * Total size of the cached entries, <code>-1</code> until computed
+	 */
+	private long fSize = -1;
+
+	private long fMaxSize = DEFAULT_MAX_SIZE;
+
+	/**
+	 * Creates a cache of the entries extracted to the given directory. The
+	 * shared cache is returned by {@link #getCache()}.
+	 *
+	 * @param root the directory entries are extracted to
+	 */
+	public ExtractionCache(File root) {
+		fRoot = root;
+	}
+
+	/**
+	 * Returns the cache in the API tools state location
+	 *
+	 * @return the cache or <code>null</code> if API tools is not running in
+	 *         the framework
+	 */
+	public static synchronized ExtractionCache getCache() {
+		if (fgInstance == null) {
+			ApiPlugin plugin = ApiPlugin.getDefault();
+			if (plugin == null) {
+				return null;
+			}
+			fgInstance = new ExtractionCache(plugin.getStateLocation().append(CACHE_DIRECTORY).toFile());
+		}
+		return fgInstance;
+	}
+
+	/**
+	 * Sets the size in bytes past which entries are evicted
+	 *
+	 * @param maxSize the maximum size of the cache
+	 */
+	public synchronized void setMaxSize(long maxSize) {
+		fMaxSize = maxSize;
+	}
+
+	/**
+	 * Returns the extracted copy of a nested archive, extracting it if it is
+	 * not cached yet.
+	 *
+	 * @param archive the enclosing archive
+	 * @param zip the opened enclosing archive
+	 * @param entry the nested archive entry
+	 * @return the extracted archive
+	 * @throws IOException if the entry cannot be extracted
+	 */
+	public synchronized File getArchive(File archive, ZipFile zip, ZipEntry entry) throws IOException {
+		String name = new File(entry.getName()).getName();
+		String key = getKey(archive, entry.getName(), entry.getCrc(), entry.getSize());
+		File dir = new File(fRoot, key);
+		File file = new File(dir, name);
+		if (!file.isFile()) {
+			File temp = createTempDirectory(key);
+			try (InputStream in = zip.getInputStream(entry)) {
+				Files.copy(in, new File(temp, name).toPath());
+			} catch (IOException e) {
+				Util.delete(temp);
+				throw e;
+			}
+			store(temp, dir);
+		}
+		use(key, dir);
+		return file;
+	}
+
+	/**
+	 * Returns the extracted copy of a nested folder, extracting it if it is
+	 * not cached yet. The entries are extracted with their full path in the
+	 * enclosing archive below the returned directory.
+	 *
+	 * @param archive the enclosing archive
+	 * @param zip the opened enclosing archive
+	 * @param prefix the path of the folder entry
+	 * @return the directory the folder is extracted to
+	 * @throws IOException if the folder cannot be extracted
+	 */
+	public synchronized File getDirectory(File archive, ZipFile zip, String prefix) throws IOException {
+		List<ZipEntry> entries = new ArrayList<>();
+		CRC32 crc = new CRC32();
+		long size = 0;
+		Enumeration<? extends ZipEntry> enumeration = zip.entries();
+		while (enumeration.hasMoreElements()) {
+			ZipEntry entry = enumeration.nextElement();
+			if (entry.getName().startsWith(prefix)) {
+				entries.add(entry);
+				crc.update((entry.getName() + ':' + entry.getCrc()).getBytes(StandardCharsets.UTF_8));
+				size += entry.getSize();
+			}
+		}
+		String key = getKey(archive, prefix, crc.getValue(), size);
+		File dir = new File(fRoot, key);
+		if (!dir.isDirectory()) {
+			File temp = createTempDirectory(key);
+			try {
+				for (ZipEntry entry : entries) {
+					File file = new File(temp, entry.getName());
+					if (entry.isDirectory()) {
+						file.mkdirs();
+						continue;
+					}
+					file.getParentFile().mkdirs();
+					try (InputStream in = zip.getInputStream(entry)) {
+						Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+			} catch (IOException e) {
+				Util.delete(temp);
+				throw e;
+			}
+			store(temp, dir);
+		}
+		use(key, dir);
+		return dir;
+	}
+
+	/**
+	 * Returns the key of an extracted entry: a hash of the entry name, CRC and
+	 * size and of the stamp of the enclosing archive
+	 */
+	private static String getKey(File archive, String name, long crc, long size) {
+		StringBuilder buffer = new StringBuilder(name);
+		buffer.append('|').append(crc).append('|').append(size);
+		buffer.append('|').append(archive.length()).append('|').append(archive.lastModified());
+		String key = buffer.toString();
+		CRC32 hash = new CRC32();
+		hash.update(key.getBytes(StandardCharsets.UTF_8));
+		return Long.toHexString(hash.getValue()) + '_' + Integer.toHexString(key.hashCode());
+	}
+
+	private File createTempDirectory(String key) throws IOException {
+		File temp = new File(fRoot, key + TEMP_SUFFIX);
+		if (temp.exists()) {
+			Util.delete(temp);
+		}
+		if (!temp.mkdirs()) {
+			throw new IOException("Unable to create extraction directory " + temp); //$NON-NLS-1$
+		}
+		return temp;
+	}
+
+	/**
+	 * Moves a completely extracted entry into the cache and evicts entries if
+	 * the cache grew too large
+	 */
+	private void store(File temp, File dir) throws IOException {
+		if (dir.exists()) {
+			Util.delete(dir);
+		}
+		Files.move(temp.toPath(), dir.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		if (fSize < 0) {
+			fSize = 0;
+			for (File entry : listEntries()) {
+				fSize += sizeOf(entry);
+			}
+		} else {
+			fSize += sizeOf(dir);
+		}
+		if (fSize > fMaxSize) {
+			evict(dir);
+		}
+	}
+
+	private void use(String key, File dir) {
+		fUsedKeys.add(key);
+		dir.setLastModified(System.currentTimeMillis());
+	}
+
+	/**
+	 * Deletes the least recently used entries until the cache is down to
+	 * three quarters of its maximum size. Entries used during this session
+	 * are kept.
+	 */
+	private void evict(File added) {
+		long start = System.currentTimeMillis();
+		File[] entries = listEntries();
+		Arrays.sort(entries, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+		for (File entry : entries) {
+			if (fSize <= fMaxSize / 4 * 3) {
+				break;
+			}
+			if (entry.equals(added) || fUsedKeys.contains(entry.getName())) {
+				continue;
+			}
+			long size = sizeOf(entry);
+			if (Util.delete(entry)) {
+				fSize -= size;
+			}
+		}
+		if (ApiPlugin.DEBUG_EXTRACTION_CACHE) {
+			System.out.println("Time to evict extracted entries : " + (System.currentTimeMillis() - start) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * @return the cached entries, leftovers of interrupted extractions are
+	 *         deleted
+	 */
+	private File[] listEntries() {
+		File[] files = fRoot.listFiles();
+		if (files == null) {
+			return new File[0];
+		}
+		List<File> entries = new ArrayList<>(files.length);
+		for (File file : files) {
+			if (file.getName().endsWith(TEMP_SUFFIX)) {
+				Util.delete(file);
+			} else {
+				entries.add(file);
+			}
+		}
+		return entries.toArray(new File[entries.size()]);
+	}
+
+	private static long sizeOf(File file) {
+		if (file.isFile()) {
+			return file.length();
+		}
+		long size = 0;
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				size += sizeOf(child);
+			}
+		}
+		return size;
+	}
+}
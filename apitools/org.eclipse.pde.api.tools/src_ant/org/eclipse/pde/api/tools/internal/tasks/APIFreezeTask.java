@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2017 IBM Corporation and others.
+ * Copyright (c) 2008, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -56,6 +56,10 @@ public class APIFreezeTask extends CommonUtilsTask {
 	 * will be included in the output xml. Set to <code>true</code> by default.
 	 */
 	private boolean processUnresolvedBundles = true;
+	/**
+	 * The number of API components compared concurrently
+	 */
+	private int parallelism = 1;
 	/**
 	 * If {@link #continueOnResolverError} is <code>true</code> this map will
 	 * store the resolver errors of components. Maps String component IDs to an
@@ -147,7 +151,7 @@ public class APIFreezeTask extends CommonUtilsTask {
 			time = System.currentTimeMillis();
 		}
 		try {
-			delta = ApiComparator.compare(getScope(currentBaseline), referenceBaseline, VisibilityModifiers.API, true, processUnresolvedBundles, null);
+			delta = ApiComparator.compare(getScope(currentBaseline), referenceBaseline, VisibilityModifiers.API, true, processUnresolvedBundles, this.parallelism, null);
 		} catch (CoreException e) {
 			// ignore
 		} finally {
@@ -450,4 +454,31 @@ public class APIFreezeTask extends CommonUtilsTask {
 			}
 		}
 	}
+
+	/**
+	 * Set the number of API components to compare concurrently.
+	 *
+	 * <p>
+	 * The value must be an integer. A value of <code>0</code> uses one worker
+	 * per available processor. Default is <code>1</code>, which compares the
+	 * components one after the other. The generated report is the same
+	 * whatever the parallelism level.
+	 * </p>
+	 *
+	 * @param value the given parallelism level
+	 * @throws BuildException if the given value is not a positive integer or
+	 *             <code>0</code>
+	 */
+	public void setParallelism(String value) {
+		int level;
+		try {
+			level = Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			level = -1;
+		}
+		if (level < 0) {
+			throw new BuildException("The given value " + value + " is not a positive integer or 0."); //$NON-NLS-1$//$NON-NLS-2$
+		}
+		this.parallelism = level == 0 ? Runtime.getRuntime().availableProcessors() : level;
+	}
 }
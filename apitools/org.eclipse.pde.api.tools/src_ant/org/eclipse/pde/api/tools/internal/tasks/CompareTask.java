@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2010 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -48,6 +48,10 @@ public class CompareTask extends CommonUtilsTask {
 	private String componentsList;
 	private String excludeListLocation;
 	private String includeListLocation;
+	/**
+	 * The number of API components compared concurrently
+	 */
+	private int parallelism = 1;
 
 	@Override
 	public void execute() throws BuildException {
@@ -66,6 +70,7 @@ public class CompareTask extends CommonUtilsTask {
 			System.out.println("Baseline to compare : " + this.currentBaselineLocation); //$NON-NLS-1$
 			System.out.println("Report location : " + this.reportLocation); //$NON-NLS-1$
 			System.out.println("Component's list : " + this.componentsList); //$NON-NLS-1$
+			System.out.println("Parallelism : " + this.parallelism); //$NON-NLS-1$
 			if (this.excludeListLocation != null) {
 				System.out.println("exclude list location : " + this.excludeListLocation); //$NON-NLS-1$
 			} else {
@@ -143,7 +148,7 @@ public class CompareTask extends CommonUtilsTask {
 			scope.addElement(currentBaseline);
 		}
 		try {
-			delta = ApiComparator.compare(scope, referenceBaseline, this.visibilityModifiers, false, null);
+			delta = ApiComparator.compare(scope, referenceBaseline, this.visibilityModifiers, false, false, this.parallelism, null);
 		} catch (CoreException e) {
 			// an error occurred during the comparison
 			throw new BuildException(NLS.bind(Messages.illegalElementInScope, e.getMessage()));
@@ -384,4 +389,31 @@ public class CompareTask extends CommonUtilsTask {
 	public void setincludeList(String includeListLocation) {
 		this.includeListLocation = includeListLocation;
 	}
+
+	/**
+	 * Set the number of API components to compare concurrently.
+	 *
+	 * <p>
+	 * The value must be an integer. A value of <code>0</code> uses one worker
+	 * per available processor. Default is <code>1</code>, which compares the
+	 * components one after the other. The generated report is the same
+	 * whatever the parallelism level.
+	 * </p>
+	 *
+	 * @param value the given parallelism level
+	 * @throws BuildException if the given value is not a positive integer or
+	 *             <code>0</code>
+	 */
+	public void setParallelism(String value) {
+		int level;
+		try {
+			level = Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			level = -1;
+		}
+		if (level < 0) {
+			throw new BuildException("The given value " + value + " is not a positive integer or 0."); //$NON-NLS-1$//$NON-NLS-2$
+		}
+		this.parallelism = level == 0 ? Runtime.getRuntime().availableProcessors() : level;
+	}
 }
@@ -0,0 +1,177 @@
+package org.eclipse.pde.ds.internal.annotations.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.eclipse.pde.ds.internal.annotations.DSAnnotationVersion;
+import org.eclipse.pde.ds.internal.annotations.ProjectState;
+import org.eclipse.pde.ds.internal.annotations.ValidationErrorLevel;
+import org.junit.Test;
+
+@SuppressWarnings("restriction")
+public class ProjectStateTest {
+
+	private static HashMap<String, String> dsKeys(String... types) {
+		HashMap<String, String> dsKeys = new HashMap<>();
+		for (String type : types) {
+			dsKeys.put(type, "OSGI-INF/" + type + ".xml");
+		}
+
+		return dsKeys;
+	}
+
+	private static ProjectState createState() {
+		ProjectState state = new ProjectState();
+		state.setPath("OSGI-INF");
+		state.setSpecVersion(DSAnnotationVersion.V1_2);
+		state.setErrorLevel(ValidationErrorLevel.warning);
+		state.setMissingUnbindMethodLevel(ValidationErrorLevel.ignore);
+		state.updateMappings("test/A.java", dsKeys("test.A", "test.A$Inner"));
+		state.updateMappings("test/B.java", dsKeys("test.B"));
+		state.setSkipped("src/test/C.java", 1L, 2L);
+		return state;
+	}
+
+	private static byte[] write(ProjectState state) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			state.write(out);
+		}
+
+		state.setPersisted(false);
+		return bytes.toByteArray();
+	}
+
+	private static byte[] writeChanges(ProjectState state) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			state.writeChanges(out);
+		}
+
+		state.setPersisted(true);
+		return bytes.toByteArray();
+	}
+
+	private static ProjectState read(byte[]... parts) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			bytes.write(part);
+		}
+
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return ProjectState.read(in);
+		}
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		ProjectState state = createState();
+		ProjectState read = read(write(state));
+		assertEquals(state, read);
+		assertEquals(new HashSet<>(state.getModelFiles("test/A.java")), new HashSet<>(read.getModelFiles("test/A.java")));
+		assertTrue(read.isSkipped("src/test/C.java", 1L, 2L));
+	}
+
+	@Test
+	public void appendedChanges() throws Exception {
+		ProjectState state = createState();
+		byte[] full = write(state);
+
+		state.updateMappings("test/D.java", dsKeys("test.D"));
+		state.updateMappings("test/A.java", dsKeys("test.A"));
+		state.removeMappings("test/B.java");
+		state.setSkipped("src/test/E.java", 3L, 4L);
+		state.removeSkipped("src/test/C.java");
+		assertTrue("Changes cannot be appended", state.canAppendChanges());
+		byte[] journal = writeChanges(state);
+
+		assertEquals(state, read(full, journal));
+
+		// a state read with a journal keeps appending to it
+		ProjectState read = read(full, journal);
+		read.updateMappings("test/F.java", dsKeys("test.F"));
+		assertTrue("Changes cannot be appended", read.canAppendChanges());
+		assertEquals(read, read(full, journal, writeChanges(read)));
+	}
+
+	@Test
+	public void noOpChangesNotRecorded() throws Exception {
+		ProjectState state = createState();
+		write(state);
+
+		state.updateMappings("test/A.java", dsKeys("test.A", "test.A$Inner"));
+		state.removeMappings("test/Missing.java");
+		state.updateMappings("test/Missing.java", dsKeys());
+		state.setSkipped("src/test/C.java", 1L, 2L);
+		assertEquals(0, writeChanges(state).length);
+	}
+
+	@Test
+	public void repeatedChangesCompacted() throws Exception {
+		ProjectState state = createState();
+		byte[] full = write(state);
+
+		for (int i = 0; i < 1000; ++i) {
+			state.updateMappings("test/A.java", dsKeys("test.A" + (i % 2 == 0 ? "" : "$Inner")));
+			state.setSkipped("src/test/C.java", i, i);
+		}
+
+		assertTrue("Repeated changes not compacted", state.canAppendChanges());
+		byte[] journal = writeChanges(state);
+		assertEquals(state, read(full, journal));
+
+		// the changes of a reverted build are discarded
+		state.updateMappings("test/G.java", dsKeys("test.G"));
+		state.removeMappings("test/G.java");
+		state.discardChanges();
+		assertEquals(0, writeChanges(state).length);
+	}
+
+	@Test
+	public void tooManyChangesRewritten() throws Exception {
+		ProjectState state = createState();
+		for (int i = 0; i < 1000; ++i) {
+			state.updateMappings("test/T" + i + ".java", dsKeys("test.T" + i));
+		}
+
+		write(state);
+
+		// more changes than entries left in the state
+		for (int i = 0; i < 1000; ++i) {
+			state.removeMappings("test/T" + i + ".java");
+		}
+
+		assertFalse("Too many changes to append", state.canAppendChanges());
+		assertEquals(state, read(write(state)));
+	}
+
+	@Test
+	public void legacyStateMigrated() throws Exception {
+		ProjectState state = createState();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(state);
+		}
+
+		ProjectState legacy;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			legacy = (ProjectState) in.readObject();
+		}
+
+		assertEquals(state, legacy);
+		legacy.invalidatePersistedState();
+		assertFalse("Legacy state appended to", legacy.canAppendChanges());
+		assertEquals(state, read(write(legacy)));
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2017 Ecliptical Software Inc. and others.
+ * Copyright (c) 2012, 2018 Ecliptical Software Inc. and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,9 +10,11 @@
  *******************************************************************************/
 package org.eclipse.pde.ds.internal.annotations;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.resources.ICommand;
@@ -43,9 +45,49 @@ public class AnnotationProcessor extends ASTRequestor {
 
 	private boolean hasBuilder;
 
+	private final List<AnnotationVisitor.ModelWrite> deferredWrites;
+
 	public AnnotationProcessor(ProjectContext context, Map<ICompilationUnit, BuildContext> fileMap) {
+		this(context, fileMap, false);
+	}
+
+	/**
+	 * @param deferWrites whether model files are written by
+	 *            {@link #performDeferredWrites()} instead of while the ASTs are
+	 *            accepted, e.g. when processing off the build thread
+	 */
+	AnnotationProcessor(ProjectContext context, Map<ICompilationUnit, BuildContext> fileMap, boolean deferWrites) {
 		this.context = context;
 		this.fileMap = fileMap;
+		this.deferredWrites = deferWrites ? new ArrayList<AnnotationVisitor.ModelWrite>() : null;
+	}
+
+	boolean isDeferringWrites() {
+		return deferredWrites != null;
+	}
+
+	void deferWrite(AnnotationVisitor.ModelWrite write) {
+		deferredWrites.add(write);
+	}
+
+	/**
+	 * Writes the model files in the order their components were processed.
+	 * Must be called from the build thread.
+	 */
+	void performDeferredWrites() {
+		if (deferredWrites == null) {
+			return;
+		}
+
+		for (AnnotationVisitor.ModelWrite write : deferredWrites) {
+			try {
+				write.perform();
+			} catch (CoreException e) {
+				Activator.log(e);
+			}
+		}
+
+		deferredWrites.clear();
 	}
 
 	static String getCompilationUnitKey(ICompilationUnit source) {
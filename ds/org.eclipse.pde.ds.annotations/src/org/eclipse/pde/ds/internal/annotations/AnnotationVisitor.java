@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017 Ecliptical Software Inc. and others.
+ * Copyright (c) 2017, 2018 Ecliptical Software Inc. and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,9 +14,12 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -66,6 +69,7 @@ import org.eclipse.jdt.core.dom.NormalAnnotation;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.DocumentRewriteSession;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
 import org.eclipse.jface.text.IDocument;
@@ -361,19 +365,29 @@ public class AnnotationVisitor extends ASTVisitor {
 		IFile file = PDEProject.getBundleRelativeFile(project, path);
 		IPath filePath = file.getFullPath();
 
-		processor.verifyOutputLocation(file);
-
 		// handle file move/rename
+		IFile oldFile = null;
 		String oldPath = state.getModelFile(implClass);
 		if (oldPath != null && !oldPath.equals(dsKey) && !file.exists()) {
-			IFile oldFile = PDEProject.getBundleRelativeFile(project, Path.fromPortableString(oldPath));
-			if (oldFile.exists()) {
-				try {
-					oldFile.move(file.getFullPath(), true, true, null);
-				} catch (CoreException e) {
-					Activator.log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, String.format("Unable to move model file from '%s' to '%s'.", oldPath, file.getFullPath()), e)); //$NON-NLS-1$
-				}
+			oldFile = PDEProject.getBundleRelativeFile(project, Path.fromPortableString(oldPath));
+		}
+
+		// unless the model file is open in an editor, generate it without a file buffer
+		if (processor.isDeferringWrites() || (!isOpen(file) && (oldFile == null || !isOpen(oldFile)))) {
+			ModelWrite write = createModelWrite(file, oldFile, type, typeBinding, annotation, annotationBinding, params, name, implClass);
+			if (processor.isDeferringWrites()) {
+				processor.deferWrite(write);
+			} else {
+				write.perform();
 			}
+
+			return;
+		}
+
+		processor.verifyOutputLocation(file);
+
+		if (oldFile != null) {
+			moveModelFile(oldFile, file);
 		}
 
 		ITextFileBufferManager bufferManager = FileBuffers.getTextFileBufferManager();
@@ -385,6 +399,66 @@ public class AnnotationVisitor extends ASTVisitor {
 
 		IDocument document = buffer.getDocument();
 
+		final DSModel dsModel = createModel(document, file);
+
+		try {
+			processComponent(dsModel, type, typeBinding, annotation, annotationBinding, params, name, implClass);
+
+			TextEdit[] edits = dsModel.getLastTextChangeListener().getTextOperations();
+			if (edits.length > 0) {
+				if (debug.isDebugging()) {
+					debug.trace(String.format("Saving model: %s", file.getFullPath())); //$NON-NLS-1$
+				}
+
+				final MultiTextEdit edit = new MultiTextEdit();
+				edit.addChildren(edits);
+
+				applyEdit(bufferManager, buffer, document, edit);
+
+				buffer.commit(null, true);
+			}
+		} finally {
+			dsModel.dispose();
+			bufferManager.disconnect(buffer.getLocation(), LocationKind.IFILE, null);
+		}
+	}
+
+	private static boolean isOpen(IFile file) {
+		return FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE) != null;
+	}
+
+	/**
+	 * Processes the component without touching the workspace; the model is
+	 * built on a detached copy of the model file and the resulting contents, if
+	 * different from the current ones, are written by the returned
+	 * {@link ModelWrite}.
+	 */
+	private ModelWrite createModelWrite(IFile file, IFile oldFile, TypeDeclaration type, ITypeBinding typeBinding, Annotation annotation, IAnnotationBinding annotationBinding, Map<String, ?> params, String name, String implClass) throws CoreException {
+		IFile source = oldFile != null && oldFile.exists() ? oldFile : file;
+		String oldContents = readContents(source);
+		IDocument document = new Document(oldContents);
+
+		DSModel dsModel = createModel(document, file);
+
+		try {
+			processComponent(dsModel, type, typeBinding, annotation, annotationBinding, params, name, implClass);
+
+			String contents = null;
+			if (dsModel.getLastTextChangeListener().getTextOperations().length > 0) {
+				contents = dsModel.getContents();
+				if (contents.equals(oldContents) && source.exists()) {
+					// leave unchanged files alone
+					contents = null;
+				}
+			}
+
+			return new ModelWrite(processor, file, oldFile, contents);
+		} finally {
+			dsModel.dispose();
+		}
+	}
+
+	private static DSModel createModel(IDocument document, IFile file) {
 		final DSModel dsModel = new DSModel(document, true);
 		dsModel.setUnderlyingResource(file);
 		dsModel.setCharset("UTF-8"); //$NON-NLS-1$
@@ -421,58 +495,77 @@ public class AnnotationVisitor extends ASTVisitor {
 			}
 		});
 
-		try {
-			processComponent(dsModel, type, typeBinding, annotation, annotationBinding, params, name, implClass);
+		return dsModel;
+	}
 
-			TextEdit[] edits = dsModel.getLastTextChangeListener().getTextOperations();
-			if (edits.length > 0) {
-				if (debug.isDebugging()) {
-					debug.trace(String.format("Saving model: %s", file.getFullPath())); //$NON-NLS-1$
-				}
+	private static String readContents(IFile file) throws CoreException {
+		// prefer the contents of an open editor, if any
+		ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+		if (buffer != null) {
+			return buffer.getDocument().get();
+		}
 
-				final MultiTextEdit edit = new MultiTextEdit();
-				edit.addChildren(edits);
+		if (!file.exists()) {
+			return ""; //$NON-NLS-1$
+		}
 
-				if (buffer.isSynchronizationContextRequested()) {
-					final IDocument doc = document;
-					final CoreException[] ex = new CoreException[1];
-					final CountDownLatch latch = new CountDownLatch(1);
-					bufferManager.execute(new Runnable() {
-						@Override
-						public void run() {
-							try {
-								performEdit(doc, edit);
-							} catch (CoreException e) {
-								ex[0] = e;
-							}
+		StringBuilder buf = new StringBuilder();
+		try (Reader reader = new InputStreamReader(file.getContents(true), file.getCharset())) {
+			char[] chars = new char[8192];
+			int read;
+			while ((read = reader.read(chars)) != -1) {
+				buf.append(chars, 0, read);
+			}
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, String.format("Unable to read model file '%s'.", file.getFullPath()), e)); //$NON-NLS-1$
+		}
 
-							latch.countDown();
-						}
-					});
+		return buf.toString();
+	}
 
+	private static void moveModelFile(IFile oldFile, IFile file) {
+		if (oldFile.exists()) {
+			try {
+				oldFile.move(file.getFullPath(), true, true, null);
+			} catch (CoreException e) {
+				Activator.log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, String.format("Unable to move model file from '%s' to '%s'.", oldFile.getFullPath(), file.getFullPath()), e)); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private static void applyEdit(ITextFileBufferManager bufferManager, ITextFileBuffer buffer, final IDocument document, final TextEdit edit) throws CoreException {
+		if (buffer.isSynchronizationContextRequested()) {
+			final CoreException[] ex = new CoreException[1];
+			final CountDownLatch latch = new CountDownLatch(1);
+			bufferManager.execute(new Runnable() {
+				@Override
+				public void run() {
 					try {
-						latch.await();
-					} catch (InterruptedException e) {
-						if (debug.isDebugging())
-							debug.trace("Interrupted while waiting for edits to complete on display thread.", e); //$NON-NLS-1$
+						performEdit(document, edit);
+					} catch (CoreException e) {
+						ex[0] = e;
 					}
 
-					if (ex[0] != null) {
-						throw ex[0];
-					}
-				} else {
-					performEdit(document, edit);
+					latch.countDown();
 				}
+			});
 
-				buffer.commit(null, true);
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				if (debug.isDebugging())
+					debug.trace("Interrupted while waiting for edits to complete on display thread.", e); //$NON-NLS-1$
 			}
-		} finally {
-			dsModel.dispose();
-			bufferManager.disconnect(buffer.getLocation(), LocationKind.IFILE, null);
+
+			if (ex[0] != null) {
+				throw ex[0];
+			}
+		} else {
+			performEdit(document, edit);
 		}
 	}
 
-	private void performEdit(IDocument document, TextEdit edit) throws CoreException {
+	private static void performEdit(IDocument document, TextEdit edit) throws CoreException {
 		DocumentRewriteSession session = null;
 		try {
 			if (document instanceof IDocumentExtension4) {
@@ -492,6 +585,78 @@ public class AnnotationVisitor extends ASTVisitor {
 		}
 	}
 
+	/**
+	 * Pending update of a model file, computed while processing a compilation
+	 * unit. Model files that are not open in an editor are written directly.
+	 */
+	static class ModelWrite {
+
+		private final AnnotationProcessor processor;
+
+		private final IFile file;
+
+		private final IFile oldFile;
+
+		private final String contents;
+
+		ModelWrite(AnnotationProcessor processor, IFile file, IFile oldFile, String contents) {
+			this.processor = processor;
+			this.file = file;
+			this.oldFile = oldFile;
+			this.contents = contents;
+		}
+
+		void perform() throws CoreException {
+			processor.verifyOutputLocation(file);
+
+			if (oldFile != null && !file.exists()) {
+				moveModelFile(oldFile, file);
+			}
+
+			if (contents == null) {
+				return;
+			}
+
+			IPath filePath = file.getFullPath();
+			if (debug.isDebugging()) {
+				debug.trace(String.format("Saving model: %s", filePath)); //$NON-NLS-1$
+			}
+
+			if (!isOpen(file)) {
+				byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+				if (file.exists()) {
+					file.setContents(new ByteArrayInputStream(bytes), true, true, null);
+				} else {
+					file.create(new ByteArrayInputStream(bytes), true, null);
+				}
+
+				return;
+			}
+
+			// the file is open in an editor; update it through its file buffer
+			ITextFileBufferManager bufferManager = FileBuffers.getTextFileBufferManager();
+			bufferManager.connect(filePath, LocationKind.IFILE, null);
+			ITextFileBuffer buffer = bufferManager.getTextFileBuffer(filePath, LocationKind.IFILE);
+			try {
+				if (buffer.isDirty()) {
+					buffer.commit(null, true);
+				}
+
+				IDocument document = buffer.getDocument();
+				if (!contents.equals(document.get()) || !file.exists()) {
+					MultiTextEdit edit = new MultiTextEdit();
+					edit.addChild(new ReplaceEdit(0, document.getLength(), contents));
+
+					applyEdit(bufferManager, buffer, document, edit);
+
+					buffer.commit(null, true);
+				}
+			} finally {
+				bufferManager.disconnect(filePath, LocationKind.IFILE, null);
+			}
+		}
+	}
+
 	private void processComponent(IDSModel model, TypeDeclaration type, ITypeBinding typeBinding, Annotation annotation, IAnnotationBinding annotationBinding, Map<String, ?> params, String name, String implClass) {
 		Object value;
 		Collection<String> services;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2017 Ecliptical Software Inc. and others.
+ * Copyright (c) 2012, 2018 Ecliptical Software Inc. and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,20 +11,29 @@
  *******************************************************************************/
 package org.eclipse.pde.ds.internal.annotations;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -88,18 +97,27 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 
 	static final String ANNOTATIONS_PACKAGE = COMPONENT_ANNOTATION.substring(0, COMPONENT_ANNOTATION.lastIndexOf('.'));
 
+	private static final char[] ANNOTATIONS_PACKAGE_CHARS = ANNOTATIONS_PACKAGE.toCharArray();
+
+	private static final char[] COMPONENT_NAME_CHARS = COMPONENT_ANNOTATION.substring(COMPONENT_ANNOTATION.lastIndexOf('.') + 1).toCharArray();
+
 	private static final IPath COMPONENT_ANNOTATION_PATH = new Path(COMPONENT_ANNOTATION.replace('.',  '/'));
 
 	private static final Pattern ACCESS_RULE_PATTERN = Pattern.compile("(\\*\\*)|\\*|\\?"); //$NON-NLS-1$
 
 	private static final QualifiedName PROP_STATE = new QualifiedName(Activator.PLUGIN_ID, "state"); //$NON-NLS-1$
 
-	private static final String STATE_FILENAME = "state.dat"; //$NON-NLS-1$
+	private static final String STATE_FILENAME = "state.bin"; //$NON-NLS-1$
+
+	// Java-serialized state written by earlier versions
+	private static final String LEGACY_STATE_FILENAME = "state.dat"; //$NON-NLS-1$
 
 	static final String BUILDPATH_PROBLEM_MARKER = "org.eclipse.pde.ds.annotations.buildpath_problem"; //$NON-NLS-1$
 
 	private static final Debug debug = Debug.getDebug("ds-annotation-builder"); //$NON-NLS-1$
 
+	private static final int MAX_PROCESSING_THREADS = 8;
+
 	private final Map<IJavaProject, ProjectContext> processingContext = Collections.synchronizedMap(new HashMap<IJavaProject, ProjectContext>());
 
 	@Override
@@ -205,10 +223,8 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 		ProjectState state = null;
 		try {
 			Object value = project.getProject().getSessionProperty(PROP_STATE);
-			if (value instanceof SoftReference<?>) {
-				@SuppressWarnings("unchecked")
-				SoftReference<ProjectState> ref = (SoftReference<ProjectState>) value;
-				state = ref.get();
+			if (value instanceof ProjectState) {
+				state = (ProjectState) value;
 			}
 		} catch (CoreException e) {
 			Activator.log(e);
@@ -228,7 +244,7 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 			}
 
 			try {
-				project.getProject().setSessionProperty(PROP_STATE, new SoftReference<>(state));
+				project.getProject().setSessionProperty(PROP_STATE, state);
 			} catch (CoreException e) {
 				Activator.log(e);
 			}
@@ -237,8 +253,42 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 		return state;
 	}
 
+	/**
+	 * Discards the state of the given project held in memory; it is read from
+	 * the state file the next time it is needed. The state is also discarded
+	 * when the project is closed or deleted.
+	 */
+	public static void invalidateState(IProject project) {
+		try {
+			project.setSessionProperty(PROP_STATE, null);
+		} catch (CoreException e) {
+			Activator.log(e);
+		}
+	}
+
 	private static ProjectState loadState(IProject project) throws IOException {
 		File stateFile = getStateFile(project);
+		if (!stateFile.canRead()) {
+			return loadLegacyState(project);
+		}
+
+		long start = System.currentTimeMillis();
+		ProjectState state;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+			state = ProjectState.read(in);
+		}
+
+		if (debug.isDebugging()) {
+			debug.trace(String.format("Loaded state for project %s in %d ms.", project.getName(), System.currentTimeMillis() - start)); //$NON-NLS-1$
+			for (String cuKey : state.getCompilationUnits())
+				debug.trace(String.format("%s -> %s", cuKey, state.getModelFiles(cuKey))); //$NON-NLS-1$
+		}
+
+		return state;
+	}
+
+	private static ProjectState loadLegacyState(IProject project) throws IOException {
+		File stateFile = getLegacyStateFile(project);
 		if (!stateFile.canRead()) {
 			if (debug.isDebugging())
 				debug.trace(String.format("Missing or invalid project state file: %s", stateFile)); //$NON-NLS-1$
@@ -251,11 +301,13 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 			ProjectState state = (ProjectState) in.readObject();
 
 			if (debug.isDebugging()) {
-				debug.trace(String.format("Loaded state for project: %s", project.getName())); //$NON-NLS-1$
+				debug.trace(String.format("Loaded legacy state for project: %s", project.getName())); //$NON-NLS-1$
 				for (String cuKey : state.getCompilationUnits())
 					debug.trace(String.format("%s -> %s", cuKey, state.getModelFiles(cuKey))); //$NON-NLS-1$
 			}
 
+			// rewritten in the current format when saved
+			state.invalidatePersistedState();
 			return state;
 		} catch (ClassNotFoundException e) {
 			IOException ex = new IOException("Unable to deserialize project state."); //$NON-NLS-1$
@@ -294,6 +346,18 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 				}
 			}
 
+			// forget skipped files that no longer exist
+			ArrayList<String> deleted = new ArrayList<>();
+			for (String filePath : state.getSkippedFiles()) {
+				if (!project.getProject().getFile(Path.fromPortableString(filePath)).exists()) {
+					deleted.add(filePath);
+				}
+			}
+
+			for (String filePath : deleted) {
+				state.removeSkipped(filePath);
+			}
+
 			// retain abandoned files that are still mapped elsewhere
 			HashSet<String> retained = new HashSet<>();
 			for (String cuKey : state.getCompilationUnits()) {
@@ -375,7 +439,13 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 					saveState(project.getProject(), state);
 				} catch (IOException e) {
 					Activator.log(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Error saving file mappings.", e)); //$NON-NLS-1$
+					// the state file may be incomplete; start over with a full build
+					getStateFile(project.getProject()).delete();
+					invalidateState(project.getProject());
 				}
+			} else {
+				// changes made during the build were reverted
+				state.discardChanges();
 			}
 
 			// delete all abandoned files
@@ -442,11 +512,26 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 			}
 		}
 
-		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(stateFile));
-		try {
-			out.writeObject(state);
-		} finally {
-			out.close();
+		if (stateFile.isFile() && state.canAppendChanges()) {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(stateFile, true)))) {
+				state.writeChanges(out);
+			}
+
+			state.setPersisted(true);
+			return;
+		}
+
+		File tempFile = new File(stateFile.getParentFile(), STATE_FILENAME + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			state.write(out);
+		}
+
+		Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		state.setPersisted(false);
+
+		File legacyStateFile = getLegacyStateFile(project);
+		if (legacyStateFile.exists()) {
+			legacyStateFile.delete();
 		}
 	}
 
@@ -628,7 +713,7 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 	@Override
 	public void processAnnotations(BuildContext[] files) {
 		// we need to process CUs in context of a project; separate them by project
-		HashMap<IJavaProject, Map<ICompilationUnit, BuildContext>> filesByProject = new HashMap<>();
+		LinkedHashMap<IJavaProject, Map<ICompilationUnit, BuildContext>> filesByProject = new LinkedHashMap<>();
 		for (BuildContext file : files) {
 			if (debug.isDebugging()) {
 				debug.trace(String.format("Creating compilation unit from file %s.", file.getFile().getFullPath())); //$NON-NLS-1$
@@ -644,28 +729,163 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 				continue;
 			}
 
-			if (canSkipFile(cu)) {
+			if (canSkipFile(cu, file)) {
 				markAsAbandoned(cu);
 				continue;
 			}
 
 			Map<ICompilationUnit, BuildContext> map = filesByProject.get(cu.getJavaProject());
 			if (map == null) {
-				map = new HashMap<>();
+				map = new LinkedHashMap<>();
 				filesByProject.put(cu.getJavaProject(), map);
 			}
 
 			map.put(cu, file);
 		}
 
+		// independent projects may be processed concurrently
+		int threads = getProcessingThreads(filesByProject.size());
+		if (threads > 1) {
+			processConcurrently(filesByProject, threads);
+			return;
+		}
+
 		// process all CUs in each project
 		for (Map.Entry<IJavaProject, Map<ICompilationUnit, BuildContext>> entry : filesByProject.entrySet()) {
 			if (debug.isDebugging()) {
 				debug.trace(String.format("Processing compilation units in project %s.", entry.getKey().getElementName())); //$NON-NLS-1$
 			}
 
-			processAnnotations(entry.getKey(), entry.getValue());
+			processAnnotations(entry.getKey(), entry.getValue(), false);
+		}
+	}
+
+	private static int getProcessingThreads(int projectCount) {
+		if (projectCount < 2) {
+			return 1;
+		}
+
+		int threads = Platform.getPreferencesService().getInt(Activator.PLUGIN_ID, Activator.PREF_PROCESSING_THREADS, 1, new IScopeContext[] { InstanceScope.INSTANCE, DefaultScope.INSTANCE });
+		return Math.min(projectCount, Math.min(threads, MAX_PROCESSING_THREADS));
+	}
+
+	/**
+	 * Parses and processes the compilation units of each project in a separate
+	 * task. Workspace changes cannot be made off the build thread, so model
+	 * files are written once each project is processed, on the build thread and
+	 * in the order the projects were given.
+	 */
+	private void processConcurrently(Map<IJavaProject, Map<ICompilationUnit, BuildContext>> filesByProject, int threads) {
+		if (debug.isDebugging()) {
+			debug.trace(String.format("Processing compilation units in %d projects with %d threads.", filesByProject.size(), threads)); //$NON-NLS-1$
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List<ForkJoinTask<AnnotationProcessor>> tasks = new ArrayList<>(filesByProject.size());
+			for (final Map.Entry<IJavaProject, Map<ICompilationUnit, BuildContext>> entry : filesByProject.entrySet()) {
+				tasks.add(pool.submit(new Callable<AnnotationProcessor>() {
+					@Override
+					public AnnotationProcessor call() {
+						return processAnnotations(entry.getKey(), entry.getValue(), true);
+					}
+				}));
+			}
+
+			for (ForkJoinTask<AnnotationProcessor> task : tasks) {
+				try {
+					task.join().performDeferredWrites();
+				} catch (RuntimeException e) {
+					Activator.log(e);
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Determines whether the given compilation unit can be skipped by scanning
+	 * its contents, which avoids opening its Java model elements. Files found
+	 * to contain no component annotations are remembered in the project state
+	 * until they are modified.
+	 */
+	private boolean canSkipFile(ICompilationUnit cu, BuildContext file) {
+		ProjectState state = processingContext.get(cu.getJavaProject()).getState();
+		IFile resource = file.getFile();
+		String filePath = resource.getProjectRelativePath().toPortableString();
+		long modificationStamp = resource.getModificationStamp();
+		long localTimeStamp = resource.getLocalTimeStamp();
+		if (state.isSkipped(filePath, modificationStamp, localTimeStamp)) {
+			return true;
+		}
+
+		char[] contents;
+		try {
+			contents = file.getContents();
+		} catch (RuntimeException e) {
+			// unable to read the file; fall back to the Java model
+			if (debug.isDebugging()) {
+				debug.trace(String.format("Unable to read contents of file %s.", resource.getFullPath()), e); //$NON-NLS-1$
+			}
+
+			return canSkipFile(cu);
+		}
+
+		if (mayContainComponent(contents)) {
+			state.removeSkipped(filePath);
+			return false;
+		}
+
+		state.setSkipped(filePath, modificationStamp, localTimeStamp);
+		return true;
+	}
+
+	/**
+	 * Returns whether the given source may declare a component, i.e., whether
+	 * it refers to the annotations package and contains the simple name of the
+	 * component annotation as a separate token. This may give false positives
+	 * (e.g., names in comments) but never false negatives for source that does
+	 * not use unicode escapes in these names.
+	 */
+	static boolean mayContainComponent(char[] contents) {
+		if (contents == null || indexOf(contents, ANNOTATIONS_PACKAGE_CHARS, 0) == -1) {
+			return false;
+		}
+
+		int index = 0;
+		while ((index = indexOf(contents, COMPONENT_NAME_CHARS, index)) != -1) {
+			int end = index + COMPONENT_NAME_CHARS.length;
+			if ((index == 0 || !Character.isJavaIdentifierPart(contents[index - 1]))
+					&& (end == contents.length || !Character.isJavaIdentifierPart(contents[end]))) {
+				return true;
+			}
+
+			index = end;
+		}
+
+		return false;
+	}
+
+	private static int indexOf(char[] contents, char[] chars, int start) {
+		int max = contents.length - chars.length;
+		char first = chars[0];
+		for (int i = start; i <= max; ++i) {
+			if (contents[i] != first) {
+				continue;
+			}
+
+			int j = 1;
+			while (j < chars.length && contents[i + j] == chars[j]) {
+				++j;
+			}
+
+			if (j == chars.length) {
+				return i;
+			}
 		}
+
+		return -1;
 	}
 
 	public boolean canSkipFile(ICompilationUnit cu) {
@@ -714,7 +934,9 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 		}
 	}
 
-	private void processAnnotations(IJavaProject javaProject, Map<ICompilationUnit, BuildContext> fileMap) {
+	private AnnotationProcessor processAnnotations(IJavaProject javaProject, Map<ICompilationUnit, BuildContext> fileMap, boolean deferWrites) {
+		long start = System.currentTimeMillis();
+
 		@SuppressWarnings("deprecation")
 		ASTParser parser = ASTParser.newParser(AST.JLS4);
 		parser.setResolveBindings(true);
@@ -728,7 +950,14 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 		parser.setIgnoreMethodBodies(state.getErrorLevel() == ValidationErrorLevel.ignore);
 
 		ICompilationUnit[] cuArr = fileMap.keySet().toArray(new ICompilationUnit[fileMap.size()]);
-		parser.createASTs(cuArr, new String[0], new AnnotationProcessor(projectContext, fileMap), null);
+		AnnotationProcessor processor = new AnnotationProcessor(projectContext, fileMap, deferWrites);
+		parser.createASTs(cuArr, new String[0], processor, null);
+
+		if (debug.isDebugging()) {
+			debug.trace(String.format("Processed %d compilation units in project %s in %d ms.", fileMap.size(), javaProject.getElementName(), System.currentTimeMillis() - start)); //$NON-NLS-1$
+		}
+
+		return processor;
 	}
 
 	public static boolean isManaged(IProject project) {
@@ -737,8 +966,7 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 				return true;
 			}
 
-			File stateFile = getStateFile(project);
-			return stateFile.canRead();
+			return getStateFile(project).canRead() || getLegacyStateFile(project).canRead();
 		} catch (CoreException e) {
 			return false;
 		}
@@ -749,4 +977,9 @@ public class DSAnnotationCompilationParticipant extends CompilationParticipant {
 		File stateFile = new File(workDir, STATE_FILENAME);
 		return stateFile;
 	}
+
+	private static File getLegacyStateFile(IProject project) {
+		File workDir = project.getWorkingLocation(Activator.PLUGIN_ID).toFile();
+		return new File(workDir, LEGACY_STATE_FILENAME);
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2017 Ecliptical Software Inc. and others.
+ * Copyright (c) 2016, 2018 Ecliptical Software Inc. and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,5 +25,6 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
 		defaults.putBoolean(Activator.PREF_CLASSPATH, true);
 		defaults.put(Activator.PREF_VALIDATION_ERROR_LEVEL, ValidationErrorLevel.error.name());
 		defaults.put(Activator.PREF_MISSING_UNBIND_METHOD_ERROR_LEVEL, ValidationErrorLevel.error.name());
+		defaults.putInt(Activator.PREF_PROCESSING_THREADS, 1);
 	}
 }
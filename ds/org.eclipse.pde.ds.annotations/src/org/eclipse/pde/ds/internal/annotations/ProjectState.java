@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2017 Ecliptical Software Inc. and others.
+ * Copyright (c) 2012, 2018 Ecliptical Software Inc. and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,12 +10,16 @@
  *******************************************************************************/
 package org.eclipse.pde.ds.internal.annotations;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.ListIterator;
 import java.util.Map;
 
@@ -23,11 +27,25 @@ import org.eclipse.jdt.core.JavaCore;
 
 public class ProjectState implements Serializable, Cloneable {
 
+	// Java serialization is only used to read state files written by earlier versions
 	private static final long serialVersionUID = 8616641822921441882L;
 
 	// current state file format version
 	public static final int FORMAT_VERSION = 1;
 
+	// binary state file header
+	private static final int MAGIC = 0x44535053; // DSPS
+
+	// binary state file layout version
+	private static final int BINARY_VERSION = 1;
+
+	private static final byte RECORD_MAPPINGS = 1;
+
+	private static final byte RECORD_SKIPPED = 2;
+
+	// minimum number of records appended to the state file before it is rewritten in full
+	private static final int MIN_JOURNAL_SIZE = 256;
+
 	// package-prefixed CU name (w/out file extension) to plugin-root-relative (portable) paths of generated DS files (deprecated)
 	// note: we keep it non-null in case user downgrades to older plugin version where old logic depends on that
 	private /*final*/ Map<String, Collection<String>> mappings = new HashMap<>();
@@ -46,15 +64,28 @@ public class ProjectState implements Serializable, Cloneable {
 	// fully-qualified component type to plugin-root-relative (portable) path of corresponding generated DS file
 	private Map<String, String> files;
 
+	// project-relative (portable) path of CUs found to contain no component annotations to the stamp of the scanned file
+	private Map<String, FileStamp> skipped;
+
 	// (de)serialized state file format version
 	private int formatVersion = FORMAT_VERSION;
 
+	// changes made since the state was last persisted, the latest change of each CU mapping or skipped file
+	private transient LinkedHashMap<String, Change> changes;
+
+	// whether the state file is up to date except for the recorded changes
+	private transient boolean persisted;
+
+	// number of records appended to the state file since it was written in full
+	private transient int journalSize;
+
 	public int getFormatVersion() {
 		return formatVersion;
 	}
 
 	public void setFormatVersion(int formatVersion) {
 		this.formatVersion = formatVersion;
+		persisted = false;
 	}
 
 	public Collection<String> getCompilationUnits() {
@@ -76,6 +107,14 @@ public class ProjectState implements Serializable, Cloneable {
 	}
 
 	public Collection<String> removeMappings(String cuKey) {
+		if (types == null ? mappings.containsKey(toLegacyCUKey(cuKey)) : types.containsKey(cuKey)) {
+			recordChange(new Change(cuKey, Collections.<String, String>emptyMap()));
+		}
+
+		return doRemoveMappings(cuKey);
+	}
+
+	private Collection<String> doRemoveMappings(String cuKey) {
 		if (types == null) {
 			// fall back to (deprecated) mappings
 			return mappings.remove(toLegacyCUKey(cuKey));
@@ -132,7 +171,11 @@ public class ProjectState implements Serializable, Cloneable {
 	}
 
 	public Collection<String> updateMappings(String cuKey, HashMap<String, String> dsKeys) {
-		Collection<String> oldDSKeys = removeMappings(cuKey);
+		if (!hasMappings(cuKey, dsKeys)) {
+			recordChange(new Change(cuKey, new HashMap<>(dsKeys)));
+		}
+
+		Collection<String> oldDSKeys = doRemoveMappings(cuKey);
 		if (!dsKeys.isEmpty()) {
 			getTypes().put(cuKey, new HashSet<>(dsKeys.keySet()));
 			getFiles().putAll(dsKeys);
@@ -141,12 +184,67 @@ public class ProjectState implements Serializable, Cloneable {
 		return oldDSKeys;
 	}
 
+	// whether the given CU is already mapped to exactly the given DS files
+	private boolean hasMappings(String cuKey, Map<String, String> dsKeys) {
+		if (types == null) {
+			return false;
+		}
+
+		Collection<String> cuTypes = types.get(cuKey);
+		if (cuTypes == null) {
+			return dsKeys.isEmpty();
+		}
+
+		if (!cuTypes.equals(dsKeys.keySet())) {
+			return false;
+		}
+
+		for (Map.Entry<String, String> entry : dsKeys.entrySet()) {
+			if (files == null || !entry.getValue().equals(files.get(entry.getKey()))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public boolean isSkipped(String filePath, long modificationStamp, long localTimeStamp) {
+		if (skipped == null) {
+			return false;
+		}
+
+		FileStamp stamp = skipped.get(filePath);
+		return stamp != null && stamp.modificationStamp == modificationStamp && stamp.localTimeStamp == localTimeStamp;
+	}
+
+	public void setSkipped(String filePath, long modificationStamp, long localTimeStamp) {
+		if (skipped == null) {
+			skipped = new HashMap<>();
+		}
+
+		FileStamp stamp = new FileStamp(modificationStamp, localTimeStamp);
+		if (!stamp.equals(skipped.put(filePath, stamp))) {
+			recordChange(new Change(filePath, stamp));
+		}
+	}
+
+	public void removeSkipped(String filePath) {
+		if (skipped != null && skipped.remove(filePath) != null) {
+			recordChange(new Change(filePath, (FileStamp) null));
+		}
+	}
+
+	public Collection<String> getSkippedFiles() {
+		return skipped == null ? Collections.<String>emptySet() : Collections.unmodifiableCollection(skipped.keySet());
+	}
+
 	public String getPath() {
 		return path;
 	}
 
 	public void setPath(String path) {
 		this.path = path;
+		persisted = false;
 	}
 
 	public DSAnnotationVersion getSpecVersion() {
@@ -155,6 +253,7 @@ public class ProjectState implements Serializable, Cloneable {
 
 	public void setSpecVersion(DSAnnotationVersion specVersion) {
 		this.specVersion = specVersion;
+		persisted = false;
 	}
 
 	public ValidationErrorLevel getErrorLevel() {
@@ -163,6 +262,7 @@ public class ProjectState implements Serializable, Cloneable {
 
 	public void setErrorLevel(ValidationErrorLevel errorLevel) {
 		this.errorLevel = errorLevel;
+		persisted = false;
 	}
 
 	public ValidationErrorLevel getMissingUnbindMethodLevel() {
@@ -171,6 +271,7 @@ public class ProjectState implements Serializable, Cloneable {
 
 	public void setMissingUnbindMethodLevel(ValidationErrorLevel missingUnbindMethodLevel) {
 		this.missingUnbindMethodLevel = missingUnbindMethodLevel;
+		persisted = false;
 	}
 
 	private Map<String, Collection<String>> getTypes() {
@@ -214,6 +315,12 @@ public class ProjectState implements Serializable, Cloneable {
 			clone.files = new HashMap<>(files);
 		}
 
+		if (skipped != null) {
+			clone.skipped = new HashMap<>(skipped);
+		}
+
+		clone.changes = null;
+
 		return clone;
 	}
 
@@ -235,7 +342,8 @@ public class ProjectState implements Serializable, Cloneable {
 				&& missingUnbindMethodLevel == o.missingUnbindMethodLevel
 				&& mappings.equals(o.mappings)
 				&& (files == null ? o.files == null : files.equals(o.files))
-				&& (types == null ? o.types == null : types.equals(o.types));
+				&& (types == null ? o.types == null : types.equals(o.types))
+				&& (skipped == null ? o.skipped == null : skipped.equals(o.skipped));
 	}
 
 	@Override
@@ -244,11 +352,388 @@ public class ProjectState implements Serializable, Cloneable {
 		buf.append(path).append(";mappings="); //$NON-NLS-1$
 		buf.append(mappings).append(";types="); //$NON-NLS-1$
 		buf.append(types).append(";files="); //$NON-NLS-1$
-		buf.append(files).append(";errorLevel="); //$NON-NLS-1$
+		buf.append(files).append(";skipped="); //$NON-NLS-1$
+		buf.append(skipped == null ? 0 : skipped.size()).append(";errorLevel="); //$NON-NLS-1$
 		buf.append(specVersion).append(";specVersion="); //$NON-NLS-1$
 		buf.append(errorLevel).append(";missingUnbindMethodLevel="); //$NON-NLS-1$
 		buf.append(missingUnbindMethodLevel).append(";formatVersion="); //$NON-NLS-1$
 		buf.append(formatVersion).append(']');
 		return buf.toString();
 	}
+
+	private void recordChange(Change change) {
+		if (!persisted) {
+			// the state file is rewritten in full
+			return;
+		}
+
+		if (changes == null) {
+			changes = new LinkedHashMap<>();
+		}
+
+		// only the latest change of a CU mapping or skipped file is kept
+		String key = (change.dsKeys == null ? 'S' : 'M') + change.key;
+		changes.remove(key);
+		changes.put(key, change);
+		if (!canAppendChanges()) {
+			// too many changes to append; rewrite the state file in full instead
+			changes = null;
+			persisted = false;
+		}
+	}
+
+	/**
+	 * Discards the changes recorded since the state was last persisted,
+	 * when the state is known to be the same as when it was persisted.
+	 */
+	public void discardChanges() {
+		changes = null;
+	}
+
+	/**
+	 * Returns whether the changes made since the state was last persisted can
+	 * be appended to the state file, rather than rewriting it in full. The file
+	 * is rewritten when settings changed, or once the appended records
+	 * outnumber the entries of the state.
+	 */
+	public boolean canAppendChanges() {
+		if (!persisted) {
+			return false;
+		}
+
+		int size = (changes == null ? 0 : changes.size()) + journalSize;
+		int entries = (types == null ? mappings.size() : types.size()) + (skipped == null ? 0 : skipped.size());
+		return size <= Math.max(MIN_JOURNAL_SIZE, entries);
+	}
+
+	/**
+	 * Marks the state as persisted after it was written in full with
+	 * {@link #write(DataOutputStream)} or its changes were appended with
+	 * {@link #writeChanges(DataOutputStream)}.
+	 */
+	public void setPersisted(boolean appended) {
+		if (appended) {
+			journalSize += changes == null ? 0 : changes.size();
+		} else {
+			journalSize = 0;
+		}
+
+		changes = null;
+		persisted = true;
+	}
+
+	/**
+	 * Requires the state to be written in full the next time it is persisted.
+	 */
+	public void invalidatePersistedState() {
+		changes = null;
+		persisted = false;
+	}
+
+	/**
+	 * Writes the complete state. All strings are written once in a table at
+	 * the start and referred to by index.
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+		addString(strings, path);
+		addString(strings, specVersion == null ? null : specVersion.name());
+		addString(strings, errorLevel == null ? null : errorLevel.name());
+		addString(strings, missingUnbindMethodLevel == null ? null : missingUnbindMethodLevel.name());
+		addStrings(strings, mappings);
+		if (types != null) {
+			addStrings(strings, types);
+		}
+
+		if (files != null) {
+			for (Map.Entry<String, String> entry : files.entrySet()) {
+				addString(strings, entry.getKey());
+				addString(strings, entry.getValue());
+			}
+		}
+
+		if (skipped != null) {
+			for (String filePath : skipped.keySet()) {
+				addString(strings, filePath);
+			}
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(BINARY_VERSION);
+		out.writeInt(formatVersion);
+		out.writeInt(strings.size());
+		for (String string : strings.keySet()) {
+			out.writeUTF(string);
+		}
+
+		writeString(out, strings, path);
+		writeString(out, strings, specVersion == null ? null : specVersion.name());
+		writeString(out, strings, errorLevel == null ? null : errorLevel.name());
+		writeString(out, strings, missingUnbindMethodLevel == null ? null : missingUnbindMethodLevel.name());
+		writeStrings(out, strings, mappings);
+		if (types == null) {
+			out.writeInt(-1);
+		} else {
+			writeStrings(out, strings, types);
+		}
+
+		if (files == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(files.size());
+			for (Map.Entry<String, String> entry : files.entrySet()) {
+				writeString(out, strings, entry.getKey());
+				writeString(out, strings, entry.getValue());
+			}
+		}
+
+		if (skipped == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(skipped.size());
+			for (Map.Entry<String, FileStamp> entry : skipped.entrySet()) {
+				writeString(out, strings, entry.getKey());
+				out.writeLong(entry.getValue().modificationStamp);
+				out.writeLong(entry.getValue().localTimeStamp);
+			}
+		}
+	}
+
+	/**
+	 * Writes the changes made since the state was last persisted as records
+	 * to be appended to the state file.
+	 */
+	public void writeChanges(DataOutputStream out) throws IOException {
+		if (changes == null) {
+			return;
+		}
+
+		for (Change change : changes.values()) {
+			if (change.dsKeys != null) {
+				out.writeByte(RECORD_MAPPINGS);
+				out.writeUTF(change.key);
+				out.writeInt(change.dsKeys.size());
+				for (Map.Entry<String, String> entry : change.dsKeys.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeUTF(entry.getValue());
+				}
+			} else {
+				out.writeByte(RECORD_SKIPPED);
+				out.writeUTF(change.key);
+				out.writeBoolean(change.stamp != null);
+				if (change.stamp != null) {
+					out.writeLong(change.stamp.modificationStamp);
+					out.writeLong(change.stamp.localTimeStamp);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a state written with {@link #write(DataOutputStream)}, followed
+	 * by any records appended with {@link #writeChanges(DataOutputStream)}.
+	 */
+	public static ProjectState read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != BINARY_VERSION) {
+			throw new IOException("Unsupported project state format."); //$NON-NLS-1$
+		}
+
+		ProjectState state = new ProjectState();
+		state.formatVersion = in.readInt();
+		String[] strings = new String[in.readInt()];
+		for (int i = 0; i < strings.length; ++i) {
+			strings[i] = in.readUTF();
+		}
+
+		state.path = readString(in, strings);
+		state.specVersion = readEnum(in, strings, DSAnnotationVersion.class);
+		state.errorLevel = readEnum(in, strings, ValidationErrorLevel.class);
+		state.missingUnbindMethodLevel = readEnum(in, strings, ValidationErrorLevel.class);
+		state.mappings = readStrings(in, strings);
+		state.types = readStrings(in, strings);
+
+		int size = in.readInt();
+		if (size >= 0) {
+			state.files = new HashMap<>(size);
+			for (int i = 0; i < size; ++i) {
+				state.files.put(readString(in, strings), readString(in, strings));
+			}
+		}
+
+		size = in.readInt();
+		if (size >= 0) {
+			state.skipped = new HashMap<>(size);
+			for (int i = 0; i < size; ++i) {
+				state.skipped.put(readString(in, strings), new FileStamp(in.readLong(), in.readLong()));
+			}
+		}
+
+		if (state.mappings == null) {
+			state.mappings = new HashMap<>();
+		}
+
+		// replay appended records
+		int record;
+		while ((record = in.read()) != -1) {
+			String key = in.readUTF();
+			switch (record) {
+			case RECORD_MAPPINGS:
+				size = in.readInt();
+				HashMap<String, String> dsKeys = new HashMap<>(size);
+				for (int i = 0; i < size; ++i) {
+					dsKeys.put(in.readUTF(), in.readUTF());
+				}
+
+				state.updateMappings(key, dsKeys);
+				break;
+			case RECORD_SKIPPED:
+				if (in.readBoolean()) {
+					state.setSkipped(key, in.readLong(), in.readLong());
+				} else {
+					state.removeSkipped(key);
+				}
+				break;
+			default:
+				throw new IOException(String.format("Invalid project state record: %d", record)); //$NON-NLS-1$
+			}
+
+			++state.journalSize;
+		}
+
+		state.changes = null;
+		state.persisted = true;
+		return state;
+	}
+
+	private static void addString(Map<String, Integer> strings, String string) {
+		if (string != null && !strings.containsKey(string)) {
+			strings.put(string, strings.size());
+		}
+	}
+
+	private static void addStrings(Map<String, Integer> strings, Map<String, Collection<String>> map) {
+		for (Map.Entry<String, Collection<String>> entry : map.entrySet()) {
+			addString(strings, entry.getKey());
+			for (String value : entry.getValue()) {
+				addString(strings, value);
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream out, Map<String, Integer> strings, String string) throws IOException {
+		out.writeInt(string == null ? -1 : strings.get(string));
+	}
+
+	private static void writeStrings(DataOutputStream out, Map<String, Integer> strings, Map<String, Collection<String>> map) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<String, Collection<String>> entry : map.entrySet()) {
+			writeString(out, strings, entry.getKey());
+			out.writeInt(entry.getValue().size());
+			for (String value : entry.getValue()) {
+				writeString(out, strings, value);
+			}
+		}
+	}
+
+	private static String readString(DataInputStream in, String[] strings) throws IOException {
+		int index = in.readInt();
+		if (index == -1) {
+			return null;
+		}
+
+		if (index < 0 || index >= strings.length) {
+			throw new IOException(String.format("Invalid string index: %d", index)); //$NON-NLS-1$
+		}
+
+		return strings[index];
+	}
+
+	private static Map<String, Collection<String>> readStrings(DataInputStream in, String[] strings) throws IOException {
+		int size = in.readInt();
+		if (size < 0) {
+			return null;
+		}
+
+		HashMap<String, Collection<String>> map = new HashMap<>(size);
+		for (int i = 0; i < size; ++i) {
+			String key = readString(in, strings);
+			int count = in.readInt();
+			HashSet<String> values = new HashSet<>(count);
+			for (int j = 0; j < count; ++j) {
+				values.add(readString(in, strings));
+			}
+
+			map.put(key, values);
+		}
+
+		return map;
+	}
+
+	private static <T extends Enum<T>> T readEnum(DataInputStream in, String[] strings, Class<T> enumType) throws IOException {
+		String name = readString(in, strings);
+		if (name == null) {
+			return null;
+		}
+
+		try {
+			return Enum.valueOf(enumType, name);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(String.format("Invalid %s value: %s", enumType.getSimpleName(), name), e); //$NON-NLS-1$
+		}
+	}
+
+	// change to the mappings of a CU, or to the skipped stamp of a file
+	private static class Change {
+
+		final String key;
+
+		final Map<String, String> dsKeys;
+
+		final FileStamp stamp;
+
+		Change(String cuKey, Map<String, String> dsKeys) {
+			this.key = cuKey;
+			this.dsKeys = dsKeys;
+			this.stamp = null;
+		}
+
+		Change(String filePath, FileStamp stamp) {
+			this.key = filePath;
+			this.dsKeys = null;
+			this.stamp = stamp;
+		}
+	}
+
+	private static class FileStamp implements Serializable {
+
+		private static final long serialVersionUID = -2387440365178262781L;
+
+		final long modificationStamp;
+
+		final long localTimeStamp;
+
+		FileStamp(long modificationStamp, long localTimeStamp) {
+			this.modificationStamp = modificationStamp;
+			this.localTimeStamp = localTimeStamp;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+
+			if (!(obj instanceof FileStamp)) {
+				return false;
+			}
+
+			FileStamp o = (FileStamp) obj;
+			return modificationStamp == o.modificationStamp && localTimeStamp == o.localTimeStamp;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (modificationStamp ^ (modificationStamp >>> 32)) * 31 + (int) (localTimeStamp ^ (localTimeStamp >>> 32));
+		}
+	}
 }
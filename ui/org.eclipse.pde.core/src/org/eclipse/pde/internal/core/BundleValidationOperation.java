@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,10 +21,68 @@ public class BundleValidationOperation implements IWorkspaceRunnable {
 
 	private static StateObjectFactory FACTORY;
 
+	/**
+	 * Maximum number of resolved states kept for later validations
+	 */
+	private static final int MAX_CACHED_STATES = 3;
+
+	/**
+	 * Resolved states of previous validations that were released, the most recently
+	 * used first.  A state is removed from the cache when a validation takes it, so
+	 * a state is never used by two operations.
+	 */
+	private static final LinkedList<CachedState> fgCachedStates = new LinkedList<>();
+
+	/**
+	 * A resolved validation state along with the platform properties it was
+	 * resolved with and the bundle descriptions it holds copies of
+	 */
+	private static class CachedState {
+		final Dictionary<?, ?>[] fProperties;
+		final State fState;
+		/**
+		 * Bundle descriptions copied into the state, keyed by bundle id
+		 */
+		final Map<Long, BundleDescription> fSources;
+
+		CachedState(Dictionary<?, ?>[] properties, State state, Map<Long, BundleDescription> sources) {
+			fProperties = properties;
+			fState = state;
+			fSources = sources;
+		}
+
+		/**
+		 * Returns the number of bundles to add, update or remove to validate the
+		 * given bundles with this state.
+		 */
+		int countChanges(Map<Long, BundleDescription> sources) {
+			int changes = 0;
+			int kept = 0;
+			for (Map.Entry<Long, BundleDescription> entry : sources.entrySet()) {
+				BundleDescription source = fSources.get(entry.getKey());
+				if (source == null) {
+					changes++;
+				} else {
+					kept++;
+					if (source != entry.getValue()) {
+						changes++;
+					}
+				}
+			}
+			return changes + fSources.size() - kept;
+		}
+	}
+
 	private IPluginModelBase[] fModels;
 	private Dictionary<?, ?>[] fProperties;
 	private State fState;
 
+	/**
+	 * Bundle descriptions copied into {@link #fState} keyed by bundle id, or
+	 * <code>null</code> if the state cannot be reused or was released
+	 */
+	private Map<Long, BundleDescription> fSources;
+
 	public BundleValidationOperation(IPluginModelBase[] models) {
 		this(models, new Dictionary[] {TargetPlatformHelper.getTargetEnvironment()});
 	}
@@ -34,25 +92,131 @@ public class BundleValidationOperation implements IWorkspaceRunnable {
 		fProperties = properties;
 	}
 
+	/**
+	 * Validates the bundles of the models.  When a previous validation used the same
+	 * platform properties and mostly the same bundles, its resolved state is updated
+	 * with the bundles that were added, changed or removed and only those bundles
+	 * are resolved again.  Only states given back with {@link #release()} are reused,
+	 * the state returned by {@link #getState()} belongs to this operation until then.
+	 */
 	@Override
 	public void run(IProgressMonitor monitor) throws CoreException {
 		if (FACTORY == null) {
 			FACTORY = Platform.getPlatformAdmin().getFactory();
 		}
 		SubMonitor subMonitor = SubMonitor.convert(monitor, fModels.length + 1);
-		fState = FACTORY.createState(true);
+		Map<Long, BundleDescription> sources = new HashMap<>(fModels.length * 2);
 		for (IPluginModelBase fModel : fModels) {
 			BundleDescription bundle = fModel.getBundleDescription();
-			if (bundle != null) {
-				fState.addBundle(FACTORY.createBundleDescription(bundle));
+			if (bundle != null && sources.put(Long.valueOf(bundle.getBundleId()), bundle) != null) {
+				// bundles from different states, the cache cannot tell them apart
+				sources = null;
+				break;
 			}
-			subMonitor.split(1);
 		}
-		fState.setPlatformProperties(fProperties);
-		fState.resolve(false);
+		CachedState cached = sources == null ? null : takeCachedState(fProperties, sources);
+		if (cached == null) {
+			fState = FACTORY.createState(true);
+			for (IPluginModelBase fModel : fModels) {
+				BundleDescription bundle = fModel.getBundleDescription();
+				if (bundle != null) {
+					fState.addBundle(FACTORY.createBundleDescription(bundle));
+				}
+				subMonitor.split(1);
+			}
+			fState.setPlatformProperties(fProperties);
+			fState.resolve(false);
+		} else {
+			fState = cached.fState;
+			List<BundleDescription> changed = new ArrayList<>();
+			for (Map.Entry<Long, BundleDescription> entry : sources.entrySet()) {
+				BundleDescription previous = cached.fSources.get(entry.getKey());
+				if (previous != entry.getValue()) {
+					BundleDescription copy = FACTORY.createBundleDescription(entry.getValue());
+					if (previous == null || !fState.updateBundle(copy)) {
+						fState.addBundle(copy);
+					}
+					changed.add(copy);
+				}
+			}
+			for (Long id : cached.fSources.keySet()) {
+				if (!sources.containsKey(id)) {
+					BundleDescription removed = fState.removeBundle(id.longValue());
+					if (removed != null) {
+						changed.add(removed);
+					}
+				}
+			}
+			subMonitor.split(fModels.length);
+			if (!changed.isEmpty()) {
+				fState.resolve(changed.toArray(new BundleDescription[changed.size()]));
+			}
+		}
+		fSources = sources;
 		subMonitor.split(1);
 	}
 
+	/**
+	 * Gives the resolved state of this operation back so a later validation can
+	 * update it instead of creating a new state.  The state and the results of this
+	 * operation must not be used after it is released.
+	 */
+	public void release() {
+		if (fState != null && fSources != null) {
+			putCachedState(new CachedState(fProperties, fState, fSources));
+		}
+		fSources = null;
+	}
+
+	/**
+	 * Removes from the cache and returns the resolved state that needs the fewest
+	 * changes to validate the given bundles with the given platform properties.
+	 *
+	 * @param properties platform properties
+	 * @param sources bundle descriptions to validate keyed by bundle id
+	 * @return a cached state or <code>null</code> if a new state should be created
+	 */
+	private static CachedState takeCachedState(Dictionary<?, ?>[] properties, Map<Long, BundleDescription> sources) {
+		synchronized (fgCachedStates) {
+			CachedState best = null;
+			int bestChanges = Integer.MAX_VALUE;
+			for (CachedState cached : fgCachedStates) {
+				if (Arrays.equals(cached.fProperties, properties)) {
+					int changes = cached.countChanges(sources);
+					if (changes < bestChanges) {
+						best = cached;
+						bestChanges = changes;
+					}
+				}
+			}
+			// resolving a quarter of the bundles again is not worth it
+			if (best == null || bestChanges > sources.size() / 4) {
+				return null;
+			}
+			fgCachedStates.remove(best);
+			return best;
+		}
+	}
+
+	private static void putCachedState(CachedState state) {
+		synchronized (fgCachedStates) {
+			fgCachedStates.addFirst(state);
+			while (fgCachedStates.size() > MAX_CACHED_STATES) {
+				fgCachedStates.removeLast();
+			}
+		}
+	}
+
+	/**
+	 * Clears the resolved states kept for later validations, once the target or
+	 * the plug-in models change
+	 */
+	public static void clearCachedStates() {
+		synchronized (fgCachedStates) {
+			fgCachedStates.clear();
+		}
+	}
+
 	public Map<Object, Object[]> getResolverErrors() {
 		Set<String> alreadyDuplicated = new HashSet<>();
 		Map<Object, Object[]> map = new HashMap<>();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -472,6 +472,14 @@ public interface ICoreConstants {
 	 */
 	public static final String WORKSPACE_PLUGINS_OVERRIDE_TARGET = "workspace_plugins_override_target"; //$NON-NLS-1$
 
+	/**
+	 * Preference key for the number of threads used to resolve the directory,
+	 * installation and feature locations of a target at the same time.  A value
+	 * of <code>1</code>, the default, resolves them one after another and a value
+	 * of <code>0</code> picks the number of threads automatically.
+	 */
+	public static final String TARGET_RESOLUTION_THREADS = "target_resolution_threads"; //$NON-NLS-1$
+
 	/**
 	 * Explicit preference value for {@link #WORKSPACE_TARGET_HANDLE} when the user chooses no
 	 * target for the workspace (no external bundles).
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -102,7 +102,21 @@ public class MinimalState {
 	}
 
 	public BundleDescription addBundle(File bundleLocation, long bundleId) throws CoreException {
-		Map<String, String> manifest = ManifestUtils.loadManifest(bundleLocation);
+		return addLoadedBundle(ManifestUtils.loadManifest(bundleLocation), bundleLocation, bundleId);
+	}
+
+	/**
+	 * Adds the bundle at the given location using a manifest that has already been
+	 * loaded with {@link ManifestUtils#loadManifest(File)}. The manifest is woven for
+	 * development mode and auxiliary data is recorded as for {@link #addBundle(File, long)}.
+	 *
+	 * @param manifest the loaded manifest of the bundle
+	 * @param bundleLocation the bundle location
+	 * @param bundleId the id to use or <code>-1</code> to allocate a new one
+	 * @return the added bundle description or <code>null</code>
+	 * @throws CoreException if the manifest is not a valid bundle manifest
+	 */
+	protected BundleDescription addLoadedBundle(Map<String, String> manifest, File bundleLocation, long bundleId) throws CoreException {
 		// update for development mode
 		TargetWeaver.weaveManifest(manifest);
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -28,6 +28,7 @@ import org.eclipse.pde.internal.core.project.BundleProjectService;
 import org.eclipse.pde.internal.core.schema.SchemaRegistry;
 import org.eclipse.pde.internal.core.target.P2TargetUtils;
 import org.eclipse.pde.internal.core.target.TargetPlatformService;
+import org.eclipse.pde.internal.core.util.JarEntryIndex;
 import org.eclipse.update.configurator.ConfiguratorUtils;
 import org.osgi.framework.*;
 
@@ -317,6 +318,7 @@ public class PDECore extends Plugin implements DebugOptionsListener {
 			fSchemaRegistry.shutdown();
 			fSchemaRegistry = null;
 		}
+		JarEntryIndex.clear();
 		if (fTargetProfileManager != null) {
 			fTargetProfileManager.shutdown();
 			fTargetProfileManager = null;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2016 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,8 @@ package org.eclipse.pde.internal.core;
 import java.io.File;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import org.eclipse.core.filesystem.URIUtil;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
@@ -23,10 +25,43 @@ import org.eclipse.pde.core.plugin.IPluginModelBase;
 import org.eclipse.pde.core.target.LoadTargetDefinitionJob;
 import org.eclipse.pde.internal.core.plugin.*;
 import org.eclipse.pde.internal.core.util.CoreUtility;
+import org.eclipse.pde.internal.core.util.ManifestUtils;
 import org.osgi.framework.Version;
 
 public class PDEState extends MinimalState {
 
+	/**
+	 * Maximum number of threads reading bundle manifests at the same time
+	 */
+	private static final int MAX_LOADING_THREADS = 8;
+
+	/**
+	 * Minimum number of bundles for manifests to be read in parallel
+	 */
+	private static final int PARALLEL_THRESHOLD = 16;
+
+	/**
+	 * Manifest of a target bundle, or the error raised reading it
+	 */
+	private static final class LoadedManifest {
+		final File fFile;
+		Map<String, String> fManifest;
+		CoreException fException;
+
+		LoadedManifest(File file) {
+			fFile = file;
+		}
+
+		LoadedManifest load() {
+			try {
+				fManifest = ManifestUtils.loadManifest(fFile);
+			} catch (CoreException e) {
+				fException = e;
+			}
+			return this;
+		}
+	}
+
 	private PDEAuxiliaryState fAuxiliaryState;
 	private ArrayList<IPluginModelBase> fTargetModels = new ArrayList<>();
 
@@ -129,15 +164,46 @@ public class PDEState extends MinimalState {
 		}
 		SubMonitor subMonitor = SubMonitor.convert(monitor, PDECoreMessages.PDEState_CreatingTargetModelState,
 				urls.length);
-		for (URL url : urls) {
-			File file = new File(url.getFile());
-			try {
-				subMonitor.subTask(file.getName());
-				addBundle(file, -1);
-			} catch (CoreException e) {
-				PDECore.log(e);
+		if (urls.length < PARALLEL_THRESHOLD) {
+			for (URL url : urls) {
+				File file = new File(url.getFile());
+				try {
+					subMonitor.subTask(file.getName());
+					addBundle(file, -1);
+				} catch (CoreException e) {
+					PDECore.log(e);
+				}
+				subMonitor.split(1);
+			}
+			return;
+		}
+		// Reading the archives and parsing the manifests is done in parallel, but bundles
+		// are added to the state in the order of the urls so that bundle ids stay stable.
+		// Old style plug-ins without a MANIFEST.MF are converted one at a time, ManifestUtils
+		// serializes the calls to the plug-in converter service which is not thread-safe
+		int parallelism = Math.min(Runtime.getRuntime().availableProcessors() * 2, MAX_LOADING_THREADS);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<LoadedManifest>> tasks = new ArrayList<>(urls.length);
+			for (URL url : urls) {
+				LoadedManifest loaded = new LoadedManifest(new File(url.getFile()));
+				tasks.add(pool.submit(loaded::load));
+			}
+			for (ForkJoinTask<LoadedManifest> task : tasks) {
+				LoadedManifest loaded = task.join();
+				try {
+					subMonitor.subTask(loaded.fFile.getName());
+					if (loaded.fException != null) {
+						throw loaded.fException;
+					}
+					addLoadedBundle(loaded.fManifest, loaded.fFile, -1);
+				} catch (CoreException e) {
+					PDECore.log(e);
+				}
+				subMonitor.split(1);
 			}
-			subMonitor.split(1);
+		} finally {
+			pool.shutdownNow();
 		}
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2013 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -62,5 +62,9 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
 		} catch (BackingStoreException e) {
 			PDECore.log(e);
 		}
+
+		// target locations are resolved one after another unless the user opts in
+		IEclipsePreferences corePrefs = DefaultScope.INSTANCE.getNode(PDECore.PLUGIN_ID);
+		corePrefs.putInt(ICoreConstants.TARGET_RESOLUTION_THREADS, 1);
 	}
 }
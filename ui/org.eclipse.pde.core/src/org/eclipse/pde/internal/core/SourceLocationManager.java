@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2000, 2013 IBM Corporation and others.
+ *  Copyright (c) 2000, 2018 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -35,6 +35,50 @@ public class SourceLocationManager implements ICoreConstants {
 	 */
 	private BundleManifestSourceLocationManager fBundleManifestLocator = null;
 
+	/**
+	 * Maximum number of relative paths whose search result, found or missing,
+	 * is cached for each kind of location
+	 */
+	private static final int MAX_CACHED_RESULTS = 1024;
+
+	/**
+	 * Preference value the cached user specified locations were parsed from
+	 */
+	private String fUserLocationsPref = null;
+
+	/**
+	 * User specified locations parsed from {@link #fUserLocationsPref}
+	 */
+	private List<SourceLocation> fUserLocations = null;
+
+	/**
+	 * Lower case names of the files and directories at the root of each searched
+	 * location, the <code>PluginID_PluginVersion</code> roots source is looked
+	 * up in.  The names are listed once until the locations or the target change.
+	 */
+	private final Map<IPath, Set<String>> fLocationRoots = new HashMap<>();
+
+	/**
+	 * Search results in user specified locations, keyed by relative path
+	 */
+	private final Map<IPath, IPath> fUserResults = createCache();
+
+	/**
+	 * Relative paths not found in user specified locations
+	 */
+	private final Map<IPath, Boolean> fUserMisses = createCache();
+
+	/**
+	 * Search results in locations added via extension point, keyed by relative
+	 * path
+	 */
+	private final Map<IPath, IPath> fExtensionResults = createCache();
+
+	/**
+	 * Relative paths not found in locations added via extension point
+	 */
+	private final Map<IPath, Boolean> fExtensionMisses = createCache();
+
 	/**
 	 * Searches source locations for one that provides source for the given pluginBase.
 	 * Will search user specified locations, then bundle manifest specified locations, then
@@ -169,11 +213,19 @@ public class SourceLocationManager implements ICoreConstants {
 	}
 
 	/**
-	 * Clears the cache of all known extension and bundle manifest locations.
+	 * Clears the cache of all known extension and bundle manifest locations,
+	 * of the contents of the locations and of the search results.
 	 */
-	public void reset() {
+	public synchronized void reset() {
 		fExtensionLocations = null;
 		fBundleManifestLocator = null;
+		fUserLocationsPref = null;
+		fUserLocations = null;
+		fLocationRoots.clear();
+		fUserResults.clear();
+		fUserMisses.clear();
+		fExtensionResults.clear();
+		fExtensionMisses.clear();
 	}
 
 	/**
@@ -258,16 +310,16 @@ public class SourceLocationManager implements ICoreConstants {
 	 * @param relativePath location of source file within the source location
 	 * @return path to the source file or <code>null</code> if one could not be found or if the file does not exist
 	 */
-	private IPath searchUserSpecifiedLocations(IPath relativePath) {
-		List<SourceLocation> userLocations = getUserLocations();
-		for (SourceLocation location : userLocations) {
-			IPath fullPath = location.getPath().append(relativePath);
-			File file = fullPath.toFile();
-			if (file.exists()) {
-				return fullPath;
-			}
+	private synchronized IPath searchUserSpecifiedLocations(IPath relativePath) {
+		String pref = PDECore.getDefault().getPreferencesManager().getString(P_SOURCE_LOCATIONS);
+		if (fUserLocations == null || !pref.equals(fUserLocationsPref)) {
+			fUserLocations = getUserLocations();
+			fUserLocationsPref = pref;
+			fLocationRoots.clear();
+			fUserResults.clear();
+			fUserMisses.clear();
 		}
-		return null;
+		return searchLocations(fUserLocations, fUserResults, fUserMisses, relativePath);
 	}
 
 	/**
@@ -276,18 +328,91 @@ public class SourceLocationManager implements ICoreConstants {
 	 * @param relativePath location of source file within the source location
 	 * @return path to the source file or <code>null</code> if one could not be found or if the file does not exist
 	 */
-	private IPath searchExtensionLocations(IPath relativePath) {
-		List<SourceLocation> extensionLocations = getExtensionLocations();
-		for (SourceLocation location : extensionLocations) {
+	private synchronized IPath searchExtensionLocations(IPath relativePath) {
+		return searchLocations(getExtensionLocations(), fExtensionResults, fExtensionMisses, relativePath);
+	}
+
+	/**
+	 * Searches the given locations, appending the relative path and checking if that
+	 * file exists.  Locations that do not have the first segment of the relative path
+	 * at their root are skipped without looking the file up.  Found files are cached
+	 * as long as they exist.  Files that are not found are cached as missing until
+	 * the cache is {@link #reset()}, which happens when the target changes, or until
+	 * the user specified locations change.
+	 * @param locations source locations to search
+	 * @param results cache of the search results in the locations
+	 * @param misses cache of the relative paths not found in the locations
+	 * @param relativePath location of source file within the source location
+	 * @return path to the source file or <code>null</code> if one could not be found or if the file does not exist
+	 */
+	private IPath searchLocations(List<SourceLocation> locations, Map<IPath, IPath> results, Map<IPath, Boolean> misses, IPath relativePath) {
+		if (relativePath == null || relativePath.isEmpty()) {
+			return null;
+		}
+		if (misses.get(relativePath) != null) {
+			return null;
+		}
+		IPath result = results.get(relativePath);
+		if (result != null) {
+			if (result.toFile().exists()) {
+				return result;
+			}
+			results.remove(relativePath);
+		}
+		String root = relativePath.segment(0).toLowerCase(Locale.ENGLISH);
+		for (SourceLocation location : locations) {
+			if (!getLocationRoots(location.getPath()).contains(root)) {
+				continue;
+			}
 			IPath fullPath = location.getPath().append(relativePath);
 			File file = fullPath.toFile();
 			if (file.exists()) {
+				results.put(relativePath, fullPath);
 				return fullPath;
 			}
 		}
+		misses.put(relativePath, Boolean.TRUE);
 		return null;
 	}
 
+	/**
+	 * Returns the names of the files and directories at the root of a location,
+	 * in lower case since the file system may not be case sensitive. The names
+	 * are listed the first time the location is searched and kept until the
+	 * locations or the target change.
+	 *
+	 * @param location path of a source location
+	 * @return lower case names of the files and directories at the root of the location
+	 */
+	private Set<String> getLocationRoots(IPath location) {
+		Set<String> names = fLocationRoots.get(location);
+		if (names == null) {
+			names = new HashSet<>();
+			String[] list = location.toFile().list();
+			if (list != null) {
+				for (String name : list) {
+					names.add(name.toLowerCase(Locale.ENGLISH));
+				}
+			}
+			fLocationRoots.put(location, names);
+		}
+		return names;
+	}
+
+	/**
+	 * @return a cache of search results keeping the most recently used ones
+	 */
+	private static <V> Map<IPath, V> createCache() {
+		return new LinkedHashMap<IPath, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<IPath, V> eldest) {
+				return size() > MAX_CACHED_RESULTS;
+			}
+		};
+	}
+
 	/**
 	 * Searches through all known source locations specified by bundle manifest entries.
 	 * Checks for a source location with a bundle entry that specifies that it provides
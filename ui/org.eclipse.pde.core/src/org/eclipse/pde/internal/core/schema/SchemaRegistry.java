@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2013 IBM Corporation and others.
+ * Copyright (c) 2005, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,41 +13,90 @@ package org.eclipse.pde.internal.core.schema;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
-import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.Path;
+import java.util.*;
+import java.util.Map.Entry;
+import org.eclipse.core.resources.*;
+import org.eclipse.core.runtime.*;
 import org.eclipse.pde.core.plugin.*;
-import org.eclipse.pde.internal.core.PDECore;
-import org.eclipse.pde.internal.core.SourceLocationManager;
+import org.eclipse.pde.internal.core.*;
 import org.eclipse.pde.internal.core.ischema.ISchema;
 import org.eclipse.pde.internal.core.ischema.ISchemaDescriptor;
 import org.eclipse.pde.internal.core.text.plugin.PluginExtensionPointNode;
 import org.eclipse.pde.internal.core.util.CoreUtility;
 
-public class SchemaRegistry {
+/**
+ * Registry of the schemas of extension points. The schema URL resolved for an
+ * extension point and the parsed schemas are cached until a plug-in model
+ * delta, a target reload or a change to a schema file in the workspace
+ * invalidates them. Schemas outside the workspace are checked for
+ * modification when they are looked up. At most {@link #MAX_SCHEMAS} parsed
+ * schemas are kept, the least recently used ones are released first.
+ */
+public class SchemaRegistry implements IPluginModelListener, IResourceChangeListener {
 
-	private HashMap<String, ISchemaDescriptor> fRegistry = new HashMap<>();
+	/**
+	 * Maximum number of parsed schemas kept
+	 */
+	private static final int MAX_SCHEMAS = 256;
 
-	public ISchema getSchema(String extPointID) {
-		IPluginExtensionPoint point = PDECore.getDefault().getExtensionsRegistry().findExtensionPoint(extPointID);
-		if (point == null) {
-			// if there is an old schema associated with this extension point, release it.
-			if (fRegistry.containsKey(extPointID))
-				fRegistry.remove(extPointID);
-			return null;
+	/**
+	 * Schema URL resolved for an extension point and the id of the plug-in
+	 * declaring the extension point
+	 */
+	private static class ResolvedURL {
+		final URL fURL;
+		final String fPluginId;
+
+		ResolvedURL(URL url, String pluginId) {
+			fURL = url;
+			fPluginId = pluginId;
 		}
+	}
 
-		URL url = getSchemaURL(point);
-		if (url == null)
-			return null;
+	private Map<String, ISchemaDescriptor> fRegistry = new LinkedHashMap<String, ISchemaDescriptor>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
 
-		ISchemaDescriptor desc = getExistingDescriptor(extPointID, url);
-		if (desc == null) {
-			desc = new SchemaDescriptor(extPointID, url);
-			fRegistry.put(extPointID, desc);
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ISchemaDescriptor> eldest) {
+			return size() > MAX_SCHEMAS;
 		}
+	};
+
+	private Map<String, ResolvedURL> fURLs = new HashMap<>();
+
+	public SchemaRegistry() {
+		PDECore.getDefault().getModelManager().addPluginModelListener(this);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+	}
+
+	public ISchema getSchema(String extPointID) {
+		IPluginExtensionPoint point = PDECore.getDefault().getExtensionsRegistry().findExtensionPoint(extPointID);
+		ISchemaDescriptor desc;
+		synchronized (this) {
+			if (point == null) {
+				// if there is an old schema associated with this extension point, release it.
+				if (fRegistry.containsKey(extPointID))
+					fRegistry.remove(extPointID);
+				fURLs.remove(extPointID);
+				return null;
+			}
+
+			ResolvedURL resolved = fURLs.get(extPointID);
+			if (resolved == null) {
+				resolved = new ResolvedURL(getSchemaURL(point), point.getPluginBase().getId());
+				fURLs.put(extPointID, resolved);
+			}
+			URL url = resolved.fURL;
+			if (url == null)
+				return null;
 
-		return desc.getSchema(true);
+			desc = getExistingDescriptor(extPointID, url);
+			if (desc == null) {
+				desc = new SchemaDescriptor(extPointID, url);
+				fRegistry.put(extPointID, desc);
+			}
+		}
+		return loadSchema(desc);
 	}
 
 	public ISchema getIncludedSchema(ISchemaDescriptor parent, String schemaLocation) {
@@ -56,17 +105,30 @@ public class SchemaRegistry {
 			if (url == null)
 				return null;
 
-			ISchemaDescriptor desc = getExistingDescriptor(url.toString(), url);
-			if (desc == null) {
-				desc = new IncludedSchemaDescriptor(url);
-				fRegistry.put(url.toString(), desc);
+			ISchemaDescriptor desc;
+			synchronized (this) {
+				desc = getExistingDescriptor(url.toString(), url);
+				if (desc == null) {
+					desc = new IncludedSchemaDescriptor(url);
+					fRegistry.put(url.toString(), desc);
+				}
 			}
-			return desc.getSchema(true);
+			return loadSchema(desc);
 		} catch (MalformedURLException e) {
 		}
 		return null;
 	}
 
+	/**
+	 * Parses the schema of a descriptor if it is not loaded yet. Only the
+	 * descriptor is locked so schemas can be parsed concurrently.
+	 */
+	private static ISchema loadSchema(ISchemaDescriptor desc) {
+		synchronized (desc) {
+			return desc.getSchema(true);
+		}
+	}
+
 	private ISchemaDescriptor getExistingDescriptor(String key, URL url) {
 		ISchemaDescriptor desc = null;
 		if (fRegistry.containsKey(key)) {
@@ -77,6 +139,22 @@ public class SchemaRegistry {
 		return desc;
 	}
 
+	/**
+	 * Returns whether a cached schema is outdated. Schema files in the
+	 * workspace are invalidated by {@link #resourceChanged(IResourceChangeEvent)},
+	 * other schema files are checked for modification.
+	 */
+	private static boolean hasSchemaChanged(ISchemaDescriptor desc, URL url) {
+		if (!desc.getSchemaURL().equals(url))
+			return true;
+		if (!"file".equals(url.getProtocol())) //$NON-NLS-1$
+			return false;
+		IPath location = new Path(new File(url.getFile()).getAbsolutePath());
+		if (ResourcesPlugin.getWorkspace().getRoot().getFileForLocation(location) != null)
+			return false;
+		return desc.getLastModified() != location.toFile().lastModified();
+	}
+
 	public static URL getSchemaURL(IPluginExtensionPoint point, IPluginModelBase base) {
 		URL url = getSchemaURL(point);
 		if (url != null) {
@@ -153,15 +231,82 @@ public class SchemaRegistry {
 		return null;
 	}
 
-	private boolean hasSchemaChanged(ISchemaDescriptor desc, URL url) {
-		if (!desc.getSchemaURL().equals(url))
-			return true;
-		File file = new File(url.getFile());
-		return (desc.getLastModified() != file.lastModified());
+	@Override
+	public synchronized void modelsChanged(PluginModelDelta delta) {
+		Set<String> ids = new HashSet<>();
+		addIds(delta.getAddedEntries(), ids);
+		addIds(delta.getRemovedEntries(), ids);
+		addIds(delta.getChangedEntries(), ids);
+		// the schema of an extension point may be found in any version of the
+		// plug-in declaring it, or come from a plug-in that was not there
+		for (Iterator<Entry<String, ResolvedURL>> iterator = fURLs.entrySet().iterator(); iterator.hasNext();) {
+			ResolvedURL resolved = iterator.next().getValue();
+			if (resolved.fURL == null || resolved.fPluginId == null || ids.contains(resolved.fPluginId)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static void addIds(ModelEntry[] entries, Set<String> ids) {
+		for (ModelEntry entry : entries) {
+			ids.add(entry.getId());
+		}
+	}
+
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		IResourceDelta delta = event.getDelta();
+		if (delta == null)
+			return;
+		final Set<String> changed = new HashSet<>();
+		final boolean[] addedOrRemoved = new boolean[1];
+		try {
+			delta.accept(child -> {
+				IResource resource = child.getResource();
+				if (resource.getType() == IResource.FILE) {
+					if ("exsd".equals(resource.getFileExtension()) && (child.getKind() != IResourceDelta.CHANGED || (child.getFlags() & IResourceDelta.CONTENT) != 0)) { //$NON-NLS-1$
+						IPath location = resource.getLocation();
+						if (location != null)
+							changed.add(location.toFile().getAbsolutePath());
+						if (child.getKind() != IResourceDelta.CHANGED)
+							addedOrRemoved[0] = true;
+					}
+					return false;
+				}
+				return true;
+			});
+		} catch (CoreException e) {
+			PDECore.log(e);
+		}
+		if (changed.isEmpty())
+			return;
+		synchronized (this) {
+			for (Iterator<ISchemaDescriptor> iterator = fRegistry.values().iterator(); iterator.hasNext();) {
+				URL url = iterator.next().getSchemaURL();
+				if (url != null && "file".equals(url.getProtocol()) && changed.contains(new File(url.getFile()).getAbsolutePath())) //$NON-NLS-1$
+					iterator.remove();
+			}
+			// a schema added or removed in the workspace may change the URL of
+			// any extension point declared in the workspace
+			if (addedOrRemoved[0])
+				fURLs.clear();
+		}
+	}
+
+	/**
+	 * Releases the resolved schema URLs and the schemas, which may come from
+	 * plug-ins of the previous target
+	 */
+	public synchronized void targetReloaded() {
+		fRegistry.clear();
+		fURLs.clear();
 	}
 
-	public void shutdown() {
+	public synchronized void shutdown() {
+		PDECore.getDefault().getModelManager().removePluginModelListener(this);
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
 		fRegistry.clear();
+		fURLs.clear();
 	}
 
 	private static String getId(IPluginExtensionPoint point, IPluginModelBase base) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2013 IBM Corporation and others.
+ * Copyright (c) 2008, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,7 +18,6 @@ import org.eclipse.osgi.util.NLS;
 import org.eclipse.pde.core.target.*;
 import org.eclipse.pde.internal.build.IPDEBuildConstants;
 import org.eclipse.pde.internal.core.PDECore;
-import org.eclipse.pde.internal.core.util.ManifestUtils;
 
 /**
  * A directory of bundles.
@@ -65,24 +64,16 @@ public class DirectoryBundleContainer extends AbstractBundleContainer {
 		File dir = getDirectory();
 		if (dir.isDirectory()) {
 			File site = getSite(dir);
-			File[] files = site.listFiles();
-			SubMonitor localMonitor = SubMonitor.convert(monitor, Messages.DirectoryBundleContainer_0, files.length);
-			List<TargetBundle> bundles = new ArrayList<>(files.length);
-			for (File file : files) {
-				try {
-					TargetBundle rb = new TargetBundle(file);
-					bundles.add(rb);
-				} catch (CoreException e) {
-					// If an old style conversion fails because the service is not available, log the error.
-					// Otherwise, ignore non-bundle files
-					if (e.getStatus().getCode() == ManifestUtils.STATUS_CODE_PLUGIN_CONVERTER_UNAVAILABLE) {
-						PDECore.log(e);
-					}
-				}
-				localMonitor.split(1);
+			if (!site.equals(dir)) {
+				// the directory may have been indexed before its plug-ins sub directory was created
+				DirectoryBundleIndex.remove(dir);
 			}
-			return bundles.toArray(new TargetBundle[bundles.size()]);
+			File[] files = site.listFiles();
+			// only files added or changed since the last resolution are read
+			return DirectoryBundleIndex.getIndex(site).getBundles(files, monitor);
 		}
+		DirectoryBundleIndex.remove(dir);
+		DirectoryBundleIndex.remove(new File(dir, IPDEBuildConstants.DEFAULT_PLUGIN_LOCATION));
 		throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, NLS.bind(Messages.DirectoryBundleContainer_1, dir.toString())));
 	}
 
@@ -0,0 +1,467 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.target;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.frameworkadmin.BundleInfo;
+import org.eclipse.pde.core.target.TargetBundle;
+import org.eclipse.pde.internal.core.ICoreConstants;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.util.ManifestUtils;
+
+/**
+ * Index of the bundles found in a directory, keyed by file name and stamped
+ * with the size and modification time of each file.  Only files that were
+ * added or changed since the directory was last scanned need to be opened to
+ * create their {@link TargetBundle}.  Files that are not bundles are recorded
+ * too so they are not opened again.
+ * <p>
+ * Indexes are kept in memory and persisted in the PDE core state location.
+ * An index file is replaced atomically when the index changes and is deleted
+ * when it cannot be read, when it was written in another format or when the
+ * indexed directory no longer exists.
+ * </p>
+ */
+public class DirectoryBundleIndex {
+
+	/**
+	 * Header of the index files
+	 */
+	private static final int MAGIC = 0x50444449; // PDDI
+
+	/**
+	 * Version of the index file format, to increment when the layout changes
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Name of the directory holding the index files in the state location
+	 */
+	private static final String INDEX_DIRECTORY = ".directory_index"; //$NON-NLS-1$
+
+	/**
+	 * Extension of the index files
+	 */
+	private static final String INDEX_EXTENSION = ".index"; //$NON-NLS-1$
+
+	/**
+	 * Extension of the file an index is written to before it replaces the index file
+	 */
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	/**
+	 * Loaded indexes, keyed by absolute directory path
+	 */
+	private static final Map<String, DirectoryBundleIndex> fgIndexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Whether the index files of removed directories were deleted during this session
+	 */
+	private static volatile boolean fgOrphansDeleted = false;
+
+	/**
+	 * Target bundle restored from the index
+	 */
+	static class IndexedTargetBundle extends TargetBundle {
+		IndexedTargetBundle(BundleInfo info, boolean isFragment, BundleInfo sourceTarget, String sourcePath) {
+			fInfo = info;
+			fIsFragment = isFragment;
+			fSourceTarget = sourceTarget;
+			fSourcePath = sourcePath;
+		}
+	}
+
+	/**
+	 * Indexed contents of a file of the directory
+	 */
+	static class Entry {
+		final long fLastModified;
+		final long fLength;
+		/**
+		 * Whether the file is a bundle, the remaining fields are only set for bundles
+		 */
+		final boolean fIsBundle;
+		String fSymbolicName;
+		String fVersion;
+		boolean fIsFragment;
+		boolean fIsSource;
+		String fSourceName;
+		String fSourceVersion;
+		String fSourceLocation;
+		String fSourcePath;
+
+		Entry(long lastModified, long length, boolean isBundle) {
+			fLastModified = lastModified;
+			fLength = length;
+			fIsBundle = isBundle;
+		}
+
+		Entry(long lastModified, long length, TargetBundle bundle) {
+			this(lastModified, length, true);
+			BundleInfo info = bundle.getBundleInfo();
+			fSymbolicName = info.getSymbolicName();
+			fVersion = info.getVersion();
+			fIsFragment = bundle.isFragment();
+			BundleInfo source = bundle.getSourceTarget();
+			if (source != null) {
+				fIsSource = true;
+				fSourceName = source.getSymbolicName();
+				fSourceVersion = source.getVersion();
+				fSourceLocation = source.getLocation() == null ? null : source.getLocation().toString();
+			}
+			fSourcePath = bundle.getSourcePath();
+		}
+
+		TargetBundle createBundle(File file) {
+			BundleInfo info = new BundleInfo(file.toURI());
+			if (fSymbolicName != null) {
+				info.setSymbolicName(fSymbolicName);
+				if (fVersion != null) {
+					info.setVersion(fVersion);
+				}
+			}
+			BundleInfo source = null;
+			if (fIsSource) {
+				source = new BundleInfo(fSourceName, fSourceVersion, fSourceLocation == null ? null : URI.create(fSourceLocation), BundleInfo.NO_LEVEL, false);
+			}
+			return new IndexedTargetBundle(info, fIsFragment, source, fSourcePath);
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeLong(fLastModified);
+			out.writeLong(fLength);
+			out.writeBoolean(fIsBundle);
+			if (fIsBundle) {
+				writeString(out, fSymbolicName);
+				writeString(out, fVersion);
+				out.writeBoolean(fIsFragment);
+				out.writeBoolean(fIsSource);
+				if (fIsSource) {
+					writeString(out, fSourceName);
+					writeString(out, fSourceVersion);
+					writeString(out, fSourceLocation);
+				}
+				writeString(out, fSourcePath);
+			}
+		}
+
+		static Entry read(DataInputStream in) throws IOException {
+			Entry entry = new Entry(in.readLong(), in.readLong(), in.readBoolean());
+			if (entry.fIsBundle) {
+				entry.fSymbolicName = readString(in);
+				entry.fVersion = readString(in);
+				entry.fIsFragment = in.readBoolean();
+				entry.fIsSource = in.readBoolean();
+				if (entry.fIsSource) {
+					entry.fSourceName = readString(in);
+					entry.fSourceVersion = readString(in);
+					entry.fSourceLocation = readString(in);
+				}
+				entry.fSourcePath = readString(in);
+			}
+			return entry;
+		}
+	}
+
+	private final File fDirectory;
+	private final Map<String, Entry> fEntries = new HashMap<>();
+	private boolean fDirty = false;
+
+	private DirectoryBundleIndex(File directory) {
+		fDirectory = directory;
+	}
+
+	/**
+	 * Returns the index of the given directory, restoring it from the state
+	 * location the first time it is asked for.
+	 *
+	 * @param directory the directory
+	 * @return the index of the directory
+	 */
+	public static DirectoryBundleIndex getIndex(File directory) {
+		if (!fgOrphansDeleted) {
+			deleteOrphans();
+		}
+		return fgIndexes.computeIfAbsent(directory.getAbsolutePath(), path -> {
+			DirectoryBundleIndex index = new DirectoryBundleIndex(new File(path));
+			index.load();
+			return index;
+		});
+	}
+
+	/**
+	 * Returns the target bundles for the given files of the directory.  Only the
+	 * files whose size or modification time changed since they were indexed are
+	 * read, entries of files that no longer exist are dropped and the index is
+	 * saved if it changed.
+	 *
+	 * @param files the files currently in the directory
+	 * @param monitor progress monitor
+	 * @return the target bundles, in the order of the files
+	 */
+	public synchronized TargetBundle[] getBundles(File[] files, IProgressMonitor monitor) {
+		SubMonitor localMonitor = SubMonitor.convert(monitor, Messages.DirectoryBundleContainer_0, files.length);
+		List<TargetBundle> bundles = new ArrayList<>(files.length);
+		Set<String> names = new HashSet<>(files.length * 2);
+		for (File file : files) {
+			String name = file.getName();
+			names.add(name);
+			long lastModified = getLastModified(file);
+			long length = file.length();
+			Entry entry = fEntries.get(name);
+			if (entry == null || entry.fLastModified != lastModified || entry.fLength != length) {
+				try {
+					TargetBundle bundle = new TargetBundle(file);
+					entry = new Entry(lastModified, length, bundle);
+					bundles.add(bundle);
+				} catch (CoreException e) {
+					// If an old style conversion fails because the service is not available, log the error.
+					// Otherwise, ignore non-bundle files
+					if (e.getStatus().getCode() == ManifestUtils.STATUS_CODE_PLUGIN_CONVERTER_UNAVAILABLE) {
+						PDECore.log(e);
+						// the file may be a bundle once the service is available
+						entry = null;
+					} else {
+						entry = new Entry(lastModified, length, false);
+					}
+				}
+				if (entry == null) {
+					fEntries.remove(name);
+				} else {
+					fEntries.put(name, entry);
+				}
+				fDirty = true;
+			} else if (entry.fIsBundle) {
+				bundles.add(entry.createBundle(file));
+			}
+			localMonitor.split(1);
+		}
+		if (fEntries.keySet().retainAll(names)) {
+			fDirty = true;
+		}
+		if (fDirty) {
+			save();
+		}
+		return bundles.toArray(new TargetBundle[bundles.size()]);
+	}
+
+	/**
+	 * Returns the modification stamp of a file of the directory.  The time stamp of
+	 * a bundle folder does not change when its manifest is edited, so the latest time
+	 * stamp of the folder and of its manifest files is used.
+	 *
+	 * @param file the file
+	 * @return the modification time of the file
+	 */
+	private static long getLastModified(File file) {
+		long lastModified = file.lastModified();
+		if (file.isDirectory()) {
+			lastModified = Math.max(lastModified, new File(file, ICoreConstants.BUNDLE_FILENAME_DESCRIPTOR).lastModified());
+			lastModified = Math.max(lastModified, new File(file, ICoreConstants.PLUGIN_FILENAME_DESCRIPTOR).lastModified());
+			lastModified = Math.max(lastModified, new File(file, ICoreConstants.FRAGMENT_FILENAME_DESCRIPTOR).lastModified());
+		}
+		return lastModified;
+	}
+
+	/**
+	 * Removes all of the indexes, in memory and in the state location
+	 */
+	public static synchronized void clear() {
+		fgIndexes.clear();
+		File dir = getIndexDirectory();
+		if (dir != null) {
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the index of the given directory, in memory and in the state location
+	 *
+	 * @param directory the indexed directory
+	 */
+	public static synchronized void remove(File directory) {
+		DirectoryBundleIndex index = fgIndexes.remove(directory.getAbsolutePath());
+		if (index == null) {
+			index = new DirectoryBundleIndex(directory.getAbsoluteFile());
+		}
+		index.invalidate();
+	}
+
+	/**
+	 * Deletes the index files that are not current: the ones of directories that
+	 * no longer exist, the ones that cannot be read or that were written in another
+	 * format, and the temporary files left by interrupted writes.  Index files of
+	 * loaded indexes are kept.
+	 */
+	public static synchronized void deleteOrphans() {
+		fgOrphansDeleted = true;
+		File dir = getIndexDirectory();
+		if (dir == null) {
+			return;
+		}
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		Set<File> loaded = new HashSet<>();
+		for (DirectoryBundleIndex index : fgIndexes.values()) {
+			loaded.add(index.getIndexFile());
+		}
+		for (File file : files) {
+			if (loaded.contains(file)) {
+				continue;
+			}
+			if (file.getName().endsWith(INDEX_EXTENSION)) {
+				String path = readDirectory(file);
+				if (path != null && new File(path).isDirectory()) {
+					continue;
+				}
+			}
+			file.delete();
+		}
+	}
+
+	/**
+	 * Reads the path of the indexed directory from the header of an index file
+	 *
+	 * @param file the index file
+	 * @return the path of the directory or <code>null</code> if the file is not
+	 * an index file of the current format
+	 */
+	private static String readDirectory(File file) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				return null;
+			}
+			return in.readUTF();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Drops the entries of this index and deletes its index file
+	 */
+	private synchronized void invalidate() {
+		fEntries.clear();
+		fDirty = false;
+		File file = getIndexFile();
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * @return the directory holding the index files or <code>null</code> if
+	 * PDE core is not running
+	 */
+	private static File getIndexDirectory() {
+		PDECore core = PDECore.getDefault();
+		if (core == null) {
+			return null;
+		}
+		return core.getStateLocation().append(INDEX_DIRECTORY).toFile();
+	}
+
+	/**
+	 * @return the file this index is persisted to or <code>null</code>
+	 */
+	private File getIndexFile() {
+		File dir = getIndexDirectory();
+		if (dir == null) {
+			return null;
+		}
+		String path = fDirectory.getAbsolutePath();
+		return new File(dir, Integer.toHexString(path.hashCode()) + '_' + Integer.toHexString(path.length()) + INDEX_EXTENSION);
+	}
+
+	private void load() {
+		File file = getIndexFile();
+		if (file == null || !file.isFile()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !fDirectory.getAbsolutePath().equals(in.readUTF())) {
+				// written in another format or for another directory, it is replaced
+				// once this index is saved
+				fDirty = true;
+				return;
+			}
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				String name = in.readUTF();
+				fEntries.put(name, Entry.read(in));
+			}
+		} catch (IOException e) {
+			// rebuild the index
+			PDECore.log(e);
+			invalidate();
+		}
+	}
+
+	/**
+	 * Writes this index to a temporary file which then replaces the index file,
+	 * so a failed write never leaves a partial index.  The index file of an empty
+	 * index is deleted.
+	 */
+	private void save() {
+		File file = getIndexFile();
+		if (file == null) {
+			return;
+		}
+		if (fEntries.isEmpty()) {
+			file.delete();
+			fDirty = false;
+			return;
+		}
+		file.getParentFile().mkdirs();
+		File temp = new File(file.getPath() + TEMP_EXTENSION);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(fDirectory.getAbsolutePath());
+				out.writeInt(fEntries.size());
+				for (Map.Entry<String, Entry> entry : fEntries.entrySet()) {
+					out.writeUTF(entry.getKey());
+					entry.getValue().write(out);
+				}
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			fDirty = false;
+		} catch (IOException e) {
+			temp.delete();
+			PDECore.log(e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		out.writeBoolean(string != null);
+		if (string != null) {
+			out.writeUTF(string);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2016 IBM Corporation and others.
+ * Copyright (c) 2008, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package org.eclipse.pde.internal.core.target;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 import org.eclipse.core.runtime.*;
@@ -71,7 +72,12 @@ public class TargetDefinition implements ITargetDefinition {
 	public static final int MODE_FEATURE = 1;
 
 	// cache of features found for a given location, maps a string path location to a array of IFeatureModels (IFeatureModel[])
-	private static Map<String, TargetFeature[]> fFeaturesInLocation = new HashMap<>();
+	private static Map<String, TargetFeature[]> fFeaturesInLocation = new ConcurrentHashMap<>();
+
+	/**
+	 * Maximum number of target locations resolved at the same time
+	 */
+	private static final int MAX_RESOLUTION_THREADS = 8;
 
 	// internal cache for features.  A target managed by features will contain a set of features as well as a set of plug-ins that don't belong to a feature
 	private TargetFeature[] fFeatures;
@@ -270,18 +276,25 @@ public class TargetDefinition implements ITargetDefinition {
 				if (subMonitor.isCanceled()) {
 					return Status.CANCEL_STATUS;
 				}
-				for (ITargetLocation container : containers) {
-					if (subMonitor.isCanceled()) {
+				int threads = getResolutionThreads(containers);
+				if (threads > 1) {
+					if (!resolveConcurrently(containers, threads, status, subMonitor)) {
 						return Status.CANCEL_STATUS;
 					}
-					subMonitor.subTask(Messages.TargetDefinition_4);
-					P2TargetUtils synchronizer = container.getAdapter(P2TargetUtils.class);
-					int totalWork = 5;
-					if (synchronizer == null)
-						totalWork = 100;
-					IStatus s = container.resolve(this, subMonitor.split(totalWork));
-					if (!s.isOK()) {
-						status.add(s);
+				} else {
+					for (ITargetLocation container : containers) {
+						if (subMonitor.isCanceled()) {
+							return Status.CANCEL_STATUS;
+						}
+						subMonitor.subTask(Messages.TargetDefinition_4);
+						P2TargetUtils synchronizer = container.getAdapter(P2TargetUtils.class);
+						int totalWork = 5;
+						if (synchronizer == null)
+							totalWork = 100;
+						IStatus s = container.resolve(this, subMonitor.split(totalWork));
+						if (!s.isOK()) {
+							status.add(s);
+						}
 					}
 				}
 			}
@@ -303,6 +316,138 @@ public class TargetDefinition implements ITargetDefinition {
 		}
 	}
 
+	/**
+	 * Returns whether the given location can be resolved on another thread, at the
+	 * same time as other locations.  Only the locations provided by PDE that are not
+	 * backed by p2 are resolved concurrently.
+	 *
+	 * @param container the target location
+	 * @return whether the location can be resolved concurrently
+	 */
+	private static boolean isConcurrentLocation(ITargetLocation container) {
+		if (container.getAdapter(P2TargetUtils.class) != null) {
+			return false;
+		}
+		return container instanceof DirectoryBundleContainer || container instanceof ProfileBundleContainer || container instanceof FeatureBundleContainer;
+	}
+
+	/**
+	 * Returns the number of threads to use to resolve the given locations, or
+	 * <code>1</code> if they should be resolved one after another.  The
+	 * {@link ICoreConstants#TARGET_RESOLUTION_THREADS} preference sets the number
+	 * of threads and defaults to <code>1</code>, a value of <code>0</code> uses one
+	 * thread per location up to {@link #MAX_RESOLUTION_THREADS}.
+	 *
+	 * @param containers the target locations
+	 * @return the number of threads
+	 */
+	private static int getResolutionThreads(ITargetLocation[] containers) {
+		int concurrent = 0;
+		for (ITargetLocation container : containers) {
+			if (isConcurrentLocation(container)) {
+				concurrent++;
+			}
+		}
+		if (concurrent < 2) {
+			return 1;
+		}
+		int threads = 1;
+		PDECore core = PDECore.getDefault();
+		if (core != null) {
+			threads = core.getPreferencesManager().getInt(ICoreConstants.TARGET_RESOLUTION_THREADS);
+		}
+		if (threads <= 0) {
+			threads = MAX_RESOLUTION_THREADS;
+		}
+		return Math.min(threads, concurrent);
+	}
+
+	/**
+	 * Resolves the given locations, the ones that support it on a pool of threads
+	 * and the others on the calling thread.  The status of each location is added
+	 * to the given status in the order of the locations, as when they are resolved
+	 * one after another.
+	 *
+	 * @param containers the target locations
+	 * @param threads number of threads
+	 * @param status status to add the resolution status of each location to
+	 * @param subMonitor progress monitor
+	 * @return <code>false</code> if the resolution was cancelled
+	 */
+	private boolean resolveConcurrently(ITargetLocation[] containers, int threads, MultiStatus status, SubMonitor subMonitor) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List<ForkJoinTask<IStatus>> tasks = new ArrayList<>(containers.length);
+			for (ITargetLocation container : containers) {
+				if (isConcurrentLocation(container)) {
+					// progress monitors are not thread safe, the worker only shares the cancellation
+					IProgressMonitor monitor = new NullProgressMonitor() {
+						@Override
+						public boolean isCanceled() {
+							return subMonitor.isCanceled();
+						}
+					};
+					tasks.add(pool.submit(() -> container.resolve(this, monitor)));
+				} else {
+					tasks.add(null);
+				}
+			}
+			for (int i = 0; i < containers.length; i++) {
+				if (subMonitor.isCanceled()) {
+					return false;
+				}
+				subMonitor.subTask(Messages.TargetDefinition_4);
+				ForkJoinTask<IStatus> task = tasks.get(i);
+				IStatus s;
+				if (task == null) {
+					int totalWork = containers[i].getAdapter(P2TargetUtils.class) == null ? 100 : 5;
+					s = containers[i].resolve(this, subMonitor.split(totalWork));
+				} else {
+					s = waitForResolution(task, subMonitor);
+					subMonitor.split(100);
+				}
+				if (!s.isOK()) {
+					status.add(s);
+				}
+			}
+			return true;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for a location resolved on another thread, checking for cancellation.
+	 *
+	 * @param task the resolution task
+	 * @param monitor progress monitor to check for cancellation
+	 * @return the resolution status of the location
+	 * @throws OperationCanceledException if the monitor is cancelled
+	 */
+	private static IStatus waitForResolution(ForkJoinTask<IStatus> task, IProgressMonitor monitor) {
+		while (true) {
+			try {
+				return task.get(100, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				if (monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				return new Status(IStatus.ERROR, PDECore.PLUGIN_ID, cause.getMessage(), cause);
+			}
+		}
+	}
+
 	@Override
 	public boolean isResolved() {
 		ITargetLocation[] containers = getTargetLocations();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,7 +14,6 @@ package org.eclipse.pde.internal.core.util;
 import java.io.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import javax.xml.parsers.FactoryConfigurationError;
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.jdt.core.JavaCore;
@@ -203,23 +202,10 @@ public class CoreUtility {
 	}
 
 	public static boolean jarContainsResource(File file, String resource, boolean directory) {
-		ZipFile jarFile = null;
 		try {
-			jarFile = new ZipFile(file, ZipFile.OPEN_READ);
-			ZipEntry resourceEntry = jarFile.getEntry(resource);
-			if (resourceEntry != null)
-				return directory ? resourceEntry.isDirectory() : true;
+			return JarEntryIndex.getIndex(file).contains(resource, directory);
 		} catch (IOException e) {
 			PDECore.logException(e);
-		} catch (FactoryConfigurationError e) {
-			PDECore.logException(e);
-		} finally {
-			try {
-				if (jarFile != null)
-					jarFile.close();
-			} catch (IOException e2) {
-				PDECore.logException(e2);
-			}
 		}
 		return false;
 	}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of the entry names of a jar, read once from its central directory.
+ * Indexes are shared by the whole process and kept as long as the jar keeps
+ * the same size and modification time, so probing a jar for an entry does
+ * not open it again.
+ * <p>
+ * The names are sorted and stored in a single string, with the offset of
+ * each name in a separate array.
+ * </p>
+ */
+public class JarEntryIndex {
+
+	/**
+	 * Maximum number of jars indexed
+	 */
+	private static final int MAX_INDEXES = 256;
+
+	private static final Map<String, JarEntryIndex> fgIndexes = new LinkedHashMap<String, JarEntryIndex>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, JarEntryIndex> eldest) {
+			return size() > MAX_INDEXES;
+		}
+	};
+
+	private final long fLastModified;
+	private final long fLength;
+
+	/**
+	 * The sorted entry names, concatenated
+	 */
+	private final String fNames;
+
+	/**
+	 * Offset of each name in {@link #fNames}, followed by the length of
+	 * {@link #fNames}
+	 */
+	private final int[] fOffsets;
+
+	private JarEntryIndex(long lastModified, long length, String names, int[] offsets) {
+		fLastModified = lastModified;
+		fLength = length;
+		fNames = names;
+		fOffsets = offsets;
+	}
+
+	/**
+	 * Returns the index of the given jar, reading its entries if it was not
+	 * indexed yet or changed since it was indexed.
+	 *
+	 * @param file the jar
+	 * @return the index of the jar
+	 * @throws IOException if the jar cannot be read
+	 */
+	public static JarEntryIndex getIndex(File file) throws IOException {
+		String key = file.getAbsolutePath();
+		long lastModified = file.lastModified();
+		long length = file.length();
+		synchronized (fgIndexes) {
+			JarEntryIndex index = fgIndexes.get(key);
+			if (index != null && index.fLastModified == lastModified && index.fLength == length) {
+				return index;
+			}
+		}
+		JarEntryIndex index = create(file, lastModified, length);
+		synchronized (fgIndexes) {
+			fgIndexes.put(key, index);
+		}
+		return index;
+	}
+
+	private static JarEntryIndex create(File file, long lastModified, long length) throws IOException {
+		List<String> names = new ArrayList<>();
+		try (ZipFile zip = new ZipFile(file, ZipFile.OPEN_READ)) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				names.add(entries.nextElement().getName());
+			}
+		}
+		Collections.sort(names);
+		StringBuilder buffer = new StringBuilder();
+		int[] offsets = new int[names.size() + 1];
+		for (int i = 0; i < names.size(); i++) {
+			offsets[i] = buffer.length();
+			buffer.append(names.get(i));
+		}
+		offsets[names.size()] = buffer.length();
+		return new JarEntryIndex(lastModified, length, buffer.toString(), offsets);
+	}
+
+	/**
+	 * Returns whether the jar contains the given entry, looked up the way
+	 * {@link ZipFile#getEntry(String)} does: a name without trailing slash
+	 * also matches a directory entry.
+	 *
+	 * @param name the entry name
+	 * @param directory whether the entry must be a directory
+	 * @return whether the jar contains a matching entry
+	 */
+	public boolean contains(String name, boolean directory) {
+		if (indexOf(name) >= 0)
+			return !directory || name.endsWith("/"); //$NON-NLS-1$
+		return !name.endsWith("/") && indexOf(name + '/') >= 0; //$NON-NLS-1$
+	}
+
+	private int indexOf(String name) {
+		int low = 0;
+		int high = fOffsets.length - 2;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(mid, name);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares the name at the given index with the given name the way
+	 * {@link String#compareTo(String)} does
+	 */
+	private int compare(int index, String name) {
+		int start = fOffsets[index];
+		int length = fOffsets[index + 1] - start;
+		int min = Math.min(length, name.length());
+		for (int i = 0; i < min; i++) {
+			char c1 = fNames.charAt(start + i);
+			char c2 = name.charAt(i);
+			if (c1 != c2)
+				return c1 - c2;
+		}
+		return length - name.length();
+	}
+
+	/**
+	 * Discards the indexes of all jars
+	 */
+	public static void clear() {
+		synchronized (fgIndexes) {
+			fgIndexes.clear();
+		}
+	}
+}
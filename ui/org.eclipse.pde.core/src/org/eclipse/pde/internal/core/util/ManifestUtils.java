@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2014 IBM Corporation and others.
+ * Copyright (c) 2006, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -43,6 +43,12 @@ public class ManifestUtils {
 	public static final String MANIFEST_LINE_SEPARATOR = "\n "; //$NON-NLS-1$
 	private static int MANIFEST_MAXLINE = 511;
 
+	/**
+	 * Lock held while the shared {@link PluginConverter} service converts a plug-in,
+	 * the service is not thread-safe and manifests may be loaded in parallel
+	 */
+	private static final Object CONVERTER_LOCK = new Object();
+
 	/**
 	 * Status code given to the returned core exception when an old style plug-in manifest
 	 * cannot be converted because the {@link PluginConverter} service is not available.
@@ -173,7 +179,9 @@ public class ManifestUtils {
 			throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, STATUS_CODE_PLUGIN_CONVERTER_UNAVAILABLE, NLS.bind(UtilMessages.ManifestUtils_NeedCompatFragmentToConvertManifestFile, project.getLocation()), null));
 		}
 		try {
-			converter.convertManifest(inputFile, outputFile, false, targetVersion, true, devProperties);
+			synchronized (CONVERTER_LOCK) {
+				converter.convertManifest(inputFile, outputFile, false, targetVersion, true, devProperties);
+			}
 		} catch (PluginConversionException e) {
 			throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, NLS.bind(UtilMessages.ErrorReadingOldStyleManifest, inputFile.getAbsolutePath()), e));
 		}
@@ -306,7 +314,9 @@ public class ManifestUtils {
 
 		Dictionary<String, String> convert;
 		try {
-			convert = converter.convertManifest(pluginLocation, false, null, false, null);
+			synchronized (CONVERTER_LOCK) {
+				convert = converter.convertManifest(pluginLocation, false, null, false, null);
+			}
 		} catch (PluginConversionException e) {
 			throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, NLS.bind(UtilMessages.ErrorReadingOldStyleManifest, pluginLocation.getAbsolutePath()), e));
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2015 IBM Corporation and others.
+ *  Copyright (c) 2007, 2018 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -34,16 +34,39 @@ public abstract class LaunchValidationOperation implements IWorkspaceRunnable {
 	private BundleValidationOperation fOperation;
 	protected ILaunchConfiguration fLaunchConfiguration;
 
+	/**
+	 * Resolver errors read before the state of the operation was released, or
+	 * <code>null</code> while the operation holds its state
+	 */
+	private Map<Object, Object[]> fReleasedErrors;
+	private boolean fReleasedEmpty;
+
 	public LaunchValidationOperation(ILaunchConfiguration configuration) {
 		fLaunchConfiguration = configuration;
 	}
 
 	@Override
 	public void run(IProgressMonitor monitor) throws CoreException {
+		// the results of the previous run are replaced, its state can be reused
+		release();
+		fReleasedErrors = null;
 		fOperation = new BundleValidationOperation(getModels(), getPlatformProperties());
 		fOperation.run(monitor);
 	}
 
+	/**
+	 * Gives the resolved state back so a later validation can reuse it.  The
+	 * errors are read first and remain available from {@link #hasErrors()},
+	 * {@link #getInput()} and {@link #isEmpty()}, the state must no longer be used.
+	 */
+	public void release() {
+		if (fOperation != null && fReleasedErrors == null) {
+			fReleasedErrors = fOperation.getResolverErrors();
+			fReleasedEmpty = fOperation.getState().getHighestBundleId() == -1;
+			fOperation.release();
+		}
+	}
+
 	protected abstract IPluginModelBase[] getModels() throws CoreException;
 
 	@SuppressWarnings("rawtypes")
@@ -143,14 +166,20 @@ public abstract class LaunchValidationOperation implements IWorkspaceRunnable {
 	}
 
 	public boolean hasErrors() {
+		if (fReleasedErrors != null)
+			return !fReleasedErrors.isEmpty();
 		return fOperation.hasErrors();
 	}
 
 	public Map<Object, Object[]> getInput() {
+		if (fReleasedErrors != null)
+			return new HashMap<>(fReleasedErrors);
 		return fOperation.getResolverErrors();
 	}
 
 	public boolean isEmpty() {
+		if (fReleasedErrors != null)
+			return fReleasedEmpty;
 		return fOperation.getState().getHighestBundleId() == -1;
 	}
 
@@ -25,6 +25,7 @@ import org.eclipse.pde.ui.tests.preferences.AllPreferenceTests;
 import org.eclipse.pde.ui.tests.project.*;
 import org.eclipse.pde.ui.tests.runtime.AllPDERuntimeTests;
 import org.eclipse.pde.ui.tests.target.AllTargetTests;
+import org.eclipse.pde.ui.tests.util.JarEntryIndexTest;
 import org.eclipse.pde.ui.tests.views.log.AllLogViewTests;
 import org.eclipse.pde.ui.tests.wizards.AllNewProjectTests;
 
@@ -50,6 +51,7 @@ public class AllPDETests {
 		suite.addTest(PluginRegistryTests.suite());
 		suite.addTest(ClasspathResolverTest.suite());
 		suite.addTest(ClasspathContributorTest.suite());
+		suite.addTest(JarEntryIndexTest.suite());
 		return suite;
 	}
 
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.launcher;
+
+import java.util.Arrays;
+import junit.framework.*;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.pde.core.IModel;
+import org.eclipse.pde.core.IModelProviderEvent;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.core.plugin.PluginRegistry;
+import org.eclipse.pde.internal.core.*;
+import org.eclipse.pde.internal.launching.launcher.LaunchPluginValidator;
+import org.eclipse.pde.internal.launching.launcher.ProductValidationOperation;
+
+/**
+ * Tests that validations reusing the resolved state of a previous validation
+ * report the same problems as validations with a new state
+ */
+public class BundleValidationOperationTestCase extends TestCase {
+
+	public static Test suite() {
+		return new TestSuite(BundleValidationOperationTestCase.class);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		BundleValidationOperation.clearCachedStates();
+		super.tearDown();
+	}
+
+	/**
+	 * Launch validation giving access to its state
+	 */
+	private static class TestValidationOperation extends ProductValidationOperation {
+		TestValidationOperation(IPluginModelBase[] models) {
+			super(models);
+		}
+
+		@Override
+		public State getState() {
+			return super.getState();
+		}
+	}
+
+	/**
+	 * @return the model of the system bundle, which resolves on its own so the
+	 * validation reports no error and opens no dialog
+	 */
+	private static IPluginModelBase[] getResolvedModels() {
+		IPluginModelBase model = PluginRegistry.findModel("org.eclipse.osgi");
+		assertNotNull("Missing system bundle", model);
+		return new IPluginModelBase[] {model};
+	}
+
+	private static TestValidationOperation validateLaunch(IPluginModelBase[] models) throws Exception {
+		TestValidationOperation operation = new TestValidationOperation(models);
+		LaunchPluginValidator.runValidationOperation(operation, new NullProgressMonitor());
+		return operation;
+	}
+
+	public void testLaunchValidationReusesState() throws Exception {
+		IPluginModelBase[] models = getResolvedModels();
+		BundleValidationOperation.clearCachedStates();
+		TestValidationOperation first = validateLaunch(models);
+		assertFalse("Validation should not report errors", first.hasErrors());
+		assertFalse("Validation should have bundles", first.isEmpty());
+
+		// the state of a launch is reused by the next launch
+		TestValidationOperation second = validateLaunch(models);
+		assertSame("Released state should be reused", first.getState(), second.getState());
+		assertFalse("Validation should not report errors", second.hasErrors());
+		assertEquals(first.getInput(), second.getInput());
+	}
+
+	public void testLaunchValidationStateClearedOnModelChange() throws Exception {
+		IPluginModelBase[] models = getResolvedModels();
+		BundleValidationOperation.clearCachedStates();
+		TestValidationOperation first = validateLaunch(models);
+
+		PDECore.getDefault().getModelManager().modelsChanged(new ModelProviderEvent(this, IModelProviderEvent.MODELS_CHANGED, null, null, new IModel[0]));
+		TestValidationOperation second = validateLaunch(models);
+		assertNotSame("State should not be reused once the models changed", first.getState(), second.getState());
+		assertFalse("Validation should not report errors", second.hasErrors());
+	}
+
+	private BundleValidationOperation validate(IPluginModelBase[] models) throws Exception {
+		BundleValidationOperation operation = new BundleValidationOperation(models);
+		operation.run(null);
+		return operation;
+	}
+
+	public void testSameBundles() throws Exception {
+		IPluginModelBase[] models = PluginRegistry.getActiveModels();
+		BundleValidationOperation.clearCachedStates();
+		BundleValidationOperation first = validate(models);
+		int bundles = first.getState().getBundles().length;
+		int errors = first.getResolverErrors().size();
+		first.release();
+		BundleValidationOperation second = validate(models);
+		assertSame("Released state should be reused", first.getState(), second.getState());
+		assertEquals("Wrong number of bundles", bundles, second.getState().getBundles().length);
+		assertEquals("Wrong number of errors", errors, second.getResolverErrors().size());
+	}
+
+	public void testStateNotSharedUntilReleased() throws Exception {
+		IPluginModelBase[] models = PluginRegistry.getActiveModels();
+		assertTrue("Not enough models", models.length > 4);
+		IPluginModelBase[] subset = Arrays.copyOf(models, models.length - 1);
+
+		BundleValidationOperation.clearCachedStates();
+		BundleValidationOperation fresh = validate(subset);
+		int subsetBundles = fresh.getState().getBundles().length;
+		int subsetErrors = fresh.getResolverErrors().size();
+
+		BundleValidationOperation first = validate(models);
+		int bundles = first.getState().getBundles().length;
+		int errors = first.getResolverErrors().size();
+		boolean hasErrors = first.hasErrors();
+
+		BundleValidationOperation second = validate(subset);
+		assertNotSame("State should not be shared", first.getState(), second.getState());
+		assertEquals("Wrong number of bundles", subsetBundles, second.getState().getBundles().length);
+		assertEquals("Wrong number of errors", subsetErrors, second.getResolverErrors().size());
+		// the first results are not changed by the second validation
+		assertEquals("First state changed", bundles, first.getState().getBundles().length);
+		assertEquals("First errors changed", errors, first.getResolverErrors().size());
+		assertEquals("First error state changed", hasErrors, first.hasErrors());
+	}
+
+	public void testRemovedBundle() throws Exception {
+		IPluginModelBase[] models = PluginRegistry.getActiveModels();
+		assertTrue("Not enough models", models.length > 4);
+		IPluginModelBase[] subset = Arrays.copyOf(models, models.length - 1);
+
+		BundleValidationOperation.clearCachedStates();
+		BundleValidationOperation fresh = validate(subset);
+		int bundles = fresh.getState().getBundles().length;
+		int errors = fresh.getResolverErrors().size();
+
+		BundleValidationOperation.clearCachedStates();
+		validate(models).release();
+		BundleValidationOperation updated = validate(subset);
+		assertEquals("Wrong number of bundles", bundles, updated.getState().getBundles().length);
+		assertEquals("Wrong number of errors", errors, updated.getResolverErrors().size());
+		assertEquals("Wrong error state", fresh.hasErrors(), updated.hasErrors());
+	}
+
+}
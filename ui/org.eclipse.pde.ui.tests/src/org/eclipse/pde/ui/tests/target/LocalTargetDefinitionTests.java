@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2015 IBM Corporation and others.
+ * Copyright (c) 2008, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,7 @@ import org.eclipse.equinox.frameworkadmin.BundleInfo;
 import org.eclipse.pde.core.plugin.*;
 import org.eclipse.pde.core.target.*;
 import org.eclipse.pde.internal.core.*;
+import org.eclipse.pde.internal.core.target.DirectoryBundleIndex;
 import org.eclipse.pde.internal.core.target.TargetDefinition;
 import org.eclipse.pde.internal.core.target.TargetDefinitionPersistenceHelper;
 import org.eclipse.pde.internal.launching.launcher.LaunchArgumentsHelper;
@@ -329,6 +330,81 @@ public class LocalTargetDefinitionTests extends AbstractTargetTest {
 		}
 	}
 
+	/**
+	 * Tests that resolving a bundle directory container again, from the index of
+	 * the directory, gives the same bundles.
+	 *
+	 * @throws Exception
+	 */
+	public void testDirectoryBundleContainerIndex() throws Exception {
+		ITargetLocation container = getTargetService().newDirectoryLocation(TargetPlatform.getDefaultLocation() + "/plugins");
+		ITargetDefinition definition = getNewTarget();
+		definition.setTargetLocations(new ITargetLocation[]{container});
+		definition.resolve(null);
+		TargetBundle[] bundles = container.getBundles();
+
+		// resolved from the index
+		ITargetLocation container2 = getTargetService().newDirectoryLocation(TargetPlatform.getDefaultLocation() + "/plugins");
+		ITargetDefinition definition2 = getNewTarget();
+		definition2.setTargetLocations(new ITargetLocation[]{container2});
+		definition2.resolve(null);
+		TargetBundle[] bundles2 = container2.getBundles();
+
+		assertEquals("Should have same number of bundles", bundles.length, bundles2.length);
+		for (int i = 0; i < bundles.length; i++) {
+			assertEquals("Wrong bundle", bundles[i].getBundleInfo(), bundles2[i].getBundleInfo());
+			assertEquals("Wrong bundle version", bundles[i].getBundleInfo().getVersion(), bundles2[i].getBundleInfo().getVersion());
+			assertEquals("Wrong fragment state", bundles[i].isFragment(), bundles2[i].isFragment());
+			assertEquals("Wrong source state", bundles[i].isSourceBundle(), bundles2[i].isSourceBundle());
+			assertEquals("Wrong source path", bundles[i].getSourcePath(), bundles2[i].getSourcePath());
+		}
+	}
+
+	/**
+	 * Tests that the index file of a directory is deleted once the directory is
+	 * removed, and that index files that are not current are deleted.
+	 *
+	 * @throws Exception
+	 */
+	public void testDirectoryBundleContainerIndexDeleted() throws Exception {
+		File dir = extractAbcdePlugins().toFile();
+		DirectoryBundleIndex.remove(dir);
+		File indexDir = PDECore.getDefault().getStateLocation().append(".directory_index").toFile();
+		Set<String> before = listFiles(indexDir);
+
+		ITargetLocation container = getTargetService().newDirectoryLocation(dir.getAbsolutePath());
+		ITargetDefinition definition = getNewTarget();
+		definition.setTargetLocations(new ITargetLocation[]{container});
+		definition.resolve(null);
+		Set<String> written = listFiles(indexDir);
+		written.removeAll(before);
+		assertEquals("Index of the directory not written", 1, written.size());
+		File index = new File(indexDir, written.iterator().next());
+
+		// unreadable index and temporary file of an interrupted write
+		File corrupt = new File(indexDir, "0_0.index");
+		File temp = new File(indexDir, "0_0.index.tmp");
+		assertTrue(corrupt.createNewFile());
+		assertTrue(temp.createNewFile());
+		DirectoryBundleIndex.deleteOrphans();
+		assertFalse("Unreadable index not deleted", corrupt.exists());
+		assertFalse("Temporary file not deleted", temp.exists());
+		assertTrue("Index of an existing directory deleted", index.exists());
+
+		delete(dir);
+		ITargetLocation container2 = getTargetService().newDirectoryLocation(dir.getAbsolutePath());
+		ITargetDefinition definition2 = getNewTarget();
+		definition2.setTargetLocations(new ITargetLocation[]{container2});
+		definition2.resolve(null);
+		assertEquals("Missing directory resolved", IStatus.ERROR, container2.getStatus().getSeverity());
+		assertFalse("Index of a removed directory not deleted", index.exists());
+	}
+
+	private static Set<String> listFiles(File dir) {
+		String[] names = dir.list();
+		return names == null ? new HashSet<>() : new HashSet<>(Arrays.asList(names));
+	}
+
 	/**
 	 * Tests that a bundle directory container is equivalent to scanning locations
 	 * when it uses a variable to specify its location.
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.target;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.*;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.pde.core.plugin.IPluginBase;
+import org.eclipse.pde.internal.core.*;
+import org.eclipse.pde.internal.core.plugin.WorkspacePluginModel;
+import org.eclipse.pde.internal.core.util.CoreUtility;
+
+/**
+ * Tests that source looked up in user specified source locations is found
+ * once it is added and the cache is reset or the locations change, and not
+ * found anymore once it is removed, although search results are cached.
+ */
+public class SourceLocationManagerTests extends TestCase {
+
+	private static final String SOURCE_ARCHIVE = "src.zip";
+
+	private String fOldLocations;
+	private File fLocation;
+	private IPluginBase fPlugin;
+	private SourceLocationManager fManager;
+
+	public static Test suite() {
+		return new TestSuite(SourceLocationManagerTests.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fLocation = new File(PDECore.getDefault().getStateLocation().toFile(), "sourceLocationTest");
+		CoreUtility.deleteContent(fLocation);
+		fLocation.mkdirs();
+		PDEPreferencesManager prefs = PDECore.getDefault().getPreferencesManager();
+		fOldLocations = prefs.getString(ICoreConstants.P_SOURCE_LOCATIONS);
+		prefs.setValue(ICoreConstants.P_SOURCE_LOCATIONS, fLocation.getAbsolutePath());
+
+		WorkspacePluginModel model = new WorkspacePluginModel(ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("sourceLocationTest/plugin.xml")), false);
+		fPlugin = model.getPluginBase();
+		fPlugin.setId("org.example.source");
+		fPlugin.setVersion("1.0.0.qualifier");
+		fManager = new SourceLocationManager();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		PDECore.getDefault().getPreferencesManager().setValue(ICoreConstants.P_SOURCE_LOCATIONS, fOldLocations);
+		CoreUtility.deleteContent(fLocation);
+	}
+
+	/**
+	 * Creates the source archive of the test plug-in in the source location
+	 */
+	private File createSource(String pluginDirectory) throws IOException {
+		File directory = new File(fLocation, pluginDirectory);
+		directory.mkdirs();
+		File archive = new File(directory, SOURCE_ARCHIVE);
+		archive.createNewFile();
+		return archive;
+	}
+
+	public void testSourceAddedAfterSearch() throws Exception {
+		IPath archive = new Path(SOURCE_ARCHIVE);
+		assertNull("Source found before it was added", fManager.findSourcePath(fPlugin, archive));
+
+		File source = createSource("org.example.source_1.0.0.qualifier");
+		assertNull("Missing source not cached", fManager.findSourcePath(fPlugin, archive));
+
+		fManager.reset();
+		IPath found = fManager.findSourcePath(fPlugin, archive);
+		assertNotNull("Source added after a search not found after a reset", found);
+		assertEquals(source.getAbsoluteFile(), found.toFile().getAbsoluteFile());
+	}
+
+	public void testSourceAddedBeforeLocationsChange() throws Exception {
+		IPath archive = new Path(SOURCE_ARCHIVE);
+		assertNull("Source found before it was added", fManager.findSourcePath(fPlugin, archive));
+
+		createSource("org.example.source_1.0.0.qualifier");
+		assertNull("Missing source not cached", fManager.findSourcePath(fPlugin, archive));
+
+		// the same location, serialized differently
+		PDECore.getDefault().getPreferencesManager().setValue(ICoreConstants.P_SOURCE_LOCATIONS, fLocation.getAbsolutePath() + ';');
+		assertNotNull("Source not found after the locations changed", fManager.findSourcePath(fPlugin, archive));
+	}
+
+	public void testSourceRemovedAfterSearch() throws Exception {
+		IPath archive = new Path(SOURCE_ARCHIVE);
+		File source = createSource("org.example.source_1.0.0.qualifier");
+		assertNotNull("Source not found", fManager.findSourcePath(fPlugin, archive));
+		assertNotNull("Cached source not found", fManager.findSourcePath(fPlugin, archive));
+
+		assertTrue(source.delete());
+		assertNull("Removed source found", fManager.findSourcePath(fPlugin, archive));
+	}
+
+	public void testFileAddedToPluginDirectory() throws Exception {
+		createSource("org.example.source_1.0.0.qualifier");
+		IPath other = new Path("other.zip");
+		assertNull("Missing file found", fManager.findSourcePath(fPlugin, other));
+
+		File file = new File(fLocation, "org.example.source_1.0.0.qualifier/other.zip");
+		assertTrue(file.createNewFile());
+		assertNull("Missing file not cached", fManager.findSourcePath(fPlugin, other));
+
+		fManager.reset();
+		assertNotNull("File added to a plug-in directory not found after a reset", fManager.findSourcePath(fPlugin, other));
+	}
+
+	public void testCaseOfPluginDirectory() throws Exception {
+		createSource("ORG.example.source_1.0.0.qualifier");
+		// the search must find what the file system finds
+		boolean caseSensitive = !new File(fLocation, "org.example.source_1.0.0.qualifier").exists();
+		IPath found = fManager.findSourcePath(fPlugin, new Path(SOURCE_ARCHIVE));
+		if (caseSensitive) {
+			assertNull("Source found in a directory with another case", found);
+		} else {
+			assertNotNull("Source not found in a directory with another case", found);
+		}
+	}
+}
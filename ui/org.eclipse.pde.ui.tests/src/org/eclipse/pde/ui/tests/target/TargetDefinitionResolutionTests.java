@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 IBM Corporation and others.
+ * Copyright (c) 2009, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -104,6 +104,52 @@ public class TargetDefinitionResolutionTests extends MinimalTargetDefinitionReso
 		}
 	}
 
+	/**
+	 * Tests that resolving the locations of a target concurrently gives the
+	 * same bundles and the same status as resolving them one after another.
+	 */
+	public void testConcurrentResolution() throws Exception {
+		PDEPreferencesManager prefs = PDECore.getDefault().getPreferencesManager();
+		assertEquals("Locations resolved concurrently by default", 1, prefs.getDefaultInt(ICoreConstants.TARGET_RESOLUTION_THREADS));
+		try {
+			prefs.setValue(ICoreConstants.TARGET_RESOLUTION_THREADS, 1);
+			ITargetDefinition serial = getConcurrentResolutionTarget();
+			serial.resolve(null);
+			prefs.setValue(ICoreConstants.TARGET_RESOLUTION_THREADS, 0);
+			ITargetDefinition concurrent = getConcurrentResolutionTarget();
+			concurrent.resolve(null);
+
+			assertEquals("Wrong number of bundles", serial.getBundles().length, concurrent.getBundles().length);
+			ITargetLocation[] serialLocations = serial.getTargetLocations();
+			ITargetLocation[] concurrentLocations = concurrent.getTargetLocations();
+			for (int i = 0; i < serialLocations.length; i++) {
+				assertTrue("Location not resolved", concurrentLocations[i].isResolved());
+				assertEquals("Wrong number of bundles in location", serialLocations[i].getBundles().length, concurrentLocations[i].getBundles().length);
+			}
+			IStatus serialStatus = serial.getStatus();
+			IStatus concurrentStatus = concurrent.getStatus();
+			assertEquals("Wrong severity", serialStatus.getSeverity(), concurrentStatus.getSeverity());
+			IStatus[] serialChildren = serialStatus.getChildren();
+			IStatus[] concurrentChildren = concurrentStatus.getChildren();
+			assertEquals("Wrong number of statuses", serialChildren.length, concurrentChildren.length);
+			for (int i = 0; i < serialChildren.length; i++) {
+				assertEquals("Wrong status", serialChildren[i].getMessage(), concurrentChildren[i].getMessage());
+			}
+		} finally {
+			prefs.setToDefault(ICoreConstants.TARGET_RESOLUTION_THREADS);
+		}
+	}
+
+	private ITargetDefinition getConcurrentResolutionTarget() throws Exception {
+		ITargetDefinition definition = getNewTarget();
+		ITargetLocation directoryContainer = getTargetService().newDirectoryLocation(TargetPlatform.getDefaultLocation() + "/plugins");
+		ITargetLocation profileContainer = getTargetService().newProfileLocation(TargetPlatform.getDefaultLocation(), null);
+		ITargetLocation missingContainer = getTargetService().newDirectoryLocation(TargetPlatform.getDefaultLocation() + "/missing");
+		ITargetLocation featureContainer = getTargetService().newFeatureLocation(TargetPlatform.getDefaultLocation(), "org.eclipse.jdt", null);
+		definition.setTargetLocations(new ITargetLocation[] {directoryContainer, missingContainer, profileContainer, featureContainer});
+		return definition;
+	}
+
 	/**
 	 * Tests that if users have the old preference to append .ini VM arguments,
 	 * target definitions are migrated properly with the arguments appended.
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.util;
+
+import java.io.*;
+import java.util.zip.*;
+import junit.framework.*;
+import org.eclipse.pde.internal.core.util.CoreUtility;
+import org.eclipse.pde.internal.core.util.JarEntryIndex;
+
+/**
+ * Tests that probing a jar through its {@link JarEntryIndex} answers what
+ * looking the entry up with {@link ZipFile#getEntry(String)} answers.
+ */
+public class JarEntryIndexTest extends TestCase {
+
+	/**
+	 * Entries of the test jar: files, explicit directories and files in directories
+	 * without a directory entry
+	 */
+	private static final String[] ENTRIES = new String[] {"plugin.xml", "META-INF/MANIFEST.MF", "schema/", "schema/point.exsd", "icons/obj16/", "icons/obj16/sample.gif", "src/org/sample/Activator.java"};
+
+	/**
+	 * Names probed in the test jar
+	 */
+	private static final String[] PROBES = new String[] {
+			// files
+			"plugin.xml", "META-INF/MANIFEST.MF", "schema/point.exsd", "icons/obj16/sample.gif", "src/org/sample/Activator.java",
+			// explicit directories
+			"schema", "schema/", "icons/obj16", "icons/obj16/",
+			// implicit directories
+			"META-INF", "META-INF/", "icons", "icons/", "src", "src/", "src/org/sample", "src/org/sample/",
+			// missing entries
+			"", "/", "plugin", "plugin.xml/", "/plugin.xml", "Plugin.xml", "schema/point", "schema//", "missing", "missing/", "src/org/sample/Missing.java"};
+
+	private File fJar;
+
+	public static Test suite() {
+		return new TestSuite(JarEntryIndexTest.class);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fJar = File.createTempFile("index", ".jar");
+		writeJar(fJar, ENTRIES);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JarEntryIndex.clear();
+		fJar.delete();
+	}
+
+	private static void writeJar(File file, String[] names) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+			for (String name : names) {
+				out.putNextEntry(new ZipEntry(name));
+				if (!name.endsWith("/")) {
+					out.write(name.getBytes("UTF-8"));
+				}
+				out.closeEntry();
+			}
+		}
+	}
+
+	/**
+	 * Asserts that the index of the jar answers the given probes the way
+	 * {@link ZipFile#getEntry(String)} does
+	 */
+	private static void assertSameAsZipFile(File jar, String[] probes) throws IOException {
+		JarEntryIndex index = JarEntryIndex.getIndex(jar);
+		try (ZipFile zip = new ZipFile(jar)) {
+			for (String probe : probes) {
+				ZipEntry entry = zip.getEntry(probe);
+				assertEquals("Wrong entry " + probe, entry != null, index.contains(probe, false));
+				assertEquals("Wrong directory " + probe, entry != null && entry.isDirectory(), index.contains(probe, true));
+			}
+		}
+	}
+
+	public void testSameAsZipFile() throws Exception {
+		assertSameAsZipFile(fJar, PROBES);
+		assertSameAsZipFile(fJar, ENTRIES);
+	}
+
+	public void testFiles() throws Exception {
+		JarEntryIndex index = JarEntryIndex.getIndex(fJar);
+		assertTrue(index.contains("plugin.xml", false));
+		assertFalse(index.contains("plugin.xml", true));
+		assertTrue(index.contains("META-INF/MANIFEST.MF", false));
+		assertFalse(index.contains("META-INF/MANIFEST.MF", true));
+	}
+
+	public void testExplicitDirectories() throws Exception {
+		JarEntryIndex index = JarEntryIndex.getIndex(fJar);
+		assertTrue(index.contains("schema/", true));
+		assertTrue("The directory is found without its trailing slash", index.contains("schema", true));
+		assertTrue(index.contains("schema", false));
+		assertTrue(index.contains("icons/obj16", true));
+		assertTrue(index.contains("icons/obj16/", false));
+	}
+
+	public void testImplicitDirectories() throws Exception {
+		// ZipFile does not find directories that only exist as a prefix of entries
+		JarEntryIndex index = JarEntryIndex.getIndex(fJar);
+		for (String name : new String[] {"META-INF", "META-INF/", "icons", "icons/", "src/org/sample/"}) {
+			assertFalse(name, index.contains(name, false));
+			assertFalse(name, index.contains(name, true));
+		}
+	}
+
+	public void testMissingEntries() throws Exception {
+		JarEntryIndex index = JarEntryIndex.getIndex(fJar);
+		for (String name : new String[] {"", "plugin", "plugin.xml/", "/plugin.xml", "Plugin.xml", "missing/"}) {
+			assertFalse(name, index.contains(name, false));
+			assertFalse(name, index.contains(name, true));
+		}
+		assertFalse(CoreUtility.jarContainsResource(fJar, "missing", false));
+		assertTrue(CoreUtility.jarContainsResource(fJar, "schema", true));
+	}
+
+	public void testChangedJar() throws Exception {
+		JarEntryIndex index = JarEntryIndex.getIndex(fJar);
+		assertSame("The index of an unchanged jar is read again", index, JarEntryIndex.getIndex(fJar));
+
+		String[] entries = new String[] {"fragment.xml", "schema/", "lib/library.jar"};
+		writeJar(fJar, entries);
+		fJar.setLastModified(fJar.lastModified() + 10000);
+		assertFalse(JarEntryIndex.getIndex(fJar).contains("plugin.xml", false));
+		assertTrue(JarEntryIndex.getIndex(fJar).contains("fragment.xml", false));
+		assertSameAsZipFile(fJar, PROBES);
+		assertSameAsZipFile(fJar, entries);
+	}
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.views.log;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.eclipse.ui.internal.views.log.*;
+
+/**
+ * Tests the ring buffer holding the entries of the log view, the way the view
+ * appends, evicts and removes entries.
+ */
+public class EntryRingBufferTest extends TestCase {
+
+	private static LogEntry[] createEntries(int count) {
+		LogEntry[] entries = new LogEntry[count];
+		for (int i = 0; i < count; i++) {
+			entries[i] = new LogEntry();
+		}
+		return entries;
+	}
+
+	private static void assertContents(EntryRingBuffer<LogEntry> buffer, LogEntry[] expected, int from, int to) {
+		assertEquals(to - from, buffer.size());
+		for (int i = from; i < to; i++) {
+			assertSame(expected[i], buffer.get(i - from));
+			assertEquals(i - from, buffer.indexOf(expected[i]));
+			assertTrue(buffer.contains(expected[i]));
+		}
+	}
+
+	public void testWrapAround() {
+		LogEntry[] entries = createEntries(100);
+		EntryRingBuffer<LogEntry> buffer = new EntryRingBuffer<>();
+
+		// the head moves past the end of the array while elements are appended
+		int first = 0;
+		for (int i = 0; i < entries.length; i++) {
+			assertNull(buffer.push(entries[i]));
+			if (i % 3 == 2) {
+				assertSame(entries[first], buffer.removeFirst());
+				first++;
+			}
+			assertContents(buffer, entries, first, i + 1);
+		}
+		assertFalse(buffer.contains(entries[0]));
+		assertEquals(-1, buffer.indexOf(entries[0]));
+
+		assertEquals(Arrays.asList(entries).subList(first, entries.length), buffer);
+	}
+
+	public void testEviction() {
+		LogEntry[] entries = createEntries(40);
+		EntryRingBuffer<LogEntry> buffer = new EntryRingBuffer<>(10);
+
+		for (int i = 0; i < entries.length; i++) {
+			LogEntry evicted = buffer.push(entries[i]);
+			if (i < 10) {
+				assertNull(evicted);
+			} else {
+				assertSame(entries[i - 10], evicted);
+			}
+			assertContents(buffer, entries, Math.max(0, i - 9), i + 1);
+		}
+
+		// the oldest elements are dropped when the buffer shrinks
+		buffer.setCapacity(4);
+		assertContents(buffer, entries, 36, 40);
+		buffer.setCapacity(8);
+		LogEntry[] more = createEntries(4);
+		for (LogEntry entry : more) {
+			assertNull(buffer.push(entry));
+		}
+		assertEquals(8, buffer.size());
+		assertSame(entries[36], buffer.push(createEntries(1)[0]));
+
+		// no element is held without capacity
+		EntryRingBuffer<LogEntry> empty = new EntryRingBuffer<>(0);
+		LogEntry entry = new LogEntry();
+		assertSame(entry, empty.push(entry));
+		assertTrue(empty.isEmpty());
+		assertFalse(empty.contains(entry));
+	}
+
+	public void testRemoveFromMiddle() {
+		LogEntry[] entries = createEntries(20);
+		EntryRingBuffer<LogEntry> buffer = new EntryRingBuffer<>(16);
+		for (LogEntry entry : entries) {
+			buffer.push(entry);
+		}
+
+		// entries 4 to 19 are kept, with the head in the middle of the array
+		assertTrue(buffer.remove(entries[10]));
+		assertFalse(buffer.remove(entries[10]));
+		assertFalse(buffer.remove(entries[0]));
+		assertEquals(15, buffer.size());
+		assertEquals(5, buffer.indexOf(entries[9]));
+		assertEquals(6, buffer.indexOf(entries[11]));
+		assertSame(entries[19], buffer.get(14));
+
+		assertTrue(buffer.remove(entries[4]));
+		assertEquals(0, buffer.indexOf(entries[5]));
+		assertEquals(13, buffer.indexOf(entries[19]));
+
+		buffer.subList(2, 5).clear();
+		assertEquals(Arrays.asList(entries[5], entries[6], entries[11], entries[12]), buffer.subList(0, 4));
+		assertEquals(3, buffer.indexOf(entries[12]));
+
+		buffer.clear();
+		assertTrue(buffer.isEmpty());
+		assertEquals(-1, buffer.indexOf(entries[12]));
+		assertNull(buffer.push(entries[0]));
+		assertEquals(0, buffer.indexOf(entries[0]));
+	}
+
+	public void testParentAndChildRemoval() {
+		// entries are kept in a bounded buffer, grouped ones are children of
+		// a group while the others are top level elements of the view
+		EntryRingBuffer<LogEntry> entries = new EntryRingBuffer<>(4);
+		EntryRingBuffer<AbstractEntry> elements = new EntryRingBuffer<>();
+		Group group = new Group("group");
+		elements.push(group);
+
+		LogEntry[] added = createEntries(8);
+		for (int i = 0; i < added.length; i++) {
+			LogEntry evicted = entries.push(added[i]);
+			if (i % 2 == 0) {
+				group.addChild(added[i]);
+			} else {
+				elements.push(added[i]);
+			}
+			if (evicted != null) {
+				// as the view removes an evicted entry
+				Object parent = evicted.getParent(evicted);
+				if (parent instanceof AbstractEntry) {
+					((AbstractEntry) parent).removeChild(evicted);
+				} else {
+					assertTrue(elements.remove(evicted));
+				}
+			}
+		}
+
+		assertEquals(Arrays.asList(added).subList(4, 8), entries);
+		assertEquals(Arrays.asList(added[6], added[4]), Arrays.asList(group.getChildren(group)));
+		assertEquals(Arrays.<AbstractEntry> asList(group, added[5], added[7]), elements);
+		assertEquals(0, elements.indexOf(group));
+		assertEquals(2, elements.indexOf(added[7]));
+
+		// removing the group leaves the top level entries in order
+		assertTrue(elements.remove(group));
+		assertEquals(0, elements.indexOf(added[5]));
+		assertEquals(1, elements.indexOf(added[7]));
+	}
+}
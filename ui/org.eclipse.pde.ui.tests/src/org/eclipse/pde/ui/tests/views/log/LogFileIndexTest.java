@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.views.log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import junit.framework.TestCase;
+import org.eclipse.ui.internal.views.log.LogFileIndex;
+
+/**
+ * Tests the index of the sessions and entries of a log file, and how it is
+ * extended when the log grows.
+ */
+public class LogFileIndexTest extends TestCase {
+
+	private static final String SESSION_1 = "!SESSION 2018-01-02 10:00:00.000 -----------------------------------------------\n" //
+			+ "eclipse.buildId=unknown\n";
+	private static final String ENTRY_1 = "!ENTRY org.eclipse.pde.ui 4 0 2018-01-02 10:00:01.000\n" //
+			+ "!MESSAGE first\n";
+	private static final String ENTRY_2 = "!ENTRY org.eclipse.pde.core 2 0 2018-01-02 10:00:02.000\n" //
+			+ "!MESSAGE second\n";
+	private static final String SESSION_2 = "!SESSION 2018-01-03 10:00:00.000 -----------------------------------------------\n";
+	private static final String ENTRY_3 = "!ENTRY org.eclipse.ui 1 0 2018-01-03 10:00:03.000\n" //
+			+ "!MESSAGE third\n";
+
+	private File fFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		fFile = File.createTempFile("index", ".log");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fFile.delete();
+	}
+
+	private void write(String contents, boolean append) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(fFile, append), StandardCharsets.UTF_8)) {
+			writer.write(contents);
+		}
+	}
+
+	private String read(LogFileIndex index, long start, long end) throws IOException {
+		try (InputStream in = index.open(start, end)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[16];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	public void testIndex() throws IOException {
+		write(SESSION_1 + ENTRY_1 + ENTRY_2, false);
+		LogFileIndex index = LogFileIndex.getIndex(fFile);
+
+		assertEquals(3, index.size());
+		assertTrue(index.isSession(0));
+		assertFalse(index.isSession(1));
+		assertEquals(4, index.getSeverity(1));
+		assertEquals(2, index.getSeverity(2));
+		assertEquals(0, index.getOffset(0));
+		assertEquals(SESSION_1.length(), index.getOffset(1));
+		assertEquals(SESSION_1.length() + ENTRY_1.length(), index.getOffset(2));
+
+		Calendar expectedDate = new GregorianCalendar(2018, Calendar.JANUARY, 2, 10, 0, 0);
+		expectedDate.set(Calendar.MILLISECOND, 0);
+		assertEquals(expectedDate.getTime(), index.readSession(0).getDate());
+
+		assertEquals(ENTRY_1, read(index, index.getOffset(1), index.getOffset(2)));
+	}
+
+	public void testIncompleteLineNotIndexed() throws IOException {
+		write(SESSION_1 + ENTRY_1 + "!ENTRY org.eclipse.pde.ui 4", false);
+		assertEquals(2, LogFileIndex.getIndex(fFile).size());
+
+		write(" 0 2018-01-02 10:00:02.000\n", true);
+		LogFileIndex index = LogFileIndex.getIndex(fFile);
+		assertEquals(3, index.size());
+		assertEquals(4, index.getSeverity(2));
+		assertEquals(SESSION_1.length() + ENTRY_1.length(), index.getOffset(2));
+	}
+
+	public void testAppend() throws IOException {
+		write(SESSION_1 + ENTRY_1, false);
+		LogFileIndex first = LogFileIndex.getIndex(fFile);
+		assertEquals(2, first.size());
+
+		write(ENTRY_2 + SESSION_2 + ENTRY_3, true);
+		LogFileIndex second = LogFileIndex.getIndex(fFile);
+
+		assertEquals(5, second.size());
+		assertTrue(second.isSession(3));
+		assertEquals(1, second.getSeverity(4));
+		assertEquals(SESSION_1.length() + ENTRY_1.length() + ENTRY_2.length(), second.getOffset(3));
+		assertEquals(ENTRY_3, read(second, second.getOffset(4), fFile.length()));
+
+		// a snapshot is not affected by later updates
+		assertEquals(2, first.size());
+	}
+
+	public void testRotatedLogIndexedAgain() throws IOException {
+		write(SESSION_1 + ENTRY_1, false);
+		assertEquals(2, LogFileIndex.getIndex(fFile).size());
+
+		// replaced by a longer log that does not start with the indexed lines
+		write(SESSION_2 + ENTRY_3 + ENTRY_3 + ENTRY_3, false);
+		LogFileIndex index = LogFileIndex.getIndex(fFile);
+
+		assertEquals(4, index.size());
+		assertTrue(index.isSession(0));
+		for (int i = 1; i < 4; i++) {
+			assertFalse(index.isSession(i));
+			assertEquals(1, index.getSeverity(i));
+			assertEquals(SESSION_2.length() + (i - 1) * ENTRY_3.length(), index.getOffset(i));
+		}
+	}
+
+	public void testTruncatedLogIndexedAgain() throws IOException {
+		write(SESSION_1 + ENTRY_1 + ENTRY_2, false);
+		assertEquals(3, LogFileIndex.getIndex(fFile).size());
+
+		write(SESSION_2, false);
+		LogFileIndex index = LogFileIndex.getIndex(fFile);
+		assertEquals(1, index.size());
+		assertTrue(index.isSession(0));
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2017 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,7 +12,8 @@
 package org.eclipse.ui.internal.views.log;
 
 import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import org.eclipse.core.runtime.PlatformObject;
 import org.eclipse.jface.resource.ImageDescriptor;
@@ -24,9 +25,9 @@ import org.eclipse.ui.model.IWorkbenchAdapter;
 public abstract class AbstractEntry extends PlatformObject implements IWorkbenchAdapter {
 
 	/**
-	 * The collection of direct children of this entry
+	 * The collection of direct children of this entry, most recently added first
 	 */
-	private List<AbstractEntry> children = new ArrayList<>();
+	private Deque<AbstractEntry> children = new ArrayDeque<>();
 	protected Object parent;
 
 	/**
@@ -37,7 +38,7 @@ public abstract class AbstractEntry extends PlatformObject implements IWorkbench
 	 */
 	public void addChild(AbstractEntry child) {
 		if (child != null) {
-			children.add(0, child);
+			children.addFirst(child);
 			child.setParent(this);
 		}
 	}
@@ -107,6 +108,16 @@ public abstract class AbstractEntry extends PlatformObject implements IWorkbench
 		children.removeAll(list);
 	}
 
+	/**
+	 * Removes the given child. Children are searched from the oldest one, so
+	 * removing the oldest child takes constant time.
+	 *
+	 * @param child the child to remove
+	 */
+	public void removeChild(AbstractEntry child) {
+		children.removeLastOccurrence(child);
+	}
+
 	/**
 	 * Removes all of the children from this entry
 	 */
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.views.log;
+
+import java.util.*;
+
+/**
+ * List of log view entries kept in a ring buffer. Appending an element and
+ * removing the oldest one take constant time, so a bounded buffer drops its
+ * oldest element in constant time when a new one is added.
+ * <p>
+ * Elements are compared by identity and are expected to be distinct; the
+ * index of an element is looked up in constant time, which makes ordering
+ * elements by their position cheap for the tree viewer.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ */
+public class EntryRingBuffer<E> extends AbstractList<E> implements RandomAccess {
+
+	private static final int INITIAL_LENGTH = 16;
+
+	private Object[] items;
+	private int head;
+	private int size;
+	private int capacity;
+
+	/**
+	 * Number of elements removed from the head of the buffer since it was
+	 * created or cleared, i.e. the sequence number of the head element
+	 */
+	private long removed;
+
+	/**
+	 * Sequence numbers of the elements, the index of an element is its
+	 * sequence number minus {@link #removed}
+	 */
+	private final Map<Object, Long> sequences = new IdentityHashMap<>();
+
+	/**
+	 * Creates a buffer without bound
+	 */
+	public EntryRingBuffer() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a buffer holding at most the given number of elements
+	 * @param capacity maximum number of elements
+	 */
+	public EntryRingBuffer(int capacity) {
+		this.capacity = Math.max(capacity, 0);
+		items = new Object[Math.max(1, Math.min(this.capacity, INITIAL_LENGTH))];
+	}
+
+	/**
+	 * Sets the maximum number of elements, dropping the oldest elements
+	 * exceeding it.
+	 * @param capacity maximum number of elements
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = Math.max(capacity, 0);
+		while (size > this.capacity) {
+			removeFirst();
+		}
+	}
+
+	/**
+	 * Appends the given element, dropping the oldest element if the buffer
+	 * is full.
+	 * @param element element to append
+	 * @return the dropped element, the given element itself if the buffer
+	 * cannot hold any element, or <code>null</code> if no element was dropped
+	 */
+	public E push(E element) {
+		if (capacity == 0) {
+			return element;
+		}
+		E evicted = null;
+		if (size == capacity) {
+			evicted = removeFirst();
+		}
+		if (size == items.length) {
+			grow();
+		}
+		items[(head + size) % items.length] = element;
+		sequences.put(element, Long.valueOf(removed + size));
+		size++;
+		modCount++;
+		return evicted;
+	}
+
+	/**
+	 * Removes the oldest element
+	 * @return the removed element
+	 */
+	@SuppressWarnings("unchecked")
+	public E removeFirst() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		E element = (E) items[head];
+		items[head] = null;
+		head = (head + 1) % items.length;
+		size--;
+		removed++;
+		sequences.remove(element);
+		modCount++;
+		return element;
+	}
+
+	private void grow() {
+		int length = (int) Math.min((long) items.length * 2, Math.max(capacity, items.length + 1));
+		Object[] newItems = new Object[length];
+		for (int i = 0; i < size; i++) {
+			newItems[i] = items[(head + i) % items.length];
+		}
+		items = newItems;
+		head = 0;
+	}
+
+	@Override
+	public boolean add(E element) {
+		push(element);
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		checkIndex(index);
+		return (E) items[(head + index) % items.length];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public E remove(int index) {
+		checkIndex(index);
+		if (index == 0) {
+			return removeFirst();
+		}
+		E element = get(index);
+		for (int i = index; i < size - 1; i++) {
+			Object next = items[(head + i + 1) % items.length];
+			items[(head + i) % items.length] = next;
+			sequences.put(next, Long.valueOf(removed + i));
+		}
+		items[(head + size - 1) % items.length] = null;
+		size--;
+		sequences.remove(element);
+		modCount++;
+		return element;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int index = indexOf(o);
+		if (index < 0) {
+			return false;
+		}
+		remove(index);
+		return true;
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		if (fromIndex == 0) {
+			for (int i = fromIndex; i < toIndex; i++) {
+				removeFirst();
+			}
+		} else {
+			for (int i = fromIndex; i < toIndex; i++) {
+				remove(fromIndex);
+			}
+		}
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		Long sequence = sequences.get(o);
+		return sequence == null ? -1 : (int) (sequence.longValue() - removed);
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return indexOf(o);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return sequences.containsKey(o);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(items, null);
+		head = 0;
+		size = 0;
+		removed = 0;
+		sequences.clear();
+		modCount++;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+}
@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.views.log;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Index of the <code>!SESSION</code> and <code>!ENTRY</code> lines of a log
+ * file, with the severity of each entry. The index is built in one pass over
+ * the bytes of the file and extended when the file grows, so a log file can be
+ * read from any session or entry without parsing what precedes it.
+ * <p>
+ * An index is an immutable snapshot of the file as it was indexed. The index
+ * of the last file read is kept and extended by later lookups, as long as the
+ * file keeps its identity and the bytes before the last indexed line are
+ * unchanged, so a rotated log is indexed again even if it already grew past
+ * the indexed size.
+ * </p>
+ * <p>
+ * The file is read through a {@link FileChannel} rather than memory mapped:
+ * a mapping keeps the file locked on some platforms until it is garbage
+ * collected, which would prevent the log from being deleted from the view.
+ * </p>
+ */
+public class LogFileIndex {
+
+	static final byte SESSION = -1;
+
+	private static final byte[] SESSION_TAG = LogSession.SESSION.getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] ENTRY_TAG = "!ENTRY".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Number of bytes before the last indexed line compared to tell if the
+	 * file was replaced
+	 */
+	private static final int BOUNDARY_SIZE = 64;
+
+	/**
+	 * Indexer of the last file read, it is extended as long as the same file
+	 * only grows
+	 */
+	private static Indexer fgLastIndexer;
+
+	private final File fFile;
+	private final long[] fOffsets;
+
+	/**
+	 * {@link #SESSION} for sessions, severity for entries
+	 */
+	private final byte[] fKinds;
+
+	/**
+	 * The <code>!SESSION</code> line of sessions, <code>null</code> for
+	 * entries
+	 */
+	private final String[] fSessionLines;
+	private final int fCount;
+
+	private LogFileIndex(File file, long[] offsets, byte[] kinds, String[] sessionLines, int count) {
+		fFile = file;
+		fOffsets = offsets;
+		fKinds = kinds;
+		fSessionLines = sessionLines;
+		fCount = count;
+	}
+
+	/**
+	 * Returns the index of the given log file, extending the last index if the
+	 * file only grew since it was read.
+	 *
+	 * @param file the log file
+	 * @return a snapshot of the up to date index of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static synchronized LogFileIndex getIndex(File file) throws IOException {
+		Indexer indexer = fgLastIndexer;
+		// an update failing half way leaves lines indexed twice on retry
+		fgLastIndexer = null;
+		if (indexer == null || !indexer.fFile.equals(file) || !indexer.update()) {
+			indexer = new Indexer(file);
+			indexer.update();
+		}
+		fgLastIndexer = indexer;
+		return new LogFileIndex(file, indexer.fOffsets, indexer.fKinds, indexer.fSessionLines, indexer.fCount);
+	}
+
+	/**
+	 * Index being built. Snapshots share its arrays: lines are only ever
+	 * added past the count of a snapshot, and arrays are copied to grow.
+	 */
+	private static class Indexer {
+
+		final File fFile;
+		long[] fOffsets = new long[256];
+		byte[] fKinds = new byte[256];
+		String[] fSessionLines = new String[256];
+		int fCount;
+
+		/**
+		 * Offset of the first line that was not indexed yet
+		 */
+		private long fIndexed;
+
+		/**
+		 * Bytes of the file preceding {@link #fIndexed}
+		 */
+		private byte[] fBoundary = new byte[0];
+
+		/**
+		 * Identity of the indexed file, its creation time when the platform
+		 * has no file key
+		 */
+		private Object fFileKey;
+
+		Indexer(File file) {
+			fFile = file;
+		}
+
+		/**
+		 * Indexes the lines appended since the file was last indexed. A
+		 * trailing line without line terminator is left for the next update.
+		 *
+		 * @return <code>false</code> if the file is not the one that was
+		 *         indexed anymore, nothing is indexed then
+		 */
+		boolean update() throws IOException {
+			BasicFileAttributes attributes = Files.readAttributes(fFile.toPath(), BasicFileAttributes.class);
+			Object fileKey = attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+			if (fFileKey == null) {
+				fFileKey = fileKey;
+			} else if (!fFileKey.equals(fileKey) || attributes.size() < fIndexed) {
+				return false;
+			}
+			try (FileChannel channel = FileChannel.open(fFile.toPath(), StandardOpenOption.READ)) {
+				if (!Arrays.equals(fBoundary, read(channel, fIndexed - fBoundary.length, fBoundary.length))) {
+					return false;
+				}
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				long position = fIndexed;
+				long lineStart = fIndexed;
+				// bytes of the current line kept to classify it
+				byte[] line = new byte[256];
+				int lineLength = 0;
+				for (;;) {
+					buffer.clear();
+					int read = channel.read(buffer, position);
+					if (read <= 0) {
+						break;
+					}
+					byte[] bytes = buffer.array();
+					for (int i = 0; i < read; i++) {
+						byte b = bytes[i];
+						if (b == '\n' || b == '\r') {
+							if (lineLength > 0) {
+								indexLine(lineStart, line, lineLength);
+							}
+							lineStart = position + i + 1;
+							lineLength = 0;
+						} else if (lineLength < line.length) {
+							line[lineLength++] = b;
+						}
+					}
+					position += read;
+				}
+				int boundary = (int) Math.min(BOUNDARY_SIZE, lineStart);
+				fBoundary = read(channel, lineStart - boundary, boundary);
+				fIndexed = lineStart;
+			}
+			return true;
+		}
+
+		private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					break;
+				}
+			}
+			return buffer.position() == length ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+		}
+
+		private void indexLine(long offset, byte[] line, int length) {
+			int start = 0;
+			while (start < length && (line[start] == ' ' || line[start] == '\t')) {
+				start++;
+			}
+			if (startsWith(line, start, length, SESSION_TAG)) {
+				add(offset, SESSION, new String(line, start, length - start, StandardCharsets.UTF_8));
+			} else if (startsWith(line, start, length, ENTRY_TAG)) {
+				add(offset, (byte) parseSeverity(new String(line, start, length - start, StandardCharsets.UTF_8)), null);
+			}
+		}
+
+		private static boolean startsWith(byte[] line, int start, int length, byte[] tag) {
+			if (length - start < tag.length) {
+				return false;
+			}
+			for (int i = 0; i < tag.length; i++) {
+				if (line[start + i] != tag[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Parses the severity of an entry the way {@link LogEntry#processEntry(String)} does
+		 */
+		private static int parseSeverity(String line) {
+			String[] tokens = line.trim().split(" +"); //$NON-NLS-1$
+			if (tokens.length > 2) {
+				try {
+					return Integer.parseInt(tokens[2]);
+				} catch (NumberFormatException e) {
+					// logged by the framework
+				}
+			}
+			return 0;
+		}
+
+		private void add(long offset, byte kind, String sessionLine) {
+			if (fCount == fOffsets.length) {
+				fOffsets = Arrays.copyOf(fOffsets, fCount * 2);
+				fKinds = Arrays.copyOf(fKinds, fCount * 2);
+				fSessionLines = Arrays.copyOf(fSessionLines, fCount * 2);
+			}
+			fOffsets[fCount] = offset;
+			fKinds[fCount] = kind;
+			fSessionLines[fCount] = sessionLine;
+			fCount++;
+		}
+	}
+
+	/**
+	 * @return the number of indexed sessions and entries
+	 */
+	public int size() {
+		return fCount;
+	}
+
+	/**
+	 * @param i index of a session or entry
+	 * @return whether the indexed line starts a session
+	 */
+	public boolean isSession(int i) {
+		return fKinds[i] == SESSION;
+	}
+
+	/**
+	 * @param i index of an entry
+	 * @return the severity of the entry
+	 */
+	public int getSeverity(int i) {
+		return fKinds[i];
+	}
+
+	/**
+	 * @param i index of a session or entry
+	 * @return the offset of the indexed line in the file
+	 */
+	public long getOffset(int i) {
+		return fOffsets[i];
+	}
+
+	/**
+	 * Returns the session started by the <code>!SESSION</code> line kept in
+	 * the index, without reading the file
+	 *
+	 * @param i index of a session
+	 * @return the session, only its date is set
+	 */
+	public LogSession readSession(int i) {
+		LogSession session = new LogSession();
+		session.processLogLine(fSessionLines[i].trim());
+		return session;
+	}
+
+	/**
+	 * Opens a stream on a range of the file
+	 *
+	 * @param start offset of the first byte to read
+	 * @param end offset after the last byte to read
+	 * @return a stream of the bytes in the range
+	 * @throws IOException if the file cannot be opened
+	 */
+	public InputStream open(long start, long end) throws IOException {
+		final FileChannel channel = FileChannel.open(fFile.toPath(), StandardOpenOption.READ);
+		return new InputStream() {
+			private long fPosition = start;
+
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				int read = read(b, 0, 1);
+				return read < 0 ? read : b[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (fPosition >= end) {
+					return -1;
+				}
+				int length = (int) Math.min(len, end - fPosition);
+				int read = channel.read(ByteBuffer.wrap(b, off, length), fPosition);
+				if (read > 0) {
+					fPosition += read;
+				}
+				return read;
+			}
+
+			@Override
+			public void close() throws IOException {
+				channel.close();
+			}
+		};
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -41,6 +41,82 @@ class LogReader {
 				&& memento.getInteger(LogView.P_LOG_LIMIT).intValue() == 0)
 			return null;
 
+		InputStream in;
+		boolean tail = false;
+		try {
+			in = openIndexed(file, memento);
+		} catch (IOException e) {
+			// read the tail of the file without index
+			try {
+				in = new TailInputStream(file, maxLogTailSizeInMegaByte > 0 ? maxLogTailSizeInMegaByte * ONE_MEGA_BYTE_IN_BYTES : ONE_MEGA_BYTE_IN_BYTES);
+				tail = true;
+			} catch (IOException e1) {
+				return null;
+			}
+		}
+
+		return parseLogFile(in, file, tail ? maxLogTailSizeInMegaByte : -1, entries, memento);
+	}
+
+	/**
+	 * Opens a stream on the part of the log file that holds the entries to
+	 * show: the most recent entries passing the severity filters, up to the
+	 * entries limit, preceded by the line of the session they belong to.
+	 * Entries before the most recent session are skipped unless all sessions
+	 * are shown. Only the index of the file is read to find that part.
+	 */
+	private static InputStream openIndexed(File file, IMemento memento) throws IOException {
+		LogFileIndex index = LogFileIndex.getIndex(file);
+		long length = file.length();
+
+		// first session or entry that may be shown
+		int first = 0;
+		if (!memento.getString(LogView.P_SHOW_ALL_SESSIONS).equals("true")) { //$NON-NLS-1$
+			LogSession currentSession = null;
+			for (int i = 0; i < index.size(); i++) {
+				if (index.isSession(i)) {
+					LogSession session = index.readSession(i);
+					currentSession = updateCurrentSession(currentSession, session);
+					if (currentSession == session) {
+						first = i;
+					}
+				}
+			}
+		}
+
+		if (memento.getString(LogView.P_USE_LIMIT).equals("true")) { //$NON-NLS-1$
+			int limit = memento.getInteger(LogView.P_LOG_LIMIT).intValue();
+			int count = 0;
+			for (int i = index.size() - 1; i > first; i--) {
+				if (!index.isSession(i) && isLogged(index.getSeverity(i), memento) && ++count == limit) {
+					first = i;
+					break;
+				}
+			}
+		}
+
+		if (index.size() == 0 || index.isSession(first)) {
+			return index.open(index.size() == 0 ? 0 : index.getOffset(first), length);
+		}
+
+		// start with the line of the session the first entry belongs to
+		int session = first - 1;
+		while (session >= 0 && !index.isSession(session)) {
+			session--;
+		}
+		if (session < 0) {
+			return index.open(index.getOffset(first), length);
+		}
+		return new SequenceInputStream(index.open(index.getOffset(session), index.getOffset(session + 1)), index.open(index.getOffset(first), length));
+	}
+
+	/**
+	 * Parses the log file contents read from the given stream
+	 *
+	 * @param maxLogTailSizeInMegaByte the size of the tail of the file that is
+	 * read, or -1 if the stream is not restricted to the tail
+	 */
+	private static LogSession parseLogFile(InputStream in, File file, long maxLogTailSizeInMegaByte, List entries, IMemento memento) {
 		ArrayList parents = new ArrayList();
 		LogEntry current = null;
 		LogSession session = null;
@@ -49,10 +125,7 @@ class LogReader {
 		PrintWriter writer = null;
 		int state = UNKNOWN_STATE;
 		LogSession currentSession = null;
-		long maxTailSizeInBytes = maxLogTailSizeInMegaByte > 0 ? maxLogTailSizeInMegaByte * ONE_MEGA_BYTE_IN_BYTES
-				: ONE_MEGA_BYTE_IN_BYTES;
-		try (BufferedReader reader = new BufferedReader(
-				new InputStreamReader(new TailInputStream(file, maxTailSizeInBytes), StandardCharsets.UTF_8))) {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
 			for (;;) {
 				String line0 = reader.readLine();
 				if (line0 == null)
@@ -149,7 +222,7 @@ class LogReader {
 			}
 		} catch (IOException e) { // do nothing
 		} finally {
-			if (file.length() > maxLogTailSizeInMegaByte && entries.size() == 0) {
+			if (maxLogTailSizeInMegaByte >= 0 && file.length() > maxLogTailSizeInMegaByte && entries.size() == 0) {
 				LogEntry entry = new LogEntry(new Status(IStatus.WARNING, Activator.PLUGIN_ID, NLS.bind(Messages.LogReader_warn_noEntryWithinMaxLogTailSize, new Long(maxLogTailSizeInMegaByte))));
 				entry.setSession(currentSession == null ? new LogSession() : currentSession);
 				entries.add(entry);
@@ -226,7 +299,10 @@ class LogReader {
 	 * @return is entry logged or filtered
 	 */
 	public static boolean isLogged(LogEntry entry, IMemento memento) {
-		int severity = entry.getSeverity();
+		return isLogged(entry.getSeverity(), memento);
+	}
+
+	private static boolean isLogged(int severity, IMemento memento) {
 		switch (severity) {
 			case IStatus.INFO :
 				return memento.getString(LogView.P_LOG_INFO).equals("true"); //$NON-NLS-1$
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2017 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,6 +26,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.core.runtime.*;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.jobs.Job;
@@ -52,6 +55,7 @@ import org.eclipse.ui.actions.ActionFactory;
 import org.eclipse.ui.dialogs.FilteredTree;
 import org.eclipse.ui.dialogs.PatternFilter;
 import org.eclipse.ui.part.ViewPart;
+import org.eclipse.ui.progress.WorkbenchJob;
 import org.osgi.service.prefs.BackingStoreException;
 import org.osgi.service.prefs.Preferences;
 
@@ -98,12 +102,52 @@ public class LogView extends ViewPart implements ILogListener {
 	public static final int GROUP_BY_SESSION = 1;
 	public static final int GROUP_BY_PLUGIN = 2;
 
-	private List<AbstractEntry> elements;
+	private EntryRingBuffer<AbstractEntry> elements;
 	private Map<Object, Group> groups;
+	/**
+	 * Log entries shown in the view, in the order they were added and bounded
+	 * by the entries limit, whether they are grouped or not
+	 */
+	private EntryRingBuffer<LogEntry> entries;
 	private LogSession currentSession;
 
-	private List<LogEntry> batchedEntries;
-	private boolean batchEntries;
+	/**
+	 * Delay in milliseconds between refreshes of the viewer with logged
+	 * entries, entries logged in the meantime are added in one refresh
+	 */
+	private static final int REFRESH_DELAY = 100;
+
+	/**
+	 * Maximum number of logged entries waiting to be added to the viewer,
+	 * older ones are dropped when it is exceeded
+	 */
+	private static final int MAX_PENDING_ENTRIES = 10000;
+
+	/**
+	 * Maximum number of entries added or removed in a refresh for which the
+	 * viewer is updated incrementally rather than refreshed
+	 */
+	private static final int MAX_INCREMENTAL_UPDATES = 200;
+
+	/**
+	 * Logged entries waiting to be added to the viewer, the refresh job is their
+	 * only consumer
+	 */
+	private final Queue<LogEntry> pendingEntries = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+	private WorkbenchJob fRefreshJob;
+
+	/**
+	 * Number of logged entries dropped before they could be shown since the log
+	 * was last read
+	 */
+	private final AtomicInteger droppedEntries = new AtomicInteger();
+
+	/**
+	 * Whether logged entries are kept pending until the view is shown
+	 */
+	private volatile boolean batchEntries;
 
 	private Clipboard fClipboard;
 
@@ -167,9 +211,9 @@ public class LogView extends ViewPart implements ILogListener {
 	 * Constructor
 	 */
 	public LogView() {
-		elements = new ArrayList<>();
+		elements = new EntryRingBuffer<>();
+		entries = new EntryRingBuffer<>();
 		groups = new HashMap<>();
-		batchedEntries = new ArrayList<>();
 		fInputFile = Platform.getLogFileLocation().toFile();
 	}
 
@@ -186,6 +230,7 @@ public class LogView extends ViewPart implements ILogListener {
 
 		readLogFile();
 		createViewer(composite);
+		createRefreshJob();
 		getSite().setSelectionProvider(fFilteredTree.getViewer());
 		createActions();
 		fClipboard = new Clipboard(fTree.getDisplay());
@@ -210,11 +255,10 @@ public class LogView extends ViewPart implements ILogListener {
 
 				if (part.equals(LogView.this)) {
 					if (changeId.equals(IWorkbenchPage.CHANGE_VIEW_SHOW)) {
-						if (!batchedEntries.isEmpty()) {
-							pushBatchedEntries();
-						}
-
 						batchEntries = false;
+						if (pendingCount.get() > 0) {
+							scheduleRefresh();
+						}
 					} else if (changeId.equals(IWorkbenchPage.CHANGE_VIEW_HIDE)) {
 						batchEntries = true;
 					}
@@ -645,6 +689,7 @@ public class LogView extends ViewPart implements ILogListener {
 	public void dispose() {
 		writeSettings();
 		Platform.removeLogListener(this);
+		fRefreshJob.cancel();
 		fClipboard.dispose();
 		if (fTextShell != null)
 			fTextShell.dispose();
@@ -786,14 +831,18 @@ public class LogView extends ViewPart implements ILogListener {
 	public void fillContextMenu(IMenuManager manager) { // nothing
 	}
 
-	public AbstractEntry[] getElements() {
+	public synchronized AbstractEntry[] getElements() {
 		return elements.toArray(new AbstractEntry[elements.size()]);
 	}
 
 	protected void handleClear() {
 		BusyIndicator.showWhile(fTree.getDisplay(), () -> {
-			elements.clear();
-			groups.clear();
+			synchronized (this) {
+				elements.clear();
+				entries.clear();
+				groups.clear();
+			}
+			clearPendingEntries();
 			if (currentSession != null) {
 				currentSession.removeAllChildren();
 			}
@@ -827,10 +876,18 @@ public class LogView extends ViewPart implements ILogListener {
 	 * Reads the chosen backing log file
 	 */
 	void readLogFile() {
-		elements.clear();
-		groups.clear();
+		synchronized (this) {
+			elements.clear();
+			entries.clear();
+			groups.clear();
+		}
+		// logged entries are read from the file
+		clearPendingEntries();
+		droppedEntries.set(0);
 
-		List<LogEntry> result = new ArrayList<>();
+		int limit = getEntriesLimit();
+		// only the most recent entries within the limit are kept while reading
+		List<LogEntry> result = new EntryRingBuffer<>(limit);
 		LogSession lastLogSession = LogReader.parseLogFile(this.fInputFile, getLogMaxTailSize(), result, this.fMemento);
 		if (lastLogSession != null && (lastLogSession.getDate() == null || isEclipseStartTime(lastLogSession.getDate()))) {
 			currentSession = lastLogSession;
@@ -838,8 +895,10 @@ public class LogView extends ViewPart implements ILogListener {
 			currentSession = null;
 		}
 
-		group(result);
-		limitEntriesCount();
+		synchronized (this) {
+			entries.setCapacity(limit);
+			group(result);
+		}
 
 		getSite().getShell().getDisplay().asyncExec(() -> setContentDescription(getTitleSummary()));
 
@@ -863,6 +922,10 @@ public class LogView extends ViewPart implements ILogListener {
 		}
 
 		if (isPlatformLogOpen()) {
+			int dropped = droppedEntries.get();
+			if (dropped > 0) {
+				return NLS.bind(Messages.LogView_droppedEvents, Messages.LogView_WorkspaceLogFile, Integer.toString(dropped));
+			}
 			return Messages.LogView_WorkspaceLogFile;
 		}
 
@@ -880,77 +943,58 @@ public class LogView extends ViewPart implements ILogListener {
 	}
 
 	/**
-	 * Add new entries to correct groups in the view.
-	 * @param entries new entries to show up in groups in the view.
+	 * Add new entries to correct groups in the view. The oldest entries
+	 * exceeding the max entries limit set in memento are removed.
+	 * @param newEntries new entries to show up in groups in the view.
+	 * @return the entries removed from the view
 	 */
-	private void group(List<LogEntry> entries) {
-		if (fMemento.getInteger(P_GROUP_BY).intValue() == GROUP_BY_NONE) {
-			elements.addAll(entries);
-		} else {
-			for (Iterator<LogEntry> i = entries.iterator(); i.hasNext();) {
-				LogEntry entry = i.next();
+	private List<LogEntry> group(List<LogEntry> newEntries) {
+		boolean grouped = fMemento.getInteger(P_GROUP_BY).intValue() != GROUP_BY_NONE;
+		List<LogEntry> removed = new ArrayList<>();
+		for (LogEntry entry : newEntries) {
+			LogEntry evicted = entries.push(entry);
+			if (evicted == entry) {
+				// no entries are shown
+				continue;
+			}
+
+			if (grouped) {
 				Group group = getGroup(entry);
 				group.addChild(entry);
+			} else {
+				elements.add(entry);
+			}
+
+			if (evicted != null) {
+				removeEntry(evicted);
+				removed.add(evicted);
 			}
 		}
+		return removed;
 	}
 
 	/**
-	 * Limits the number of entries according to the max entries limit set in
-	 * memento.
+	 * Removes an entry exceeding the max entries limit from the view
+	 * @param entry the entry to remove
 	 */
-	private void limitEntriesCount() {
-		int limit = Integer.MAX_VALUE;
-		if (fMemento.getString(LogView.P_USE_LIMIT).equals("true")) {//$NON-NLS-1$
-			limit = fMemento.getInteger(LogView.P_LOG_LIMIT).intValue();
-		}
-
-		int entriesCount = getEntriesCount();
-
-		if (entriesCount <= limit) {
-			return;
-		}
-		Comparator<LogEntry> dateComparator = (o1, o2) -> {
-			Date l1 = o1.getDate();
-			Date l2 = o2.getDate();
-			if ((l1 != null) && (l2 != null)) {
-				return l1.before(l2) ? -1 : 1;
-			} else if ((l1 == null) && (l2 == null)) {
-				return 0;
-			} else
-				return (l1 == null) ? -1 : 1;
-		};
-
-		if (fMemento.getInteger(P_GROUP_BY).intValue() == GROUP_BY_NONE) {
-			elements.subList(0, elements.size() - limit).clear();
+	private void removeEntry(LogEntry entry) {
+		Object parent = entry.getParent(entry);
+		if (parent instanceof AbstractEntry) {
+			((AbstractEntry) parent).removeChild(entry);
 		} else {
-			List copy = new ArrayList(entriesCount);
-			for (Iterator<AbstractEntry> i = elements.iterator(); i.hasNext();) {
-				AbstractEntry group = i.next();
-				copy.addAll(Arrays.asList(group.getChildren(group)));
-			}
-
-			Collections.sort(copy, dateComparator);
-			List toRemove = copy.subList(0, copy.size() - limit);
-
-			for (Iterator<AbstractEntry> i = elements.iterator(); i.hasNext();) {
-				AbstractEntry group = i.next();
-				group.removeChildren(toRemove);
-			}
+			elements.remove(entry);
 		}
-
 	}
 
-	private int getEntriesCount() {
-		if (fMemento.getInteger(P_GROUP_BY).intValue() == GROUP_BY_NONE) {
-			return elements.size();
-		}
-		int size = 0;
-		for (Iterator<AbstractEntry> i = elements.iterator(); i.hasNext();) {
-			AbstractEntry group = i.next();
-			size += group.size();
+	/**
+	 * @return the max entries limit set in memento, or
+	 * {@link Integer#MAX_VALUE} if entries are not limited
+	 */
+	private int getEntriesLimit() {
+		if (fMemento.getString(LogView.P_USE_LIMIT).equals("true")) {//$NON-NLS-1$
+			return fMemento.getInteger(LogView.P_LOG_LIMIT).intValue();
 		}
-		return size;
+		return Integer.MAX_VALUE;
 	}
 
 	/**
@@ -1003,50 +1047,109 @@ public class LogView extends ViewPart implements ILogListener {
 		if (!isPlatformLogOpen())
 			return;
 
-		if (batchEntries) {
-			// create LogEntry immediately to don't loose IStatus creation date.
-			LogEntry entry = createLogEntry(status);
-			batchedEntries.add(entry);
-			return;
-		}
-
 		if (fFirstEvent || (currentSession == null)) {
 			readLogFile();
 			asyncRefresh(true);
 			fFirstEvent = false;
 		} else {
+			// create LogEntry immediately to don't loose IStatus creation date.
 			LogEntry entry = createLogEntry(status);
+			if (!LogReader.isLogged(entry, fMemento)) {
+				return;
+			}
+			pendingEntries.add(entry);
+			// keep no more entries than can be shown
+			int maxPending = Math.min(getEntriesLimit(), MAX_PENDING_ENTRIES);
+			if (pendingCount.incrementAndGet() > maxPending && pendingEntries.poll() != null) {
+				pendingCount.decrementAndGet();
+				if (maxPending == MAX_PENDING_ENTRIES) {
+					droppedEntries.incrementAndGet();
+				}
+			}
+			if (!batchEntries) {
+				scheduleRefresh();
+			}
+		}
+	}
 
-			if (!batchedEntries.isEmpty()) {
-				// batch new entry as well, to have only one asyncRefresh()
-				batchedEntries.add(entry);
-				pushBatchedEntries();
-			} else {
-				pushEntry(entry);
-				asyncRefresh(true);
+	private void createRefreshJob() {
+		fRefreshJob = new WorkbenchJob(fTree.getDisplay(), Messages.LogView_AddingBatchedEvents) {
+			@Override
+			public IStatus runInUIThread(IProgressMonitor monitor) {
+				refreshScheduled.set(false);
+				addPendingEntries();
+				return Status.OK_STATUS;
 			}
+		};
+		fRefreshJob.setSystem(true);
+	}
+
+	/**
+	 * Schedules the refresh of the viewer with the logged entries, unless it is
+	 * already scheduled
+	 */
+	private void scheduleRefresh() {
+		if (fRefreshJob != null && refreshScheduled.compareAndSet(false, true)) {
+			fRefreshJob.schedule(REFRESH_DELAY);
+		}
+	}
+
+	private void clearPendingEntries() {
+		while (pendingEntries.poll() != null) {
+			pendingCount.decrementAndGet();
 		}
 	}
 
 	/**
-	 * Push batched entries to log view.
+	 * Adds the pending logged entries to the view and updates the viewer with
+	 * them. The viewer is refreshed if many entries were added or removed.
 	 */
-	private void pushBatchedEntries() {
-		Job job = new Job(Messages.LogView_AddingBatchedEvents) {
-			@Override
-			protected IStatus run(IProgressMonitor monitor) {
-				for (int i = 0; i < batchedEntries.size(); i++) {
-					if (!monitor.isCanceled()) {
-						LogEntry entry = batchedEntries.get(i);
-						pushEntry(entry);
-						batchedEntries.remove(i);
-					}
+	private void addPendingEntries() {
+		if (fTree.isDisposed()) {
+			return;
+		}
+		List<LogEntry> newEntries = new ArrayList<>();
+		LogEntry entry;
+		while ((entry = pendingEntries.poll()) != null) {
+			pendingCount.decrementAndGet();
+			newEntries.add(entry);
+		}
+		if (newEntries.isEmpty()) {
+			return;
+		}
+
+		List<LogEntry> removed;
+		List<LogEntry> added = new ArrayList<>(newEntries.size());
+		synchronized (this) {
+			removed = group(newEntries);
+			for (LogEntry newEntry : newEntries) {
+				if (entries.contains(newEntry)) {
+					added.add(newEntry);
 				}
-				asyncRefresh(true);
-				return Status.OK_STATUS;
 			}
-		};
-		job.schedule();
+		}
+
+		TreeViewer viewer = fFilteredTree.getViewer();
+		if (added.size() + removed.size() > MAX_INCREMENTAL_UPDATES) {
+			viewer.refresh();
+			viewer.expandToLevel(2);
+		} else {
+			viewer.remove(removed.toArray());
+			for (LogEntry newEntry : added) {
+				Object parent = newEntry.getParent(newEntry);
+				if (parent instanceof Group && viewer.testFindItem(parent) == null) {
+					// new group, its entries are added with it
+					viewer.add(this, parent);
+					viewer.expandToLevel(parent, 1);
+				} else {
+					viewer.add(parent == null ? this : parent, newEntry);
+				}
+			}
+		}
+		if (droppedEntries.get() > 0) {
+			setContentDescription(getTitleSummary());
+		}
+		updateViewer(true);
 	}
 
 	private LogEntry createLogEntry(IStatus status) {
@@ -1063,44 +1166,43 @@ public class LogView extends ViewPart implements ILogListener {
 		return entry;
 	}
 
-	private synchronized void pushEntry(LogEntry entry) {
-		if (LogReader.isLogged(entry, fMemento)) {
-			group(Collections.singletonList(entry));
-			limitEntriesCount();
-		}
-		asyncRefresh(true);
-	}
-
 	private void asyncRefresh(final boolean activate) {
 		if (fTree.isDisposed())
 			return;
 		Display display = fTree.getDisplay();
-		final ViewPart view = this;
 		if (display != null) {
 			display.asyncExec(() -> {
 				if (!fTree.isDisposed()) {
 					TreeViewer viewer = fFilteredTree.getViewer();
 					viewer.refresh();
 					viewer.expandToLevel(2);
-					fDeleteLogAction.setEnabled(
-							fInputFile.exists() && fInputFile.equals(Platform.getLogFileLocation().toFile()));
-					fOpenLogAction.setEnabled(fInputFile.exists());
-					fExportLogAction.setEnabled(fInputFile.exists());
-					fExportLogEntryAction.setEnabled(!viewer.getSelection().isEmpty());
-					if (activate && fActivateViewAction.isChecked()) {
-						IWorkbenchWindow window = PlatformUI.getWorkbench().getActiveWorkbenchWindow();
-						if (window != null) {
-							IWorkbenchPage page = window.getActivePage();
-							if (page != null) {
-								page.bringToTop(view);
-							}
-						}
-					}
+					updateViewer(activate);
 				}
 			});
 		}
 	}
 
+	/**
+	 * Updates the actions once the viewer changed and brings the view to top if
+	 * asked to. Must be called in the UI thread.
+	 */
+	private void updateViewer(boolean activate) {
+		TreeViewer viewer = fFilteredTree.getViewer();
+		fDeleteLogAction.setEnabled(fInputFile.exists() && fInputFile.equals(Platform.getLogFileLocation().toFile()));
+		fOpenLogAction.setEnabled(fInputFile.exists());
+		fExportLogAction.setEnabled(fInputFile.exists());
+		fExportLogEntryAction.setEnabled(!viewer.getSelection().isEmpty());
+		if (activate && fActivateViewAction.isChecked()) {
+			IWorkbenchWindow window = PlatformUI.getWorkbench().getActiveWorkbenchWindow();
+			if (window != null) {
+				IWorkbenchPage page = window.getActivePage();
+				if (page != null) {
+					page.bringToTop(this);
+				}
+			}
+		}
+	}
+
 	@Override
 	public void setFocus() {
 		if (fFilteredTree != null) {
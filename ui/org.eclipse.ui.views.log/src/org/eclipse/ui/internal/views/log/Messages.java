@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2014 IBM Corporation and others.
+ * Copyright (c) 2007, 2018 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -75,6 +75,7 @@ public class Messages extends NLS {
 	public static String LogView_GroupByPlugin;
 	public static String LogView_GroupBySession;
 	public static String LogView_LogFileTitle;
+	public static String LogView_droppedEvents;
 	public static String LogView_OpenFile;
 	public static String LogView_WorkspaceLogFile;
 